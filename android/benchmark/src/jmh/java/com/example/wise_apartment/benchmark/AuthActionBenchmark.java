@@ -0,0 +1,63 @@
+package com.example.wise_apartment.benchmark;
+
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.BlinkyAuthAction;
+import com.example.wise_apartment.utils.PluginUtils;
+import com.example.wise_apartment.utils.ResponseMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PluginUtils.createAuthAction, which parses the auth map of every lock
+ * call into the SDK's BlinkyAuthAction.
+ *
+ * {@code auth} is the explicit auth map, {@code dna} the DNA-info map
+ * shape (every getDna field, auth keys under their DNA names) and
+ * {@code secureAuth} the auth map with {@code secureAuth: "remote"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthActionBenchmark {
+    @Param({"auth", "dna", "secureAuth"})
+    public String shape;
+
+    private Map<String, Object> args;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (shape) {
+            case "dna":
+                args = ResponseMapper.dnaInfoToMap(SdkFixtures.dnaInfo());
+                break;
+            case "secureAuth":
+                args = SdkFixtures.auth();
+                args.put("secureAuth", "remote");
+                break;
+            default:
+                args = SdkFixtures.auth();
+                break;
+        }
+    }
+
+    @Benchmark
+    public BlinkyAuthAction createAuthAction() {
+        return PluginUtils.createAuthAction(args);
+    }
+}
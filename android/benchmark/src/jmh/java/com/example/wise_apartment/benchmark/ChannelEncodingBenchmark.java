@@ -0,0 +1,99 @@
+package com.example.wise_apartment.benchmark;
+
+import com.example.hxjblinklibrary.blinkble.entity.reslut.LockKeyResult;
+import com.example.wise_apartment.utils.LockKeyResultMapper;
+import com.example.wise_apartment.utils.ModelFieldMapper;
+import com.example.wise_apartment.utils.ResponseMapper;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StandardMessageCodec encoding of the maps ResultMappingBenchmark
+ * produces, shaped as the plugin sends them: a syncLockRecordsChunk event
+ * of {@link #RECORDS_PER_CHUNK} records, one syncLockKeyChunk event, and
+ * the getDna / getSysParam replies.
+ *
+ * One operation is one encoded message. The codec is the engine's encoder
+ * ported to src/stubs/java (the embedding jar is not on Maven Central).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChannelEncodingBenchmark {
+    static final int RECORDS_PER_CHUNK = 20;
+
+    @Param({"recordChunk", "keyChunk", "dnaReply", "sysParamReply"})
+    public String message;
+
+    private final StandardMessageCodec codec = StandardMessageCodec.INSTANCE;
+    private Object payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (message) {
+            case "recordChunk": {
+                List<Map<String, Object>> items = new ArrayList<>();
+                for (Object r : SdkFixtures.records(RECORDS_PER_CHUNK)) {
+                    Map<String, Object> m = ModelFieldMapper.toMap(r, 1);
+                    m.put("logVersion", 2);
+                    items.add(m);
+                }
+                Map<String, Object> event = new HashMap<>();
+                event.put("type", "syncLockRecordsChunk");
+                event.put("syncId", "sync-1");
+                event.put("streamId", "sync-1");
+                event.put("items", items);
+                event.put("totalSoFar", 120);
+                event.put("isMore", true);
+                payload = event;
+                break;
+            }
+            case "keyChunk": {
+                LockKeyResult key = SdkFixtures.keys(2)[1];
+                Map<String, Object> event = new HashMap<>();
+                event.put("type", "syncLockKeyChunk");
+                event.put("streamId", "keys-1");
+                event.put("item", LockKeyResultMapper.toMap(key));
+                event.put("keyNum", 2);
+                event.put("totalSoFar", 2);
+                event.put("isMore", false);
+                payload = event;
+                break;
+            }
+            case "dnaReply":
+                payload = ResponseMapper.responseToMap(SdkFixtures.success(SdkFixtures.dnaInfo()), null);
+                break;
+            default:
+                payload = ResponseMapper.responseToMap(SdkFixtures.success(SdkFixtures.sysParam()), null);
+                break;
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer encodeMessage() {
+        return codec.encodeMessage(payload);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.wise_apartment.benchmark;
+
+import com.example.wise_apartment.utils.KeyDataChunker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cutting one enrollment's template into 180-byte BLE packets: the
+ * per-packet {@code new byte[] + System.arraycopy} AddBigDataKeyHelper used
+ * to do vs. a KeyDataChunker reused across enrollments.
+ *
+ * One operation is one enrollment. Run with {@code -prof gc} and compare
+ * {@code gc.alloc.rate.norm} (bytes allocated per enrollment).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyChunkingBenchmark {
+    static final int PACKET = 180;
+
+    /** Fingerprint templates are a few KB, face templates tens of KB. */
+    @Param({"4096", "32768"})
+    public int templateBytes;
+
+    private byte[] template;
+    // One helper per session, as when many users are enrolled in a row
+    private final KeyDataChunker chunker = new KeyDataChunker(PACKET);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        template = new byte[templateBytes];
+        new Random(7).nextBytes(template);
+    }
+
+    @Benchmark
+    public void perPacketArrays(Blackhole bh) {
+        int total = template.length;
+        int packets = (total / PACKET) + ((total % PACKET) == 0 ? 0 : 1);
+        for (int index = 0; index < packets; index++) {
+            int offset = index * PACKET;
+            int length = offset + PACKET > total ? total - offset : PACKET;
+            byte[] sendData = new byte[length];
+            System.arraycopy(template, offset, sendData, 0, length);
+            bh.consume(sendData);
+        }
+    }
+
+    @Benchmark
+    public void reusedChunker(Blackhole bh) {
+        chunker.reset(template);
+        int packets = chunker.packetCount();
+        for (int index = 0; index < packets; index++) {
+            bh.consume(chunker.packet(index));
+        }
+        chunker.release();
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.wise_apartment.benchmark;
+
+import com.example.wise_apartment.utils.ModelFieldMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records mapped per second: the per-record reflection walk that
+ * LockRecordManager.mapRecord used to do vs. the cached ModelFieldMapper.
+ *
+ * The record classes mirror the SDK's HXRecordBaseModel / HXRecord2BaseModel
+ * hierarchy (same field counts and types) so the vendor AAR is not needed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecordMappingBenchmark {
+    static final int RECORDS = 2000;
+
+    static class RecordBase {
+        private long recordTime;
+        private int recordType;
+    }
+
+    static class Record2Base {
+        private long recordTime;
+        private int recordType;
+        private int eventFlag;
+        private int power;
+    }
+
+    static class UnlockRecord extends Record2Base {
+        private int lockKeyId1;
+        private int keyType1;
+        private int lockKeyId2;
+        private int keyType2;
+        private String key1 = "123456";
+        private String key2;
+    }
+
+    static class AddKeyRecord extends RecordBase {
+        private int lockKeyId;
+        private int keyType;
+        private int operKeyGroupId;
+        private int keyGroupId;
+        private long validStartTime;
+        private long validEndTime;
+    }
+
+    static class AlarmRecord extends Record2Base {
+        private int alarmType;
+        private int alarmLevel;
+    }
+
+    private Object[] records;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        records = new Object[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            switch (i % 3) {
+                case 0: records[i] = new UnlockRecord(); break;
+                case 1: records[i] = new AddKeyRecord(); break;
+                default: records[i] = new AlarmRecord(); break;
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void legacyReflection(Blackhole bh) {
+        for (Object r : records) {
+            Map<String, Object> m = legacyMapRecord(r);
+            m.put("logVersion", 2);
+            bh.consume(m);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void cachedPlan(Blackhole bh) {
+        for (Object r : records) {
+            Map<String, Object> m = ModelFieldMapper.toMap(r, 1);
+            m.put("logVersion", 2);
+            bh.consume(m);
+        }
+    }
+
+    /** Copy of the mapping code that shipped before ModelFieldMapper. */
+    static Map<String, Object> legacyMapRecord(Object record) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("modelType", record.getClass().getSimpleName());
+        Class<?> c = record.getClass();
+        while (c != null && c != Object.class) {
+            for (Field f : c.getDeclaredFields()) {
+                if (Modifier.isStatic(f.getModifiers())) continue;
+                try {
+                    f.setAccessible(true);
+                    Object v = f.get(record);
+                    if (v == null) continue;
+                    if (v instanceof Number || v instanceof Boolean || v instanceof String) {
+                        map.put(f.getName(), v);
+                    } else {
+                        map.put(f.getName(), v.toString());
+                    }
+                } catch (Throwable ignored) {
+                }
+            }
+            c = c.getSuperclass();
+        }
+        return map;
+    }
+}
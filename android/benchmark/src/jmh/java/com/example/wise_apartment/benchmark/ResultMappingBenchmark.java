@@ -0,0 +1,103 @@
+package com.example.wise_apartment.benchmark;
+
+import com.example.hxjblinklibrary.blinkble.entity.Response;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.DnaInfo;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.LockKeyResult;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.SysParamResult;
+import com.example.wise_apartment.utils.LockKeyResultMapper;
+import com.example.wise_apartment.utils.ModelFieldMapper;
+import com.example.wise_apartment.utils.ResponseMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-item cost of turning real vendor SDK models into the maps sent to
+ * Dart: one record of a record sync, one key of a key sync, and the
+ * single-response mappers of BleLockManager (DNA info, system params).
+ *
+ * One operation is one mapped item. With the gc profiler (on by default)
+ * {@code gc.alloc.rate.norm} is the bytes allocated per item.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultMappingBenchmark {
+    static final int RECORDS = 500;
+    static final int KEYS = 300;
+
+    private Object[] records;
+    private LockKeyResult[] keys;
+    private DnaInfo dna;
+    private Response<DnaInfo> dnaResponse;
+    private SysParamResult sysParam;
+    private Response<SysParamResult> sysParamResponse;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        records = SdkFixtures.records(RECORDS);
+        keys = SdkFixtures.keys(KEYS);
+        dna = SdkFixtures.dnaInfo();
+        dnaResponse = SdkFixtures.success(dna);
+        sysParam = SdkFixtures.sysParam();
+        sysParamResponse = SdkFixtures.success(sysParam);
+    }
+
+    /** LockRecordManager.mapRecord plus the logVersion key its callers add. */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void mapRecord(Blackhole bh) {
+        for (Object r : records) {
+            Map<String, Object> m = ModelFieldMapper.toMap(r, 1);
+            m.put("logVersion", 2);
+            bh.consume(m);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void lockKeyToMap(Blackhole bh) {
+        for (LockKeyResult k : keys) {
+            bh.consume(LockKeyResultMapper.toMap(k));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> dnaInfoToMap() {
+        return ResponseMapper.dnaInfoToMap(dna);
+    }
+
+    /** getDna's reply: the response envelope around dnaInfoToMap. */
+    @Benchmark
+    public Map<String, Object> responseToMapDna() {
+        return ResponseMapper.responseToMap(dnaResponse, null);
+    }
+
+    /** BleLockManager.objectToMap, here on a getSysParam body. */
+    @Benchmark
+    public Map<String, Object> objectToMapSysParam() {
+        return ResponseMapper.objectToMap(sysParam);
+    }
+
+    @Benchmark
+    public Map<String, Object> responseToMapSysParam() {
+        return ResponseMapper.responseToMap(sysParamResponse, null);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.wise_apartment.benchmark;
+
+import com.example.hxjblinklibrary.blinkble.entity.Response;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.DnaInfo;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.LockKeyResult;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.SysParamResult;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.lockrecord2.HXRecord2AddKeyModel;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.lockrecord2.HXRecord2AlarmModel;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.lockrecord2.HXRecord2UnlockModel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Vendor SDK models filled the way a lock reports them. */
+final class SdkFixtures {
+    static final String MAC = "D4:2A:6C:11:8E:05";
+
+    private SdkFixtures() {
+    }
+
+    /** A record page as delivered by syncLockRecord: mostly unlocks. */
+    static Object[] records(int count) {
+        Object[] records = new Object[count];
+        long time = 1700000000L;
+        for (int i = 0; i < count; i++) {
+            switch (i % 4) {
+                case 3: {
+                    HXRecord2AddKeyModel r = new HXRecord2AddKeyModel();
+                    r.setRecordTime(time + i);
+                    r.setRecordType(4);
+                    r.setPower(86);
+                    r.setOperKeyGroupId(900);
+                    r.setAddedKeyGroupId(1000 + i);
+                    r.setLockKeyId(i);
+                    r.setKeyType(2);
+                    r.setKeyLen(6);
+                    r.setKey("123456");
+                    records[i] = r;
+                    break;
+                }
+                case 2: {
+                    HXRecord2AlarmModel r = new HXRecord2AlarmModel();
+                    r.setRecordTime(time + i);
+                    r.setRecordType(8);
+                    r.setPower(86);
+                    r.setFaultType(1);
+                    r.setLockKeyId(i);
+                    records[i] = r;
+                    break;
+                }
+                default: {
+                    HXRecord2UnlockModel r = new HXRecord2UnlockModel();
+                    r.setRecordTime(time + i);
+                    r.setRecordType(1);
+                    r.setPower(86);
+                    r.setEventFlag(0);
+                    r.setOperKeyGroupId1(1000 + i);
+                    r.setKeyType1(1);
+                    r.setLockKeyId1(i);
+                    r.setKeyLen1(6);
+                    r.setKey1("654321");
+                    records[i] = r;
+                    break;
+                }
+            }
+        }
+        return records;
+    }
+
+    /** A key list as delivered by syncLockKey, one result per key. */
+    static LockKeyResult[] keys(int count) {
+        LockKeyResult[] keys = new LockKeyResult[count];
+        for (int i = 0; i < count; i++) {
+            LockKeyResult k = new LockKeyResult();
+            k.setMore(i < count - 1);
+            k.setKeyNum(count);
+            k.setModifyTimestamp(1700000000L + i);
+            k.setVaildMode(1);
+            k.setWeeks(0x7F);
+            k.setDayStartTimes(480);
+            k.setDayEndTimes(1080);
+            k.setKeyType(i % 2 == 0 ? 1 : 2);
+            k.setAppUserID(1000 + i);
+            k.setKeyID(i);
+            k.setVaildNumber(255);
+            k.setVaildStartTime(1700000000L);
+            k.setVaildEndTime(0xFFFFFFFFL);
+            k.setDeleteMode(0);
+            k.setKey(i % 2 == 0 ? "" : "123456");
+            keys[i] = k;
+        }
+        return keys;
+    }
+
+    static DnaInfo dnaInfo() {
+        DnaInfo d = new DnaInfo();
+        d.setMac(MAC);
+        d.setInitTag("01");
+        d.setDeviceType(2);
+        d.setHardWareVer("1.2.0");
+        d.setSoftWareVer("3.4.17");
+        d.setProtocolVer(2);
+        d.setAppCmdSets(3);
+        d.setDnaAes128Key("8F0C1D2E3F405162738495A6B7C8D9EA");
+        d.setAuthorizedRoot("14399F8A");
+        d.setAuthorizedUser("00000000");
+        d.setAuthorizedTempUser("00000000");
+        d.setrFMoudleType(1);
+        d.setLockFunctionType(7);
+        d.setMaximumVolume(5);
+        d.setMaximumUserNum(300);
+        d.setMenuFeature(0x1F);
+        d.setFingerPrintfNum(100);
+        d.setProjectID(20231101L);
+        d.setRFModuleMac("D4:2A:6C:11:8E:06");
+        d.setMotorDriverMode(1);
+        d.setMotorSetMenuFunction(0);
+        d.setMoudleFunction(3);
+        d.setBleActiveTimes(30);
+        d.setModuleSoftwareVer(12);
+        d.setModuleHardwareVer(3);
+        d.setPasswordNumRange(12);
+        d.setOfflinePasswordVer(2);
+        d.setSupportSystemLanguage(3);
+        d.setHotelFunctionEn(0);
+        d.setSchoolOpenNormorl(0);
+        d.setCabinetLock(0);
+        d.setLockSystemFunction(0x1FFL);
+        d.setLockNetSystemFunction(0x3L);
+        d.setSysLanguage(1);
+        d.setKeyAddMenuType(2);
+        d.setFunctionFlag(0);
+        d.setBleSmartCardNfcFunction(1);
+        d.setWisapartmentCardFunction(0);
+        d.setLockCompanyId(17);
+        d.setDeviceDnaInfoStr("0102D42A6C118E05...");
+        return d;
+    }
+
+    static SysParamResult sysParam() {
+        SysParamResult s = new SysParamResult();
+        s.setLockOpen(0);
+        s.setNormallyOpen(0);
+        s.setIsSound(1);
+        s.setSysVolume(3);
+        s.setIsTamperWarn(1);
+        s.setIsLockCoreWarn(1);
+        s.setIsLock(1);
+        s.setIsLockCap(0);
+        s.setInitStatus(1);
+        s.setSysTime("2024-05-01 08:30:00");
+        s.setElectricNum(86);
+        s.setNoPowerOpenNo(0);
+        s.setNoOpenKey(0);
+        s.setNormallyOpenFlag(0);
+        s.setIsLockFlag(1);
+        s.setBigBoltFlag(0);
+        s.setBoltFlag(1);
+        s.setIsNoOpenFlag(0);
+        s.setIsCover(0);
+        s.setIsClose(1);
+        s.setCoreFlag(0);
+        s.setTimezoneOffset(480);
+        s.setSystemLanguage(1);
+        s.setLockSystemFunction(0x1FFL);
+        s.setLockNetSystemFunction2(0x3L);
+        s.setSysTimestamp(1714552200L);
+        s.setDeviceStatusStr("00000101...");
+        return s;
+    }
+
+    /** A successful reply (the SDK sets code 1; the int is the command id). */
+    static <T> Response<T> success(T body) {
+        return Response.success(0, body, MAC);
+    }
+
+    /** The auth map Dart sends with every lock call. */
+    static Map<String, Object> auth() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("mac", MAC);
+        m.put("authCode", "14399F8A");
+        m.put("dnaKey", "8F0C1D2E3F405162738495A6B7C8D9EA");
+        m.put("keyGroupId", 900);
+        m.put("bleProtocolVer", 2);
+        return m;
+    }
+}
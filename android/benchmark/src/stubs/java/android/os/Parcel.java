@@ -0,0 +1,7 @@
+package android.os;
+
+/** Stand-in referenced by {@link Parcelable}; never used by the benchmarks. */
+public final class Parcel {
+    private Parcel() {
+    }
+}
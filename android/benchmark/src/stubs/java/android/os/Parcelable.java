@@ -0,0 +1,14 @@
+package android.os;
+
+/** Stand-in so vendor SDK models implementing Parcelable load on the JVM. */
+public interface Parcelable {
+    int describeContents();
+
+    void writeToParcel(Parcel dest, int flags);
+
+    interface Creator<T> {
+        T createFromParcel(Parcel source);
+
+        T[] newArray(int size);
+    }
+}
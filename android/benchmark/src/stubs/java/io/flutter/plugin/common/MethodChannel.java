@@ -0,0 +1,15 @@
+package io.flutter.plugin.common;
+
+/** Stand-in for the embedding's MethodChannel; only Result is referenced. */
+public final class MethodChannel {
+    private MethodChannel() {
+    }
+
+    public interface Result {
+        void success(Object result);
+
+        void error(String errorCode, String errorMessage, Object errorDetails);
+
+        void notImplemented();
+    }
+}
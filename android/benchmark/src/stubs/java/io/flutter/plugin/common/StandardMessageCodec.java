@@ -0,0 +1,217 @@
+package io.flutter.plugin.common;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoding half of the Flutter engine's StandardMessageCodec, which is what
+ * MethodChannel / EventChannel replies go through. The embedding jar is not
+ * published to Maven Central, so the encoder is ported here with the same
+ * wire format, stream growth and final direct-buffer copy; per-message
+ * time and allocation therefore match the real codec. Decoding is not
+ * needed by the benchmarks and is left out.
+ */
+public class StandardMessageCodec {
+    public static final StandardMessageCodec INSTANCE = new StandardMessageCodec();
+
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    private static final Charset UTF8 = Charset.forName("UTF8");
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte BIGINT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte STRING = 7;
+    private static final byte BYTE_ARRAY = 8;
+    private static final byte INT_ARRAY = 9;
+    private static final byte LONG_ARRAY = 10;
+    private static final byte DOUBLE_ARRAY = 11;
+    private static final byte LIST = 12;
+    private static final byte MAP = 13;
+    private static final byte FLOAT_ARRAY = 14;
+
+    public ByteBuffer encodeMessage(Object message) {
+        if (message == null) {
+            return null;
+        }
+        final ExposedByteArrayOutputStream stream = new ExposedByteArrayOutputStream();
+        writeValue(stream, message);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(stream.size());
+        buffer.put(stream.buffer(), 0, stream.size());
+        return buffer;
+    }
+
+    protected static final void writeSize(ByteArrayOutputStream stream, int value) {
+        if (value < 254) {
+            stream.write(value);
+        } else if (value <= 0xffff) {
+            stream.write(254);
+            writeChar(stream, value);
+        } else {
+            stream.write(255);
+            writeInt(stream, value);
+        }
+    }
+
+    protected static final void writeChar(ByteArrayOutputStream stream, int value) {
+        if (LITTLE_ENDIAN) {
+            stream.write(value);
+            stream.write(value >>> 8);
+        } else {
+            stream.write(value >>> 8);
+            stream.write(value);
+        }
+    }
+
+    protected static final void writeInt(ByteArrayOutputStream stream, int value) {
+        if (LITTLE_ENDIAN) {
+            stream.write(value);
+            stream.write(value >>> 8);
+            stream.write(value >>> 16);
+            stream.write(value >>> 24);
+        } else {
+            stream.write(value >>> 24);
+            stream.write(value >>> 16);
+            stream.write(value >>> 8);
+            stream.write(value);
+        }
+    }
+
+    protected static final void writeLong(ByteArrayOutputStream stream, long value) {
+        if (LITTLE_ENDIAN) {
+            stream.write((byte) value);
+            stream.write((byte) (value >>> 8));
+            stream.write((byte) (value >>> 16));
+            stream.write((byte) (value >>> 24));
+            stream.write((byte) (value >>> 32));
+            stream.write((byte) (value >>> 40));
+            stream.write((byte) (value >>> 48));
+            stream.write((byte) (value >>> 56));
+        } else {
+            stream.write((byte) (value >>> 56));
+            stream.write((byte) (value >>> 48));
+            stream.write((byte) (value >>> 40));
+            stream.write((byte) (value >>> 32));
+            stream.write((byte) (value >>> 24));
+            stream.write((byte) (value >>> 16));
+            stream.write((byte) (value >>> 8));
+            stream.write((byte) value);
+        }
+    }
+
+    protected static final void writeFloat(ByteArrayOutputStream stream, float value) {
+        writeInt(stream, Float.floatToIntBits(value));
+    }
+
+    protected static final void writeDouble(ByteArrayOutputStream stream, double value) {
+        writeLong(stream, Double.doubleToLongBits(value));
+    }
+
+    protected static final void writeBytes(ByteArrayOutputStream stream, byte[] bytes) {
+        writeSize(stream, bytes.length);
+        stream.write(bytes, 0, bytes.length);
+    }
+
+    protected static final void writeAlignment(ByteArrayOutputStream stream, int alignment) {
+        final int mod = stream.size() % alignment;
+        if (mod != 0) {
+            for (int i = 0; i < alignment - mod; i++) {
+                stream.write(0);
+            }
+        }
+    }
+
+    protected void writeValue(ByteArrayOutputStream stream, Object value) {
+        if (value == null || value.equals(null)) {
+            stream.write(NULL);
+        } else if (value instanceof Boolean) {
+            stream.write(((Boolean) value).booleanValue() ? TRUE : FALSE);
+        } else if (value instanceof Number) {
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                stream.write(INT);
+                writeInt(stream, ((Number) value).intValue());
+            } else if (value instanceof Long) {
+                stream.write(LONG);
+                writeLong(stream, (long) value);
+            } else if (value instanceof Float || value instanceof Double) {
+                stream.write(DOUBLE);
+                writeAlignment(stream, 8);
+                writeDouble(stream, ((Number) value).doubleValue());
+            } else if (value instanceof BigInteger) {
+                stream.write(BIGINT);
+                writeBytes(stream, ((BigInteger) value).toString(16).getBytes(UTF8));
+            } else {
+                throw new IllegalArgumentException("Unsupported Number type: " + value.getClass());
+            }
+        } else if (value instanceof CharSequence) {
+            stream.write(STRING);
+            writeBytes(stream, value.toString().getBytes(UTF8));
+        } else if (value instanceof byte[]) {
+            stream.write(BYTE_ARRAY);
+            writeBytes(stream, (byte[]) value);
+        } else if (value instanceof int[]) {
+            stream.write(INT_ARRAY);
+            final int[] array = (int[]) value;
+            writeSize(stream, array.length);
+            writeAlignment(stream, 4);
+            for (final int n : array) {
+                writeInt(stream, n);
+            }
+        } else if (value instanceof long[]) {
+            stream.write(LONG_ARRAY);
+            final long[] array = (long[]) value;
+            writeSize(stream, array.length);
+            writeAlignment(stream, 8);
+            for (final long n : array) {
+                writeLong(stream, n);
+            }
+        } else if (value instanceof double[]) {
+            stream.write(DOUBLE_ARRAY);
+            final double[] array = (double[]) value;
+            writeSize(stream, array.length);
+            writeAlignment(stream, 8);
+            for (final double d : array) {
+                writeDouble(stream, d);
+            }
+        } else if (value instanceof List) {
+            stream.write(LIST);
+            final List<?> list = (List) value;
+            writeSize(stream, list.size());
+            for (final Object o : list) {
+                writeValue(stream, o);
+            }
+        } else if (value instanceof Map) {
+            stream.write(MAP);
+            final Map<?, ?> map = (Map) value;
+            writeSize(stream, map.size());
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(stream, entry.getKey());
+                writeValue(stream, entry.getValue());
+            }
+        } else if (value instanceof float[]) {
+            stream.write(FLOAT_ARRAY);
+            final float[] array = (float[]) value;
+            writeSize(stream, array.length);
+            writeAlignment(stream, 4);
+            for (final float f : array) {
+                writeFloat(stream, f);
+            }
+        } else {
+            throw new IllegalArgumentException(
+                    "Unsupported value: '" + value + "' of type '" + value.getClass() + "'");
+        }
+    }
+
+    static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
 
+import java.io.File;
 import java.util.Map;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
@@ -28,12 +29,25 @@ import com.example.hxjblinklibrary.blinkble.profile.client.FunCallback;
 import com.example.hxjblinklibrary.blinkble.entity.requestaction.BlinkyAction;
 import com.example.hxjblinklibrary.blinkble.entity.Response;
 
+import com.example.wise_apartment.utils.BleBatchExecutor;
+import com.example.wise_apartment.utils.BleCommandScheduler;
 import com.example.wise_apartment.utils.BleLockManager;
 import com.example.wise_apartment.utils.BleScanManager;
+import com.example.wise_apartment.utils.BleSessionManager;
 import com.example.wise_apartment.utils.DeviceInfoManager;
 import com.example.wise_apartment.utils.LockRecordManager;
+import com.example.wise_apartment.utils.LockRecordStore;
 import com.example.wise_apartment.utils.OneShotResult;
+import com.example.wise_apartment.utils.CoalescingEventEmitter;
+import com.example.wise_apartment.utils.MainThreadDispatcher;
+import com.example.wise_apartment.utils.StreamFlowControl;
 import com.example.wise_apartment.utils.PluginUtils;
+import com.example.wise_apartment.utils.RecordCheckpointStore;
+import com.example.wise_apartment.utils.LockKeySnapshotStore;
+import com.example.wise_apartment.utils.NearbyLockRegistry;
+import com.example.wise_apartment.utils.PluginMetrics;
+import com.example.wise_apartment.utils.OperationTracer;
+import com.example.wise_apartment.utils.SecureAuthHelper;
 import com.example.wise_apartment.utils.MyBleClient;
 
 /**
@@ -44,17 +58,40 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
   private MethodChannel channel;
   private EventChannel eventChannel;
   private EventChannel.EventSink eventSink;
+  // Finished operation traces (OperationTracer) for diagnostics
+  private EventChannel diagnosticsChannel;
+  private EventChannel.EventSink diagnosticsSink;
+  private OperationTracer tracer;
+  private final OperationTracer.Sink diagnosticsForwarder = new OperationTracer.Sink() {
+    @Override
+    public void onTrace(Map<String, Object> trace) {
+      EventChannel.EventSink sink = diagnosticsSink;
+      if (sink != null) sink.success(trace);
+    }
+  };
+  // Merges bursts of stream chunk events into fewer platform messages
+  private CoalescingEventEmitter streamEvents;
   private Context context;
   private static final String PREF_NAME = "WiseApartmentPrefs";
   private static final String TAG = "WiseApartmentPlugin";
 
   private HxjBleClient bleClient;
+  // Serializes BLE commands per lock so concurrent Dart calls do not collide on the GATT link
+  private BleCommandScheduler commandScheduler;
+  // Keeps an authenticated link warm per lock between commands
+  private BleSessionManager sessionManager;
   
   // Managers
   private BleLockManager lockManager;
   private BleScanManager scanManager;
   private DeviceInfoManager deviceInfoManager;
   private LockRecordManager recordManager;
+  private BleBatchExecutor batchExecutor;
+  private LockRecordStore recordStore;
+  // Credits and pause state of record / key streams, keyed by streamId
+  private StreamFlowControl streamFlow;
+  // Latency histograms per method and result code; survives re-init
+  private final PluginMetrics metrics = new PluginMetrics();
 
   @Override
   public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
@@ -63,6 +100,12 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
     
     // Register EventChannel for streaming events
     eventChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(), "wise_apartment/ble_events");
+    streamEvents = new CoalescingEventEmitter(MainThreadDispatcher.get(), new CoalescingEventEmitter.SinkProvider() {
+      @Override
+      public EventChannel.EventSink get() {
+        return eventSink;
+      }
+    });
     eventChannel.setStreamHandler(new EventChannel.StreamHandler() {
       @Override
       public void onListen(Object arguments, EventChannel.EventSink events) {
@@ -77,6 +120,21 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
       }
     });
     
+    diagnosticsChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(), "wise_apartment/diagnostics");
+    diagnosticsChannel.setStreamHandler(new EventChannel.StreamHandler() {
+      @Override
+      public void onListen(Object arguments, EventChannel.EventSink events) {
+        diagnosticsSink = events;
+        if (tracer != null) tracer.setSink(diagnosticsForwarder);
+      }
+
+      @Override
+      public void onCancel(Object arguments) {
+        diagnosticsSink = null;
+        if (tracer != null) tracer.setSink(null);
+      }
+    });
+
     context = flutterPluginBinding.getApplicationContext();
     initClient();
   }
@@ -93,7 +151,7 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
             ((MyBleClient) bleClient).setWifiRegistrationCallback(new MyBleClient.WifiRegistrationCallback() {
               @Override
               public void onWifiRegistrationEvent(final int status, final String moduleMac, final String lockMac) {
-                new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
+                MainThreadDispatcher.get().execute(new Runnable() {
                   @Override
                   public void run() {
                     if (eventSink != null) {
@@ -144,18 +202,24 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
             @Override
             public void onDeviceDisconnected(@NonNull BluetoothDevice device) {
               Log.d(TAG, "Disconnected: " + device.getAddress());
+              if (sessionManager != null) sessionManager.onLinkLost(device.getAddress());
             }
             @Override
             public void onLinkLossOccurred(@NonNull BluetoothDevice device) {
                Log.d(TAG, "Link Loss: " + device.getAddress());
+               if (sessionManager != null) sessionManager.onLinkLost(device.getAddress());
+               if (tracer != null) tracer.onLinkError(device.getAddress(), "linkLoss");
             }
             @Override
-            public void onDeviceReady(@NonNull BluetoothDevice device) {}
+            public void onDeviceReady(@NonNull BluetoothDevice device) {
+              if (tracer != null) tracer.onLinkReady(device.getAddress());
+            }
             @Override
             public void onDeviceNotSupported(@NonNull BluetoothDevice device) {}
             @Override
             public void onError(@NonNull BluetoothDevice device, @NonNull String message, int errorCode) {
               Log.e(TAG, "Error: " + message + " (" + errorCode + ")");
+              if (tracer != null) tracer.onLinkError(device.getAddress(), message + " (" + errorCode + ")");
             }
             @Override
             public void onEventReport(String data, int cmdVersion, String mac) {
@@ -163,23 +227,62 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
             }
           });
           // Initialize Managers with the client
-          lockManager = new BleLockManager(bleClient);
-          scanManager = new BleScanManager(context);
-          deviceInfoManager = new DeviceInfoManager(context, bleClient);
-          recordManager = new LockRecordManager(bleClient);
+          commandScheduler = new BleCommandScheduler(MainThreadDispatcher.get()::post);
+          // A timed-out command keeps the link until the SDK calls back; drop the
+          // link so it does
+          commandScheduler.setLinkResetter(mac -> {
+            HxjBleClient client = bleClient;
+            if (client != null) client.disConnectBle(null);
+          });
+          sessionManager = new BleSessionManager(bleClient, commandScheduler);
+          tracer = new OperationTracer(MainThreadDispatcher.get(), commandScheduler);
+          // Traces are only posted to the main thread while Dart listens
+          tracer.setSink(diagnosticsSink != null ? diagnosticsForwarder : null);
+          commandScheduler.addListener(tracer);
+          if (bleClient instanceof MyBleClient) ((MyBleClient) bleClient).setTracer(tracer);
+          SecureAuthHelper.setTracer(tracer);
+          streamFlow = new StreamFlowControl();
+          lockManager = new BleLockManager(bleClient, commandScheduler, sessionManager, streamFlow,
+              new LockKeySnapshotStore(context.getSharedPreferences(LockKeySnapshotStore.PREFS_NAME, Context.MODE_PRIVATE)));
+          scanManager = new BleScanManager(context, streamFlow, new NearbyLockRegistry());
+          deviceInfoManager = new DeviceInfoManager(context, bleClient, commandScheduler, sessionManager);
+          recordStore = new LockRecordStore(new File(context.getFilesDir(), "lock_records"));
+          recordManager = new LockRecordManager(bleClient, commandScheduler, sessionManager,
+              new RecordCheckpointStore(context.getSharedPreferences(RecordCheckpointStore.PREFS_NAME, Context.MODE_PRIVATE)),
+              recordStore, streamFlow);
+          batchExecutor = new BleBatchExecutor(commandScheduler, lockManager, recordManager);
         } catch (Throwable t) {
           // Defensive: log full stacktrace so release builds show cause
           Log.e(TAG, "initClient failed", t);
           // Ensure partial objects aren't left in a bad state
-          bleClient = null;
-          lockManager = null;
-          scanManager = null;
-          deviceInfoManager = null;
-          recordManager = null;
+          releaseClient();
         }
       }
   }
 
+  /**
+   * Stop the timers and executors of the client's managers and drop them;
+   * the tracer is detached while the client is still reachable.
+   */
+  private void releaseClient() {
+    if (bleClient instanceof MyBleClient) ((MyBleClient) bleClient).setTracer(null);
+    SecureAuthHelper.setTracer(null);
+    tracer = null;
+    bleClient = null;
+    if (sessionManager != null) sessionManager.shutdown();
+    sessionManager = null;
+    if (commandScheduler != null) commandScheduler.shutdown();
+    commandScheduler = null;
+    if (recordStore != null) recordStore.shutdown();
+    recordStore = null;
+    streamFlow = null;
+    lockManager = null;
+    scanManager = null;
+    deviceInfoManager = null;
+    recordManager = null;
+    batchExecutor = null;
+  }
+
   /**
    * Ensure the plugin and underlying HXJ BLE SDK objects are initialized.
    * Returns true when ready. If initialization fails, sends an error on the
@@ -219,11 +322,12 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
     Log.v(TAG, "MethodCall: " + call.method);
     // Wrap the incoming Result so we only ever reply once and always on
     // the main thread. Use `safeResult` for all replies below.
-    final Result safeResult = new OneShotResult(result, TAG);
+    final Result safeResult = new OneShotResult(result, TAG, metrics.start(call.method));
 
     // Ensure initialization for all methods that depend on the BLE SDK.
     String _method = call.method;
-    if (!"getPlatformVersion".equals(_method) && !"initBleClient".equals(_method)) {
+    if (!"getPlatformVersion".equals(_method) && !"initBleClient".equals(_method)
+        && !"getMetrics".equals(_method) && !"resetMetrics".equals(_method)) {
       if (!ensureInitialized(safeResult)) {
         return; // ensureInitialized already sent an error to Flutter
       }
@@ -247,6 +351,13 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
           safeResult.error("INIT_ERROR", "DeviceInfoManager not initialized", null);
         }
         break;
+      case "getMetrics":
+        safeResult.success(metrics.snapshot());
+        break;
+      case "resetMetrics":
+        metrics.reset();
+        safeResult.success(true);
+        break;
       case "initBleClient":
         initClient(); // Ensure client is ready
         safeResult.success(true);
@@ -263,6 +374,77 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
           safeResult.error("INIT_ERROR", "Scan manager not initialized", null);
         }
         break;
+      case "startScanStream":
+        if (!checkPermissions()) {
+             safeResult.error("PERMISSION_DENIED", "Missing Location or Bluetooth permissions", null);
+             return;
+        }
+        if (scanManager != null) {
+          final PluginMetrics.Span scanSpan = metrics.startStream(call.method);
+          String streamId = scanManager.startScanStream((Map<String, Object>) call.arguments,
+              new BleScanManager.ScanStreamCallback() {
+                @Override
+                public void onDevice(Map<String, Object> event) {
+                  streamEvents.emit(event);
+                }
+
+                @Override
+                public void onDone(Map<String, Object> event) {
+                  scanSpan.finish(String.valueOf(event.get("reason")));
+                  streamEvents.emitNow(event);
+                }
+              });
+          // Devices follow on the event channel under this id
+          safeResult.success(streamId);
+        } else {
+          safeResult.error("INIT_ERROR", "Scan manager not initialized", null);
+        }
+        break;
+      case "scanFor":
+        if (!checkPermissions()) {
+             safeResult.error("PERMISSION_DENIED", "Missing Location or Bluetooth permissions", null);
+             return;
+        }
+        if (scanManager != null) {
+          scanManager.scanFor((Map<String, Object>) call.arguments, safeResult);
+        } else {
+          safeResult.error("INIT_ERROR", "Scan manager not initialized", null);
+        }
+        break;
+      case "getNearbyLocks":
+        if (scanManager != null) {
+          Object maxAgeMs = call.argument("maxAgeMs");
+          safeResult.success(scanManager.getNearbyLocks().list(
+              maxAgeMs instanceof Number ? ((Number) maxAgeMs).longValue() : null));
+        } else {
+          safeResult.error("INIT_ERROR", "Scan manager not initialized", null);
+        }
+        break;
+      case "getNearbyLock":
+        if (scanManager != null) {
+          Object mac = call.argument("mac");
+          if (!(mac instanceof String)) {
+            safeResult.error("INVALID_ARGS", "mac is required", null);
+            break;
+          }
+          safeResult.success(scanManager.getNearbyLocks().get((String) mac));
+        } else {
+          safeResult.error("INIT_ERROR", "Scan manager not initialized", null);
+        }
+        break;
+      case "setNearbyLockTtl":
+        if (scanManager != null) {
+          Object ttlMs = call.argument("ttlMs");
+          if (!(ttlMs instanceof Number)) {
+            safeResult.error("INVALID_ARGS", "ttlMs is required", null);
+            break;
+          }
+          scanManager.getNearbyLocks().setTtlMs(((Number) ttlMs).longValue());
+          safeResult.success(true);
+        } else {
+          safeResult.error("INIT_ERROR", "Scan manager not initialized", null);
+        }
+        break;
       case "stopScan":
         if (scanManager != null) {
           scanManager.stopScan(safeResult);
@@ -320,44 +502,109 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
         break;
       case "connectBle":
         if (bleClient != null) {
-          try {
-            BlinkyAction action = new BlinkyAction();
-            BlinkyAuthAction authAction =  PluginUtils.createAuthAction((Map<String, Object>) call.arguments);
-            action.setBaseAuthAction(authAction);
-            BlinkyAuthAction _action = new BlinkyAuthAction(Parcel.obtain());
-            _action.setAuthCode(authAction.getAuthCode());
-            _action.setDnaKey(authAction.getDnaKey());
+          final Map<String, Object> connectArgs = (Map<String, Object>) call.arguments;
+          commandScheduler.submit(BleCommandScheduler.macOf(connectArgs), "connectBle", safeResult, r -> {
+            try {
+              BlinkyAction action = new BlinkyAction();
+              BlinkyAuthAction authAction = sessionManager.authFor(connectArgs);
+              action.setBaseAuthAction(authAction);
+              BlinkyAuthAction _action = new BlinkyAuthAction(Parcel.obtain());
+              _action.setAuthCode(authAction.getAuthCode());
+              _action.setDnaKey(authAction.getDnaKey());
 
-            bleClient.connectBle(action, new FunCallback() {
-              @Override
-              public void onResponse(Response response) {
-                if (response != null && response.isSuccessful()) {
-                  safeResult.success(true);
-                } else {
-                  try {
-                    Map<String, Object> details = new java.util.HashMap<>();
-                    if (response != null) details.put("code", response.code());
-                    details.put("ackMessage", com.example.wise_apartment.utils.WiseStatusCode.description(response == null ? -1 : response.code()));
-                    safeResult.error("FAILED", "Code: " + (response == null ? "-1" : response.code()), details);
-                  } catch (Throwable t) {
-                    safeResult.error("FAILED", "Connect failed", null);
+              bleClient.connectBle(action, new FunCallback() {
+                @Override
+                public void onResponse(Response response) {
+                  if (response != null && response.isSuccessful()) {
+                    r.success(true);
+                  } else {
+                    try {
+                      Map<String, Object> details = new java.util.HashMap<>();
+                      if (response != null) details.put("code", response.code());
+                      details.put("ackMessage", com.example.wise_apartment.utils.WiseStatusCode.description(response == null ? -1 : response.code()));
+                      r.error("FAILED", "Code: " + (response == null ? "-1" : response.code()), details);
+                    } catch (Throwable t) {
+                      r.error("FAILED", "Connect failed", null);
+                    }
                   }
                 }
-              }
 
-              @Override
-              public void onFailure(Throwable t) {
-                safeResult.error("ERROR", t.getMessage(), null);
-              }
-            });
-          } catch (Throwable t) {
-            Log.e(TAG, "connectBle invocation failed", t);
-            safeResult.error("ERROR", "connectBle invocation failed: " + t.getMessage(), null);
-          }
+                @Override
+                public void onFailure(Throwable t) {
+                  r.error("ERROR", t.getMessage(), null);
+                }
+              });
+            } catch (Throwable t) {
+              Log.e(TAG, "connectBle invocation failed", t);
+              r.error("ERROR", "connectBle invocation failed: " + t.getMessage(), null);
+            }
+          });
         } else {
           safeResult.error("INIT_ERROR", "BLE client not initialized", null);
         }
         break;
+      case "executeBatch":
+        if (!checkPermissions()) {
+             safeResult.error("PERMISSION_DENIED", "Missing permissions", null);
+             return;
+        }
+        if (batchExecutor != null) {
+          batchExecutor.executeBatch((Map<String, Object>) call.arguments, safeResult);
+        } else {
+          safeResult.error("INIT_ERROR", "Batch executor not initialized", null);
+        }
+        break;
+      case "configureSession":
+        if (sessionManager != null) {
+          Object idle = call.argument("idleTimeoutMs");
+          if (idle instanceof Number) {
+            sessionManager.setIdleTimeoutMs(((Number) idle).longValue());
+          }
+          safeResult.success(sessionManager.getStats());
+        } else {
+          safeResult.error("INIT_ERROR", "Session manager not initialized", null);
+        }
+        break;
+      case "configureEventCoalescing":
+        {
+          Object window = call.argument("windowMs");
+          Object latency = call.argument("maxLatencyMs");
+          Object maxBatch = call.argument("maxBatch");
+          streamEvents.configure(
+              window instanceof Number ? ((Number) window).longValue() : null,
+              latency instanceof Number ? ((Number) latency).longValue() : null,
+              maxBatch instanceof Number ? ((Number) maxBatch).intValue() : null);
+        }
+        safeResult.success(streamEvents.getStats());
+        break;
+      case "configureScheduler":
+        if (commandScheduler != null) {
+          Object links = call.argument("maxActiveLinks");
+          // The SDK drives one GATT client, and the session manager and link
+          // resetter assume a single active link
+          if (links instanceof Number && ((Number) links).intValue() > 1) {
+            safeResult.error("INVALID_ARGS", "maxActiveLinks above 1 is not supported: the SDK drives a single link", null);
+            break;
+          }
+          if (links instanceof Number) {
+            commandScheduler.setMaxActiveLinks(((Number) links).intValue());
+          }
+          safeResult.success(commandScheduler.getStats());
+        } else {
+          safeResult.error("INIT_ERROR", "Command scheduler not initialized", null);
+        }
+        break;
+      case "getSchedulerStats":
+        if (commandScheduler != null) {
+          Map<String, Object> stats = commandScheduler.getStats();
+          if (recordManager != null) stats.put("recordBatchSizes", recordManager.getBatchSizes());
+          stats.put("eventCoalescing", streamEvents.getStats());
+          stats.put("mainDispatcher", MainThreadDispatcher.get().getStats());
+          safeResult.success(stats);
+        } else {
+          safeResult.error("INIT_ERROR", "Command scheduler not initialized", null);
+        }
+        break;
       case "clearSdkState":
         handleClearSdkState(safeResult);
         break;
@@ -387,45 +634,26 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
           // Use streaming version if eventSink is available
           if (eventSink != null) {
             Log.d(TAG, "Using streaming syncLockRecords");
+            final PluginMetrics.Span recordsSpan = metrics.startStream(call.method);
             recordManager.syncLockRecordsStream((Map<String, Object>) call.arguments,
                 new LockRecordManager.SyncLockRecordsStreamCallback() {
                   @Override
                   public void onChunk(final Map<String, Object> event) {
-                    new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                      @Override
-                      public void run() {
-                        if (eventSink != null) {
-                          Log.d(TAG, "Emitting syncLockRecordsChunk event");
-                          eventSink.success(event);
-                        }
-                      }
-                    });
+                    streamEvents.emit(event);
                   }
 
                   @Override
                   public void onDone(final Map<String, Object> event) {
-                    new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                      @Override
-                      public void run() {
-                        if (eventSink != null) {
-                          Log.d(TAG, "Emitting syncLockRecordsDone event");
-                          eventSink.success(event);
-                        }
-                      }
-                    });
+                    Log.d(TAG, "Emitting syncLockRecordsDone event");
+                    recordsSpan.finish("done");
+                    streamEvents.emitNow(event);
                   }
 
                   @Override
                   public void onError(final Map<String, Object> event) {
-                    new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                      @Override
-                      public void run() {
-                        if (eventSink != null) {
-                          Log.d(TAG, "Emitting syncLockRecordsError event");
-                          eventSink.success(event);
-                        }
-                      }
-                    });
+                    Log.d(TAG, "Emitting syncLockRecordsError event");
+                    recordsSpan.finish(String.valueOf(event.get("code")));
+                    streamEvents.emitNow(event);
                   }
                 });
             safeResult.success(null); // Acknowledge method call immediately
@@ -445,6 +673,92 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
           safeResult.error("INIT_ERROR", "Record manager not initialized", null);
         }
         break;
+      case "queryLockRecords":
+        if (recordManager != null) {
+          recordManager.queryLockRecords((Map<String, Object>) call.arguments, safeResult);
+        } else {
+          safeResult.error("INIT_ERROR", "Record manager not initialized", null);
+        }
+        break;
+      case "clearLockRecords":
+        if (recordManager != null) {
+          Object mac = call.argument("mac");
+          recordManager.clearLockRecords(mac instanceof String ? (String) mac : "", safeResult);
+        } else {
+          safeResult.error("INIT_ERROR", "Record manager not initialized", null);
+        }
+        break;
+      case "pauseStream":
+        if (streamFlow != null) {
+          Object streamId = call.argument("streamId");
+          if (!(streamId instanceof String)) {
+            safeResult.error("INVALID_ARGS", "streamId is required", null);
+            break;
+          }
+          safeResult.success(streamFlow.pause((String) streamId));
+        } else {
+          safeResult.error("INIT_ERROR", "Stream flow control not initialized", null);
+        }
+        break;
+      case "resumeStream":
+        if (streamFlow != null) {
+          Object streamId = call.argument("streamId");
+          Object credits = call.argument("credits");
+          if (!(streamId instanceof String)) {
+            safeResult.error("INVALID_ARGS", "streamId is required", null);
+            break;
+          }
+          safeResult.success(streamFlow.resume((String) streamId,
+              credits instanceof Number ? ((Number) credits).longValue() : null));
+        } else {
+          safeResult.error("INIT_ERROR", "Stream flow control not initialized", null);
+        }
+        break;
+      case "cancelStream":
+        if (streamFlow != null) {
+          Object streamId = call.argument("streamId");
+          if (!(streamId instanceof String)) {
+            safeResult.error("INVALID_ARGS", "streamId is required", null);
+            break;
+          }
+          safeResult.success(streamFlow.cancel((String) streamId));
+        } else {
+          safeResult.error("INIT_ERROR", "Stream flow control not initialized", null);
+        }
+        break;
+      case "getRecordSyncSessions":
+        if (recordManager != null) {
+          safeResult.success(recordManager.getSyncSessions());
+        } else {
+          safeResult.error("INIT_ERROR", "Record manager not initialized", null);
+        }
+        break;
+      case "clearRecordCheckpoints":
+        if (recordManager != null) {
+          Object mac = call.argument("mac");
+          recordManager.clearRecordCheckpoints(mac instanceof String ? (String) mac : "");
+          safeResult.success(true);
+        } else {
+          safeResult.error("INIT_ERROR", "Record manager not initialized", null);
+        }
+        break;
+      case "getLockKeySnapshot":
+        if (lockManager != null) {
+          Object mac = call.argument("mac");
+          safeResult.success(lockManager.getLockKeySnapshot(mac instanceof String ? (String) mac : ""));
+        } else {
+          safeResult.error("INIT_ERROR", "Lock manager not initialized", null);
+        }
+        break;
+      case "clearLockKeySnapshot":
+        if (lockManager != null) {
+          Object mac = call.argument("mac");
+          lockManager.clearLockKeySnapshot(mac instanceof String ? (String) mac : "");
+          safeResult.success(true);
+        } else {
+          safeResult.error("INIT_ERROR", "Lock manager not initialized", null);
+        }
+        break;
       case "deleteLock":
         if (lockManager != null) {
           lockManager.deleteLock((Map<String, Object>) call.arguments, safeResult);
@@ -542,37 +856,23 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
       case "addLockKeyStream":
         if (lockManager != null) {
           if (eventSink != null) {
+            final PluginMetrics.Span addKeySpan = metrics.startStream(call.method);
             lockManager.addLockKeyStream((Map<String, Object>) call.arguments, new com.example.wise_apartment.utils.BleLockManager.AddLockKeyStreamCallback() {
               @Override
               public void onChunk(final Map<String, Object> chunkEvent) {
-                new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                  @Override
-                  public void run() {
-                    if (eventSink != null) eventSink.success(chunkEvent);
-                  }
-                });
+                streamEvents.emit(chunkEvent);
               }
 
               @Override
               public void onDone(final Map<String, Object> doneEvent) {
-                new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                  @Override
-                  public void run() {
-                    if (eventSink != null) eventSink.success(doneEvent);
-                  }
-                });
+                addKeySpan.finish("done");
+                streamEvents.emitNow(doneEvent);
               }
 
               @Override
               public void onError(final Map<String, Object> errorEvent) {
-                new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                  @Override
-                  public void run() {
-                    if (eventSink != null) {
-                      eventSink.error(String.valueOf(errorEvent.get("code")), String.valueOf(errorEvent.get("message")), errorEvent);
-                    }
-                  }
-                });
+                addKeySpan.finish(String.valueOf(errorEvent.get("code")));
+                streamEvents.emitError(String.valueOf(errorEvent.get("code")), String.valueOf(errorEvent.get("message")), errorEvent);
               }
             });
             safeResult.success(java.util.Collections.singletonMap("streaming", true));
@@ -584,6 +884,47 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
           safeResult.error("INIT_ERROR", "Lock manager not initialized", null);
         }
         break;
+      case "addBigDataKey":
+        if (!checkPermissions()) {
+          safeResult.error("PERMISSION_DENIED", "Missing permissions", null);
+          return;
+        }
+        if (lockManager != null) {
+          // Progress, done and error (with resume checkpoint) follow on the event channel
+          if (eventSink != null) {
+            lockManager.addBigDataKeyStream((Map<String, Object>) call.arguments, bigDataKeyEvents(metrics.startStream(call.method)));
+            safeResult.success(java.util.Collections.singletonMap("streaming", true));
+          } else {
+            safeResult.error("NO_LISTENER", "EventChannel listener not attached", null);
+          }
+        } else {
+          safeResult.error("INIT_ERROR", "Lock manager not initialized", null);
+        }
+        break;
+      case "resumeBigDataKey":
+        if (!checkPermissions()) {
+          safeResult.error("PERMISSION_DENIED", "Missing permissions", null);
+          return;
+        }
+        if (lockManager != null) {
+          if (eventSink != null) {
+            lockManager.resumeBigDataKeyStream((Map<String, Object>) call.arguments, bigDataKeyEvents(metrics.startStream(call.method)));
+            safeResult.success(java.util.Collections.singletonMap("streaming", true));
+          } else {
+            safeResult.error("NO_LISTENER", "EventChannel listener not attached", null);
+          }
+        } else {
+          safeResult.error("INIT_ERROR", "Lock manager not initialized", null);
+        }
+        break;
+      case "getBigDataKeyCheckpoint":
+        if (lockManager != null) {
+          Object mac = call.argument("mac");
+          safeResult.success(lockManager.getBigDataKeyCheckpoint(mac instanceof String ? (String) mac : ""));
+        } else {
+          safeResult.error("INIT_ERROR", "Lock manager not initialized", null);
+        }
+        break;
       case "deleteLockKey":
         if (lockManager != null) {
           lockManager.deleteLockKey((Map<String, Object>) call.arguments, safeResult);
@@ -595,45 +936,27 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
         if (lockManager != null) {
           // Use streaming version if EventSink is available
           if (eventSink != null) {
+            final PluginMetrics.Span syncKeySpan = metrics.startStream(call.method);
             lockManager.syncLockKeyStream((Map<String, Object>) call.arguments, new BleLockManager.SyncLockKeyStreamCallback() {
               @Override
               public void onChunk(final Map<String, Object> chunkEvent) {
-                new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                  @Override
-                  public void run() {
-                    if (eventSink != null) {
-                      eventSink.success(chunkEvent);
-                    }
-                  }
-                });
+                streamEvents.emit(chunkEvent);
               }
 
               @Override
               public void onDone(final Map<String, Object> doneEvent) {
-                new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                  @Override
-                  public void run() {
-                    if (eventSink != null) {
-                      eventSink.success(doneEvent);
-                    }
-                  }
-                });
+                syncKeySpan.finish("done");
+                streamEvents.emitNow(doneEvent);
               }
 
               @Override
               public void onError(final Map<String, Object> errorEvent) {
-                new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                  @Override
-                  public void run() {
-                    if (eventSink != null) {
-                      eventSink.error(
-                        String.valueOf(errorEvent.get("code")),
-                        String.valueOf(errorEvent.get("message")),
-                        errorEvent
-                      );
-                    }
-                  }
-                });
+                syncKeySpan.finish(String.valueOf(errorEvent.get("code")));
+                streamEvents.emitError(
+                  String.valueOf(errorEvent.get("code")),
+                  String.valueOf(errorEvent.get("message")),
+                  errorEvent
+                );
               }
             });
             // Return immediately - results come via EventChannel
@@ -678,35 +1001,23 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
       case "getSysParamStream":
         if (lockManager != null) {
           if (eventSink != null) {
+            final PluginMetrics.Span sysParamSpan = metrics.startStream(call.method);
             lockManager.getSysParamStream((Map<String, Object>) call.arguments, new BleLockManager.SysParamStreamCallback() {
               @Override
               public void onData(final Map<String, Object> event) {
-                new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                  @Override
-                  public void run() {
-                    if (eventSink != null) eventSink.success(event);
-                  }
-                });
+                streamEvents.emit(event);
               }
 
               @Override
               public void onDone(final Map<String, Object> event) {
-                new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                  @Override
-                  public void run() {
-                    if (eventSink != null) eventSink.success(event);
-                  }
-                });
+                sysParamSpan.finish("done");
+                streamEvents.emitNow(event);
               }
 
               @Override
               public void onError(final Map<String, Object> event) {
-                new android.os.Handler(android.os.Looper.getMainLooper()).post(new Runnable() {
-                  @Override
-                  public void run() {
-                    if (eventSink != null) eventSink.error(String.valueOf(event.get("code")), String.valueOf(event.get("message")), event);
-                  }
-                });
+                sysParamSpan.finish(String.valueOf(event.get("code")));
+                streamEvents.emitError(String.valueOf(event.get("code")), String.valueOf(event.get("message")), event);
               }
             });
             safeResult.success(null);
@@ -754,6 +1065,27 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
     }
   }
 
+  private BleLockManager.AddLockKeyStreamCallback bigDataKeyEvents(final PluginMetrics.Span span) {
+    return new BleLockManager.AddLockKeyStreamCallback() {
+      @Override
+      public void onChunk(Map<String, Object> event) {
+        streamEvents.emit(event);
+      }
+
+      @Override
+      public void onDone(Map<String, Object> event) {
+        span.finish("done");
+        streamEvents.emitNow(event);
+      }
+
+      @Override
+      public void onError(Map<String, Object> event) {
+        span.finish(String.valueOf(event.get("code")));
+        streamEvents.emitError(String.valueOf(event.get("code")), String.valueOf(event.get("message")), event);
+      }
+    };
+  }
+
   private void handleClearSdkState(Result result) {
       SharedPreferences prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
       prefs.edit().clear().apply();
@@ -772,6 +1104,12 @@ public class WiseApartmentPlugin implements FlutterPlugin, MethodCallHandler {
   @Override
   public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
     channel.setMethodCallHandler(null);
-    // Cleanup if needed
+    if (eventChannel != null) eventChannel.setStreamHandler(null);
+    if (diagnosticsChannel != null) diagnosticsChannel.setStreamHandler(null);
+    eventSink = null;
+    diagnosticsSink = null;
+    if (streamEvents != null) streamEvents.shutdown();
+    releaseClient();
+    SecureAuthHelper.shutdown();
   }
 }
\ No newline at end of file
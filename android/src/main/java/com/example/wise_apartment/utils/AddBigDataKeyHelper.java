@@ -17,12 +17,36 @@ import com.example.hxjblinklibrary.blinkble.profile.data.common.KeyType;
 import com.example.hxjblinklibrary.blinkble.profile.data.common.StatusCode;
 import com.example.hxjblinklibrary.blinkble.utils_2.TimeUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Helper class for adding big data keys (fingerprint/face) to smart locks.
  * Handles chunking of Base64 data into 180-byte packets and streaming progress.
+ *
+ * Packets are cut by a {@link KeyDataChunker} over the decoded template, so
+ * no per-packet arrays are allocated; the helper can be reused for the next
+ * enrollment and keeps its packet buffers. Besides Base64, the template can
+ * be given as raw bytes ({@link #startWithBigData}, a Dart Uint8List arrives
+ * as {@code byte[]}) or as a file ({@link #startWithBigDataFile}), which is
+ * memory-mapped and read packet by packet without loading it whole.
+ *
+ * After a link failure (or a missing final confirmation) the template stays
+ * staged and the helper remembers the last acknowledged packet and the
+ * lockKeyId the lock reported ({@link #getCheckpoint()}). {@link #resume}
+ * continues from that packet over a new link. If the lock rejects the
+ * resumed packet, because it dropped the half-received key, the upload
+ * restarts once from packet 0 with the staged data.
+ *
+ * When the caller gives up on a packet ({@link #interrupt}, or no final
+ * confirmation) the SDK may still be sending it, so the link is dropped
+ * and a resume waits until that is done; acks of packets sent before an
+ * interruption are ignored.
  */
 public class AddBigDataKeyHelper {
     private static final String TAG = "AddBigDataKeyHelper";
@@ -32,7 +56,7 @@ public class AddBigDataKeyHelper {
     private final HxjBleClient bleClient;
     
     private boolean isCancel;
-    private byte[] keyBytes;
+    private final KeyDataChunker chunker = new KeyDataChunker(MAX_BLOCK_SIZE);
     private String lockMac;
     private int keyGroupId;
     private int curKeyType;
@@ -42,6 +66,16 @@ public class AddBigDataKeyHelper {
     private Handler timeoutHandler;
     private int lockKeyId;
     private SendBigKeyDataCallback progressCallback;
+    // Link lost mid-upload; the staged template and checkpoint are kept
+    private boolean interrupted;
+    // First packet after resume() not acked yet
+    private boolean resuming;
+    private int restarts;
+    // Bumped on every interruption; callbacks of older packets are dropped
+    private int attempt;
+    // Link being dropped after an interruption; a resume waits for it
+    private boolean aborting;
+    private Runnable pendingResume;
     
     public interface SendBigKeyDataCallback {
         void onProgress(int statusCode, String message, int phase, double progress);
@@ -65,25 +99,94 @@ public class AddBigDataKeyHelper {
                                           BlinkyAuthAction baseAuthObj,
                                           SendBigKeyDataCallback callback) {
         Log.d(TAG, "startWithBigDataBase64Str: keyType=" + keyType + ", keyGroupId=" + keyGroupId);
+        stage(lockMac, keyGroupId, keyType, timeParam, baseAuthObj, callback);
         
+        // Decode Base64 data
+        String error = decodeBase64Str(bigDataBase64Str);
+        startOrFail(error);
+    }
+
+    /**
+     * Start adding a big data key from raw template bytes. The array is
+     * chunked in place, not copied; do not modify it until the upload ends.
+     */
+    public void startWithBigData(byte[] bigData,
+                                 String lockMac,
+                                 int keyGroupId,
+                                 int keyType,
+                                 BLEKeyValidTimeParam timeParam,
+                                 BlinkyAuthAction baseAuthObj,
+                                 SendBigKeyDataCallback callback) {
+        Log.d(TAG, "startWithBigData: keyType=" + keyType + ", keyGroupId=" + keyGroupId);
+        stage(lockMac, keyGroupId, keyType, timeParam, baseAuthObj, callback);
+        String error = null;
+        if (bigData == null || bigData.length == 0) {
+            error = "Fingerprint data is empty";
+        } else {
+            chunker.reset(bigData);
+        }
+        startOrFail(error);
+    }
+
+    /**
+     * Start adding a big data key from a template file. The file is mapped
+     * read-only and each packet is read from the mapping when it is sent.
+     */
+    public void startWithBigDataFile(String path,
+                                     String lockMac,
+                                     int keyGroupId,
+                                     int keyType,
+                                     BLEKeyValidTimeParam timeParam,
+                                     BlinkyAuthAction baseAuthObj,
+                                     SendBigKeyDataCallback callback) {
+        Log.d(TAG, "startWithBigDataFile: " + path + ", keyType=" + keyType + ", keyGroupId=" + keyGroupId);
+        stage(lockMac, keyGroupId, keyType, timeParam, baseAuthObj, callback);
+        startOrFail(mapFile(path));
+    }
+
+    private void stage(String lockMac, int keyGroupId, int keyType, BLEKeyValidTimeParam timeParam,
+                       BlinkyAuthAction baseAuthObj, SendBigKeyDataCallback callback) {
         this.progressCallback = callback;
         this.lockMac = lockMac;
         this.keyGroupId = keyGroupId;
         this.curKeyType = keyType;
         this.timeParam = timeParam;
         this.baseAuthObj = baseAuthObj;
-        
-        // Decode Base64 data
-        String error = decodeBase64Str(bigDataBase64Str);
+    }
+
+    private void startOrFail(String error) {
         if (error != null) {
-            if (callback != null) {
-                callback.onError(StatusCode.ACK_STATUS_PARAM_ERR, error);
+            chunker.release();
+            if (progressCallback != null) {
+                progressCallback.onError(StatusCode.ACK_STATUS_PARAM_ERR, error);
             }
             return;
         }
-        
         start();
     }
+
+    private String mapFile(String path) {
+        if (path == null || path.isEmpty()) {
+            return "Fingerprint file path is empty";
+        }
+        File file = new File(path);
+        if (!file.isFile()) {
+            return "Fingerprint file not found: " + path;
+        }
+        if (file.length() == 0) {
+            return "Fingerprint data is empty";
+        }
+        // The mapping stays valid after the channel is closed
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            chunker.reset(mapped);
+            Log.d(TAG, "Mapped " + chunker.length() + " bytes from " + path);
+            return null;
+        } catch (IOException e) {
+            return "Cannot read fingerprint file: " + e.getMessage();
+        }
+    }
     
     private String decodeBase64Str(String base64Str) {
         if (base64Str == null || base64Str.isEmpty()) {
@@ -91,8 +194,8 @@ public class AddBigDataKeyHelper {
         }
         
         try {
-            keyBytes = Base64.decode(base64Str, Base64.NO_WRAP);
-            Log.d(TAG, "Decoded " + keyBytes.length + " bytes from Base64");
+            chunker.reset(Base64.decode(base64Str, Base64.NO_WRAP));
+            Log.d(TAG, "Decoded " + chunker.length() + " bytes from Base64");
             return null;
         } catch (IllegalArgumentException e) {
             return "Invalid Base64 data: " + e.getMessage();
@@ -101,13 +204,16 @@ public class AddBigDataKeyHelper {
     
     private void start() {
         isCancel = false;
+        interrupted = false;
+        resuming = false;
+        restarts = 0;
         lockKeyId = 0;
         
         param = new BLEAddBigDataKeyAction();
         param.setBaseAuthAction(baseAuthObj);
-        param.totalBytesLength = keyBytes.length;
+        param.totalBytesLength = chunker.length();
         param.currentIndex = 0;
-        int totalNum = (keyBytes.length / MAX_BLOCK_SIZE) + ((keyBytes.length % MAX_BLOCK_SIZE) == 0 ? 0 : 1);
+        int totalNum = chunker.packetCount();
         param.totalNum = totalNum;
         param.keyGroupId = keyGroupId;
         
@@ -124,46 +230,37 @@ public class AddBigDataKeyHelper {
             return;
         }
         
-        int currentIndex = param.currentIndex * MAX_BLOCK_SIZE;
-        int length = MAX_BLOCK_SIZE;
-        
-        if (currentIndex + MAX_BLOCK_SIZE > param.totalBytesLength) {
-            length = param.totalBytesLength - currentIndex;
+        if (param.currentIndex == param.totalNum - 1) {
             Log.d(TAG, "Sending final packet " + param.currentIndex + "/" + param.totalNum);
         } else {
             Log.d(TAG, "Sending packet " + param.currentIndex + "/" + param.totalNum);
         }
         
-        byte[] sendData = new byte[length];
-        System.arraycopy(keyBytes, currentIndex, sendData, 0, length);
-        param.data = sendData;
+        // Reused array: the previous packet was acked before we get here
+        param.data = chunker.packet(param.currentIndex);
+        final int sentIn = attempt;
+        FunCallback packetCallback = new FunCallback() {
+            @Override
+            public void onResponse(Response response) {
+                if (sentIn == attempt) onBLEAddKeyDataResponse(response);
+            }
+            @Override
+            public void onFailure(Throwable t) {
+                if (sentIn == attempt) onBLEFailure(t);
+            }
+        };
         
         if (curKeyType == KeyType.Face) {
-            bleClient.addFaceKeyData(param, timeParam, new FunCallback() {
-                @Override
-                public void onResponse(Response response) {
-                    onBLEAddKeyDataResponse(response);
-                }
-                @Override
-                public void onFailure(Throwable t) {
-                    onBLEFailure(t);
-                }
-            });
+            bleClient.addFaceKeyData(param, timeParam, packetCallback);
         } else if (curKeyType == KeyType.FINGER) {
-            bleClient.addFingerprintKeyData(param, timeParam, new FunCallback() {
-                @Override
-                public void onResponse(Response response) {
-                    onBLEAddKeyDataResponse(response);
-                }
-                @Override
-                public void onFailure(Throwable t) {
-                    onBLEFailure(t);
-                }
-            });
+            bleClient.addFingerprintKeyData(param, timeParam, packetCallback);
         }
     }
     
     private void onBLEAddKeyDataResponse(Response response) {
+        if (isCancel || interrupted) {
+            return;
+        }
         int statusCode = response.code();
         
         if (statusCode == StatusCode.ACK_STATUS_SUCCESS) {
@@ -177,8 +274,22 @@ public class AddBigDataKeyHelper {
                 }
                 
                 removeTimeoutHandler();
+                resuming = false;
+                if (result.lockKeyId != 0) lockKeyId = result.lockKeyId;
                 onBLEResponseSuccess(result.lockKeyId);
             }
+        } else if (resuming && restarts == 0) {
+            // The lock did not take the upload back mid-way: send it again from the start
+            Log.w(TAG, "Resume at packet " + param.currentIndex + " rejected (" + statusCode + "), restarting");
+            resuming = false;
+            restarts++;
+            param.currentIndex = 0;
+            lockKeyId = 0;
+            if (progressCallback != null) {
+                progressCallback.onProgress(StatusCode.ACK_STATUS_SUCCESS,
+                    "Lock did not accept resume, restarting upload", 0, 0.0);
+            }
+            recursionSendKeyData();
         } else {
             String reason = WiseStatusCode.description(statusCode);
             String tips = "Failed to add key: " + reason;
@@ -204,6 +315,7 @@ public class AddBigDataKeyHelper {
         if (param.currentIndex == param.totalNum) {
             this.lockKeyId = lockKeyId;
             LockKeyResult keyObj = setupKeyObj();
+            chunker.release();
             
             if (progressCallback != null) {
                 progressCallback.onComplete(StatusCode.ACK_STATUS_SUCCESS, 
@@ -224,8 +336,13 @@ public class AddBigDataKeyHelper {
     }
     
     private void onBLEFailure(Throwable t) {
+        if (isCancel || interrupted) {
+            return;
+        }
         String reason = t.getMessage();
         int statusCode = StatusCode.ACK_STATUS_FAIL;
+        interrupted = true;
+        attempt++;
         
         if (progressCallback != null) {
             progressCallback.onError(statusCode, "BLE failure: " + reason);
@@ -240,8 +357,10 @@ public class AddBigDataKeyHelper {
         timeoutHandler.postDelayed(new Runnable() {
             @Override
             public void run() {
-                if (progressCallback != null) {
-                    progressCallback.onError(StatusCode.LOCAL_SCAN_TIME_OUT, 
+                SendBigKeyDataCallback callback = progressCallback;
+                abortInFlight();
+                if (callback != null) {
+                    callback.onError(StatusCode.LOCAL_SCAN_TIME_OUT,
                         "Timeout waiting for final confirmation");
                 }
             }
@@ -271,10 +390,110 @@ public class AddBigDataKeyHelper {
         return keyObj;
     }
     
+    /** True when an interrupted upload still has its template staged. */
+    public boolean canResume() {
+        return interrupted && !isCancel && param != null && chunker.hasData();
+    }
+
+    /**
+     * Continue an interrupted upload from the last acknowledged packet,
+     * using {@code baseAuthObj} for the new link. While the old link is
+     * still being dropped the resume starts once it is gone.
+     */
+    public void resume(final BlinkyAuthAction baseAuthObj, final SendBigKeyDataCallback callback) {
+        if (!canResume()) {
+            if (callback != null) {
+                callback.onError(StatusCode.ACK_STATUS_PARAM_ERR, "Nothing to resume");
+            }
+            return;
+        }
+        if (aborting) {
+            Log.d(TAG, "resume waits for the interrupted packet's link to drop");
+            pendingResume = () -> resume(baseAuthObj, callback);
+            return;
+        }
+        Log.d(TAG, "resume at packet " + param.currentIndex + "/" + param.totalNum + ", lockKeyId=" + lockKeyId);
+        removeTimeoutHandler();
+        this.progressCallback = callback;
+        this.baseAuthObj = baseAuthObj;
+        param.setBaseAuthAction(baseAuthObj);
+        interrupted = false;
+        resuming = param.currentIndex > 0;
+        restarts = 0;
+        if (progressCallback != null) {
+            progressCallback.onProgress(StatusCode.ACK_STATUS_SUCCESS,
+                "Resuming at packet " + param.currentIndex + "/" + param.totalNum, 0,
+                (param.currentIndex * 1.0) / param.totalNum);
+        }
+        recursionSendKeyData();
+    }
+
+    /** Where the upload stands: last acked packet, lockKeyId, sizes. */
+    public Map<String, Object> getCheckpoint() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("mac", lockMac);
+        m.put("keyType", curKeyType);
+        m.put("keyGroupId", keyGroupId);
+        m.put("currentIndex", param == null ? 0 : param.currentIndex);
+        m.put("totalNum", param == null ? 0 : param.totalNum);
+        m.put("totalBytes", chunker.length());
+        m.put("lockKeyId", lockKeyId);
+        m.put("restarts", restarts);
+        m.put("resumable", canResume());
+        return m;
+    }
+
+    /**
+     * Stop waiting on the current link, e.g. after the caller's own timeout;
+     * the in-flight packet is dropped with the link, late acks are ignored
+     * and the upload stays resumable.
+     */
+    public void interrupt() {
+        if (param == null || isCancel) {
+            return;
+        }
+        abortInFlight();
+        progressCallback = null;
+    }
+
+    // Disconnect so the SDK stops sending the current packet; resume() waits
+    private void abortInFlight() {
+        removeTimeoutHandler();
+        interrupted = true;
+        attempt++;
+        if (aborting) return;
+        aborting = true;
+        FunCallback dropped = new FunCallback() {
+            @Override
+            public void onResponse(Response response) {
+                onLinkDropped();
+            }
+            @Override
+            public void onFailure(Throwable t) {
+                onLinkDropped();
+            }
+        };
+        try {
+            bleClient.disConnectBle(dropped);
+        } catch (Throwable t) {
+            Log.w(TAG, "disConnectBle threw", t);
+            onLinkDropped();
+        }
+    }
+
+    private void onLinkDropped() {
+        if (!aborting) return;
+        aborting = false;
+        Runnable next = pendingResume;
+        pendingResume = null;
+        if (next != null) next.run();
+    }
+
     public void cancel() {
         isCancel = true;
+        pendingResume = null;
         progressCallback = null;
-        keyBytes = null;
+        chunker.release();
         lockKeyId = 0;
         removeTimeoutHandler();
     }
@@ -0,0 +1,209 @@
+package com.example.wise_apartment.utils;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Runs an ordered list of lock operations back-to-back on one link.
+ *
+ * The whole batch is a single scheduler command for the lock, so no other
+ * command can take the link between steps and the session stays warm from
+ * the first step to the last. Each step reuses the same manager code as the
+ * individual method-channel calls.
+ *
+ * Arguments: the lock's auth fields at top level, plus
+ * {@code operations: [{method, params}]} and optional
+ * {@code stopOnError} (default true) and {@code stepTimeoutMs} (default
+ * {@link BleCommandScheduler#DEFAULT_TIMEOUT_MS}). Step params are merged
+ * under the auth fields, so a step cannot target a different lock.
+ *
+ * The watchdog is re-armed for every step. A step that times out fails the
+ * batch, but no later step runs on top of it: the link stays held until
+ * the step's late reply arrives (the scheduler drops the link to force
+ * one), so the next command starts on a quiet link.
+ */
+public class BleBatchExecutor {
+    private static final String TAG = "BleBatchExecutor";
+
+    interface Step {
+        void run(Map<String, Object> args, Result result);
+    }
+
+    private final BleCommandScheduler scheduler;
+    private final Map<String, Step> steps;
+
+    public BleBatchExecutor(BleCommandScheduler scheduler, BleLockManager lockManager, LockRecordManager recordManager) {
+        this(scheduler, new HashMap<String, Step>());
+        steps.put("openLock", lockManager::doOpenLock);
+        steps.put("closeLock", lockManager::doCloseLock);
+        steps.put("syncLockTime", lockManager::doSyncLockTime);
+        steps.put("getSysParam", lockManager::doGetSysParam);
+        steps.put("setSysParam", lockManager::doSetSysParam);
+        steps.put("getDna", lockManager::doGetDna);
+        steps.put("addLockKey", lockManager::doAddLockKey);
+        steps.put("deleteLockKey", lockManager::doDeleteLockKey);
+        steps.put("modifyLockKey", lockManager::doModifyLockKey);
+        steps.put("changeLockKeyPwd", lockManager::doChangeLockKeyPwd);
+        steps.put("syncLockKey", lockManager::doSyncLockKey);
+        steps.put("enableDisableKeyByType", lockManager::doEnableDisableKeyByType);
+        steps.put("enableLockKey", lockManager::doEnableDisableKeyByType);
+        steps.put("setKeyExpirationAlarmTime", lockManager::doSetKeyExpirationAlarmTime);
+        steps.put("syncLockRecordsPage", recordManager::doSyncLockRecordsPage);
+    }
+
+    BleBatchExecutor(BleCommandScheduler scheduler, Map<String, Step> steps) {
+        this.scheduler = scheduler;
+        this.steps = steps;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void executeBatch(Map<String, Object> args, final Result result) {
+        if (args == null || !(args.get("operations") instanceof List)) {
+            result.error("INVALID_ARGS", "operations list is required", null);
+            return;
+        }
+        final List<Object> ops = (List<Object>) args.get("operations");
+        if (ops.isEmpty()) {
+            result.error("INVALID_ARGS", "operations list is empty", null);
+            return;
+        }
+        for (int i = 0; i < ops.size(); i++) {
+            Object op = ops.get(i);
+            Object method = op instanceof Map ? ((Map<String, Object>) op).get("method") : null;
+            if (!(method instanceof String) || !steps.containsKey(method)) {
+                result.error("INVALID_ARGS", "Unsupported batch operation at index " + i + ": " + method, null);
+                return;
+            }
+        }
+
+        final boolean stopOnError = !(args.get("stopOnError") instanceof Boolean) || (Boolean) args.get("stopOnError");
+        long stepTimeoutMs = args.get("stepTimeoutMs") instanceof Number
+                ? ((Number) args.get("stepTimeoutMs")).longValue() : BleCommandScheduler.DEFAULT_TIMEOUT_MS;
+        final Map<String, Object> auth = new HashMap<>(args);
+        auth.remove("operations");
+        auth.remove("stopOnError");
+        auth.remove("stepTimeoutMs");
+
+        final List<Map<String, Object>> stepResults = new ArrayList<>();
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        final long batchStart = System.nanoTime();
+
+        scheduler.submitHolding(BleCommandScheduler.macOf(args), "executeBatch", stepTimeoutMs,
+                ticket -> runStep(0, ops, auth, stopOnError, stepResults, batchStart, finished, ticket, result),
+                () -> {
+                    if (!finished.compareAndSet(false, true)) return;
+                    Map<String, Object> details = summary(stepResults, batchStart);
+                    result.error("COMMAND_TIMEOUT", "Batch step " + stepResults.size() + " timed out", details);
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runStep(final int index, final List<Object> ops, final Map<String, Object> auth,
+                         final boolean stopOnError, final List<Map<String, Object>> stepResults,
+                         final long batchStart, final AtomicBoolean finished,
+                         final BleCommandScheduler.Ticket ticket, final Result result) {
+        if (finished.get()) return;
+        if (index >= ops.size()) {
+            if (finished.compareAndSet(false, true)) {
+                result.success(summary(stepResults, batchStart));
+                ticket.done();
+            }
+            return;
+        }
+        ticket.touch();
+
+        final Map<String, Object> op = (Map<String, Object>) ops.get(index);
+        final String method = (String) op.get("method");
+        final Map<String, Object> stepArgs = new HashMap<>();
+        if (op.get("params") instanceof Map) {
+            stepArgs.putAll((Map<String, Object>) op.get("params"));
+        }
+        stepArgs.putAll(auth);
+
+        final long stepStart = System.nanoTime();
+        final AtomicBoolean replied = new AtomicBoolean(false);
+        Result stepResult = new Result() {
+            @Override
+            public void success(Object value) {
+                if (!replied.compareAndSet(false, true)) return;
+                Map<String, Object> r = stepEntry(index, method, stepStart);
+                r.put("ok", true);
+                r.put("result", value);
+                next(r, true);
+            }
+
+            @Override
+            public void error(String code, String message, Object details) {
+                if (!replied.compareAndSet(false, true)) return;
+                Map<String, Object> r = stepEntry(index, method, stepStart);
+                r.put("ok", false);
+                r.put("code", code);
+                r.put("message", message);
+                r.put("details", details);
+                next(r, false);
+            }
+
+            @Override
+            public void notImplemented() {
+                error("NOT_IMPLEMENTED", method + " not implemented", null);
+            }
+
+            private void next(Map<String, Object> entry, boolean ok) {
+                if (finished.get()) {
+                    // Late reply of the step that timed out: the link is free now
+                    ticket.done();
+                    return;
+                }
+                stepResults.add(entry);
+                if (!ok && stopOnError) {
+                    for (int i = index + 1; i < ops.size(); i++) {
+                        Map<String, Object> skipped = new HashMap<>();
+                        skipped.put("index", i);
+                        skipped.put("method", ((Map<String, Object>) ops.get(i)).get("method"));
+                        skipped.put("ok", false);
+                        skipped.put("skipped", true);
+                        stepResults.add(skipped);
+                    }
+                    runStep(ops.size(), ops, auth, stopOnError, stepResults, batchStart, finished, ticket, result);
+                } else {
+                    runStep(index + 1, ops, auth, stopOnError, stepResults, batchStart, finished, ticket, result);
+                }
+            }
+        };
+
+        Log.d(TAG, "Batch step " + index + ": " + method);
+        try {
+            steps.get(method).run(stepArgs, stepResult);
+        } catch (Throwable t) {
+            Log.e(TAG, "Batch step " + method + " threw", t);
+            stepResult.error("ERROR", t.getMessage(), null);
+        }
+    }
+
+    private static Map<String, Object> stepEntry(int index, String method, long stepStart) {
+        Map<String, Object> r = new HashMap<>();
+        r.put("index", index);
+        r.put("method", method);
+        r.put("elapsedMs", (System.nanoTime() - stepStart) / 1000000L);
+        return r;
+    }
+
+    private static Map<String, Object> summary(List<Map<String, Object>> stepResults, long batchStart) {
+        boolean allOk = true;
+        for (Map<String, Object> r : stepResults) {
+            if (!Boolean.TRUE.equals(r.get("ok"))) allOk = false;
+        }
+        Map<String, Object> m = new HashMap<>();
+        m.put("ok", allOk);
+        m.put("steps", new ArrayList<>(stepResults));
+        m.put("totalMs", (System.nanoTime() - batchStart) / 1000000L);
+        return m;
+    }
+}
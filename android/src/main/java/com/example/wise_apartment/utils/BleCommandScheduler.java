@@ -0,0 +1,530 @@
+package com.example.wise_apartment.utils;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Serializes BLE commands in front of the shared {@code HxjBleClient}.
+ *
+ * Commands are queued per lock MAC and run one at a time per link. The SDK
+ * drives a single GATT client, so by default only one link is active at a
+ * time ({@link #setMaxActiveLinks(int)}); when a slot frees up the oldest
+ * queued command across all locks runs next. Every running command is
+ * guarded by a watchdog so a lost SDK callback cannot stall the queue.
+ *
+ * A timed-out command that replies on a Result (or a raw command queued
+ * with {@code holdOnTimeout}) gets its COMMAND_TIMEOUT error at once, but
+ * keeps the link: the SDK may still be running it, and
+ * the next command must not start on top. The {@link LinkResetter} is
+ * asked to drop the link so the SDK fails the command, and the link is
+ * released on its late callback, or after one more timeout period if
+ * none comes.
+ */
+public class BleCommandScheduler {
+    private static final String TAG = "BleCommandScheduler";
+
+    public static final long DEFAULT_TIMEOUT_MS = 30 * 1000;
+    /** Queue key for commands that do not carry a lock MAC. */
+    public static final String NO_MAC = "";
+
+    /** A unit of BLE work. Must eventually call {@link Ticket#done()}. */
+    public interface Command {
+        void run(Ticket ticket);
+    }
+
+    /** A unit of BLE work that completes by replying on the given Result. */
+    public interface ResultCommand {
+        void run(Result result);
+    }
+
+    /**
+     * Observes command lifecycle. Start is reported on the command executor
+     * right before the command body runs; end is reported once the link is
+     * released, before the next command is started.
+     */
+    public interface Listener {
+        void onCommandStart(String mac, String name);
+        void onCommandEnd(String mac, String name, boolean timedOut);
+    }
+
+    /** Drops the lock's link so a stuck SDK command calls back. */
+    public interface LinkResetter {
+        void reset(String mac);
+    }
+
+    /**
+     * Handle given to a running command. {@link #done()} releases the link
+     * for the next command; {@link #touch()} restarts the watchdog, which
+     * long-running streams call on every chunk.
+     */
+    public final class Ticket {
+        private final String mac;
+        private final String name;
+        private final long timeoutMs;
+        private final Command command;
+        private final Runnable onTimeout;
+        private final long seq;
+        private final long enqueuedAt;
+        // Keep the link after a timeout until the SDK calls back
+        private final boolean holdOnTimeout;
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        // Timed out and waiting for the SDK; guarded by lock
+        private boolean held;
+        private long startedAt;
+        private ScheduledFuture<?> watchdog;
+
+        private Ticket(String mac, String name, long timeoutMs, Command command, Runnable onTimeout, long seq,
+                       boolean holdOnTimeout) {
+            this.mac = mac;
+            this.name = name;
+            this.timeoutMs = timeoutMs;
+            this.command = command;
+            this.onTimeout = onTimeout;
+            this.seq = seq;
+            this.holdOnTimeout = holdOnTimeout;
+            this.enqueuedAt = System.nanoTime();
+        }
+
+        public String getMac() { return mac; }
+
+        public String getName() { return name; }
+
+        public boolean isDone() { return finished.get(); }
+
+        public void touch() {
+            if (finished.get()) return;
+            synchronized (lock) {
+                if (!held) armWatchdog(this);
+            }
+        }
+
+        public void done() {
+            boolean timedOut;
+            synchronized (lock) {
+                timedOut = held;
+            }
+            finish(this, timedOut);
+        }
+    }
+
+    private final Object lock = new Object();
+    private final Executor commandExecutor;
+    private final ScheduledExecutorService watchdogExecutor;
+    private final Map<String, ArrayDeque<Ticket>> queues = new LinkedHashMap<>();
+    private final Map<String, Ticket> running = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private int maxActiveLinks = 1;
+    private long enqueueSeq;
+    private boolean shutdown;
+    private volatile LinkResetter linkResetter;
+
+    // Metrics, guarded by lock
+    private long submitted;
+    private long completed;
+    private long timedOut;
+    private long failed;
+    private long totalWaitMs;
+    private long maxWaitMs;
+    private long totalRunMs;
+    private int maxQueueDepth;
+    private final Map<String, Long> lastWaitMsByMac = new HashMap<>();
+
+    /**
+     * @param commandExecutor executor that command bodies run on. The plugin
+     *                        passes the main thread so SDK calls keep the
+     *                        thread they always had; tests pass a direct
+     *                        executor.
+     */
+    public BleCommandScheduler(Executor commandExecutor) {
+        this.commandExecutor = commandExecutor;
+        this.watchdogExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ble-cmd-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void setMaxActiveLinks(int maxActiveLinks) {
+        List<Ticket> toStart;
+        synchronized (lock) {
+            this.maxActiveLinks = Math.max(1, maxActiveLinks);
+            toStart = pollRunnable();
+        }
+        startAll(toStart);
+    }
+
+    public void setLinkResetter(LinkResetter resetter) {
+        this.linkResetter = resetter;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public int getMaxActiveLinks() {
+        synchronized (lock) {
+            return maxActiveLinks;
+        }
+    }
+
+    /**
+     * Extract the queue key from MethodChannel arguments. Looks at the
+     * top-level {@code mac} first, then a nested {@code auth} or
+     * {@code action} map.
+     */
+    @SuppressWarnings("unchecked")
+    public static String macOf(Map<String, Object> args) {
+        if (args == null) return NO_MAC;
+        Object v = args.get("mac");
+        if (!(v instanceof String)) {
+            for (String key : new String[]{"auth", "action"}) {
+                Object nested = args.get(key);
+                if (nested instanceof Map) {
+                    v = ((Map<String, Object>) nested).get("mac");
+                    if (v instanceof String) break;
+                }
+            }
+        }
+        return v instanceof String ? ((String) v).trim().toUpperCase(Locale.US) : NO_MAC;
+    }
+
+    /**
+     * Queue a command that replies on a MethodChannel Result. The link is
+     * released on the first reply; on timeout the caller gets a
+     * {@code COMMAND_TIMEOUT} error, late replies are dropped and the first
+     * of them releases the link.
+     */
+    public void submit(String mac, String name, final Result result, final ResultCommand command) {
+        submit(mac, name, DEFAULT_TIMEOUT_MS, result, command);
+    }
+
+    public void submit(String mac, String name, long timeoutMs, final Result result, final ResultCommand command) {
+        final ReleasingResult[] holder = new ReleasingResult[1];
+        enqueue(mac, name, timeoutMs, ticket -> {
+            holder[0] = new ReleasingResult(result, ticket);
+            command.run(holder[0]);
+        }, () -> {
+            if (holder[0] != null) {
+                holder[0].timeout();
+            }
+        }, true);
+    }
+
+    /**
+     * Queue a raw command. {@code onTimeout} runs (on the command executor)
+     * if the watchdog fires before the command calls {@link Ticket#done()}.
+     */
+    public void submit(String mac, String name, long timeoutMs, final Command command, final Runnable onTimeout) {
+        enqueue(mac, name, timeoutMs, command, onTimeout, false);
+    }
+
+    /**
+     * Queue a raw command that keeps its link after {@code onTimeout} until
+     * it calls {@link Ticket#done()} (the SDK called back) or one more
+     * timeout period passes.
+     */
+    public void submitHolding(String mac, String name, long timeoutMs, Command command, Runnable onTimeout) {
+        enqueue(mac, name, timeoutMs, command, onTimeout, true);
+    }
+
+    private void enqueue(String mac, String name, long timeoutMs, Command command, Runnable onTimeout,
+                         boolean holdOnTimeout) {
+        final Ticket ticket;
+        List<Ticket> toStart;
+        synchronized (lock) {
+            if (shutdown) {
+                Log.w(TAG, "Dropping " + name + ": scheduler shut down");
+                return;
+            }
+            ticket = new Ticket(mac == null ? NO_MAC : mac, name, timeoutMs, command, onTimeout, enqueueSeq++,
+                    holdOnTimeout);
+            submitted++;
+            ArrayDeque<Ticket> q = queues.get(ticket.mac);
+            if (q == null) {
+                q = new ArrayDeque<>();
+                queues.put(ticket.mac, q);
+            }
+            q.addLast(ticket);
+            maxQueueDepth = Math.max(maxQueueDepth, queuedCountLocked());
+            toStart = pollRunnable();
+        }
+        Log.d(TAG, "Queued " + name + " for " + ticket.mac);
+        startAll(toStart);
+    }
+
+    // Pick the oldest queued heads whose lock has no running command, while
+    // link slots are free. Caller holds lock.
+    private List<Ticket> pollRunnable() {
+        List<Ticket> out = new ArrayList<>();
+        while (!shutdown && running.size() < maxActiveLinks) {
+            Ticket best = null;
+            long bestSeq = Long.MAX_VALUE;
+            for (Map.Entry<String, ArrayDeque<Ticket>> e : queues.entrySet()) {
+                if (running.containsKey(e.getKey()) || e.getValue().isEmpty()) continue;
+                Ticket head = e.getValue().peekFirst();
+                if (head.seq < bestSeq) {
+                    bestSeq = head.seq;
+                    best = head;
+                }
+            }
+            if (best == null) break;
+            queues.get(best.mac).pollFirst();
+            if (queues.get(best.mac).isEmpty()) queues.remove(best.mac);
+            running.put(best.mac, best);
+            best.startedAt = System.nanoTime();
+            long waitMs = TimeUnit.NANOSECONDS.toMillis(best.startedAt - best.enqueuedAt);
+            totalWaitMs += waitMs;
+            maxWaitMs = Math.max(maxWaitMs, waitMs);
+            lastWaitMsByMac.put(best.mac, waitMs);
+            armWatchdog(best);
+            out.add(best);
+        }
+        return out;
+    }
+
+    private void startAll(List<Ticket> tickets) {
+        for (final Ticket ticket : tickets) {
+            commandExecutor.execute(() -> {
+                Log.d(TAG, "Running " + ticket.name + " for " + ticket.mac);
+                for (Listener l : listeners) {
+                    try {
+                        l.onCommandStart(ticket.mac, ticket.name);
+                    } catch (Throwable t) {
+                        Log.w(TAG, "Listener onCommandStart threw", t);
+                    }
+                }
+                try {
+                    ticket.command.run(ticket);
+                } catch (Throwable t) {
+                    Log.e(TAG, "Command " + ticket.name + " threw", t);
+                    synchronized (lock) {
+                        failed++;
+                    }
+                    ticket.done();
+                }
+            });
+        }
+    }
+
+    // Caller holds lock.
+    private void armWatchdog(final Ticket ticket) {
+        if (ticket.watchdog != null) ticket.watchdog.cancel(false);
+        if (ticket.timeoutMs <= 0 || shutdown) return;
+        ticket.watchdog = watchdogExecutor.schedule(() -> {
+            if (ticket.finished.get()) return;
+            Log.w(TAG, "Command " + ticket.name + " for " + ticket.mac + " timed out after " + ticket.timeoutMs + "ms");
+            commandExecutor.execute(() -> {
+                if (ticket.onTimeout != null) {
+                    try {
+                        ticket.onTimeout.run();
+                    } catch (Throwable t) {
+                        Log.w(TAG, "onTimeout threw", t);
+                    }
+                }
+                if (!hold(ticket)) finish(ticket, true);
+            });
+        }, ticket.timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // First timeout of a holding command: keep the link, ask for it to be
+    // dropped and wait one more period for the SDK. False to release now.
+    private boolean hold(Ticket ticket) {
+        synchronized (lock) {
+            if (!ticket.holdOnTimeout || ticket.held || ticket.finished.get()) return false;
+            ticket.held = true;
+            armWatchdog(ticket);
+        }
+        Log.w(TAG, "Holding the link of " + ticket.name + " for " + ticket.mac + " until the SDK calls back");
+        LinkResetter resetter = linkResetter;
+        if (resetter != null) {
+            try {
+                resetter.reset(ticket.mac);
+            } catch (Throwable t) {
+                Log.w(TAG, "Link reset threw", t);
+            }
+        }
+        return true;
+    }
+
+    private void finish(Ticket ticket, boolean timeout) {
+        if (!ticket.finished.compareAndSet(false, true)) return;
+        List<Ticket> toStart;
+        synchronized (lock) {
+            if (ticket.watchdog != null) ticket.watchdog.cancel(false);
+            if (running.get(ticket.mac) == ticket) running.remove(ticket.mac);
+            if (timeout) timedOut++;
+            else completed++;
+            totalRunMs += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ticket.startedAt);
+            toStart = pollRunnable();
+        }
+        for (Listener l : listeners) {
+            try {
+                l.onCommandEnd(ticket.mac, ticket.name, timeout);
+            } catch (Throwable t) {
+                Log.w(TAG, "Listener onCommandEnd threw", t);
+            }
+        }
+        startAll(toStart);
+    }
+
+    // Caller holds lock.
+    private int queuedCountLocked() {
+        int n = 0;
+        for (ArrayDeque<Ticket> q : queues.values()) n += q.size();
+        return n;
+    }
+
+    public int getQueueDepth(String mac) {
+        synchronized (lock) {
+            ArrayDeque<Ticket> q = queues.get(mac);
+            return q == null ? 0 : q.size();
+        }
+    }
+
+    /** How long the last command started for {@code mac} waited in the queue. */
+    public long getLastWaitMs(String mac) {
+        synchronized (lock) {
+            Long ms = lastWaitMsByMac.get(mac == null ? NO_MAC : mac);
+            return ms == null ? 0 : ms;
+        }
+    }
+
+    public int getActiveCount() {
+        synchronized (lock) {
+            return running.size();
+        }
+    }
+
+    /** Snapshot of queue depth and wait-time metrics for the Dart side. */
+    public Map<String, Object> getStats() {
+        Map<String, Object> m = new HashMap<>();
+        synchronized (lock) {
+            long started = completed + timedOut + running.size();
+            m.put("maxActiveLinks", maxActiveLinks);
+            m.put("active", running.size());
+            m.put("queued", queuedCountLocked());
+            m.put("maxQueueDepth", maxQueueDepth);
+            m.put("submitted", submitted);
+            m.put("completed", completed);
+            m.put("timedOut", timedOut);
+            m.put("failed", failed);
+            m.put("avgWaitMs", started == 0 ? 0 : totalWaitMs / started);
+            m.put("maxWaitMs", maxWaitMs);
+            m.put("avgRunMs", (completed + timedOut) == 0 ? 0 : totalRunMs / (completed + timedOut));
+
+            Map<String, Object> locks = new HashMap<>();
+            for (Map.Entry<String, Long> e : lastWaitMsByMac.entrySet()) {
+                Map<String, Object> l = new HashMap<>();
+                ArrayDeque<Ticket> q = queues.get(e.getKey());
+                Ticket r = running.get(e.getKey());
+                l.put("queued", q == null ? 0 : q.size());
+                l.put("running", r == null ? null : r.name);
+                l.put("lastWaitMs", e.getValue());
+                locks.put(e.getKey(), l);
+            }
+            m.put("locks", locks);
+        }
+        return m;
+    }
+
+    /**
+     * Stop the watchdog and drop every queued command; nothing submitted
+     * afterwards runs.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            queues.clear();
+            for (Ticket t : running.values()) {
+                t.finished.set(true);
+                if (t.watchdog != null) t.watchdog.cancel(false);
+            }
+            running.clear();
+        }
+        listeners.clear();
+        watchdogExecutor.shutdownNow();
+    }
+
+    /**
+     * Result wrapper that releases the command's link on the first reply,
+     * or, after a timeout reply, on the SDK's late one.
+     */
+    private static final class ReleasingResult implements Result {
+        private final Result delegate;
+        private final Ticket ticket;
+        private final AtomicBoolean replied = new AtomicBoolean(false);
+
+        ReleasingResult(Result delegate, Ticket ticket) {
+            this.delegate = delegate;
+            this.ticket = ticket;
+        }
+
+        void timeout() {
+            if (!replied.compareAndSet(false, true)) return;
+            Map<String, Object> details = new HashMap<>();
+            details.put("command", ticket.name);
+            details.put("mac", ticket.mac);
+            details.put("timeoutMs", ticket.timeoutMs);
+            delegate.error("COMMAND_TIMEOUT", ticket.name + " timed out", details);
+        }
+
+        @Override
+        public void success(Object result) {
+            if (!replied.compareAndSet(false, true)) {
+                ticket.done();
+                return;
+            }
+            try {
+                delegate.success(result);
+            } finally {
+                ticket.done();
+            }
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            if (!replied.compareAndSet(false, true)) {
+                ticket.done();
+                return;
+            }
+            try {
+                delegate.error(errorCode, errorMessage, errorDetails);
+            } finally {
+                ticket.done();
+            }
+        }
+
+        @Override
+        public void notImplemented() {
+            if (!replied.compareAndSet(false, true)) {
+                ticket.done();
+                return;
+            }
+            try {
+                delegate.notImplemented();
+            } finally {
+                ticket.done();
+            }
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.example.wise_apartment.utils;
 
 import android.util.Log;
-import android.os.Handler;
-import android.os.Looper;
 import java.util.Map;
 
 import io.flutter.plugin.common.MethodChannel.Result;
@@ -28,6 +26,7 @@ import com.example.hxjblinklibrary.blinkble.profile.data.common.StatusCode;
 import com.example.hxjblinklibrary.blinkble.profile.data.common.KeyType;
 import com.example.hxjblinklibrary.blinkble.entity.requestaction.OpenLockAction;
 import com.example.hxjblinklibrary.blinkble.entity.requestaction.BlinkyAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.BlinkyAuthAction;
 import com.example.hxjblinklibrary.blinkble.entity.requestaction.BleSetHotelLockSystemAction;
 import com.example.hxjblinklibrary.blinkble.entity.requestaction.BleHotelLockSystemParam;
 import java.util.HashMap;
@@ -38,6 +37,26 @@ import java.util.List;
 public class BleLockManager {
     private static final String TAG = "BleLockManager";
     private final HxjBleClient bleClient;
+    // Public entry points queue on the scheduler; the do* bodies run unscheduled.
+    // Package-private do* bodies are also run by BleBatchExecutor, which
+    // already holds the lock's ticket.
+    private final BleCommandScheduler scheduler;
+    // Warm links and cached auth per lock; the idle timer replaces per-call disconnects
+    private final BleSessionManager sessions;
+    // Credits / pause state of key streams, shared with record streams
+    private final StreamFlowControl flow;
+    // Per-lock key list and modifyTimestamp watermark for delta key sync
+    private final LockKeySnapshotStore keySnapshots;
+
+    // addDevice chains addDevice -> getSysParam -> pairSuccessInd -> rfModulePairing
+    private static final long ADD_DEVICE_TIMEOUT_MS = 60 * 1000;
+    // Fingerprint/face enrolment waits on the user between chunks
+    private static final long ADD_KEY_STREAM_TIMEOUT_MS = 60 * 1000;
+    // Big-data key upload: longest gap between two packet acks
+    private static final long BIG_DATA_KEY_TIMEOUT_MS = 30 * 1000;
+
+    // Fingerprint/face template uploads by lock MAC, kept after a link loss for resume
+    private final Map<String, AddBigDataKeyHelper> bigDataUploads = new HashMap<>();
 
     /**
      * Callback interface for streaming syncLockKey events.
@@ -67,104 +86,22 @@ public class BleLockManager {
         void onError(Map<String, Object> event);
     }
 
-    // Helper: convert vendor Response<?> to stable Map<String,Object>
+    // Vendor Response<?> / models to stable Map<String,Object>, see ResponseMapper
     private Map<String, Object> responseToMap(Response<?> response, Object bodyObj) {
-        Map<String, Object> m = new HashMap<>();
-        if (response == null) return m;
-        // Use safe getters to avoid repetitive try/catch per-field
-        Integer codeVal = getSafe("response.code", response::code, -1);
-        m.put("code", codeVal);
-        putSafe(m, "message", response::message);
-        try { m.put("ackMessage", WiseStatusCode.description(codeVal)); } catch (Exception e) { Log.w(TAG, "Failed to compute ackMessage", e); m.put("ackMessage", null); }
-        putSafe(m, "isSuccessful", response::isSuccessful);
-        putSafe(m, "isError", response::isError);
-        putSafe(m, "lockMac", response::getLockMac);
-
-        // body conversion
-        if (bodyObj != null) {
-            m.put("body", bodyObj);
-        } else {
-            Object body;
-            try { body = response.body(); } catch (Exception e) { Log.w(TAG, "Failed to read response.body", e); body = null; }
-
-            if (body == null) {
-                m.put("body", null);
-            } else if (body instanceof DnaInfo) {
-                m.put("body", dnaInfoToMap((DnaInfo) body));
-            } else if (body instanceof SysParamResult) {
-                m.put("body", sysParamToMap((SysParamResult) body));
-            } else {
-                try { m.put("body", body.toString()); } catch (Exception e) { Log.w(TAG, "Failed to stringify body", e); m.put("body", null); }
-            }
-        }
-
-        return m;
+        return ResponseMapper.responseToMap(response, bodyObj);
     }
 
     private Map<String, Object> dnaInfoToMap(DnaInfo dna) {
-        Map<String, Object> m = new HashMap<>();
-        if (dna == null) return m;
-        putSafe(m, "mac", dna::getMac);
-        putSafe(m, "initTag", dna::getInitTag);
-        putSafe(m, "deviceType", dna::getDeviceType);
-        putSafe(m, "hardware", dna::getHardWareVer);
-        putSafe(m, "software", dna::getSoftWareVer);
-        putSafe(m, "protocolVer", dna::getProtocolVer);
-        putSafe(m, "appCmdSets", dna::getAppCmdSets);
-        putSafe(m, "dnaAes128Key", dna::getDnaAes128Key);
-        putSafe(m, "authorizedRoot", dna::getAuthorizedRoot);
-        putSafe(m, "authorizedUser", dna::getAuthorizedUser);
-        putSafe(m, "authorizedTempUser", dna::getAuthorizedTempUser);
-        putSafe(m, "rFModuleType", dna::getrFMoudleType);
-        putSafe(m, "lockFunctionType", dna::getLockFunctionType);
-        putSafe(m, "maximumVolume", dna::getMaximumVolume);
-        putSafe(m, "maximumUserNum", dna::getMaximumUserNum);
-        putSafe(m, "menuFeature", dna::getMenuFeature);
-        putSafe(m, "fingerPrintfNum", dna::getFingerPrintfNum);
-        putSafe(m, "projectID", dna::getProjectID);
-        putSafe(m, "rFModuleMac", dna::getRFModuleMac);
-        putSafe(m, "motorDriverMode", dna::getMotorDriverMode);
-        putSafe(m, "motorSetMenuFunction", dna::getMotorSetMenuFunction);
-        putSafe(m, "MoudleFunction", dna::getMoudleFunction);
-        putSafe(m, "BleActiveTimes", dna::getBleActiveTimes);
-        putSafe(m, "ModuleSoftwareVer", dna::getModuleSoftwareVer);
-        putSafe(m, "ModuleHardwareVer", dna::getModuleHardwareVer);
-        putSafe(m, "passwordNumRange", dna::getPasswordNumRange);
-        putSafe(m, "OfflinePasswordVer", dna::getOfflinePasswordVer);
-        putSafe(m, "supportSystemLanguage", dna::getSupportSystemLanguage);
-        putSafe(m, "hotelFunctionEn", dna::getHotelFunctionEn);
-        putSafe(m, "schoolOpenNormorl", dna::getSchoolOpenNormorl);
-        putSafe(m, "cabinetLock", dna::getCabinetLock);
-        putSafe(m, "lockSystemFunction", dna::getLockSystemFunction);
-        putSafe(m, "lockNetSystemFunction", dna::getLockNetSystemFunction);
-        putSafe(m, "sysLanguage", dna::getSysLanguage);
-        putSafe(m, "keyAddMenuType", dna::getKeyAddMenuType);
-        putSafe(m, "functionFlag", dna::getFunctionFlag);
-        putSafe(m, "bleSmartCardNfcFunction", dna::getBleSmartCardNfcFunction);
-        putSafe(m, "wisapartmentCardFunction", dna::getWisapartmentCardFunction);
-        putSafe(m, "lockCompanyId", dna::getLockCompanyId);
-        putSafe(m, "deviceDnaInfoStr", dna::getDeviceDnaInfoStr);
-        return m;
+        return ResponseMapper.dnaInfoToMap(dna);
     }
 
     private Map<String, Object> sysParamToMap(SysParamResult s) {
-        // Expose all fields via reflection for richer UI/debug output
-        return objectToMap(s);
+        return ResponseMapper.sysParamToMap(s);
     }
 
     // Small functional getter that can throw; allows central Exception handling and logging
     private interface Getter<T> { T get() throws Exception; }
 
-    private <T> void putSafe(Map<String, Object> m, String key, Getter<T> getter) {
-        try {
-            T val = getter.get();
-            m.put(key, val);
-        } catch (Exception e) {
-            Log.w(TAG, "Failed to read key: " + key, e);
-            m.put(key, null);
-        }
-    }
-
     private <T> T getSafe(String label, Getter<T> getter, T fallback) {
         try {
             return getter.get();
@@ -212,7 +149,7 @@ public class BleLockManager {
 
     // Helper to ensure MethodChannel.Result callbacks run on the main thread.
     private void postResultSuccess(final Result result, final Object value) {
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
+        MainThreadDispatcher.get().execute(new Runnable() {
             @Override
             public void run() {
                 try { result.success(value); } catch (Exception e) { Log.w(TAG, "result.success threw", e); }
@@ -221,7 +158,7 @@ public class BleLockManager {
     }
 
     private void postResultError(final Result result, final String code, final String message, final Object details) {
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
+        MainThreadDispatcher.get().execute(new Runnable() {
             @Override
             public void run() {
                 try { result.error(code, message, details); } catch (Exception e) { Log.w(TAG, "result.error threw", e); }
@@ -271,14 +208,49 @@ public class BleLockManager {
         }
     }
 
-    public BleLockManager(HxjBleClient client) {
+    public BleLockManager(HxjBleClient client, BleCommandScheduler scheduler, BleSessionManager sessions,
+                          StreamFlowControl flow, LockKeySnapshotStore keySnapshots) {
         this.bleClient = client;
+        this.scheduler = scheduler;
+        this.sessions = sessions;
+        this.flow = flow;
+        this.keySnapshots = keySnapshots;
+    }
+
+    /** Stored key list of one lock, see {@link LockKeySnapshotStore}. */
+    public Map<String, Object> getLockKeySnapshot(String mac) {
+        return keySnapshots.getSnapshot(mac);
+    }
+
+    public void clearLockKeySnapshot(String mac) {
+        keySnapshots.clear(mac);
+    }
+
+    /** Terminal event of a stream ended by cancelStream. */
+    private static Map<String, Object> streamCancelledEvent(String type, String streamId, int totalSoFar) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", type);
+        event.put("streamId", streamId);
+        event.put("totalSoFar", totalSoFar);
+        return event;
+    }
+
+    private Map<String, Object> streamTimeoutEvent(String type, String command) {
+        Map<String, Object> err = new HashMap<>();
+        err.put("type", type);
+        err.put("code", "COMMAND_TIMEOUT");
+        err.put("message", command + " timed out");
+        return err;
     }
 
     public void openLock(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "openLock", result, r -> doOpenLock(args, r));
+    }
+
+    void doOpenLock(Map<String, Object> args, final Result result) {
         Log.d(TAG, "openLock called with args: " + args);
         OpenLockAction action = new OpenLockAction();
-        action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+        action.setBaseAuthAction(sessions.authFor(args));
 
         bleClient.openLock(action, new FunCallback<HxBLEUnlockResult>() {
             @Override
@@ -302,22 +274,24 @@ public class BleLockManager {
                         result.error("FAILED", "Code: " + response.code(), null);
                     }
                 }
-                bleClient.disConnectBle(null); // Disconnect after operation as per original logic
             }
 
             @Override
             public void onFailure(Throwable t) {
                 Log.e(TAG, "openLock failed", t);
                 result.error("ERROR", t.getMessage(), null);
-                bleClient.disConnectBle(null);
             }
         });
     }
 
     public void closeLock(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "closeLock", result, r -> doCloseLock(args, r));
+    }
+
+    void doCloseLock(Map<String, Object> args, final Result result) {
         Log.d(TAG, "closeLock called");
         BlinkyAction action = new OpenLockAction();
-        action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+        action.setBaseAuthAction(sessions.authFor(args));
 
         bleClient.closeLock(action, new FunCallback<Object>() {
             @Override
@@ -344,6 +318,10 @@ public class BleLockManager {
     }
 
     public void setKeyExpirationAlarmTime(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "setKeyExpirationAlarmTime", result, r -> doSetKeyExpirationAlarmTime(args, r));
+    }
+
+    void doSetKeyExpirationAlarmTime(Map<String, Object> args, final Result result) {
         Log.d(TAG, "setKeyExpirationAlarmTime called");
         int time = (int) args.get("time");
 
@@ -351,7 +329,7 @@ public class BleLockManager {
         BleHotelLockSystemParam param = new BleHotelLockSystemParam();
         param.setExpirationAlarmTime(time);
         action.setParam(param);
-        action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+        action.setBaseAuthAction(sessions.authFor(args));
 
         bleClient.bleSetHotelLockSystemParam(action, new FunCallback<Object>() {
             @Override
@@ -376,6 +354,10 @@ public class BleLockManager {
     }
 
     public void changeLockKeyPwd(Map<String, Object> arguments, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(arguments), "changeLockKeyPwd", result, r -> doChangeLockKeyPwd(arguments, r));
+    }
+
+    void doChangeLockKeyPwd(Map<String, Object> arguments, final Result result) {
         if (bleClient == null) {
             postResultError(result, "INIT_ERROR", "BLE client is null", null);
             return;
@@ -409,7 +391,7 @@ public class BleLockManager {
             action.setOldPassword(oldPassword);
             action.setNewPassword(newPassword);
 
-            action.setBaseAuthAction(PluginUtils.createAuthAction(arguments));
+            action.setBaseAuthAction(sessions.authFor(arguments));
 
 
             bleClient.changeLockKeyPwd(action, new FunCallback<Object>() {
@@ -439,6 +421,10 @@ public class BleLockManager {
     }
 
     public void modifyLockKey(Map<String, Object> arguments, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(arguments), "modifyLockKey", result, r -> doModifyLockKey(arguments, r));
+    }
+
+    void doModifyLockKey(Map<String, Object> arguments, final Result result) {
         if (bleClient == null) {
             postResultError(result, "INIT_ERROR", "BLE client is null", null);
             return;
@@ -483,7 +469,7 @@ public class BleLockManager {
             // Weeks (valid when AuthMode=2)
             action.setWeeks(parseInt(actionMap.get("weeks"), 0x7F));
             
-            action.setBaseAuthAction(PluginUtils.createAuthAction(arguments));
+            action.setBaseAuthAction(sessions.authFor(arguments));
 
             bleClient.modifyLockKey(action, new FunCallback<Object>() {
                 @Override
@@ -511,13 +497,19 @@ public class BleLockManager {
     }
 
     public void deleteLock(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "deleteLock", result, r -> doDeleteLock(args, r));
+    }
+
+    private void doDeleteLock(Map<String, Object> args, final Result result) {
         Log.d(TAG, "deleteLock called");
         BlinkyAction action = new BlinkyAction();
-        action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+        action.setBaseAuthAction(sessions.authFor(args));
 
         bleClient.delDevice(action, new FunCallback<String>() {
             @Override
             public void onResponse(Response<String> response) {
+                // The lock no longer accepts this auth; drop the warm session with it
+                sessions.forget(BleCommandScheduler.macOf(args));
                 bleClient.disConnectBle(null);
                 if (response.isSuccessful()) result.success(true);
                 else {
@@ -540,9 +532,13 @@ public class BleLockManager {
     }
 
     public void getDna(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "getDna", result, r -> doGetDna(args, r));
+    }
+
+    void doGetDna(Map<String, Object> args, final Result result) {
         Log.d(TAG, "getDna called");
         BlinkyAction action = new BlinkyAction();
-        action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+        action.setBaseAuthAction(sessions.authFor(args));
 
         bleClient.getDna(action, new FunCallback<DnaInfo>() {
             @Override
@@ -575,6 +571,10 @@ public class BleLockManager {
      * 3) on success call pairSuccessInd and rfModulePairing
      */
     public void addDevice(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "addDevice", ADD_DEVICE_TIMEOUT_MS, result, r -> doAddDevice(args, r));
+    }
+
+    private void doAddDevice(Map<String, Object> args, final Result result) {
         Log.d(TAG, "addDevice called with args: " + args);
         // Try to build the BlinkyAuthAction from `mac` (Method 2 in sample app).
         // If `mac` is not provided, fall back to PluginUtils.createAuthAction(args).
@@ -781,6 +781,10 @@ public class BleLockManager {
      * Expects `args` to contain the auth fields used by PluginUtils.createAuthAction.
      */
     public void pairSuccessInd(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "pairSuccessInd", result, r -> doPairSuccessInd(args, r));
+    }
+
+    private void doPairSuccessInd(Map<String, Object> args, final Result result) {
         Log.d(TAG, "pairSuccessInd called with args: " + args);
         BlinkyAction hxBleAction = new BlinkyAction();
         hxBleAction.setBaseAuthAction(PluginUtils.createAuthAction(args));
@@ -829,6 +833,10 @@ public class BleLockManager {
      *  - "dna": Map with dna fields (protocolVer, authorizedRoot, dnaAes128Key, mac)
      */
     public void registerWifi(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "registerWifi", result, r -> doRegisterWifi(args, r));
+    }
+
+    private void doRegisterWifi(Map<String, Object> args, final Result result) {
         Log.d(TAG, "registerWifi called with args: " + args);
 
         String wifiJson = null;
@@ -886,12 +894,12 @@ public class BleLockManager {
                 b.keyGroupId(900);
                 baseAuth = b.build();
             } else {
-                // fallback: use PluginUtils.createAuthAction to build from top-level args
-                baseAuth = PluginUtils.createAuthAction(args);
+                // fallback: build (or reuse the cached session auth) from top-level args
+                baseAuth = sessions.authFor(args);
             }
         } catch (Throwable t) {
             Log.e(TAG, "Failed to build baseAuth from dna map or mac, falling back", t);
-            baseAuth = PluginUtils.createAuthAction(args);
+            baseAuth = sessions.authFor(args);
         }
 
         BlinkyAction action = new BlinkyAction();
@@ -929,37 +937,8 @@ public class BleLockManager {
         }
     }
 
-    /**
-     * Convert an arbitrary SDK model object into a Map<String,Object> via
-     * reflection. Similar to LockRecordManager.mapRecord but kept local to
-     * this manager for reuse when mapping AddLockKeyResult and others.
-     */
     private Map<String, Object> objectToMap(Object obj) {
-        Map<String, Object> out = new HashMap<>();
-        if (obj == null) return out;
-        Class<?> clazz = obj.getClass();
-        out.put("modelType", clazz.getSimpleName());
-
-        while (clazz != null && clazz != Object.class) {
-            java.lang.reflect.Field[] fields = clazz.getDeclaredFields();
-            for (java.lang.reflect.Field field : fields) {
-                if (java.lang.reflect.Modifier.isStatic(field.getModifiers())) continue;
-                field.setAccessible(true);
-                try {
-                    Object value = field.get(obj);
-                    if (value == null) continue;
-                    if (value instanceof Number || value instanceof Boolean || value instanceof String) {
-                        out.put(field.getName(), value);
-                    } else {
-                        out.put(field.getName(), value.toString());
-                    }
-                } catch (IllegalAccessException e) {
-                    Log.w(TAG, "Unable to read field " + field.getName() + " from " + clazz.getSimpleName(), e);
-                }
-            }
-            clazz = clazz.getSuperclass();
-        }
-        return out;
+        return ResponseMapper.objectToMap(obj);
     }
 
     /**
@@ -967,12 +946,16 @@ public class BleLockManager {
      * back to a stable Map for Dart.
      */
     public void addLockKey(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "addLockKey", result, r -> doAddLockKey(args, r));
+    }
+
+    void doAddLockKey(Map<String, Object> args, final Result result) {
         Log.d(TAG, "addLockKey called with args: " + args);
 
         try {
             AddLockKeyAction action = new AddLockKeyAction();
 
-            action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+            action.setBaseAuthAction(sessions.authFor(args));
 
             // If caller provided an `action` map, populate the AddLockKeyAction
             // fields from it. Fail fast with INVALID_ARGS when types are wrong.
@@ -1053,11 +1036,64 @@ public class BleLockManager {
      * to the provided callback. Plugin layer will deliver these to EventChannel.
      */
     public void addLockKeyStream(Map<String, Object> args, final AddLockKeyStreamCallback callback) {
+        // Only used for its streamId and cancelStream; enrollment is paced by the user
+        final StreamFlowControl.Gate gate = flow.open(flow.idFor(args), null);
+        scheduler.submit(BleCommandScheduler.macOf(args), "addLockKeyStream", ADD_KEY_STREAM_TIMEOUT_MS,
+                ticket -> {
+                    final AddLockKeyStreamCallback tracked = new AddLockKeyStreamCallback() {
+                        @Override
+                        public void onChunk(Map<String, Object> event) {
+                            if (ticket.isDone()) return;
+                            ticket.touch();
+                            event.put("streamId", gate.getId());
+                            callback.onChunk(event);
+                        }
+
+                        @Override
+                        public void onDone(Map<String, Object> event) {
+                            if (ticket.isDone()) return;
+                            gate.close();
+                            event.put("streamId", gate.getId());
+                            callback.onDone(event);
+                            ticket.done();
+                        }
+
+                        @Override
+                        public void onError(Map<String, Object> event) {
+                            if (ticket.isDone()) return;
+                            gate.close();
+                            event.put("streamId", gate.getId());
+                            callback.onError(event);
+                            ticket.done();
+                        }
+                    };
+                    if (gate.isClosed()) {
+                        // Cancelled while queued: end without touching the lock
+                        tracked.onDone(streamCancelledEvent("addLockKeyCancelled", gate.getId(), 0));
+                        return;
+                    }
+                    final BlinkyAuthAction auth = sessions.authFor(args);
+                    gate.onCancel(() -> {
+                        if (ticket.isDone()) return;
+                        PluginUtils.abortCurrentCmd(bleClient, auth, TAG);
+                        tracked.onDone(streamCancelledEvent("addLockKeyCancelled", gate.getId(), 0));
+                    });
+                    doAddLockKeyStream(args, auth, tracked);
+                },
+                () -> {
+                    gate.close();
+                    Map<String, Object> err = streamTimeoutEvent("addLockKeyError", "addLockKeyStream");
+                    err.put("streamId", gate.getId());
+                    callback.onError(err);
+                });
+    }
+
+    private void doAddLockKeyStream(Map<String, Object> args, BlinkyAuthAction auth, final AddLockKeyStreamCallback callback) {
         Log.d(TAG, "addLockKeyStream called with args: " + args);
         try {
             AddLockKeyAction action = new AddLockKeyAction();
 
-            action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+            action.setBaseAuthAction(auth);
 
             if (args != null && args.containsKey("action") && args.get("action") instanceof Map) {
                 Map actionMap = (Map) args.get("action");
@@ -1191,6 +1227,176 @@ public class BleLockManager {
         }
     }
 
+    /**
+     * Upload a fingerprint / face template to the lock as a new key.
+     * {@code args.action} holds keyType (1 fingerprint, 64 face),
+     * keyGroupId, the template (bigData bytes, a bigDataPath file, or
+     * bigDataBase64), and the validity fields used by addLockKey. Progress, done and error events go to
+     * {@code callback}; an error event with {@code resumable: true} can be
+     * continued with {@link #resumeBigDataKeyStream}.
+     */
+    public void addBigDataKeyStream(Map<String, Object> args, final AddLockKeyStreamCallback callback) {
+        final String mac = BleCommandScheduler.macOf(args);
+        Object actionObj = args == null ? null : args.get("action");
+        if (!(actionObj instanceof Map)) {
+            callback.onError(bigDataErrorEvent(mac, StatusCode.ACK_STATUS_PARAM_ERR, "action map is required", null));
+            return;
+        }
+        final Map actionMap = (Map) actionObj;
+        final int keyType = parseInt(actionMap.get("keyType"), KeyType.FINGER);
+        if (keyType != KeyType.FINGER && keyType != KeyType.Face) {
+            callback.onError(bigDataErrorEvent(mac, StatusCode.ACK_STATUS_PARAM_ERR, "keyType must be 1 (fingerprint) or 64 (face)", null));
+            return;
+        }
+        final BLEKeyValidTimeParam timeParam = new BLEKeyValidTimeParam();
+        timeParam.authMode = parseInt(actionMap.get("vaildMode"), 0) == 1 ? 2 : 1;
+        timeParam.validStartTime = parseLong(actionMap.get("validStartTime"), 0L);
+        timeParam.validEndTime = parseLong(actionMap.get("validEndTime"), 0xFFFFFFFFL);
+        timeParam.weeks = parseInt(actionMap.get("week"), 0);
+        timeParam.dayStartTimes = parseInt(actionMap.get("dayStartTimes"), 0);
+        timeParam.dayEndTimes = parseInt(actionMap.get("dayEndTimes"), 0);
+        timeParam.validNumber = parseInt(actionMap.get("vaildNumber"), 0);
+        timeParam.modifyTimestamp = parseLong(actionMap.get("modifyTimestamp"), System.currentTimeMillis() / 1000);
+
+        scheduler.submit(mac, "addBigDataKey", BIG_DATA_KEY_TIMEOUT_MS, ticket -> {
+            AddBigDataKeyHelper helper = new AddBigDataKeyHelper(null, bleClient);
+            synchronized (bigDataUploads) {
+                AddBigDataKeyHelper previous = bigDataUploads.put(mac, helper);
+                if (previous != null) previous.cancel();
+            }
+            int keyGroupId = parseInt(actionMap.get("keyGroupId"), 0);
+            BlinkyAuthAction auth = sessions.authFor(args);
+            AddBigDataKeyHelper.SendBigKeyDataCallback events = bigDataCallback(mac, helper, ticket, callback);
+            // Raw bytes and files skip the Base64 round trip
+            Object bigData = actionMap.get("bigData");
+            String path = parseString(actionMap.get("bigDataPath"), "");
+            if (bigData instanceof byte[]) {
+                helper.startWithBigData((byte[]) bigData, mac, keyGroupId, keyType, timeParam, auth, events);
+            } else if (!path.isEmpty()) {
+                helper.startWithBigDataFile(path, mac, keyGroupId, keyType, timeParam, auth, events);
+            } else {
+                helper.startWithBigDataBase64Str(parseString(actionMap.get("bigDataBase64"), ""), mac,
+                        keyGroupId, keyType, timeParam, auth, events);
+            }
+        }, () -> callback.onError(bigDataTimeoutEvent(mac, "addBigDataKey")));
+    }
+
+    /**
+     * Continue the interrupted template upload of {@code args}' lock from
+     * its last acknowledged packet (or from the start if the lock no longer
+     * accepts it), over a new link.
+     */
+    public void resumeBigDataKeyStream(Map<String, Object> args, final AddLockKeyStreamCallback callback) {
+        final String mac = BleCommandScheduler.macOf(args);
+        scheduler.submit(mac, "resumeBigDataKey", BIG_DATA_KEY_TIMEOUT_MS, ticket -> {
+            AddBigDataKeyHelper helper;
+            synchronized (bigDataUploads) {
+                helper = bigDataUploads.get(mac);
+            }
+            if (helper == null || !helper.canResume()) {
+                callback.onError(bigDataErrorEvent(mac, StatusCode.ACK_STATUS_PARAM_ERR, "No interrupted upload for " + mac, null));
+                ticket.done();
+                return;
+            }
+            helper.resume(sessions.authFor(args), bigDataCallback(mac, helper, ticket, callback));
+        }, () -> callback.onError(bigDataTimeoutEvent(mac, "resumeBigDataKey")));
+    }
+
+    /** Checkpoint of the last template upload to {@code mac}, or null. */
+    public Map<String, Object> getBigDataKeyCheckpoint(String mac) {
+        return checkpointOf(BleCommandScheduler.macOf(macArgs(mac)));
+    }
+
+    private Map<String, Object> checkpointOf(String mac) {
+        synchronized (bigDataUploads) {
+            AddBigDataKeyHelper helper = bigDataUploads.get(mac);
+            return helper == null ? null : helper.getCheckpoint();
+        }
+    }
+
+    private AddBigDataKeyHelper.SendBigKeyDataCallback bigDataCallback(final String mac, final AddBigDataKeyHelper helper,
+                                                                       final BleCommandScheduler.Ticket ticket,
+                                                                       final AddLockKeyStreamCallback callback) {
+        return new AddBigDataKeyHelper.SendBigKeyDataCallback() {
+            @Override
+            public void onProgress(int statusCode, String message, int phase, double progress) {
+                if (ticket.isDone()) return;
+                ticket.touch();
+                Map<String, Object> event = new HashMap<>();
+                event.put("type", "addBigDataKeyProgress");
+                event.put("mac", mac);
+                event.put("message", message);
+                event.put("phase", phase);
+                event.put("progress", progress);
+                event.put("checkpoint", helper.getCheckpoint());
+                callback.onChunk(event);
+            }
+
+            @Override
+            public void onComplete(int statusCode, String message, LockKeyResult keyResult) {
+                if (ticket.isDone()) return;
+                synchronized (bigDataUploads) {
+                    if (bigDataUploads.get(mac) == helper) bigDataUploads.remove(mac);
+                }
+                Map<String, Object> event = new HashMap<>();
+                event.put("type", "addBigDataKeyDone");
+                event.put("mac", mac);
+                event.put("message", message);
+                event.put("key", LockKeyResultMapper.toMap(keyResult));
+                callback.onDone(event);
+                ticket.done();
+            }
+
+            @Override
+            public void onError(int statusCode, String message) {
+                if (ticket.isDone()) return;
+                Map<String, Object> checkpoint = helper.getCheckpoint();
+                if (!helper.canResume()) {
+                    synchronized (bigDataUploads) {
+                        if (bigDataUploads.get(mac) == helper) bigDataUploads.remove(mac);
+                    }
+                }
+                callback.onError(bigDataErrorEvent(mac, statusCode, message, checkpoint));
+                ticket.done();
+            }
+        };
+    }
+
+    private static Map<String, Object> bigDataErrorEvent(String mac, int code, String message, Map<String, Object> checkpoint) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", "addBigDataKeyError");
+        event.put("mac", mac);
+        event.put("code", code);
+        event.put("message", message);
+        event.put("resumable", checkpoint != null && Boolean.TRUE.equals(checkpoint.get("resumable")));
+        if (checkpoint != null) event.put("checkpoint", checkpoint);
+        return event;
+    }
+
+    // The lock stopped acking: drop the link under the in-flight packet and
+    // keep the staged template so the upload can resume
+    private Map<String, Object> bigDataTimeoutEvent(String mac, String command) {
+        Map<String, Object> checkpoint = null;
+        synchronized (bigDataUploads) {
+            AddBigDataKeyHelper helper = bigDataUploads.get(mac);
+            if (helper != null) {
+                helper.interrupt();
+                checkpoint = helper.getCheckpoint();
+            }
+        }
+        Map<String, Object> event = streamTimeoutEvent("addBigDataKeyError", command);
+        event.put("mac", mac);
+        event.put("resumable", checkpoint != null && Boolean.TRUE.equals(checkpoint.get("resumable")));
+        if (checkpoint != null) event.put("checkpoint", checkpoint);
+        return event;
+    }
+
+    private static Map<String, Object> macArgs(String mac) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("mac", mac);
+        return m;
+    }
+
     /**
      * Call the vendor SDK to delete a lock key and map the result back to Dart.
      * Supports four deletion modes:
@@ -1200,11 +1406,15 @@ public class BleLockManager {
      * 3: Delete by user ID (all keys for specified keyGroupId)
      */
     public void deleteLockKey(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "deleteLockKey", result, r -> doDeleteLockKey(args, r));
+    }
+
+    void doDeleteLockKey(Map<String, Object> args, final Result result) {
         Log.d(TAG, "deleteLockKey called with args: " + args);
 
         try {
             DelLockKeyAction action = new DelLockKeyAction();
-            action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+            action.setBaseAuthAction(sessions.authFor(args));
 
             // Extract and validate the action map
             if (args != null && args.containsKey("action") && args.get("action") instanceof Map) {
@@ -1281,6 +1491,7 @@ public class BleLockManager {
                 @Override
                 public void onResponse(Response response) {
                     if (response.isSuccessful() && response.body() != null) {
+                        keySnapshots.onKeysDeleted(BleCommandScheduler.macOf(args), (Map<?, ?>) args.get("action"));
                         try {
                             Map<String, Object> bodyMap = objectToMap(response.body());
                             postResultSuccess(result, responseToMap(response, bodyMap));
@@ -1315,6 +1526,10 @@ public class BleLockManager {
      * Call the vendor SDK to synchronize keys on the lock and map results.
      */
     public void syncLockKey(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "syncLockKey", result, r -> doSyncLockKey(args, r));
+    }
+
+    void doSyncLockKey(Map<String, Object> args, final Result result) {
         Log.d(TAG, "syncLockKey called with args: " + args);
         try {
             int lastSync = 2;
@@ -1328,7 +1543,7 @@ public class BleLockManager {
             }
 
             SyncLockKeyAction action = new SyncLockKeyAction(lastSync);
-            action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+            action.setBaseAuthAction(sessions.authFor(args));
 
             bleClient.syncLockKey(action, new FunCallback<LockKeyResult>() {
                 @Override
@@ -1369,38 +1584,79 @@ public class BleLockManager {
      * to Flutter as they arrive from the BLE SDK.
      * 
      * Note: Each onResponse callback receives ONE key (LockKeyResult represents a single key).
+     *
+     * Unless {@code lastSyncTimestamp} is given, only keys changed since the
+     * lock's stored key snapshot are read and merged into it; the done event
+     * carries counts only, the merged list is read with getLockKeySnapshot.
+     * {@code fullSync: true} re-reads them all.
      * 
-     * @param args Map containing baseAuth and optional lastSyncTimestamp
+     * @param args Map containing baseAuth and optional lastSyncTimestamp / fullSync
      * @param callback Callback to receive chunk, done, and error events
      */
     public void syncLockKeyStream(Map<String, Object> args, final SyncLockKeyStreamCallback callback) {
+        final StreamFlowControl.Gate gate = flow.open(flow.idFor(args), args);
+        scheduler.submit(BleCommandScheduler.macOf(args), "syncLockKeyStream", BleCommandScheduler.DEFAULT_TIMEOUT_MS,
+                ticket -> doSyncLockKeyStream(args, gate, ticket, callback),
+                () -> {
+                    gate.close();
+                    Map<String, Object> err = streamTimeoutEvent("syncLockKeyError", "syncLockKeyStream");
+                    err.put("streamId", gate.getId());
+                    callback.onError(err);
+                });
+    }
+
+    /**
+     * Keys arrive as the lock pushes them; chunk events are released through
+     * the stream's flow-control gate, so a paused or out-of-credit consumer
+     * gets them (and then the done event) once it grants more. The ticket
+     * follows the lock, not the consumer: each key restarts its watchdog and
+     * the link is given back as soon as the lock sent its last key, even if
+     * chunks are still held. Errors drop held chunks and are delivered at once.
+     */
+    private void doSyncLockKeyStream(Map<String, Object> args, final StreamFlowControl.Gate gate,
+                                     final BleCommandScheduler.Ticket ticket,
+                                     final SyncLockKeyStreamCallback callback) {
         Log.d(TAG, "syncLockKeyStream called with args: " + args);
+        if (gate.isClosed()) {
+            // Cancelled while queued: end without touching the lock
+            callback.onDone(streamCancelledEvent("syncLockKeyCancelled", gate.getId(), 0));
+            ticket.done();
+            return;
+        }
         
-        // List to accumulate all keys across responses
-        final List<Map<String, Object>> allKeys = new ArrayList<>();
+        // Keys read this sync, for the snapshot merge; bounded by the lock's key capacity
+        final List<Map<String, Object>> changed = new ArrayList<>();
         
         // Flag to track if stream has been closed
         final boolean[] streamClosed = new boolean[]{false};
+        final BlinkyAuthAction auth = sessions.authFor(args);
+
+        // cancelStream: stop, abort the sync on the lock, drop collected keys
+        gate.onCancel(() -> {
+            gate.close();
+            if (streamClosed[0]) return;
+            streamClosed[0] = true;
+            PluginUtils.abortCurrentCmd(bleClient, auth, TAG);
+            int delivered = changed.size();
+            changed.clear();
+            callback.onDone(streamCancelledEvent("syncLockKeyCancelled", gate.getId(), delivered));
+            ticket.done();
+        });
         
         try {
-            int lastSync = 2;
-            if (args != null && args.containsKey("lastSyncTimestamp")) {
-                Object v = args.get("lastSyncTimestamp");
-                if (v instanceof Integer) lastSync = (Integer) v;
-                else if (v instanceof Number) lastSync = ((Number) v).intValue();
-                else if (v instanceof String) {
-                    try { lastSync = Integer.parseInt((String) v); } catch (Exception ignored) {}
-                }
-            }
+            final LockKeySnapshotStore.Delta delta = keySnapshots.begin(args);
 
-            SyncLockKeyAction action = new SyncLockKeyAction(lastSync);
-            action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+            SyncLockKeyAction action = new SyncLockKeyAction(delta.getLastSyncTimestamp());
+            action.setBaseAuthAction(auth);
 
             bleClient.syncLockKey(action, new FunCallback<LockKeyResult>() {
                 @Override
                 public void onResponse(Response<LockKeyResult> response) {
                     try {
                         Log.d(TAG, "onResponse called - code: " + response.code() + ", isSuccessful: " + response.isSuccessful() + ", streamClosed: " + streamClosed[0]);
+                        // Timed out: the watchdog already ended the stream
+                        if (ticket.isDone()) return;
+                        ticket.touch();
                         
                         // Process any successful response (ACK_STATUS_NEXT or final success)
                         if (response.code() == StatusCode.ACK_STATUS_NEXT || response.isSuccessful()) {
@@ -1412,24 +1668,30 @@ public class BleLockManager {
                                 boolean isMore = true;
                                 try {
                                     isMore = body.isMore();
-                                    Log.d(TAG, "Received key: keyNum=" + keyNum + ", isMore=" + isMore + ", totalSoFar=" + (allKeys.size() + 1));
+                                    Log.d(TAG, "Received key: keyNum=" + keyNum + ", isMore=" + isMore + ", totalSoFar=" + (changed.size() + 1));
                                 } catch (Throwable t) {
                                     Log.e(TAG, "Error reading isMore flag", t);
                                 }
                                 
                                 if (keyNum != 0) {
-                                    // Convert single key to Map and add to accumulator
-                                    Map<String, Object> keyMap = LockKeyResultMapper.toMap(body);
-                                    allKeys.add(keyMap);
-                                    
-                                    // Emit chunk event with this single key
-                                    Map<String, Object> chunkEvent = new HashMap<>();
-                                    chunkEvent.put("type", "syncLockKeyChunk");
-                                    chunkEvent.put("item", keyMap);
-                                    chunkEvent.put("keyNum", keyNum);
-                                    chunkEvent.put("totalSoFar", allKeys.size());
-                                    chunkEvent.put("isMore", isMore);
-                                    callback.onChunk(chunkEvent);
+                                    // Convert single key to Map and keep it for the snapshot
+                                    final Map<String, Object> keyMap = LockKeyResultMapper.toMap(body);
+                                    changed.add(keyMap);
+
+                                    // Emit chunk event with this single key; a parked chunk
+                                    // holds only the key, the event is built when it goes out
+                                    final int soFar = changed.size();
+                                    final boolean more = isMore;
+                                    gate.acquire(() -> {
+                                        Map<String, Object> chunkEvent = new HashMap<>();
+                                        chunkEvent.put("type", "syncLockKeyChunk");
+                                        chunkEvent.put("streamId", gate.getId());
+                                        chunkEvent.put("item", keyMap);
+                                        chunkEvent.put("keyNum", keyNum);
+                                        chunkEvent.put("totalSoFar", soFar);
+                                        chunkEvent.put("isMore", more);
+                                        callback.onChunk(chunkEvent);
+                                    });
                                 }
                                 
                                 // If isMore is false, this is the last key - close stream now
@@ -1440,22 +1702,26 @@ public class BleLockManager {
                                     }
                                     streamClosed[0] = true;
                                     
-                                    Log.d(TAG, "isMore=false detected - closing stream with " + allKeys.size() + " keys");
+                                    Log.d(TAG, "isMore=false detected - closing stream with " + changed.size() + " keys");
                                     
-                                    // Emit done event immediately
-                                    Map<String, Object> doneEvent = new HashMap<>();
+                                    // Emit done event once every held chunk went out, with
+                                    // the full merged key list (bounded by the lock's capacity)
+                                    List<Map<String, Object>> merged = delta.commit(changed);
+                                    final Map<String, Object> doneEvent = new HashMap<>();
                                     doneEvent.put("type", "syncLockKeyDone");
-                                    doneEvent.put("items", allKeys);
-                                    doneEvent.put("total", allKeys.size());
-                                    callback.onDone(doneEvent);
-                                    
-                                    // Safely disconnect BLE
-                                    try {
-                                        bleClient.disConnectBle(null);
-                                        Log.d(TAG, "BLE disconnected after isMore=false");
-                                    } catch (Throwable disconnectError) {
-                                        Log.e(TAG, "Error disconnecting BLE", disconnectError);
-                                    }
+                                    doneEvent.put("streamId", gate.getId());
+                                    doneEvent.put("items", merged);
+                                    doneEvent.put("total", merged.size());
+                                    doneEvent.put("changed", changed.size());
+                                    doneEvent.put("lastSyncTimestamp", delta.getLastSyncTimestamp());
+                                    doneEvent.put("fullSync", delta.isFull());
+                                    changed.clear();
+                                    // The lock is finished; held chunks need no link
+                                    ticket.done();
+                                    gate.after(() -> {
+                                        gate.close();
+                                        callback.onDone(doneEvent);
+                                    });
                                     return;
                                 }
                             }
@@ -1472,17 +1738,12 @@ public class BleLockManager {
                             
                             Map<String, Object> errorEvent = new HashMap<>();
                             errorEvent.put("type", "syncLockKeyError");
+                            errorEvent.put("streamId", gate.getId());
                             errorEvent.put("message", ackMessageForCode(response.code()));
                             errorEvent.put("code", response.code());
+                            gate.close();
                             callback.onError(errorEvent);
-                            
-                            // Safely disconnect BLE after error
-                            try {
-                                bleClient.disConnectBle(null);
-                                Log.d(TAG, "BLE disconnected after error response");
-                            } catch (Throwable disconnectError) {
-                                Log.e(TAG, "Error disconnecting BLE after error response", disconnectError);
-                            }
+                            ticket.done();
                         }
                     } catch (Throwable t) {
                         Log.e(TAG, "Exception in syncLockKeyStream onResponse", t);
@@ -1492,17 +1753,12 @@ public class BleLockManager {
                             
                             Map<String, Object> errorEvent = new HashMap<>();
                             errorEvent.put("type", "syncLockKeyError");
+                            errorEvent.put("streamId", gate.getId());
                             errorEvent.put("message", "Internal error: " + t.getMessage());
                             errorEvent.put("code", -1);
+                            gate.close();
                             callback.onError(errorEvent);
-                            
-                            // Safely disconnect BLE after exception
-                            try {
-                                bleClient.disConnectBle(null);
-                                Log.d(TAG, "BLE disconnected after exception");
-                            } catch (Throwable disconnectError) {
-                                Log.e(TAG, "Error disconnecting BLE after exception", disconnectError);
-                            }
+                            ticket.done();
                         } else {
                             Log.d(TAG, "Exception occurred but stream already closed, not emitting error");
                         }
@@ -1511,7 +1767,7 @@ public class BleLockManager {
 
                 @Override
                 public void onFailure(Throwable t) {
-                    if (streamClosed[0]) { // Don't emit if already closed
+                    if (streamClosed[0] || ticket.isDone()) { // Don't emit if already closed
                         Log.d(TAG, "Ignoring failure - stream already closed");
                         return;
                     }
@@ -1520,26 +1776,24 @@ public class BleLockManager {
                     Log.e(TAG, "syncLockKeyStream failed", t);
                     Map<String, Object> errorEvent = new HashMap<>();
                     errorEvent.put("type", "syncLockKeyError");
+                    errorEvent.put("streamId", gate.getId());
                     errorEvent.put("message", t.getMessage() != null ? t.getMessage() : "Unknown error");
                     errorEvent.put("code", -1);
+                    gate.close();
                     callback.onError(errorEvent);
-                    
-                    // Safely disconnect BLE after failure
-                    try {
-                        bleClient.disConnectBle(null);
-                        Log.d(TAG, "BLE disconnected after failure");
-                    } catch (Throwable disconnectError) {
-                        Log.e(TAG, "Error disconnecting BLE after failure", disconnectError);
-                    }
+                    ticket.done();
                 }
             });
         } catch (Throwable t) {
             Log.e(TAG, "Exception calling syncLockKeyStream", t);
             Map<String, Object> errorEvent = new HashMap<>();
             errorEvent.put("type", "syncLockKeyError");
+            errorEvent.put("streamId", gate.getId());
             errorEvent.put("message", "Failed to start sync: " + (t.getMessage() != null ? t.getMessage() : "Unknown error"));
             errorEvent.put("code", -1);
+            gate.close();
             callback.onError(errorEvent);
+            ticket.done();
         }
     }
 
@@ -1548,10 +1802,14 @@ public class BleLockManager {
      * Expects `args` to contain auth fields used by PluginUtils.createAuthAction.
      */
     public void syncLockTime(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "syncLockTime", result, r -> doSyncLockTime(args, r));
+    }
+
+    void doSyncLockTime(Map<String, Object> args, final Result result) {
         Log.d(TAG, "syncLockTime called with args: " + args);
         try {
             BlinkyAction action = new BlinkyAction();
-            action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+            action.setBaseAuthAction(sessions.authFor(args));
 
             bleClient.syncLockTime(action, new FunCallback<Object>() {
                 @Override
@@ -1586,10 +1844,14 @@ public class BleLockManager {
      * Retrieve system parameters (SysParamResult) from the lock.
      */
     public void getSysParam(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "getSysParam", result, r -> doGetSysParam(args, r));
+    }
+
+    void doGetSysParam(Map<String, Object> args, final Result result) {
         Log.d(TAG, "getSysParam called with args: " + args);
         try {
             BlinkyAction action = new BlinkyAction();
-            action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+            action.setBaseAuthAction(sessions.authFor(args));
 
             bleClient.getSysParam(action, new FunCallback<SysParamResult>() {
                 @Override
@@ -1630,10 +1892,37 @@ public class BleLockManager {
      * Useful when native may emit interim updates.
      */
     public void getSysParamStream(Map<String, Object> args, final SysParamStreamCallback callback) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "getSysParamStream", BleCommandScheduler.DEFAULT_TIMEOUT_MS,
+                ticket -> doGetSysParamStream(args, new SysParamStreamCallback() {
+                    @Override
+                    public void onData(Map<String, Object> event) {
+                        if (ticket.isDone()) return;
+                        ticket.touch();
+                        callback.onData(event);
+                    }
+
+                    @Override
+                    public void onDone(Map<String, Object> event) {
+                        if (ticket.isDone()) return;
+                        callback.onDone(event);
+                        ticket.done();
+                    }
+
+                    @Override
+                    public void onError(Map<String, Object> event) {
+                        if (ticket.isDone()) return;
+                        callback.onError(event);
+                        ticket.done();
+                    }
+                }),
+                () -> callback.onError(streamTimeoutEvent("sysParamError", "getSysParamStream")));
+    }
+
+    private void doGetSysParamStream(Map<String, Object> args, final SysParamStreamCallback callback) {
         Log.d(TAG, "getSysParamStream called with args: " + args);
         try {
             BlinkyAction action = new BlinkyAction();
-            action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+            action.setBaseAuthAction(sessions.authFor(args));
 
             bleClient.getSysParam(action, new FunCallback<SysParamResult>() {
                 @Override
@@ -1689,10 +1978,14 @@ public class BleLockManager {
      * is forwarded through the shared EventChannel as a "setSysParamResult" event.
      */
     public void setSysParam(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "setSysParam", result, r -> doSetSysParam(args, r));
+    }
+
+    void doSetSysParam(Map<String, Object> args, final Result result) {
         Log.d(TAG, "setSysParam called with args: " + args);
         try {
             SetSysParamAction action = new SetSysParamAction();
-            action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+            action.setBaseAuthAction(sessions.authFor(args));
 
             // Map optional fields — each field is only applied when non-null / present
             if (args.containsKey("lockOpen"))            action.setLockOpen(parseInt(args.get("lockOpen"), 0));
@@ -1751,10 +2044,14 @@ public class BleLockManager {
      * - validNumber != 0 -> enable
      */
     public void enableDisableKeyByType(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "enableDisableKeyByType", result, r -> doEnableDisableKeyByType(args, r));
+    }
+
+    void doEnableDisableKeyByType(Map<String, Object> args, final Result result) {
         Log.d(TAG, "[BleLockManager] enableDisableKeyByType called with args: " + args);
         try {
             EnableLockKeyAction action = new EnableLockKeyAction();
-            action.setBaseAuthAction(PluginUtils.createAuthAction(args));
+            action.setBaseAuthAction(sessions.authFor(args));
 
             // Extract parameters from args
             int operationMod = getSafe("operationMod", () -> (Integer) args.get("operationMod"), 2);
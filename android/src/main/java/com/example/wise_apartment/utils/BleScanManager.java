@@ -1,33 +1,169 @@
 package com.example.wise_apartment.utils;
 
 import android.content.Context;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import io.flutter.plugin.common.MethodChannel.Result;
 import com.example.hxjblinklibrary.blinkble.scanner.HxjBluetoothDevice;
 import com.example.hxjblinklibrary.blinkble.scanner.HxjScanCallback;
 import com.example.hxjblinklibrary.blinkble.scanner.HxjScanner;
 
+/**
+ * BLE scanning through the vendor HxjScanner (one scan at a time).
+ *
+ * {@link #startScan} answers once, with every device, after the timeout.
+ * {@link #startScanStream} instead reports each device the first time it
+ * is seen and again when its RSSI moves by {@code rssiDelta} dBm or one of
+ * its flags changes, then ends with a scanDone event. A stream scan is
+ * stopped by its timeout, {@link #stopScan}, cancelStream or a newer scan.
+ *
+ * {@link #scanFor} looks for known locks only: devices are filtered by MAC
+ * or name here, and the reply goes out as soon as every wanted MAC was
+ * seen, or {@code settleMs} after the first match (so the strongest of
+ * several candidates can show up), instead of at the timeout.
+ */
 public class BleScanManager {
     private static final String TAG = "BleScanManager";
+    static final int DEFAULT_TIMEOUT_MS = 10000;
+    static final int DEFAULT_RSSI_DELTA = 5;
+    static final int DEFAULT_SETTLE_MS = 300;
     private final Context context;
+    // Stream ids and cancelStream for scan streams
+    private final StreamFlowControl flow;
+    // Every sighting of every scan lands here
+    private final NearbyLockRegistry nearby;
+    // Guarded by this
+    private ScanStream activeStream;
+    // Guarded by this
+    private TargetScan activeTarget;
 
-    public BleScanManager(Context context) {
+    /**
+     * Callback interface for streaming scan events.
+     */
+    public interface ScanStreamCallback {
+        void onDevice(Map<String, Object> event);
+        void onDone(Map<String, Object> event);
+    }
+
+    private static final class ScanStream {
+        final StreamFlowControl.Gate gate;
+        final ScanStreamCallback callback;
+        final int rssiDelta;
+        final long startedAt = System.currentTimeMillis();
+        // mac -> last device map sent to Dart
+        final Map<String, Map<String, Object>> devices = new LinkedHashMap<>();
+        boolean finished;
+
+        ScanStream(StreamFlowControl.Gate gate, ScanStreamCallback callback, int rssiDelta) {
+            this.gate = gate;
+            this.callback = callback;
+            this.rssiDelta = rssiDelta;
+        }
+    }
+
+    /** What one scanFor call looks for, and what it found so far. */
+    static final class ScanTarget {
+        private final Set<String> macs = new HashSet<>();
+        private final List<String> names = new ArrayList<>();
+        // mac -> strongest sighting
+        private final Map<String, Map<String, Object>> found = new LinkedHashMap<>();
+
+        ScanTarget(List<?> macs, List<?> names) {
+            if (macs != null) {
+                for (Object m : macs) if (m instanceof String) this.macs.add(normalizeMac((String) m));
+            }
+            if (names != null) {
+                for (Object n : names) if (n instanceof String && !((String) n).isEmpty()) this.names.add(((String) n).toLowerCase(Locale.US));
+            }
+        }
+
+        boolean isEmpty() {
+            return macs.isEmpty() && names.isEmpty();
+        }
+
+        boolean matches(Map<String, Object> device) {
+            Object mac = device.get("mac");
+            if (mac instanceof String && macs.contains(normalizeMac((String) mac))) return true;
+            Object name = device.get("name");
+            if (!(name instanceof String)) return false;
+            String lower = ((String) name).toLowerCase(Locale.US);
+            for (String n : names) if (lower.contains(n)) return true;
+            return false;
+        }
+
+        /** Keep {@code device} if it matches; true when it did. */
+        boolean offer(Map<String, Object> device) {
+            if (!matches(device)) return false;
+            String mac = normalizeMac((String) device.get("mac"));
+            Map<String, Object> best = found.get(mac);
+            if (best == null || rssiOf(device) > rssiOf(best)) found.put(mac, device);
+            return true;
+        }
+
+        /** Every wanted MAC was seen and no open-ended name filter is set. */
+        boolean allFound() {
+            return names.isEmpty() && !macs.isEmpty() && found.keySet().containsAll(macs);
+        }
+
+        List<String> missing() {
+            List<String> out = new ArrayList<>();
+            for (String m : macs) if (!found.containsKey(m)) out.add(m);
+            return out;
+        }
+
+        /** Matches, strongest signal first. */
+        List<Map<String, Object>> results() {
+            List<Map<String, Object>> out = new ArrayList<>(found.values());
+            Collections.sort(out, (a, b) -> Integer.compare(rssiOf(b), rssiOf(a)));
+            return out;
+        }
+
+        private static int rssiOf(Map<String, Object> device) {
+            Object v = device.get("rssi");
+            return v instanceof Number ? ((Number) v).intValue() : Integer.MIN_VALUE;
+        }
+    }
+
+    private static final class TargetScan {
+        final ScanTarget target;
+        final Result result;
+        final long startedAt = System.currentTimeMillis();
+        boolean settling;
+        boolean finished;
+
+        TargetScan(ScanTarget target, Result result) {
+            this.target = target;
+            this.result = result;
+        }
+    }
+
+    public BleScanManager(Context context, StreamFlowControl flow, NearbyLockRegistry nearby) {
         this.context = context;
+        this.flow = flow;
+        this.nearby = nearby;
+    }
+
+    public NearbyLockRegistry getNearbyLocks() {
+        return nearby;
     }
 
     public void startScan(Integer timeout, final Result result) {
-        if (timeout == null) timeout = 10000;
+        if (timeout == null) timeout = DEFAULT_TIMEOUT_MS;
         Log.d(TAG, "Starting scan with timeout: " + timeout);
+        finishStream(null, "replaced");
+        finishTarget(null, "replaced");
 
         final Map<String, Map<String, Object>> uniqueDevices = new HashMap<>(); // Using map to deduce duplicates by MAC
 
@@ -35,29 +171,9 @@ public class BleScanManager {
             @Override
             public void onHxjScanResults(@NonNull List<HxjBluetoothDevice> results) {
                 for (HxjBluetoothDevice device : results) {
-                    Map<String, Object> d = new HashMap<>();
-                    // Basic identifiers
-                    String mac = null;
-                    try {
-                        mac = device.getMac();
-                    } catch (Exception ignored) {}
-                    d.put("mac", mac != null ? mac : device.getAddress());
-                    d.put("address", device.getAddress());
-                    d.put("name", device.getName());
-                    d.put("rssi", device.getRssi());
-
-                    // Additional properties from HxjBluetoothDevice
-                    try { d.put("chipType", device.getChipType()); } catch (Exception ignored) {}
-                    try { d.put("lockType", device.getLockType()); } catch (Exception ignored) {}
-                    try { d.put("isPaired", device.isPaired()); } catch (Exception ignored) {}
-                    try { d.put("isDiscoverable", device.isDiscoverable()); } catch (Exception ignored) {}
-                    try { d.put("isNewProtocol", device.isNewProtocol()); } catch (Exception ignored) {}
-                    try { d.put("hasLockEvent", device.isHasLockEvent()); } catch (Exception ignored) {}
-                    try { d.put("isSupported", device.isSupported()); } catch (Exception ignored) {}
-                    try { d.put("settedMac", device.isSettedMac()); } catch (Exception ignored) {}
-                    try { d.put("isSupportReSetMac", device.isSupportReSetMac()); } catch (Exception ignored) {}
-
-                    uniqueDevices.put(mac != null ? mac : device.getAddress(), d);
+                    Map<String, Object> d = deviceToMap(device);
+                    nearby.update(d);
+                    uniqueDevices.put((String) d.get("mac"), d);
                 }
             }
             
@@ -68,7 +184,7 @@ public class BleScanManager {
         });
 
         // Return results after timeout
-        new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
+        MainThreadDispatcher.get().postDelayed(new Runnable() {
             @Override
             public void run() {
                 HxjScanner.getInstance().stopScan();
@@ -83,9 +199,264 @@ public class BleScanManager {
         }, timeout);
     }
 
+    /**
+     * Start a scan whose devices are reported as they are seen.
+     * {@code args} may hold timeoutMs, rssiDelta and streamId; returns the
+     * stream id carried by every event of this scan.
+     */
+    public String startScanStream(Map<String, Object> args, ScanStreamCallback callback) {
+        int timeout = intArg(args, "timeoutMs", DEFAULT_TIMEOUT_MS);
+        int rssiDelta = intArg(args, "rssiDelta", DEFAULT_RSSI_DELTA);
+        final ScanStream stream = new ScanStream(flow.open(flow.idFor(args), null), callback, rssiDelta);
+        Log.d(TAG, "Starting scan stream " + stream.gate.getId() + " with timeout: " + timeout);
+        finishStream(null, "replaced");
+        finishTarget(null, "replaced");
+        synchronized (this) {
+            activeStream = stream;
+        }
+        stream.gate.onCancel(() -> finishStream(stream, "cancelled"));
+
+        HxjScanner.getInstance().startScan(timeout, context, new HxjScanCallback() {
+            @Override
+            public void onHxjScanResults(@NonNull List<HxjBluetoothDevice> results) {
+                for (HxjBluetoothDevice device : results) {
+                    Map<String, Object> d = deviceToMap(device);
+                    nearby.update(d);
+                    onStreamDevice(stream, d);
+                }
+            }
+
+            @Override
+            public void onScanFailed(int code) {
+                Log.e(TAG, "Scan stream failed code: " + code);
+                Map<String, Object> extra = new HashMap<>();
+                extra.put("code", code);
+                finishStream(stream, "failed", extra);
+            }
+        });
+        MainThreadDispatcher.get().postDelayed(() -> finishStream(stream, "timeout"), timeout);
+        return stream.gate.getId();
+    }
+
+    private void onStreamDevice(ScanStream stream, Map<String, Object> device) {
+        String type;
+        synchronized (this) {
+            if (stream.finished) return;
+            String mac = (String) device.get("mac");
+            Map<String, Object> previous = stream.devices.get(mac);
+            if (previous == null) {
+                type = "scanDeviceFound";
+            } else if (isUpdate(previous, device, stream.rssiDelta)) {
+                type = "scanDeviceUpdated";
+            } else {
+                return;
+            }
+            stream.devices.put(mac, device);
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", type);
+        event.put("streamId", stream.gate.getId());
+        event.put("device", device);
+        event.put("elapsedMs", System.currentTimeMillis() - stream.startedAt);
+        stream.callback.onDevice(event);
+    }
+
+    /** True when {@code next} differs from what Dart last saw enough to send again. */
+    static boolean isUpdate(Map<String, Object> last, Map<String, Object> next, int rssiDelta) {
+        Object a = last.get("rssi");
+        Object b = next.get("rssi");
+        if (a instanceof Number && b instanceof Number
+                && Math.abs(((Number) a).intValue() - ((Number) b).intValue()) >= rssiDelta) {
+            return true;
+        }
+        for (Map.Entry<String, Object> e : next.entrySet()) {
+            if ("rssi".equals(e.getKey())) continue;
+            Object old = last.get(e.getKey());
+            if (old == null ? e.getValue() != null : !old.equals(e.getValue())) return true;
+        }
+        return false;
+    }
+
+    private void finishStream(ScanStream stream, String reason) {
+        finishStream(stream, reason, null);
+    }
+
+    /** End {@code stream} (or the active one when null) once, with a scanDone event. */
+    private void finishStream(ScanStream stream, String reason, Map<String, Object> extra) {
+        List<Map<String, Object>> devices;
+        synchronized (this) {
+            if (stream == null) stream = activeStream;
+            if (stream == null || stream.finished) return;
+            stream.finished = true;
+            if (activeStream == stream) activeStream = null;
+            devices = new ArrayList<>(stream.devices.values());
+        }
+        // A newer scan has already taken the scanner over
+        if (!"replaced".equals(reason)) HxjScanner.getInstance().stopScan();
+        stream.gate.close();
+        Log.d(TAG, "Scan stream " + stream.gate.getId() + " " + reason + ", found " + devices.size() + " devices");
+        Map<String, Object> event = new HashMap<>();
+        if (extra != null) event.putAll(extra);
+        event.put("type", "scanDone");
+        event.put("streamId", stream.gate.getId());
+        event.put("reason", reason);
+        event.put("devices", devices);
+        event.put("total", devices.size());
+        event.put("elapsedMs", System.currentTimeMillis() - stream.startedAt);
+        stream.callback.onDone(event);
+    }
+
     public void stopScan(final Result result) {
         Log.d(TAG, "Stopping scan");
         HxjScanner.getInstance().stopScan();
+        finishStream(null, "stopped");
+        finishTarget(null, "stopped");
         result.success(true);
     }
+
+    /**
+     * Scan for specific locks. {@code args}: macs and/or names (a name
+     * matches when it contains one of them, ignoring case), timeoutMs,
+     * settleMs, and maxAgeMs: when every wanted MAC is in the nearby-lock
+     * registry and no older than that, reply from it without scanning.
+     * Replies with {devices (strongest first), found, missing, reason,
+     * elapsedMs}; reason is allFound, settled, timeout, cached, stopped,
+     * replaced or failed.
+     */
+    public void scanFor(Map<String, Object> args, final Result result) {
+        final ScanTarget target = new ScanTarget(listArg(args, "macs"), listArg(args, "names"));
+        if (target.isEmpty()) {
+            result.error("INVALID_ARGS", "macs or names is required", null);
+            return;
+        }
+        int timeout = intArg(args, "timeoutMs", DEFAULT_TIMEOUT_MS);
+        final int settleMs = intArg(args, "settleMs", DEFAULT_SETTLE_MS);
+        final TargetScan scan = new TargetScan(target, result);
+
+        Object maxAge = args.get("maxAgeMs");
+        if (maxAge instanceof Number) {
+            for (Map<String, Object> seen : nearby.list(((Number) maxAge).longValue())) target.offer(seen);
+            if (target.allFound()) {
+                scan.finished = true;
+                replyTarget(scan, "cached");
+                return;
+            }
+            // Start the real scan from scratch; stale cached RSSIs would skew "best"
+            target.found.clear();
+        }
+
+        Log.d(TAG, "scanFor " + args.get("macs") + " / " + args.get("names") + " with timeout: " + timeout);
+        finishStream(null, "replaced");
+        finishTarget(null, "replaced");
+        synchronized (this) {
+            activeTarget = scan;
+        }
+        HxjScanner.getInstance().startScan(timeout, context, new HxjScanCallback() {
+            @Override
+            public void onHxjScanResults(@NonNull List<HxjBluetoothDevice> results) {
+                boolean startSettle = false;
+                boolean done = false;
+                synchronized (BleScanManager.this) {
+                    if (scan.finished) return;
+                    for (HxjBluetoothDevice device : results) {
+                        Map<String, Object> d = deviceToMap(device);
+                        nearby.update(d);
+                        if (!target.offer(d)) continue;
+                        if (!scan.settling) {
+                            scan.settling = true;
+                            startSettle = true;
+                        }
+                    }
+                    done = target.allFound();
+                }
+                if (done) {
+                    finishTarget(scan, "allFound");
+                } else if (startSettle) {
+                    MainThreadDispatcher.get().postDelayed(() -> finishTarget(scan, "settled"), settleMs);
+                }
+            }
+
+            @Override
+            public void onScanFailed(int code) {
+                Log.e(TAG, "scanFor failed code: " + code);
+                finishTarget(scan, "failed");
+            }
+        });
+        MainThreadDispatcher.get().postDelayed(() -> finishTarget(scan, "timeout"), timeout);
+    }
+
+    /** End {@code scan} (or the active one when null) once and reply. */
+    private void finishTarget(TargetScan scan, String reason) {
+        synchronized (this) {
+            if (scan == null) scan = activeTarget;
+            if (scan == null || scan.finished) return;
+            scan.finished = true;
+            if (activeTarget == scan) activeTarget = null;
+        }
+        if (!"replaced".equals(reason)) HxjScanner.getInstance().stopScan();
+        replyTarget(scan, reason);
+    }
+
+    private void replyTarget(TargetScan scan, String reason) {
+        List<Map<String, Object>> devices;
+        List<String> missing;
+        synchronized (this) {
+            devices = scan.target.results();
+            missing = scan.target.missing();
+        }
+        Log.d(TAG, "scanFor " + reason + ", matched " + devices.size() + " devices");
+        Map<String, Object> reply = new HashMap<>();
+        reply.put("devices", devices);
+        reply.put("found", !devices.isEmpty());
+        reply.put("missing", missing);
+        reply.put("reason", reason);
+        reply.put("elapsedMs", System.currentTimeMillis() - scan.startedAt);
+        try {
+            scan.result.success(reply);
+        } catch (Exception e) {
+            Log.w(TAG, "Could not send scanFor result (maybe channel closed)", e);
+        }
+    }
+
+    /** Map of one scan result as sent to Dart, keyed by "mac". */
+    static Map<String, Object> deviceToMap(HxjBluetoothDevice device) {
+        Map<String, Object> d = new HashMap<>();
+        // Basic identifiers
+        String mac = null;
+        try {
+            mac = device.getMac();
+        } catch (Exception ignored) {}
+        d.put("mac", mac != null ? mac : device.getAddress());
+        d.put("address", device.getAddress());
+        d.put("name", device.getName());
+        d.put("rssi", device.getRssi());
+
+        // Additional properties from HxjBluetoothDevice
+        try { d.put("chipType", device.getChipType()); } catch (Exception ignored) {}
+        try { d.put("lockType", device.getLockType()); } catch (Exception ignored) {}
+        try { d.put("isPaired", device.isPaired()); } catch (Exception ignored) {}
+        try { d.put("isDiscoverable", device.isDiscoverable()); } catch (Exception ignored) {}
+        try { d.put("isNewProtocol", device.isNewProtocol()); } catch (Exception ignored) {}
+        try { d.put("hasLockEvent", device.isHasLockEvent()); } catch (Exception ignored) {}
+        try { d.put("isSupported", device.isSupported()); } catch (Exception ignored) {}
+        try { d.put("settedMac", device.isSettedMac()); } catch (Exception ignored) {}
+        try { d.put("isSupportReSetMac", device.isSupportReSetMac()); } catch (Exception ignored) {}
+        return d;
+    }
+
+    static String normalizeMac(String mac) {
+        return mac.trim().toUpperCase(Locale.US);
+    }
+
+    private static List<?> listArg(Map<String, Object> args, String name) {
+        Object v = args == null ? null : args.get(name);
+        if (v instanceof List) return (List<?>) v;
+        if (v instanceof String) return Collections.singletonList(v);
+        return null;
+    }
+
+    private static int intArg(Map<String, Object> args, String name, int fallback) {
+        Object v = args == null ? null : args.get(name);
+        return v instanceof Number ? ((Number) v).intValue() : fallback;
+    }
 }
@@ -0,0 +1,255 @@
+package com.example.wise_apartment.utils;
+
+import android.util.Log;
+
+import com.example.hxjblinklibrary.blinkble.entity.Response;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.BlinkyAuthAction;
+import com.example.hxjblinklibrary.blinkble.profile.client.FunCallback;
+import com.example.hxjblinklibrary.blinkble.profile.client.HxjBleClient;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an authenticated link warm per lock MAC between scheduled commands.
+ *
+ * Managers no longer disconnect after every operation. Instead, once the
+ * last queued command for a lock finishes, an idle timer starts; if no new
+ * command for that lock arrives before it fires, the link is dropped via a
+ * scheduled {@code idleDisconnect} command, which gives the queue back
+ * when the SDK confirms the disconnect or after
+ * {@link #DISCONNECT_RELEASE_MS}, whichever comes first. Link loss reported by the SDK
+ * ends the session immediately. An idle timeout of 0 disconnects right
+ * after each command, which is the behaviour before sessions existed.
+ *
+ * The BlinkyAuthAction is cached per MAC and reused as long as the auth
+ * fields coming from Dart do not change.
+ */
+public class BleSessionManager implements BleCommandScheduler.Listener {
+    private static final String TAG = "BleSessionManager";
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 10 * 1000;
+    static final String IDLE_DISCONNECT = "idleDisconnect";
+    // The link is gone or going once disConnectBle is called; do not hold
+    // the queue for the SDK's callback longer than this.
+    static final long DISCONNECT_RELEASE_MS = 2000;
+
+    private final HxjBleClient bleClient;
+    private final BleCommandScheduler scheduler;
+    private final ScheduledExecutorService timer;
+    private final Map<String, Session> sessions = new HashMap<>();
+    private long idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+
+    // Metrics, guarded by this
+    private long warmStarts;
+    private long coldStarts;
+    private long idleDisconnects;
+    private long linkLosses;
+
+    private static final class Session {
+        final String mac;
+        String authKey;
+        BlinkyAuthAction auth;
+        boolean linked;
+        int generation;
+        long lastUsedAt;
+        ScheduledFuture<?> idleTimer;
+
+        Session(String mac) {
+            this.mac = mac;
+        }
+    }
+
+    public BleSessionManager(HxjBleClient client, BleCommandScheduler scheduler) {
+        this.bleClient = client;
+        this.scheduler = scheduler;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ble-session-idle");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.addListener(this);
+    }
+
+    public synchronized void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = Math.max(0, idleTimeoutMs);
+    }
+
+    public synchronized long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    /**
+     * Auth action for the lock in {@code args}. Returns the cached instance
+     * when the auth fields match the previous call for the same MAC so the
+     * SDK sees the same session object across operations.
+     */
+    public BlinkyAuthAction authFor(Map<String, Object> args) {
+        BlinkyAuthAction fresh = PluginUtils.createAuthAction(args);
+        String mac = normalize(fresh.getMac());
+        if (mac.isEmpty()) return fresh;
+        String key = fresh.getAuthCode() + "|" + fresh.getDnaKey() + "|" + fresh.getKeyGroupId() + "|" + fresh.getBleProtocolVer()
+                + "|" + (args == null ? null : args.get("secureAuth"));
+        synchronized (this) {
+            Session s = session(mac);
+            if (s.auth != null && key.equals(s.authKey)) {
+                return s.auth;
+            }
+            s.authKey = key;
+            s.auth = fresh;
+            return fresh;
+        }
+    }
+
+    @Override
+    public void onCommandStart(String mac, String name) {
+        if (IDLE_DISCONNECT.equals(name)) return;
+        synchronized (this) {
+            // Only one GATT link exists; a command for another lock moves it.
+            for (Session other : sessions.values()) {
+                if (!other.mac.equals(mac) && other.linked) {
+                    cancelIdle(other);
+                    other.linked = false;
+                }
+            }
+            if (mac.isEmpty()) return;
+            Session s = session(mac);
+            cancelIdle(s);
+            s.generation++;
+            if (s.linked) warmStarts++;
+            else coldStarts++;
+            s.linked = true;
+        }
+    }
+
+    @Override
+    public void onCommandEnd(String mac, String name, boolean timedOut) {
+        if (IDLE_DISCONNECT.equals(name) || mac.isEmpty()) return;
+        synchronized (this) {
+            Session s = sessions.get(mac);
+            if (s == null || !s.linked) return;
+            s.lastUsedAt = System.currentTimeMillis();
+            // Link state is unknown after a timeout, so do not keep it around.
+            long delay = timedOut ? 0 : idleTimeoutMs;
+            final int generation = s.generation;
+            cancelIdle(s);
+            s.idleTimer = timer.schedule(() -> disconnectIfIdle(mac, generation), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void disconnectIfIdle(final String mac, final int generation) {
+        scheduler.submit(mac, IDLE_DISCONNECT, BleCommandScheduler.DEFAULT_TIMEOUT_MS, ticket -> {
+            synchronized (this) {
+                Session s = sessions.get(mac);
+                // A newer command used the link, or one is queued right behind us.
+                if (s == null || !s.linked || s.generation != generation || scheduler.getQueueDepth(mac) > 0) {
+                    ticket.done();
+                    return;
+                }
+                s.linked = false;
+                idleDisconnects++;
+            }
+            Log.d(TAG, "Idle timeout, disconnecting " + mac);
+            ScheduledFuture<?> release = null;
+            try {
+                release = timer.schedule(ticket::done, DISCONNECT_RELEASE_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shut down; the callback or the scheduler's timeout releases it
+            }
+            final ScheduledFuture<?> releaseTimer = release;
+            try {
+                bleClient.disConnectBle(new FunCallback() {
+                    @Override
+                    public void onResponse(Response response) {
+                        released(ticket, releaseTimer);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        Log.w(TAG, "Idle disconnect failed for " + mac, t);
+                        released(ticket, releaseTimer);
+                    }
+                });
+            } catch (Throwable t) {
+                Log.w(TAG, "Idle disconnect failed for " + mac, t);
+                released(ticket, releaseTimer);
+            }
+        }, null);
+    }
+
+    private static void released(BleCommandScheduler.Ticket ticket, ScheduledFuture<?> releaseTimer) {
+        if (releaseTimer != null) releaseTimer.cancel(false);
+        ticket.done();
+    }
+
+    /** Called from the plugin's LinkCallBack on link loss or disconnect. */
+    public void onLinkLost(String address) {
+        String mac = normalize(address);
+        synchronized (this) {
+            Session s = sessions.get(mac);
+            if (s == null || !s.linked) return;
+            cancelIdle(s);
+            s.linked = false;
+            linkLosses++;
+        }
+        Log.d(TAG, "Session ended by link loss: " + mac);
+    }
+
+    /** Drop the cached session and auth for a lock, e.g. after deleteLock. */
+    public synchronized void forget(String mac) {
+        Session s = sessions.remove(normalize(mac));
+        if (s != null) cancelIdle(s);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("idleTimeoutMs", idleTimeoutMs);
+        m.put("warmStarts", warmStarts);
+        m.put("coldStarts", coldStarts);
+        m.put("idleDisconnects", idleDisconnects);
+        m.put("linkLosses", linkLosses);
+        Map<String, Object> locks = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (Session s : sessions.values()) {
+            Map<String, Object> l = new HashMap<>();
+            l.put("linked", s.linked);
+            l.put("idleMs", s.lastUsedAt == 0 ? null : now - s.lastUsedAt);
+            locks.put(s.mac, l);
+        }
+        m.put("locks", locks);
+        return m;
+    }
+
+    public void shutdown() {
+        scheduler.removeListener(this);
+        timer.shutdownNow();
+    }
+
+    // Caller holds this.
+    private Session session(String mac) {
+        Session s = sessions.get(mac);
+        if (s == null) {
+            s = new Session(mac);
+            sessions.put(mac, s);
+        }
+        return s;
+    }
+
+    // Caller holds this.
+    private void cancelIdle(Session s) {
+        if (s.idleTimer != null) {
+            s.idleTimer.cancel(false);
+            s.idleTimer = null;
+        }
+    }
+
+    private static String normalize(String mac) {
+        return mac == null ? "" : mac.trim().toUpperCase(Locale.US);
+    }
+}
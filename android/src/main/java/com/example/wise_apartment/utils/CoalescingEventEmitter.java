@@ -0,0 +1,222 @@
+package com.example.wise_apartment.utils;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * Delivers stream events to the EventChannel sink, merging bursts of chunk
+ * events into one platform message.
+ *
+ * {@link #emit} buffers the event. The buffer is flushed once no new event
+ * arrived for {@code windowMs}, once the oldest buffered event has waited
+ * {@code maxLatencyMs}, or once {@code maxBatch} events are buffered. A
+ * flush of several events sends {@code {type: "batch", events: [...],
+ * merged: n}}, which the Dart side unpacks; a flush of one event sends it
+ * unchanged. {@link #emitNow} and {@link #emitError} (done / error events)
+ * flush whatever is buffered first, so ordering is preserved. A window of 0
+ * turns coalescing off.
+ *
+ * Everything reaches the sink on the main thread through the poster.
+ * After {@link #shutdown} buffered and new events are dropped.
+ */
+public class CoalescingEventEmitter {
+    public static final String BATCH_TYPE = "batch";
+
+    public static final long DEFAULT_WINDOW_MS = 16;
+    public static final long DEFAULT_MAX_LATENCY_MS = 50;
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    /** Main-thread poster; the {@link MainThreadDispatcher} in production. */
+    public interface Poster {
+        void post(Runnable r);
+        void postDelayed(Runnable r, long delayMs);
+    }
+
+    /** Current sink, or null while Dart is not listening. */
+    public interface SinkProvider {
+        EventChannel.EventSink get();
+    }
+
+    interface Clock {
+        long nowMs();
+    }
+
+    private final Poster poster;
+    private final SinkProvider sinks;
+    private final Clock clock;
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private long windowMs = DEFAULT_WINDOW_MS;
+    private long maxLatencyMs = DEFAULT_MAX_LATENCY_MS;
+    private int maxBatch = DEFAULT_MAX_BATCH;
+    private List<Map<String, Object>> pending = new ArrayList<>();
+    private long firstAt;
+    private long lastAt;
+    private boolean flushScheduled;
+    private boolean shutdown;
+    private long events;
+    private long messages;
+    private long merged;
+
+    public CoalescingEventEmitter(Poster poster, SinkProvider sinks) {
+        this(poster, sinks, SystemClock::uptimeMillis);
+    }
+
+    CoalescingEventEmitter(Poster poster, SinkProvider sinks, Clock clock) {
+        this.poster = poster;
+        this.sinks = sinks;
+        this.clock = clock;
+    }
+
+    public void configure(Long windowMs, Long maxLatencyMs, Integer maxBatch) {
+        synchronized (lock) {
+            if (windowMs != null) this.windowMs = Math.max(0, windowMs);
+            if (maxLatencyMs != null) this.maxLatencyMs = Math.max(0, maxLatencyMs);
+            if (maxBatch != null) this.maxBatch = Math.max(1, maxBatch);
+        }
+    }
+
+    /** Chunk-style event that may be merged with its neighbours. */
+    public void emit(Map<String, Object> event) {
+        boolean flushNow;
+        boolean schedule = false;
+        long delay = 0;
+        synchronized (lock) {
+            if (shutdown) return;
+            events++;
+            long now = clock.nowMs();
+            if (pending.isEmpty()) firstAt = now;
+            lastAt = now;
+            pending.add(event);
+            flushNow = windowMs == 0 || pending.size() >= maxBatch;
+            if (!flushNow && !flushScheduled) {
+                flushScheduled = true;
+                schedule = true;
+                delay = Math.min(windowMs, maxLatencyMs);
+            }
+        }
+        if (flushNow) {
+            poster.post(this::flush);
+        } else if (schedule) {
+            poster.postDelayed(this::onTimer, delay);
+        }
+    }
+
+    /** Event delivered right away, after anything already buffered. */
+    public void emitNow(final Map<String, Object> event) {
+        synchronized (lock) {
+            if (shutdown) return;
+            events++;
+        }
+        poster.post(() -> {
+            flush();
+            EventChannel.EventSink sink = live();
+            count(1, 0);
+            if (sink != null) sink.success(event);
+        });
+    }
+
+    /** Error delivered right away, after anything already buffered. */
+    public void emitError(final String code, final String message, final Object details) {
+        synchronized (lock) {
+            if (shutdown) return;
+            events++;
+        }
+        poster.post(() -> {
+            flush();
+            EventChannel.EventSink sink = live();
+            count(1, 0);
+            if (sink != null) sink.error(code, message, details);
+        });
+    }
+
+    // Main thread
+    private void onTimer() {
+        long wait;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (shutdown || pending.isEmpty()) return;
+            long now = clock.nowMs();
+            long quietFor = now - lastAt;
+            long waitedFor = now - firstAt;
+            if (quietFor < windowMs && waitedFor < maxLatencyMs) {
+                wait = Math.min(windowMs - quietFor, maxLatencyMs - waitedFor);
+                flushScheduled = true;
+            } else {
+                wait = -1;
+            }
+        }
+        if (wait >= 0) {
+            poster.postDelayed(this::onTimer, wait);
+        } else {
+            flush();
+        }
+    }
+
+    // Main thread
+    void flush() {
+        List<Map<String, Object>> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        EventChannel.EventSink sink = live();
+        if (batch.size() == 1) {
+            count(1, 0);
+            if (sink != null) sink.success(batch.get(0));
+            return;
+        }
+        count(1, batch.size() - 1);
+        if (sink == null) return;
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", BATCH_TYPE);
+        message.put("events", batch);
+        message.put("merged", batch.size());
+        sink.success(message);
+    }
+
+    // The sink, or null once shut down
+    private EventChannel.EventSink live() {
+        synchronized (lock) {
+            if (shutdown) return null;
+        }
+        return sinks.get();
+    }
+
+    /** Drop buffered events and stop delivering; timers already posted find nothing to do. */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            pending = new ArrayList<>();
+        }
+    }
+
+    private void count(long sent, long mergedAway) {
+        synchronized (lock) {
+            messages += sent;
+            merged += mergedAway;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        synchronized (lock) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("windowMs", windowMs);
+            m.put("maxLatencyMs", maxLatencyMs);
+            m.put("maxBatch", maxBatch);
+            m.put("events", events);
+            m.put("messages", messages);
+            m.put("merged", merged);
+            m.put("pending", pending.size());
+            return m;
+        }
+    }
+}
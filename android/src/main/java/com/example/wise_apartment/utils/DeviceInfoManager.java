@@ -20,10 +20,14 @@ public class DeviceInfoManager {
     private static final String TAG = "DeviceInfoManager";
     private final Context context;
     private final HxjBleClient bleClient;
+    private final BleCommandScheduler scheduler;
+    private final BleSessionManager sessions;
 
-    public DeviceInfoManager(Context context, HxjBleClient client) {
+    public DeviceInfoManager(Context context, HxjBleClient client, BleCommandScheduler scheduler, BleSessionManager sessions) {
         this.context = context;
         this.bleClient = client;
+        this.scheduler = scheduler;
+        this.sessions = sessions;
     }
 
     public void getDeviceInfo(Result result) {
@@ -68,8 +72,12 @@ public class DeviceInfoManager {
     }
 
     public void getNBIoTInfo(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "getNBIoTInfo", result, r -> doGetNBIoTInfo(args, r));
+    }
+
+    private void doGetNBIoTInfo(Map<String, Object> args, final Result result) {
         Log.d(TAG, "getNBIoTInfo called");
-        BlinkyAuthAction auth = PluginUtils.createAuthAction(args);
+        BlinkyAuthAction auth = sessions.authFor(args);
        
         ATConfigHelper helper = new ATConfigHelper(context, bleClient);
         helper.startSetting(auth, new ATConfigHelper.ATCallBack() {
@@ -90,8 +98,12 @@ public class DeviceInfoManager {
     }
 
     public void getCat1Info(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "getCat1Info", result, r -> doGetCat1Info(args, r));
+    }
+
+    private void doGetCat1Info(Map<String, Object> args, final Result result) {
         Log.d(TAG, "getCat1Info called");
-        BlinkyAuthAction auth = PluginUtils.createAuthAction(args);
+        BlinkyAuthAction auth = sessions.authFor(args);
        
         Cat1ATConfigHelper helper = new Cat1ATConfigHelper(context, bleClient);
         helper.start(auth, new Cat1ATConfigHelper.Cat1ATCallBack() {
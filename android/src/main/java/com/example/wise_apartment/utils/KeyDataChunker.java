@@ -0,0 +1,119 @@
+package com.example.wise_apartment.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits a fingerprint / face template into fixed-size BLE packets.
+ *
+ * The template lives in one backing buffer (a heap array, or later a
+ * mapped file) that is never copied as a whole. {@link #view} returns a
+ * zero-copy slice of one packet; {@link #packet} fills a reusable array,
+ * because the SDK takes {@code byte[]}. Only one full-size and one
+ * last-packet array exist per chunker, and {@link #reset} lets the next
+ * enrollment reuse them, so a session of enrollments allocates nothing per
+ * packet.
+ *
+ * The array returned by {@link #packet} is overwritten by the next call;
+ * callers send one packet and wait for its ack before asking for the next,
+ * as AddBigDataKeyHelper does. Not thread-safe.
+ */
+public final class KeyDataChunker {
+    public static final int DEFAULT_PACKET_SIZE = 180;
+
+    private final int packetSize;
+    private final byte[] fullPacket;
+    private byte[] lastPacket;
+    private ByteBuffer source;
+    // Reused reader over source, so packet() allocates nothing
+    private ByteBuffer cursor;
+    private int length;
+
+    public KeyDataChunker() {
+        this(DEFAULT_PACKET_SIZE);
+    }
+
+    public KeyDataChunker(int packetSize) {
+        if (packetSize <= 0) throw new IllegalArgumentException("packetSize must be > 0");
+        this.packetSize = packetSize;
+        this.fullPacket = new byte[packetSize];
+    }
+
+    /** Chunk {@code data} from its position to its limit; the buffer is not copied. */
+    public KeyDataChunker reset(ByteBuffer data) {
+        source = data.slice();
+        cursor = source.duplicate();
+        length = source.remaining();
+        return this;
+    }
+
+    public KeyDataChunker reset(byte[] data) {
+        return reset(ByteBuffer.wrap(data));
+    }
+
+    /** Drop the reference to the template; the packet arrays are kept. */
+    public void release() {
+        source = null;
+        cursor = null;
+        length = 0;
+    }
+
+    public boolean hasData() {
+        return source != null && length > 0;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int packetSize() {
+        return packetSize;
+    }
+
+    public int packetCount() {
+        return (length + packetSize - 1) / packetSize;
+    }
+
+    public int packetLength(int index) {
+        checkIndex(index);
+        return Math.min(packetSize, length - index * packetSize);
+    }
+
+    /** Read-only slice of packet {@code index}, sharing the backing buffer. */
+    public ByteBuffer view(int index) {
+        int len = packetLength(index);
+        ByteBuffer b = source.asReadOnlyBuffer();
+        b.position(index * packetSize);
+        b.limit(index * packetSize + len);
+        return b.slice();
+    }
+
+    /**
+     * Packet {@code index} in a reused array of exactly its length. Valid
+     * until the next call.
+     */
+    public byte[] packet(int index) {
+        int len = packetLength(index);
+        byte[] dst;
+        if (len == packetSize) {
+            dst = fullPacket;
+        } else {
+            if (lastPacket == null || lastPacket.length != len) lastPacket = new byte[len];
+            dst = lastPacket;
+        }
+        if (source.hasArray()) {
+            System.arraycopy(source.array(), source.arrayOffset() + index * packetSize, dst, 0, len);
+        } else {
+            cursor.clear();
+            cursor.position(index * packetSize);
+            cursor.get(dst, 0, len);
+        }
+        return dst;
+    }
+
+    private void checkIndex(int index) {
+        if (source == null) throw new IllegalStateException("no data");
+        if (index < 0 || index >= packetCount()) {
+            throw new IndexOutOfBoundsException("packet " + index + " of " + packetCount());
+        }
+    }
+}
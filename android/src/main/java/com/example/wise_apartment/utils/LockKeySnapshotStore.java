@@ -0,0 +1,254 @@
+package com.example.wise_apartment.utils;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-lock snapshot of the key list, persisted across app runs.
+ *
+ * A snapshot holds every key the plugin has read from a lock (as mapped by
+ * {@link LockKeyResultMapper}) plus the largest modifyTimestamp among them.
+ * Key sync passes that watermark to SyncLockKeyAction, so the lock only
+ * sends keys changed since, and the returned keys are merged into the
+ * snapshot by keyType + keyID. A full sync (no snapshot yet, or
+ * {@code fullSync: true}) replaces the snapshot instead, which is also how
+ * keys deleted from outside this app drop out of it.
+ *
+ * Deletions made through the plugin are applied directly: by key number
+ * and by user id the matching keys are removed; deletion by type or
+ * content drops the whole snapshot, since the keys involved cannot be told
+ * from the stored fields.
+ *
+ * Snapshots are stored as Gson JSON, one SharedPreferences entry per lock;
+ * with no preferences (tests) the store is memory-only.
+ */
+public class LockKeySnapshotStore {
+    private static final String TAG = "LockKeySnapshotStore";
+    public static final String PREFS_NAME = "wise_key_snapshots";
+    /** SyncLockKeyAction's "everything" timestamp, the SDK default. */
+    public static final int FULL_SYNC_TIMESTAMP = 2;
+
+    private final SharedPreferences prefs;
+    private final Gson gson = new Gson();
+    private final Map<String, Snapshot> cache = new HashMap<>();
+
+    public LockKeySnapshotStore(SharedPreferences prefs) {
+        this.prefs = prefs;
+    }
+
+    static final class Snapshot {
+        long watermark;
+        long updatedAt;
+        // keyType/keyID -> key map, in lock order
+        final LinkedHashMap<String, Map<String, Object>> keys = new LinkedHashMap<>();
+
+        Snapshot copy() {
+            Snapshot s = new Snapshot();
+            s.watermark = watermark;
+            s.updatedAt = updatedAt;
+            s.keys.putAll(keys);
+            return s;
+        }
+    }
+
+    /** One key sync's view of the snapshot of {@code args}' lock. */
+    public final class Delta {
+        private final String mac;
+        private final boolean full;
+        private final int lastSyncTimestamp;
+
+        Delta(String mac, boolean full, int lastSyncTimestamp) {
+            this.mac = mac;
+            this.full = full;
+            this.lastSyncTimestamp = lastSyncTimestamp;
+        }
+
+        /** Timestamp to hand to SyncLockKeyAction. */
+        public int getLastSyncTimestamp() {
+            return lastSyncTimestamp;
+        }
+
+        public boolean isFull() {
+            return full;
+        }
+
+        /**
+         * Merge (or, for a full sync, replace) the snapshot with the keys
+         * {@code read} from the lock and return its full key list.
+         */
+        public List<Map<String, Object>> commit(List<Map<String, Object>> read) {
+            return apply(mac, full, read);
+        }
+    }
+
+    /**
+     * Start a key sync. An explicit {@code lastSyncTimestamp} argument wins;
+     * otherwise the snapshot's watermark is used, or a full read when there
+     * is no snapshot or {@code fullSync} is true.
+     */
+    public synchronized Delta begin(Map<String, Object> args) {
+        String mac = BleCommandScheduler.macOf(args);
+        Object explicit = args == null ? null : args.get("lastSyncTimestamp");
+        int ts = FULL_SYNC_TIMESTAMP;
+        if (explicit instanceof Number) {
+            ts = ((Number) explicit).intValue();
+        } else if (explicit instanceof String) {
+            try { ts = Integer.parseInt((String) explicit); } catch (NumberFormatException ignored) {}
+        } else if (!Boolean.TRUE.equals(args == null ? null : args.get("fullSync"))) {
+            Snapshot s = get(mac);
+            if (s != null && !s.keys.isEmpty()) ts = (int) Math.min(Integer.MAX_VALUE, Math.max(FULL_SYNC_TIMESTAMP, s.watermark));
+        }
+        return new Delta(mac, ts <= FULL_SYNC_TIMESTAMP, ts);
+    }
+
+    private synchronized List<Map<String, Object>> apply(String mac, boolean full, List<Map<String, Object>> changed) {
+        Snapshot previous = get(mac);
+        Snapshot s = full || previous == null ? new Snapshot() : previous.copy();
+        if (!full && previous != null) s.watermark = previous.watermark;
+        for (Map<String, Object> key : changed) {
+            s.keys.put(idOf(key), key);
+            s.watermark = Math.max(s.watermark, longOf(key.get("modifyTimestamp")));
+        }
+        s.updatedAt = System.currentTimeMillis();
+        put(mac, s);
+        return new ArrayList<>(s.keys.values());
+    }
+
+    /**
+     * Reflect a successful deleteLockKey in the snapshot. {@code action} is
+     * the deleteLockKey action map (deleteMode, deleteKeyType, deleteKeyId,
+     * deleteKeyGroupId).
+     */
+    public synchronized void onKeysDeleted(String mac, Map<?, ?> action) {
+        Snapshot previous = get(mac);
+        if (previous == null || action == null) return;
+        long mode = longOf(action.get("deleteMode"));
+        if (mode != 0 && mode != 3) {
+            remove(mac);
+            return;
+        }
+        Snapshot s = previous.copy();
+        for (Iterator<Map<String, Object>> it = s.keys.values().iterator(); it.hasNext(); ) {
+            Map<String, Object> key = it.next();
+            boolean match = mode == 0
+                    ? longOf(key.get("keyType")) == longOf(action.get("deleteKeyType"))
+                            && longOf(key.get("keyID")) == longOf(action.get("deleteKeyId"))
+                    : longOf(key.get("appUserID")) == longOf(action.get("deleteKeyGroupId"));
+            if (match) it.remove();
+        }
+        put(mac, s);
+    }
+
+    /** The stored key list of {@code mac}; empty keys when never synced. */
+    public synchronized Map<String, Object> getSnapshot(String mac) {
+        String key = BleCommandScheduler.macOf(macArgs(mac));
+        Snapshot s = get(key);
+        Map<String, Object> m = new HashMap<>();
+        m.put("mac", key);
+        m.put("keys", s == null ? new ArrayList<Map<String, Object>>() : new ArrayList<>(s.keys.values()));
+        m.put("total", s == null ? 0 : s.keys.size());
+        m.put("watermark", s == null ? 0L : s.watermark);
+        m.put("updatedAt", s == null ? 0L : s.updatedAt);
+        return m;
+    }
+
+    /** Forget the snapshot of one lock, or all when mac is empty. */
+    public synchronized void clear(String mac) {
+        if (mac != null && !mac.isEmpty()) {
+            remove(BleCommandScheduler.macOf(macArgs(mac)));
+            return;
+        }
+        cache.clear();
+        if (prefs != null) prefs.edit().clear().apply();
+    }
+
+    // Caller holds the lock
+    private Snapshot get(String mac) {
+        if (cache.containsKey(mac)) return cache.get(mac);
+        Snapshot s = null;
+        String raw = prefs == null ? null : prefs.getString(mac, null);
+        if (raw != null) {
+            try {
+                s = decode(JsonParser.parseString(raw).getAsJsonObject());
+            } catch (RuntimeException e) {
+                // Corrupt entry: next sync reads everything again.
+                Log.w(TAG, "Dropping unreadable key snapshot for " + mac, e);
+            }
+        }
+        cache.put(mac, s);
+        return s;
+    }
+
+    // Caller holds the lock
+    private void put(String mac, Snapshot s) {
+        cache.put(mac, s);
+        if (prefs != null) prefs.edit().putString(mac, encode(s)).apply();
+    }
+
+    // Caller holds the lock
+    private void remove(String mac) {
+        cache.put(mac, null);
+        if (prefs != null) prefs.edit().remove(mac).apply();
+    }
+
+    private String encode(Snapshot s) {
+        JsonObject o = new JsonObject();
+        o.addProperty("watermark", s.watermark);
+        o.addProperty("updatedAt", s.updatedAt);
+        o.add("keys", gson.toJsonTree(new ArrayList<>(s.keys.values())));
+        return gson.toJson(o);
+    }
+
+    private static Snapshot decode(JsonObject o) {
+        Snapshot s = new Snapshot();
+        s.watermark = o.get("watermark").getAsLong();
+        s.updatedAt = o.get("updatedAt").getAsLong();
+        JsonArray keys = o.getAsJsonArray("keys");
+        for (JsonElement e : keys) {
+            Map<String, Object> key = new HashMap<>();
+            for (Map.Entry<String, JsonElement> f : e.getAsJsonObject().entrySet()) {
+                key.put(f.getKey(), valueOf(f.getValue()));
+            }
+            s.keys.put(idOf(key), key);
+        }
+        return s;
+    }
+
+    // Gson would read every number back as a Double; keep the ints/longs the mapper produced.
+    private static Object valueOf(JsonElement e) {
+        if (e == null || e.isJsonNull()) return null;
+        JsonPrimitive p = e.getAsJsonPrimitive();
+        if (p.isBoolean()) return p.getAsBoolean();
+        if (p.isString()) return p.getAsString();
+        long l = p.getAsLong();
+        return l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE ? (Object) (int) l : (Object) l;
+    }
+
+    static String idOf(Map<String, Object> key) {
+        return longOf(key.get("keyType")) + "/" + longOf(key.get("keyID"));
+    }
+
+    private static long longOf(Object v) {
+        return v instanceof Number ? ((Number) v).longValue() : 0;
+    }
+
+    private static Map<String, Object> macArgs(String mac) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("mac", mac);
+        return m;
+    }
+}
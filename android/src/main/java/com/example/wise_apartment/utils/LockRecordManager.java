@@ -2,8 +2,6 @@ package com.example.wise_apartment.utils;
 
 import android.util.Log;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -24,6 +22,20 @@ import com.example.hxjblinklibrary.blinkble.entity.reslut.lockrecord2.HXRecord2B
 public class LockRecordManager {
     private static final String TAG = "LockRecordManager";
     private final HxjBleClient bleClient;
+    // Public entry points queue on the scheduler; the do* bodies run unscheduled.
+    // Package-private do* bodies are also run by BleBatchExecutor, which
+    // already holds the lock's ticket.
+    private final BleCommandScheduler scheduler;
+    private final BleSessionManager sessions;
+
+    // Non-streaming sync replies once after walking every page
+    private static final long RECORD_SYNC_TIMEOUT_MS = 5 * 60 * 1000;
+
+    // readCnt per page, learned per lock model / log version
+    private final RecordBatchSizer batchSizer = new RecordBatchSizer();
+    private final RecordCheckpointStore checkpoints;
+    // Every synced page is also appended here for local queries
+    private final LockRecordStore recordStore;
 
     /**
      * Callback interface for streaming syncLockRecords events.
@@ -35,91 +47,100 @@ public class LockRecordManager {
         void onError(Map<String, Object> errorEvent);
     }
 
-    // State for recursion
-    private int currentSyncIndex = 0;
-    private int totalSyncRecords = 0;
-    private List<Map<String, Object>> syncLogList = new ArrayList<>();
-    private Result syncResult;
-    private final AtomicBoolean syncReplied = new AtomicBoolean(false);
-    private BlinkyAuthAction syncAuth;
-    private int syncLogVersion;
+    // One session per running sync, so syncs of different locks keep separate state
+    private final RecordSyncRegistry syncs = new RecordSyncRegistry();
+    // Credits / pause state of streamed syncs, shared with the key streams
+    private final StreamFlowControl flow;
 
-    public LockRecordManager(HxjBleClient client) {
+    public LockRecordManager(HxjBleClient client, BleCommandScheduler scheduler, BleSessionManager sessions,
+                             RecordCheckpointStore checkpoints, LockRecordStore recordStore, StreamFlowControl flow) {
         this.bleClient = client;
+        this.scheduler = scheduler;
+        this.sessions = sessions;
+        this.checkpoints = checkpoints;
+        this.recordStore = recordStore;
+        this.flow = flow;
     }
 
     public void syncLockRecords(Map<String, Object> args, final Result result) {
-        Log.d(TAG, "syncLockRecords called");
-        syncAuth = PluginUtils.createAuthAction(args);
-        // Prefer explicit caller-provided logVersion. If missing, infer
-        // generation from `menuFeature` (third bit == 1 => gen2 only).
-        syncLogVersion = 1;
-        Object lvObj = args.get("logVersion");
-        if (lvObj instanceof Number) {
-            syncLogVersion = ((Number) lvObj).intValue();
-        } else {
-            Object mf = args.get("menuFeature");
-            if (mf instanceof Number) {
-                int menuFeature = ((Number) mf).intValue();
-                // third bit -> mask 0x4
-                if ((menuFeature & 0x4) != 0) {
-                    syncLogVersion = 2;
-                } else {
-                    syncLogVersion = 1;
-                }
+        final RecordSyncRegistry.Session[] running = new RecordSyncRegistry.Session[1];
+        // Any reply, including the scheduler's timeout, ends the session so
+        // late page callbacks stop recursing.
+        Result closing = new Result() {
+            @Override
+            public void success(Object value) {
+                closeRunning();
+                result.success(value);
+            }
+
+            @Override
+            public void error(String code, String message, Object details) {
+                closeRunning();
+                result.error(code, message, details);
+            }
+
+            @Override
+            public void notImplemented() {
+                closeRunning();
+                result.notImplemented();
             }
-        }
-        if (syncLogVersion != 1 && syncLogVersion != 2) {
-            syncLogVersion = 1;
-        }
-        syncResult = result;
-        syncReplied.set(false);
-        syncLogList.clear();
+
+            private void closeRunning() {
+                if (running[0] != null) running[0].close();
+            }
+        };
+        scheduler.submit(BleCommandScheduler.macOf(args), "syncLockRecords", RECORD_SYNC_TIMEOUT_MS, closing,
+                r -> running[0] = doSyncLockRecords(args, r));
+    }
+
+    private RecordSyncRegistry.Session doSyncLockRecords(Map<String, Object> args, final Result result) {
+        Log.d(TAG, "syncLockRecords called");
+        int logVersion = logVersionOf(args);
+        final RecordSyncRegistry.Session session = syncs.open(null, false, sessions.authFor(args), logVersion,
+                RecordBatchEncoder.isRequested(args),
+                batchSizer.open(RecordBatchSizer.keyOf(args, logVersion)),
+                checkpoints.begin(args, logVersion));
 
         BlinkyAction action = new BlinkyAction();
-        action.setBaseAuthAction(syncAuth);
-//         bleClient.syncLockRecord(
-//                 new SyncLockRecordAction(),
-//                 new FunCallback<LockRecordDataResult>() {
-//                     @Override
-//                     public void onResponse(Response<LockRecordDataResult> response) {
-//
-//                     }
-//
-//                     @Override
-//                     public void onFailure(Throwable throwable) {
-//
-//                     }
-//                 }
-//         );
+        action.setBaseAuthAction(session.auth);
         bleClient.getRecordNum(action, new FunCallback<Integer>() {
             @Override
             public void onResponse(Response<Integer> response) {
+                if (session.isClosed()) {
+                    replyLate(result);
+                    return;
+                }
                 if (response.isSuccessful() && response.body() != null) {
-                    totalSyncRecords = response.body();
-                    Log.d(TAG, "Total records to sync: " + totalSyncRecords);
-                    currentSyncIndex = 0;
-                    recursiveQueryRecords();
+                    session.total = response.body();
+                    // Newest first from index 0; sinceLast stops at the checkpoint
+                    session.nextIndex = 0;
+                    Log.d(TAG, session.getId() + ": total records to sync: " + session.total);
+                    if (session.total <= 0) {
+                        completeSync(session, result);
                     } else {
+                        recursiveQueryRecords(session, result);
+                    }
+                } else {
                     Log.e(TAG, "Failed to get record num: " + response.code());
-                    if (syncReplied.compareAndSet(false, true)) {
+                    if (session.close()) {
                         try {
-                                    Map<String, Object> details = new HashMap<>();
-                                    details.put("code", response.code());
-                                    details.put("ackMessage", WiseStatusCode.description(response.code()));
+                            Map<String, Object> details = new HashMap<>();
+                            details.put("code", response.code());
+                            details.put("ackMessage", WiseStatusCode.description(response.code()));
                             result.error("FAILED", "Get Record Num Failed: " + response.code(), details);
                         } catch (Throwable t) {
                             result.error("FAILED", "Get Record Num Failed: " + response.code(), null);
                         }
                     } else {
                         Log.w(TAG, "GetRecordNum failure ignored: reply already sent");
+                        replyLate(result);
                     }
                 }
             }
             @Override
             public void onFailure(Throwable t) {
                 Log.e(TAG, "Failed to get record num", t);
-                if (syncReplied.compareAndSet(false, true)) {
+                if (session.close()) {
                     try {
                         Map<String, Object> details = new HashMap<>();
                         details.put("error", t.getMessage());
@@ -129,9 +150,29 @@ public class LockRecordManager {
                     }
                 } else {
                     Log.w(TAG, "GetRecordNum onFailure ignored: reply already sent");
+                    replyLate(result);
                 }
             }
         });
+        return session;
+    }
+
+    /**
+     * Explicit caller-provided logVersion, else inferred from `menuFeature`
+     * (third bit == 1 => gen2 only). Anything but 1 or 2 falls back to 1.
+     */
+    private static int logVersionOf(Map<String, Object> args) {
+        int logVersion = 1;
+        Object lv = args.get("logVersion");
+        if (lv instanceof Number) {
+            logVersion = ((Number) lv).intValue();
+        } else {
+            Object mf = args.get("menuFeature");
+            if (mf instanceof Number && (((Number) mf).intValue() & 0x4) != 0) {
+                logVersion = 2;
+            }
+        }
+        return logVersion == 1 || logVersion == 2 ? logVersion : 1;
     }
 
     /**
@@ -140,45 +181,41 @@ public class LockRecordManager {
      * history for performance reasons.
      *
      * Expected args:
-     *  - auth fields (for PluginUtils.createAuthAction)
+     *  - auth fields (for BleSessionManager.authFor)
      *  - "logVersion" (1 or 2)
      *  - "startNum" (int, starting index, default 0)
-     *  - "readCnt" (int, batch size, default 10)
+     *  - "readCnt" (int, batch size; picked by RecordBatchSizer when absent)
+     *  - "recordFormat" ("binary" for a {@link RecordBatchEncoder} byte[])
      *
      * Response is a Map with:
      *  - "total" (int): total records on the lock
      *  - "nextIndex" (int): next index to request, or current start if none
      *  - "hasMore" (bool): whether more data is available
-     *  - "records" (List<Map<String, Object>>): mapped records for this page
+     *  - "readCnt" (int): batch size used for this page
+     *  - "records" (List<Map<String, Object>>): mapped records for this page,
+     *    or a byte[] record batch when recordFormat is "binary"
      */
     public void syncLockRecordsPage(Map<String, Object> args, final Result result) {
+        scheduler.submit(BleCommandScheduler.macOf(args), "syncLockRecordsPage", result, r -> doSyncLockRecordsPage(args, r));
+    }
+
+    void doSyncLockRecordsPage(Map<String, Object> args, final Result result) {
         Log.d(TAG, "syncLockRecordsPage called");
-        final BlinkyAuthAction auth = PluginUtils.createAuthAction(args);
+        final BlinkyAuthAction auth = sessions.authFor(args);
 
-        // Accept explicit logVersion, otherwise infer from `menuFeature`.
-        int logVersion = 1;
-        Object lv = args.get("logVersion");
-        if (lv instanceof Number) {
-            logVersion = ((Number) lv).intValue();
-        } else {
-            Object mf = args.get("menuFeature");
-            if (mf instanceof Number) {
-                int menuFeature = ((Number) mf).intValue();
-                if ((menuFeature & 0x4) != 0) {
-                    logVersion = 2;
-                } else {
-                    logVersion = 1;
-                }
-            }
-        }
-        if (logVersion != 1 && logVersion != 2) logVersion = 1;
+        int logVersion = logVersionOf(args);
 
         final int startNum = args.containsKey("startNum")
                 ? (int) args.get("startNum")
                 : 0;
-        final int readCnt = args.containsKey("readCnt")
+        // Without an explicit readCnt the sizer picks one and learns from the page.
+        final RecordBatchSizer.Window window = args.containsKey("readCnt")
+                ? null
+                : batchSizer.open(RecordBatchSizer.keyOf(args, logVersion));
+        final int readCnt = window == null
                 ? (int) args.get("readCnt")
-                : 10;
+                : window.size();
+        final boolean binary = RecordBatchEncoder.isRequested(args);
 
         BlinkyAction countAction = new BlinkyAction();
         countAction.setBaseAuthAction(auth);
@@ -210,11 +247,15 @@ public class LockRecordManager {
 
                 SyncLockRecordAction recordAction = new SyncLockRecordAction(startNum, readCnt, finalLogVersion);
                 recordAction.setBaseAuthAction(auth);
+                final long pageStart = System.currentTimeMillis();
 
                 bleClient.syncLockRecord(recordAction, new FunCallback<LockRecordDataResult>() {
                     @Override
                     public void onResponse(Response<LockRecordDataResult> pageResponse) {
                         if (!pageResponse.isSuccessful() || pageResponse.body() == null) {
+                            if (window != null && RecordBatchSizer.isBackoffCode(pageResponse.code())) {
+                                window.failure();
+                            }
                             Log.e(TAG, "Sync page failed at index " + startNum
                                     + " code: " + pageResponse.code());
                             if (replied.compareAndSet(false, true)) {
@@ -233,23 +274,11 @@ public class LockRecordManager {
                         }
 
                         LockRecordDataResult body = pageResponse.body();
-                        List<Map<String, Object>> records = new ArrayList<>();
-
-                        if (body.getLogNum() > 0) {
-                            if (finalLogVersion == 1) {
-                                for (HXRecordBaseModel r : body.getLog1Array()) {
-                                    Map<String, Object> m = mapRecord(r);
-                                    m.put("logVersion", 1);
-                                    records.add(m);
-                                }
-                            } else {
-                                for (HXRecord2BaseModel r : body.getLog2Array()) {
-                                    Map<String, Object> m = mapRecord(r);
-                                    m.put("logVersion", 2);
-                                    records.add(m);
-                                }
-                            }
+                        if (window != null) {
+                            window.success(readCnt, body.getLogNum(), body.isMoreData(), System.currentTimeMillis() - pageStart);
                         }
+                        List<Map<String, Object>> records = mapPage(body, finalLogVersion);
+                        recordStore.append(auth.getMac(), records);
 
                         int nextIndex = startNum + body.getLogNum();
                         boolean hasMore = body.isMoreData() && nextIndex < total;
@@ -258,7 +287,8 @@ public class LockRecordManager {
                         out.put("total", total);
                         out.put("nextIndex", hasMore ? nextIndex : startNum);
                         out.put("hasMore", hasMore);
-                        out.put("records", records);
+                        out.put("readCnt", readCnt);
+                        out.put("records", RecordBatchEncoder.maybeEncode(records, binary));
 
                         if (replied.compareAndSet(false, true)) {
                             result.success(out);
@@ -303,131 +333,141 @@ public class LockRecordManager {
         });
     }
 
-    private void recursiveQueryRecords() {
-        Log.d(TAG, "Querying records from index: " + currentSyncIndex);
-        SyncLockRecordAction action = new SyncLockRecordAction(currentSyncIndex, 10, syncLogVersion);
-        action.setBaseAuthAction(syncAuth);
+    private void recursiveQueryRecords(final RecordSyncRegistry.Session session, final Result result) {
+        final RecordBatchSizer.Window window = session.window;
+        final int readCnt = window.size();
+        final long pageStart = System.currentTimeMillis();
+        Log.d(TAG, session.getId() + ": querying " + readCnt + " records from index: " + session.nextIndex);
+        SyncLockRecordAction action = new SyncLockRecordAction(session.nextIndex, readCnt, session.logVersion);
+        action.setBaseAuthAction(session.auth);
 
         bleClient.syncLockRecord(action, new FunCallback<LockRecordDataResult>() {
             @Override
              public void onResponse(Response<LockRecordDataResult> response) {
+                 if (session.isClosed()) {
+                     replyLate(result);
+                     return;
+                 }
                  if (response.isSuccessful() && response.body() != null) {
                      LockRecordDataResult body = response.body();
                      Log.d(TAG, "Got batch of " + body.getLogNum() + " records");
+                     window.success(readCnt, body.getLogNum(), body.isMoreData(), System.currentTimeMillis() - pageStart);
+                     session.pages++;
 
                      // Process logs
                      if (body.getLogNum() > 0) {
-                          if (syncLogVersion == 1) {
-                              for (HXRecordBaseModel r : body.getLog1Array()) {
-                                  Map<String, Object> m = mapRecord(r);
-                                  m.put("logVersion", 1);
-                                  syncLogList.add(m);
-                              }
-                          } else if (syncLogVersion == 2) {
-                              for (HXRecord2BaseModel r : body.getLog2Array()) {
-                                  Map<String, Object> m = mapRecord(r);
-                                  m.put("logVersion", 2);
-                                  syncLogList.add(m);
-                              }
-                          }
-                          currentSyncIndex += body.getLogNum();
+                          List<Map<String, Object>> page = mapPage(body, session.logVersion);
+                          recordStore.append(session.getMac(), page);
+                          session.records.addAll(session.cursor.filterPage(page));
+                          session.nextIndex += body.getLogNum();
                      }
 
                      // Recursion or finish
-                     if (!body.isMoreData() || currentSyncIndex >= totalSyncRecords) {
-                         Log.d(TAG, "Sync complete, returning " + syncLogList.size() + " records");
-                         if (syncReplied.compareAndSet(false, true)) {
-                            syncResult.success(syncLogList);
-                         } else {
-                            Log.w(TAG, "Sync complete ignored: reply already sent");
-                         }
+                     if (!body.isMoreData() || session.nextIndex >= session.total || session.cursor.reachedSeen()) {
+                         completeSync(session, result);
                      } else {
-                         recursiveQueryRecords();
+                         recursiveQueryRecords(session, result);
                      }
                  } else {
-                      Log.e(TAG, "Sync failed at index " + currentSyncIndex + " code: " + response.code());
-                      if (syncReplied.compareAndSet(false, true)) {
+                      if (RecordBatchSizer.isBackoffCode(response.code()) && window.failure()) {
+                          Log.w(TAG, "Lock busy at index " + session.nextIndex + ", retrying with " + window.size());
+                          recursiveQueryRecords(session, result);
+                          return;
+                      }
+                      Log.e(TAG, "Sync failed at index " + session.nextIndex + " code: " + response.code());
+                      if (session.close()) {
                           try {
                                     Map<String, Object> details = new HashMap<>();
                                     details.put("code", response.code());
                                     details.put("ackMessage", WiseStatusCode.description(response.code()));
-                              syncResult.error("FAILED", "Sync Failed: " + response.code(), details);
+                              result.error("FAILED", "Sync Failed: " + response.code(), details);
                           } catch (Throwable t) {
-                              syncResult.error("FAILED", "Sync Failed: " + response.code(), null);
+                              result.error("FAILED", "Sync Failed: " + response.code(), null);
                           }
                       } else {
                           Log.w(TAG, "Sync failed ignored: reply already sent");
+                          replyLate(result);
                       }
                  }
              }
              @Override
              public void onFailure(Throwable t) {
+                 if (session.isClosed()) {
+                     replyLate(result);
+                     return;
+                 }
+                 if (window.failure()) {
+                     Log.w(TAG, "Sync page failed at index " + session.nextIndex + ", retrying with " + window.size(), t);
+                     recursiveQueryRecords(session, result);
+                     return;
+                 }
                  Log.e(TAG, "Sync failed exception", t);
-                 if (syncReplied.compareAndSet(false, true)) {
+                 if (session.close()) {
                      try {
                          Map<String, Object> details = new HashMap<>();
                          details.put("error", t.getMessage());
-                         syncResult.error("ERROR", t.getMessage(), details);
+                         result.error("ERROR", t.getMessage(), details);
                      } catch (Throwable x) {
-                         syncResult.error("ERROR", t.getMessage(), null);
+                         result.error("ERROR", t.getMessage(), null);
                      }
                  } else {
                      Log.w(TAG, "Sync onFailure ignored: reply already sent");
+                     replyLate(result);
                  }
              }
         });
     }
 
-    /**
-     * Convert an HXRecord* instance into a flat Map<String, Object>.
-     *
-     * <p>This uses reflection so that we don't depend on a particular
-     * generated model version from the HXJ BLE SDK. All non-static
-     * fields from the concrete class and its superclasses are
-     * exported using their field names as keys. Primitive wrapper
-     * types, String, Number and Boolean are passed through as-is;
-     * other types fall back to their toString() representation.</p>
-     */
-    private Map<String, Object> mapRecord(Object record) {
-        Map<String, Object> out = new HashMap<>();
-        if (record == null) {
-            return out;
+    private void completeSync(RecordSyncRegistry.Session session, Result result) {
+        Log.d(TAG, session.getId() + ": sync complete, returning " + session.records.size() + " records");
+        if (session.close()) {
+            session.cursor.commit(session.total);
+            result.success(RecordBatchEncoder.maybeEncode(session.records, session.binary));
+        } else {
+            Log.w(TAG, "Sync complete ignored: reply already sent");
+            replyLate(result);
         }
+    }
 
-        Class<?> clazz = record.getClass();
-        // Help the Dart side distinguish between variants.
-        out.put("modelType", clazz.getSimpleName());
-
-        while (clazz != null && clazz != Object.class) {
-            Field[] fields = clazz.getDeclaredFields();
-            for (Field field : fields) {
-                if (Modifier.isStatic(field.getModifiers())) {
-                    continue;
-                }
-                field.setAccessible(true);
-                try {
-                    Object value = field.get(record);
-                    if (value == null) {
-                        continue;
-                    }
+    /**
+     * The SDK answered after the sync already replied (usually the
+     * scheduler's timeout). The scheduler drops this second reply, but it
+     * is what gives back the link the timed-out command still holds.
+     */
+    private static void replyLate(Result result) {
+        result.error("SYNC_ENDED", "Sync already replied", null);
+    }
 
-                    if (value instanceof Number ||
-                            value instanceof Boolean ||
-                            value instanceof String) {
-                        out.put(field.getName(), value);
-                    } else {
-                        // enums or complex objects: use string form
-                        out.put(field.getName(), value.toString());
-                    }
-                } catch (IllegalAccessException e) {
-                    Log.w(TAG, "Unable to read field " + field.getName() +
-                            " from " + clazz.getSimpleName(), e);
-                }
+    /** Map every record of a page, tagged with its log version. */
+    private List<Map<String, Object>> mapPage(LockRecordDataResult body, int logVersion) {
+        List<Map<String, Object>> page = new ArrayList<>(Math.max(0, body.getLogNum()));
+        if (body.getLogNum() <= 0) return page;
+        if (logVersion == 1) {
+            for (HXRecordBaseModel r : body.getLog1Array()) {
+                Map<String, Object> m = mapRecord(r);
+                m.put("logVersion", 1);
+                page.add(m);
+            }
+        } else {
+            for (HXRecord2BaseModel r : body.getLog2Array()) {
+                Map<String, Object> m = mapRecord(r);
+                m.put("logVersion", 2);
+                page.add(m);
             }
-            clazz = clazz.getSuperclass();
         }
+        return page;
+    }
 
-        return out;
+    /**
+     * Convert an HXRecord* instance into a flat Map<String, Object>.
+     *
+     * <p>Uses the shared {@link ModelFieldMapper} so that we don't depend on
+     * a particular generated model version from the HXJ BLE SDK, while the
+     * reflective field walk is done once per record class instead of once
+     * per record. Room is reserved for the logVersion key callers add.</p>
+     */
+    private Map<String, Object> mapRecord(Object record) {
+        return ModelFieldMapper.toMap(record, 1);
     }
 
     /**
@@ -439,257 +479,358 @@ public class LockRecordManager {
      * @param callback Callback to receive chunk, done, and error events
      */
     public void syncLockRecordsStream(Map<String, Object> args, final SyncLockRecordsStreamCallback callback) {
-        Log.d(TAG, "syncLockRecordsStream called with args: " + args);
+        final RecordSyncRegistry.Session[] running = new RecordSyncRegistry.Session[1];
+        final String mac = BleCommandScheduler.macOf(args);
+        final String streamId = flow.idFor(args);
+        if (flow.get(streamId) != null || syncs.get(streamId) != null) {
+            // Reusing a live streamId would take over that stream's gate and session
+            Map<String, Object> err = new HashMap<>();
+            err.put("type", "syncLockRecordsError");
+            err.put("syncId", streamId);
+            err.put("streamId", streamId);
+            err.put("code", "DUPLICATE_STREAM");
+            err.put("message", "A stream with this streamId is still running");
+            callback.onError(err);
+            return;
+        }
+        // Opened before queuing so the stream can be paused or cancelled while it waits
+        final StreamFlowControl.Gate gate = flow.open(streamId, args);
+        scheduler.submit(mac, "syncLockRecordsStream", BleCommandScheduler.DEFAULT_TIMEOUT_MS,
+                ticket -> running[0] = doSyncLockRecordsStream(args, gate, mac, ticket, callback),
+                () -> streamTimedOut(running[0], callback));
+    }
 
-        final BlinkyAuthAction auth = PluginUtils.createAuthAction(args);
+    /**
+     * A stream started with {@code credits}, or with {@code doneItems: false},
+     * only counts in its done event instead of repeating every record.
+     */
+    private static boolean countsOnlyDone(Map<String, Object> args) {
+        return args != null && (args.get("credits") instanceof Number || Boolean.FALSE.equals(args.get("doneItems")));
+    }
 
-        // Determine log version
-        int logVersion = 1;
-        Object lvObj = args.get("logVersion");
-        if (lvObj instanceof Number) {
-            logVersion = ((Number) lvObj).intValue();
-        } else {
-            Object mf = args.get("menuFeature");
-            if (mf instanceof Number) {
-                int menuFeature = ((Number) mf).intValue();
-                if ((menuFeature & 0x4) != 0) {
-                    logVersion = 2;
-                }
+    private void streamTimedOut(RecordSyncRegistry.Session session, SyncLockRecordsStreamCallback callback) {
+        if (session != null && !session.close()) return;
+        Map<String, Object> err = new HashMap<>();
+        err.put("type", "syncLockRecordsError");
+        if (session != null) {
+            err.put("syncId", session.getId());
+            err.put("streamId", session.getId());
+        }
+        err.put("code", "COMMAND_TIMEOUT");
+        err.put("message", "syncLockRecordsStream timed out");
+        callback.onError(err);
+    }
+
+    /** Make {@code ticket} the stream's link; false (and released) once the stream ended. */
+    private boolean holdLink(RecordSyncRegistry.Session session, BleCommandScheduler.Ticket ticket) {
+        synchronized (session) {
+            if (!session.isClosed()) {
+                session.link = ticket;
+                return true;
             }
         }
-        if (logVersion != 1 && logVersion != 2) {
-            logVersion = 1;
+        ticket.done();
+        return false;
+    }
+
+    /** Give the stream's link to the next queued command, if it holds one. */
+    private void releaseLink(RecordSyncRegistry.Session session) {
+        BleCommandScheduler.Ticket ticket;
+        synchronized (session) {
+            ticket = session.link;
+            session.link = null;
+        }
+        if (ticket != null) ticket.done();
+    }
+
+    /** Restart the link's watchdog: the lock answered a page. */
+    private void touchLink(RecordSyncRegistry.Session session) {
+        BleCommandScheduler.Ticket ticket;
+        synchronized (session) {
+            ticket = session.link;
+        }
+        if (ticket != null) ticket.touch();
+    }
+
+    private RecordSyncRegistry.Session doSyncLockRecordsStream(Map<String, Object> args, StreamFlowControl.Gate gate,
+                                                               String mac, BleCommandScheduler.Ticket ticket,
+                                                               final SyncLockRecordsStreamCallback callback) {
+        Log.d(TAG, "syncLockRecordsStream called with args: " + args);
+        if (gate.isClosed()) {
+            // Cancelled while queued: end without touching the lock
+            callback.onDone(cancelledEvent(gate.getId(), 0));
+            ticket.done();
+            return null;
         }
 
-        final int finalLogVersion = logVersion;
-        final List<Map<String, Object>> allRecords = new ArrayList<>();
-        final boolean[] streamClosed = new boolean[]{false};
+        int logVersion = logVersionOf(args);
+        final RecordSyncRegistry.Session session = syncs.open(gate.getId(), true, sessions.authFor(args), logVersion,
+                RecordBatchEncoder.isRequested(args),
+                batchSizer.open(RecordBatchSizer.keyOf(args, logVersion)),
+                checkpoints.begin(args, logVersion));
+        session.gate = gate;
+        session.keepItems = !countsOnlyDone(args);
+        session.linkMac = mac;
+        holdLink(session, ticket);
+        gate.onCancel(() -> cancelStream(session, callback));
 
         BlinkyAction countAction = new BlinkyAction();
-        countAction.setBaseAuthAction(auth);
+        countAction.setBaseAuthAction(session.auth);
 
         try {
             bleClient.getRecordNum(countAction, new FunCallback<Integer>() {
                 @Override
                 public void onResponse(Response<Integer> response) {
                     if (!response.isSuccessful() || response.body() == null) {
-                        if (streamClosed[0]) {
-                            Log.d(TAG, "Stream already closed, ignoring getRecordNum error");
-                            return;
-                        }
-                        streamClosed[0] = true;
-
                         Log.e(TAG, "Failed to get record num: " + response.code());
-                        Map<String, Object> errorEvent = new HashMap<>();
-                        errorEvent.put("type", "syncLockRecordsError");
-                        errorEvent.put("message", WiseStatusCode.description(response.code()));
-                        errorEvent.put("code", response.code());
-                        callback.onError(errorEvent);
+                        emitStreamError(session, WiseStatusCode.description(response.code()), response.code(), callback);
                         return;
                     }
 
-                    final int total = response.body();
-                    Log.d(TAG, "Total records to sync: " + total);
+                    session.total = response.body();
+                    // Newest first from index 0; sinceLast stops at the checkpoint
+                    session.nextIndex = 0;
+                    Log.d(TAG, session.getId() + ": total records to sync: " + session.total);
 
+                    if (session.total <= 0) {
+                        // Empty log
+                        emitStreamDone(session, callback);
+                        return;
+                    }
                     // Start recursive streaming
-                    streamRecordsRecursive(auth, finalLogVersion, 0, total, allRecords, streamClosed, callback);
+                    requestNextPage(session, callback);
                 }
 
                 @Override
                 public void onFailure(Throwable t) {
-                    if (streamClosed[0]) {
-                        Log.d(TAG, "Ignoring failure - stream already closed");
-                        return;
-                    }
-                    streamClosed[0] = true;
-
                     Log.e(TAG, "syncLockRecordsStream failed to get record num", t);
-                    Map<String, Object> errorEvent = new HashMap<>();
-                    errorEvent.put("type", "syncLockRecordsError");
-                    errorEvent.put("message", t.getMessage() != null ? t.getMessage() : "Unknown error");
-                    errorEvent.put("code", -1);
-                    callback.onError(errorEvent);
+                    emitStreamError(session, t.getMessage() != null ? t.getMessage() : "Unknown error", -1, callback);
                 }
             });
         } catch (Throwable t) {
             Log.e(TAG, "Exception calling syncLockRecordsStream", t);
-            Map<String, Object> errorEvent = new HashMap<>();
-            errorEvent.put("type", "syncLockRecordsError");
-            errorEvent.put("message", "Failed to start sync: " + (t.getMessage() != null ? t.getMessage() : "Unknown error"));
-            errorEvent.put("code", -1);
-            callback.onError(errorEvent);
+            emitStreamError(session, "Failed to start sync: " + (t.getMessage() != null ? t.getMessage() : "Unknown error"), -1, callback);
         }
+        return session;
     }
 
-    private void streamRecordsRecursive(
-            final BlinkyAuthAction auth,
-            final int logVersion,
-            final int currentIndex,
-            final int total,
-            final List<Map<String, Object>> allRecords,
-            final boolean[] streamClosed,
-            final SyncLockRecordsStreamCallback callback) {
+    /**
+     * Ask for the next page through the stream's flow-control gate: right
+     * away while Dart has credit, otherwise when resumeStream grants more.
+     * A parked request gives the link (and its watchdog) back to the
+     * scheduler, so other locks are not blocked and a long pause does not
+     * time the stream out; it queues for the link again when released.
+     * Busy / failure retries of the same page bypass the gate.
+     */
+    private void requestNextPage(final RecordSyncRegistry.Session session,
+                                 final SyncLockRecordsStreamCallback callback) {
+        // Guarded by session: whether the step ran, and whether it was parked first
+        final boolean[] ran = {false};
+        final boolean[] parked = {false};
+        boolean now = session.gate.acquire(() -> {
+            boolean relink;
+            synchronized (session) {
+                ran[0] = true;
+                relink = parked[0];
+            }
+            if (session.isClosed()) return;
+            if (relink) {
+                scheduler.submit(session.linkMac, "syncLockRecordsStream", BleCommandScheduler.DEFAULT_TIMEOUT_MS,
+                        ticket -> {
+                            if (holdLink(session, ticket)) streamRecordsRecursive(session, callback);
+                        },
+                        () -> streamTimedOut(session, callback));
+            } else {
+                streamRecordsRecursive(session, callback);
+            }
+        });
+        if (now) return;
+        synchronized (session) {
+            if (ran[0]) return;
+            parked[0] = true;
+        }
+        Log.d(TAG, session.getId() + ": paused, releasing the link");
+        releaseLink(session);
+    }
 
-        Log.d(TAG, "Streaming records from index: " + currentIndex + " / " + total);
+    private void streamRecordsRecursive(final RecordSyncRegistry.Session session,
+                                        final SyncLockRecordsStreamCallback callback) {
+        final RecordBatchSizer.Window window = session.window;
+        final int currentIndex = session.nextIndex;
+        final int readCnt = window.size();
+        final long pageStart = System.currentTimeMillis();
+        Log.d(TAG, session.getId() + ": streaming " + readCnt + " records from index: " + currentIndex + " / " + session.total);
 
-        SyncLockRecordAction action = new SyncLockRecordAction(currentIndex, 10, logVersion);
-        action.setBaseAuthAction(auth);
+        SyncLockRecordAction action = new SyncLockRecordAction(currentIndex, readCnt, session.logVersion);
+        action.setBaseAuthAction(session.auth);
 
         try {
             bleClient.syncLockRecord(action, new FunCallback<LockRecordDataResult>() {
                 @Override
                 public void onResponse(Response<LockRecordDataResult> response) {
                     try {
-                        Log.d(TAG, "onResponse called - code: " + response.code() + ", streamClosed: " + streamClosed[0]);
+                        Log.d(TAG, "onResponse called - code: " + response.code() + ", closed: " + session.isClosed());
+                        if (session.isClosed()) return;
 
                         if (response.isSuccessful() && response.body() != null) {
+                            touchLink(session);
                             LockRecordDataResult body = response.body();
                             int recordsInBatch = body.getLogNum();
                             Log.d(TAG, "Received batch: " + recordsInBatch + " records, moreData: " + body.isMoreData());
+                            window.success(readCnt, recordsInBatch, body.isMoreData(), System.currentTimeMillis() - pageStart);
+                            session.pages++;
 
-                            List<Map<String, Object>> batchRecords = new ArrayList<>();
+                            List<Map<String, Object>> page = mapPage(body, session.logVersion);
+                            recordStore.append(session.getMac(), page);
+                            // Counts-only streams do not keep what this chunk sends
+                            List<Map<String, Object>> batchRecords = session.cursor.filterPage(page);
+                            if (session.keepItems) session.records.addAll(batchRecords);
+                            session.delivered += batchRecords.size();
+                            session.nextIndex = currentIndex + recordsInBatch;
 
                             // Process logs in this batch
-                            if (recordsInBatch > 0) {
-                                if (logVersion == 1) {
-                                    for (HXRecordBaseModel r : body.getLog1Array()) {
-                                        Map<String, Object> m = mapRecord(r);
-                                        m.put("logVersion", 1);
-                                        allRecords.add(m);
-                                        batchRecords.add(m);
-                                    }
-                                } else {
-                                    for (HXRecord2BaseModel r : body.getLog2Array()) {
-                                        Map<String, Object> m = mapRecord(r);
-                                        m.put("logVersion", 2);
-                                        allRecords.add(m);
-                                        batchRecords.add(m);
-                                    }
-                                }
-
+                            if (!batchRecords.isEmpty()) {
                                 // Emit chunk event
                                 Map<String, Object> chunkEvent = new HashMap<>();
                                 chunkEvent.put("type", "syncLockRecordsChunk");
-                                chunkEvent.put("items", batchRecords);
-                                chunkEvent.put("totalSoFar", allRecords.size());
+                                chunkEvent.put("syncId", session.getId());
+                                chunkEvent.put("streamId", session.getId());
+                                chunkEvent.put("items", RecordBatchEncoder.maybeEncode(batchRecords, session.binary));
+                                chunkEvent.put("totalSoFar", session.delivered);
                                 chunkEvent.put("isMore", body.isMoreData());
                                 callback.onChunk(chunkEvent);
                             }
 
-                            int nextIndex = currentIndex + recordsInBatch;
-
                             // Check if we should continue
-                            if (body.isMoreData() && nextIndex < total) {
-                                // Continue streaming
-                                streamRecordsRecursive(auth, logVersion, nextIndex, total, allRecords, streamClosed, callback);
+                            if (body.isMoreData() && session.nextIndex < session.total && !session.cursor.reachedSeen()) {
+                                // Continue streaming once the consumer has credit for another chunk
+                                requestNextPage(session, callback);
                             } else {
-                                // Sync complete
-                                if (streamClosed[0]) {
-                                    Log.d(TAG, "Stream already closed");
-                                    return;
-                                }
-                                streamClosed[0] = true;
-
-                                Log.d(TAG, "Sync completed - total records: " + allRecords.size());
-
-                                // Emit done event
-                                Map<String, Object> doneEvent = new HashMap<>();
-                                doneEvent.put("type", "syncLockRecordsDone");
-                                doneEvent.put("items", allRecords);
-                                doneEvent.put("total", allRecords.size());
-                                callback.onDone(doneEvent);
-
-                                // Safely disconnect BLE
-                                try {
-                                    bleClient.disConnectBle(null);
-                                    Log.d(TAG, "BLE disconnected after sync completion");
-                                } catch (Throwable disconnectError) {
-                                    Log.e(TAG, "Error disconnecting BLE", disconnectError);
-                                }
+                                emitStreamDone(session, callback);
                             }
                         } else {
-                            // Error response
-                            if (streamClosed[0]) {
-                                Log.d(TAG, "Stream already closed, ignoring error");
+                            if (RecordBatchSizer.isBackoffCode(response.code()) && window.failure()) {
+                                Log.w(TAG, "Lock busy at index " + currentIndex + ", retrying with " + window.size());
+                                streamRecordsRecursive(session, callback);
                                 return;
                             }
-                            streamClosed[0] = true;
-
                             Log.e(TAG, "Sync failed at index " + currentIndex + " code: " + response.code());
-
-                            Map<String, Object> errorEvent = new HashMap<>();
-                            errorEvent.put("type", "syncLockRecordsError");
-                            errorEvent.put("message", WiseStatusCode.description(response.code()));
-                            errorEvent.put("code", response.code());
-                            callback.onError(errorEvent);
-
-                            // Safely disconnect BLE
-                            try {
-                                bleClient.disConnectBle(null);
-                                Log.d(TAG, "BLE disconnected after error");
-                            } catch (Throwable disconnectError) {
-                                Log.e(TAG, "Error disconnecting BLE", disconnectError);
-                            }
+                            emitStreamError(session, WiseStatusCode.description(response.code()), response.code(), callback);
                         }
                     } catch (Throwable t) {
                         Log.e(TAG, "Exception in syncLockRecordsStream onResponse", t);
-
-                        if (!streamClosed[0]) {
-                            streamClosed[0] = true;
-
-                            Map<String, Object> errorEvent = new HashMap<>();
-                            errorEvent.put("type", "syncLockRecordsError");
-                            errorEvent.put("message", "Internal error: " + t.getMessage());
-                            errorEvent.put("code", -1);
-                            callback.onError(errorEvent);
-
-                            // Safely disconnect BLE
-                            try {
-                                bleClient.disConnectBle(null);
-                                Log.d(TAG, "BLE disconnected after exception");
-                            } catch (Throwable disconnectError) {
-                                Log.e(TAG, "Error disconnecting BLE", disconnectError);
-                            }
-                        }
+                        emitStreamError(session, "Internal error: " + t.getMessage(), -1, callback);
                     }
                 }
 
                 @Override
                 public void onFailure(Throwable t) {
-                    if (streamClosed[0]) {
+                    if (session.isClosed()) {
                         Log.d(TAG, "Ignoring failure - stream already closed");
                         return;
                     }
-                    streamClosed[0] = true;
-
-                    Log.e(TAG, "syncLockRecordsStream failed", t);
-                    Map<String, Object> errorEvent = new HashMap<>();
-                    errorEvent.put("type", "syncLockRecordsError");
-                    errorEvent.put("message", t.getMessage() != null ? t.getMessage() : "Unknown error");
-                    errorEvent.put("code", -1);
-                    callback.onError(errorEvent);
-
-                    // Safely disconnect BLE
-                    try {
-                        bleClient.disConnectBle(null);
-                        Log.d(TAG, "BLE disconnected after failure");
-                    } catch (Throwable disconnectError) {
-                        Log.e(TAG, "Error disconnecting BLE", disconnectError);
+                    if (window.failure()) {
+                        Log.w(TAG, "Stream page failed at index " + currentIndex + ", retrying with " + window.size(), t);
+                        streamRecordsRecursive(session, callback);
+                        return;
                     }
+                    Log.e(TAG, "syncLockRecordsStream failed", t);
+                    emitStreamError(session, t.getMessage() != null ? t.getMessage() : "Unknown error", -1, callback);
                 }
             });
         } catch (Throwable t) {
             Log.e(TAG, "Exception in streamRecordsRecursive", t);
+            emitStreamError(session, "Failed to query records: " + (t.getMessage() != null ? t.getMessage() : "Unknown error"), -1, callback);
+        }
+    }
 
-            if (!streamClosed[0]) {
-                streamClosed[0] = true;
+    private void emitStreamDone(RecordSyncRegistry.Session session, SyncLockRecordsStreamCallback callback) {
+        // Sync complete
+        if (!session.close()) {
+            Log.d(TAG, "Stream already closed");
+            return;
+        }
+        session.cursor.commit(session.total);
+
+        Log.d(TAG, session.getId() + ": sync completed - total records: " + session.delivered);
+
+        // Emit done event; counts-only streams leave out the records the
+        // chunks already carried
+        Map<String, Object> doneEvent = new HashMap<>();
+        doneEvent.put("type", "syncLockRecordsDone");
+        doneEvent.put("syncId", session.getId());
+        doneEvent.put("streamId", session.getId());
+        if (session.keepItems) {
+            doneEvent.put("items", RecordBatchEncoder.maybeEncode(session.records, session.binary));
+        }
+        doneEvent.put("total", session.delivered);
+        doneEvent.put("pages", session.pages);
+        doneEvent.put("sinceLast", session.cursor.isSinceLast());
+        callback.onDone(doneEvent);
+        releaseLink(session);
+    }
 
-                Map<String, Object> errorEvent = new HashMap<>();
-                errorEvent.put("type", "syncLockRecordsError");
-                errorEvent.put("message", "Failed to query records: " + (t.getMessage() != null ? t.getMessage() : "Unknown error"));
-                errorEvent.put("code", -1);
-                callback.onError(errorEvent);
-            }
+    /**
+     * cancelStream for a running record stream: stop paging, abort the page
+     * request in flight and end the stream. The checkpoint is not moved.
+     */
+    private void cancelStream(RecordSyncRegistry.Session session, SyncLockRecordsStreamCallback callback) {
+        if (!session.close()) return;
+        PluginUtils.abortCurrentCmd(bleClient, session.auth, TAG);
+        int delivered = session.delivered;
+        session.records.clear();
+        Log.d(TAG, session.getId() + ": cancelled after " + delivered + " records");
+        callback.onDone(cancelledEvent(session.getId(), delivered));
+        releaseLink(session);
+    }
+
+    private static Map<String, Object> cancelledEvent(String id, int totalSoFar) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", "syncLockRecordsCancelled");
+        event.put("syncId", id);
+        event.put("streamId", id);
+        event.put("totalSoFar", totalSoFar);
+        return event;
+    }
+
+    private void emitStreamError(RecordSyncRegistry.Session session, String message, Object code,
+                                 SyncLockRecordsStreamCallback callback) {
+        if (!session.close()) {
+            Log.d(TAG, "Stream already closed, ignoring error: " + message);
+            return;
         }
+        Map<String, Object> errorEvent = new HashMap<>();
+        errorEvent.put("type", "syncLockRecordsError");
+        errorEvent.put("syncId", session.getId());
+        errorEvent.put("streamId", session.getId());
+        errorEvent.put("message", message);
+        errorEvent.put("code", code);
+        callback.onError(errorEvent);
+        releaseLink(session);
+    }
+
+    /** Page records out of the local store; see {@link LockRecordStore#query}. */
+    public void queryLockRecords(Map<String, Object> args, Result result) {
+        recordStore.query(args, result);
+    }
+
+    /** Delete locally stored records for one lock, or every lock when mac is empty. */
+    public void clearLockRecords(String mac, Result result) {
+        recordStore.clear(mac, result);
+    }
+
+    /** Forget sync checkpoints for one lock, or every lock when mac is empty. */
+    public void clearRecordCheckpoints(String mac) {
+        checkpoints.clear(mac);
+    }
+
+    /** Running syncs with their position, plus started / finished counts. */
+    public Map<String, Object> getSyncSessions() {
+        return syncs.getStats();
+    }
+
+    /** Learned readCnt per lock model / log version, for diagnostics. */
+    public Map<String, Object> getBatchSizes() {
+        return batchSizer.getStats();
     }
 }
@@ -0,0 +1,597 @@
+package com.example.wise_apartment.utils;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * On-device store of lock records, fed by every record sync path.
+ *
+ * Each lock gets a directory of append-only segment files
+ * ({@code seg-000001.dat}, ...; a new one is started at
+ * {@link #SEGMENT_BYTES}). A segment is a 4-byte magic followed by
+ * {@code [u32 length][record]} entries; a torn entry at the tail (app killed
+ * mid-write) is truncated when the lock is opened. Reads go through a
+ * read-only memory map of each segment.
+ *
+ * When a lock is first touched its segments are scanned once to rebuild the
+ * in-memory indexes: records ordered by recordTime, and by key id / key type
+ * (lockKeyId, lockKeyId1, modifyLockKeyId, delLockKeyId / keyType, keyType1,
+ * modifyLockKeyType). A 64-bit hash of each encoded record keeps repeated
+ * syncs of the same history from writing duplicates. Queries are answered
+ * from the indexes and only the returned page is decoded.
+ *
+ * All file work runs on one background thread; {@link #append} and
+ * {@link #query} return immediately.
+ */
+public class LockRecordStore {
+    private static final String TAG = "LockRecordStore";
+
+    static final int SEGMENT_BYTES = 1024 * 1024;
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 500;
+
+    private static final int MAGIC = 0x31535257; // "WRS1", little-endian
+    private static final byte T_LONG = 1;
+    private static final byte T_DOUBLE = 2;
+    private static final byte T_BOOL = 3;
+    private static final byte T_STRING = 4;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String[] KEY_ID_FIELDS = {"lockKeyId", "lockKeyId1", "modifyLockKeyId", "delLockKeyId"};
+    private static final String[] KEY_TYPE_FIELDS = {"keyType", "keyType1", "modifyLockKeyType"};
+
+    private final File root;
+    private final ExecutorService io;
+    // Touched only on the io thread
+    private final Map<String, Shard> shards = new HashMap<>();
+
+    public LockRecordStore(File root) {
+        this.root = root;
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "lock-record-store");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Queue mapped records of one lock for storage. */
+    public void append(final String mac, final List<Map<String, Object>> records) {
+        if (records == null || records.isEmpty()) return;
+        final List<Map<String, Object>> copy = new ArrayList<>(records);
+        io.execute(() -> {
+            try {
+                appendNow(mac, copy);
+            } catch (Throwable t) {
+                Log.e(TAG, "Append failed for " + mac, t);
+            }
+        });
+    }
+
+    /**
+     * Page records out of the store. Args: {@code mac} (required), optional
+     * {@code fromTime} / {@code toTime} (inclusive, same unit as recordTime),
+     * {@code keyId}, {@code keyType}, {@code recordType}, {@code offset},
+     * {@code limit} (default 50, max 500), {@code descending} (default true)
+     * and {@code recordFormat}. Replies {records, total, offset, nextOffset, hasMore}.
+     */
+    public void query(final Map<String, Object> args, final Result result) {
+        io.execute(() -> {
+            try {
+                result.success(queryNow(args));
+            } catch (IllegalArgumentException e) {
+                result.error("INVALID_ARGS", e.getMessage(), null);
+            } catch (Throwable t) {
+                Log.e(TAG, "Query failed", t);
+                result.error("ERROR", t.getMessage(), null);
+            }
+        });
+    }
+
+    /** Delete the stored records of one lock, or of every lock when mac is empty. */
+    public void clear(final String mac, final Result result) {
+        io.execute(() -> {
+            clearNow(mac);
+            result.success(true);
+        });
+    }
+
+    public void shutdown() {
+        io.execute(() -> {
+            for (Shard s : shards.values()) s.close();
+            shards.clear();
+        });
+        io.shutdown();
+    }
+
+    // ---- io thread ----
+
+    int appendNow(String mac, List<Map<String, Object>> records) throws IOException {
+        Shard shard = shard(normalize(mac));
+        return shard == null ? 0 : shard.append(records);
+    }
+
+    Map<String, Object> queryNow(Map<String, Object> args) throws IOException {
+        String mac = args == null ? "" : normalize(args.get("mac") instanceof String ? (String) args.get("mac") : null);
+        if (mac.isEmpty()) throw new IllegalArgumentException("mac is required");
+        Shard shard = shard(mac);
+
+        long from = longArg(args, "fromTime", Long.MIN_VALUE);
+        long to = longArg(args, "toTime", Long.MAX_VALUE);
+        Integer keyId = intArg(args, "keyId");
+        Integer keyType = intArg(args, "keyType");
+        Integer recordType = intArg(args, "recordType");
+        int offset = Math.max(0, (int) longArg(args, "offset", 0));
+        int limit = (int) Math.min(MAX_LIMIT, Math.max(1, longArg(args, "limit", DEFAULT_LIMIT)));
+        boolean descending = !(args.get("descending") instanceof Boolean) || (Boolean) args.get("descending");
+
+        int[] matches = shard == null ? new int[0] : shard.match(from, to, keyId, keyType, recordType);
+        List<Map<String, Object>> page = new ArrayList<>();
+        for (int i = offset; i < matches.length && page.size() < limit; i++) {
+            int ordinal = descending ? matches[matches.length - 1 - i] : matches[i];
+            page.add(shard.read(ordinal));
+        }
+        int next = offset + page.size();
+
+        Map<String, Object> out = new HashMap<>();
+        out.put("records", RecordBatchEncoder.maybeEncode(page, RecordBatchEncoder.isRequested(args)));
+        out.put("total", matches.length);
+        out.put("offset", offset);
+        out.put("nextOffset", next < matches.length ? next : null);
+        out.put("hasMore", next < matches.length);
+        return out;
+    }
+
+    void clearNow(String mac) {
+        String key = normalize(mac);
+        List<String> macs = new ArrayList<>();
+        if (key.isEmpty()) {
+            String[] dirs = root.list();
+            if (dirs != null) macs.addAll(Arrays.asList(dirs));
+            for (String m : shards.keySet()) {
+                String dir = dirName(m);
+                if (!macs.contains(dir)) macs.add(dir);
+            }
+            for (Shard s : shards.values()) s.close();
+            shards.clear();
+        } else {
+            Shard s = shards.remove(key);
+            if (s != null) s.close();
+            macs.add(dirName(key));
+        }
+        for (String dir : macs) {
+            File d = new File(root, dir);
+            File[] files = d.listFiles();
+            if (files != null) for (File f : files) f.delete();
+            d.delete();
+        }
+    }
+
+    private Shard shard(String mac) throws IOException {
+        if (mac.isEmpty()) return null;
+        Shard s = shards.get(mac);
+        if (s == null) {
+            s = new Shard(new File(root, dirName(mac)));
+            s.open();
+            shards.put(mac, s);
+        }
+        return s;
+    }
+
+    private static String dirName(String mac) {
+        return mac.replace(":", "");
+    }
+
+    private static String normalize(String mac) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("mac", mac);
+        return BleCommandScheduler.macOf(m);
+    }
+
+    private static long longArg(Map<String, Object> args, String key, long def) {
+        Object v = args.get(key);
+        return v instanceof Number ? ((Number) v).longValue() : def;
+    }
+
+    private static Integer intArg(Map<String, Object> args, String key) {
+        Object v = args.get(key);
+        return v instanceof Number ? ((Number) v).intValue() : null;
+    }
+
+    /** Records and indexes of one lock. */
+    private static final class Shard {
+        private final File dir;
+        private final List<Segment> segments = new ArrayList<>();
+
+        // Per-record columns, indexed by ordinal (append order)
+        private long[] locs = new long[256];
+        private long[] times = new long[256];
+        private int[] keyIds = new int[256];
+        private int[] keyTypes = new int[256];
+        private int[] recordTypes = new int[256];
+        private int count;
+
+        // Ordinals by recordTime: byTime[0..sorted) is sorted, the rest was
+        // appended since and is merged in by the next match()
+        private int[] byTime = new int[256];
+        private int sorted;
+        private final Map<Integer, IntList> byKeyId = new HashMap<>();
+        private final Map<Integer, IntList> byKeyType = new HashMap<>();
+        private final Set<Long> hashes = new HashSet<>();
+
+        Shard(File dir) {
+            this.dir = dir;
+        }
+
+        void open() throws IOException {
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+            File[] files = dir.listFiles((d, name) -> name.startsWith("seg-") && name.endsWith(".dat"));
+            if (files == null) files = new File[0];
+            Arrays.sort(files);
+            for (File f : files) {
+                int id = Integer.parseInt(f.getName().substring(4, f.getName().length() - 4));
+                Segment seg = new Segment(id, f);
+                segments.add(seg);
+                scan(segments.size() - 1, seg);
+            }
+        }
+
+        private void scan(int segIndex, Segment seg) throws IOException {
+            if (seg.size < 4) {
+                // Created but the magic never made it to disk
+                seg.truncate(0);
+                seg.write(le32(MAGIC));
+                return;
+            }
+            ByteBuffer map = seg.map();
+            int pos = 4;
+            while (pos + 4 <= seg.size) {
+                int len = map.getInt(pos);
+                if (len <= 0 || pos + 4L + len > seg.size) {
+                    Log.w(TAG, "Truncating torn tail of " + seg.file + " at " + pos);
+                    seg.truncate(pos);
+                    break;
+                }
+                byte[] payload = new byte[len];
+                ByteBuffer dup = map.duplicate();
+                dup.position(pos + 4);
+                dup.get(payload);
+                if (hashes.add(hash(payload))) {
+                    index(((long) segIndex << 32) | pos, decode(payload));
+                }
+                pos += 4 + len;
+            }
+        }
+
+        int append(List<Map<String, Object>> records) throws IOException {
+            ByteArrayOutputStream pending = new ByteArrayOutputStream();
+            List<long[]> pendingLocs = new ArrayList<>();
+            List<Map<String, Object>> pendingRecords = new ArrayList<>();
+            Segment seg = segments.isEmpty() ? roll() : segments.get(segments.size() - 1);
+            long writePos = seg.size;
+            int added = 0;
+
+            for (Map<String, Object> r : records) {
+                byte[] payload = encode(r);
+                if (!hashes.add(hash(payload))) continue;
+                if (writePos + 4 + payload.length > SEGMENT_BYTES && writePos > 4) {
+                    seg.write(pending.toByteArray());
+                    flushIndex(pendingLocs, pendingRecords);
+                    pending.reset();
+                    seg = roll();
+                    writePos = seg.size;
+                }
+                pendingLocs.add(new long[]{segments.size() - 1, writePos});
+                pendingRecords.add(r);
+                pending.write(le32(payload.length));
+                pending.write(payload);
+                writePos += 4 + payload.length;
+                added++;
+            }
+            if (pending.size() > 0) {
+                seg.write(pending.toByteArray());
+                flushIndex(pendingLocs, pendingRecords);
+            }
+            return added;
+        }
+
+        private void flushIndex(List<long[]> locList, List<Map<String, Object>> recs) {
+            for (int i = 0; i < locList.size(); i++) {
+                long[] l = locList.get(i);
+                index((l[0] << 32) | l[1], recs.get(i));
+            }
+            locList.clear();
+            recs.clear();
+        }
+
+        private Segment roll() throws IOException {
+            int id = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).id + 1;
+            Segment seg = new Segment(id, new File(dir, String.format(Locale.US, "seg-%06d.dat", id)));
+            seg.write(le32(MAGIC));
+            segments.add(seg);
+            return seg;
+        }
+
+        private void index(long loc, Map<String, Object> r) {
+            if (count == locs.length) {
+                int n = count * 2;
+                locs = Arrays.copyOf(locs, n);
+                times = Arrays.copyOf(times, n);
+                keyIds = Arrays.copyOf(keyIds, n);
+                keyTypes = Arrays.copyOf(keyTypes, n);
+                recordTypes = Arrays.copyOf(recordTypes, n);
+                byTime = Arrays.copyOf(byTime, n);
+            }
+            int ordinal = count++;
+            long time = numberOf(r.get("recordTime"), 0);
+            locs[ordinal] = loc;
+            times[ordinal] = time;
+            keyIds[ordinal] = (int) firstOf(r, KEY_ID_FIELDS);
+            keyTypes[ordinal] = (int) firstOf(r, KEY_TYPE_FIELDS);
+            recordTypes[ordinal] = (int) numberOf(r.get("recordType"), -1);
+
+            // Syncs page newest first, so a new record is usually older than
+            // everything indexed; append and leave the ordering to match()
+            byTime[ordinal] = ordinal;
+            if (sorted == ordinal && (ordinal == 0 || times[byTime[ordinal - 1]] <= time)) sorted++;
+
+            if (keyIds[ordinal] >= 0) listFor(byKeyId, keyIds[ordinal]).add(ordinal);
+            if (keyTypes[ordinal] >= 0) listFor(byKeyType, keyTypes[ordinal]).add(ordinal);
+        }
+
+        /** Ordinals matching every filter, ascending by recordTime. */
+        int[] match(long from, long to, Integer keyId, Integer keyType, Integer recordType) {
+            if (keyId != null || keyType != null) {
+                IntList source = keyId != null ? byKeyId.get(keyId) : byKeyType.get(keyType);
+                if (source == null) return new int[0];
+                List<Integer> hits = new ArrayList<>();
+                for (int i = 0; i < source.size; i++) {
+                    int o = source.values[i];
+                    if (accept(o, from, to, keyId, keyType, recordType)) hits.add(o);
+                }
+                Collections.sort(hits, (a, b) -> times[a] != times[b] ? Long.compare(times[a], times[b]) : Integer.compare(a, b));
+                int[] out = new int[hits.size()];
+                for (int i = 0; i < out.length; i++) out[i] = hits.get(i);
+                return out;
+            }
+            sortByTime();
+            int start = from == Long.MIN_VALUE ? 0 : lowerBound(from, count);
+            IntList hits = new IntList();
+            for (int i = start; i < count; i++) {
+                int o = byTime[i];
+                if (times[o] > to) break;
+                if (recordType == null || recordTypes[o] == recordType) hits.add(o);
+            }
+            return Arrays.copyOf(hits.values, hits.size);
+        }
+
+        private boolean accept(int o, long from, long to, Integer keyId, Integer keyType, Integer recordType) {
+            return times[o] >= from && times[o] <= to
+                    && (keyId == null || keyIds[o] == keyId)
+                    && (keyType == null || keyTypes[o] == keyType)
+                    && (recordType == null || recordTypes[o] == recordType);
+        }
+
+        Map<String, Object> read(int ordinal) throws IOException {
+            long loc = locs[ordinal];
+            Segment seg = segments.get((int) (loc >>> 32));
+            int pos = (int) loc;
+            ByteBuffer map = seg.map();
+            int len = map.getInt(pos);
+            byte[] payload = new byte[len];
+            ByteBuffer dup = map.duplicate();
+            dup.position(pos + 4);
+            dup.get(payload);
+            return decode(payload);
+        }
+
+        // Sort what was appended since the last sort and merge it into the
+        // sorted prefix: one pass per query instead of one shift per record
+        private void sortByTime() {
+            if (sorted == count) return;
+            Integer[] tail = new Integer[count - sorted];
+            for (int i = 0; i < tail.length; i++) tail[i] = byTime[sorted + i];
+            Arrays.sort(tail, (a, b) -> times[a] != times[b] ? Long.compare(times[a], times[b]) : Integer.compare(a, b));
+            int[] merged = new int[byTime.length];
+            int i = 0, j = 0, o = 0;
+            // Equal times keep append order; the prefix was appended first
+            while (i < sorted && j < tail.length) {
+                merged[o++] = times[byTime[i]] <= times[tail[j]] ? byTime[i++] : tail[j++];
+            }
+            while (i < sorted) merged[o++] = byTime[i++];
+            while (j < tail.length) merged[o++] = tail[j++];
+            byTime = merged;
+            sorted = count;
+        }
+
+        // First position in byTime[0..n) whose time is >= t
+        private int lowerBound(long t, int n) {
+            int lo = 0, hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[byTime[mid]] < t) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        void close() {
+            for (Segment s : segments) s.close();
+        }
+    }
+
+    private static final class Segment {
+        final int id;
+        final File file;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private MappedByteBuffer map;
+        long size;
+
+        Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+            this.size = channel.size();
+        }
+
+        /** Read-only mapping covering everything written so far. */
+        ByteBuffer map() throws IOException {
+            if (map == null || map.capacity() < size) {
+                map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                map.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return map;
+        }
+
+        void write(byte[] bytes) throws IOException {
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            while (buf.hasRemaining()) channel.write(buf, size + buf.position());
+            size += bytes.length;
+        }
+
+        void truncate(long to) throws IOException {
+            channel.truncate(to);
+            size = to;
+            map = null;
+        }
+
+        void close() {
+            map = null;
+            try {
+                raf.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[8];
+        int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+    }
+
+    private static IntList listFor(Map<Integer, IntList> index, int key) {
+        IntList l = index.get(key);
+        if (l == null) {
+            l = new IntList();
+            index.put(key, l);
+        }
+        return l;
+    }
+
+    private static long firstOf(Map<String, Object> r, String[] fields) {
+        for (String f : fields) {
+            Object v = r.get(f);
+            if (v instanceof Number) return ((Number) v).longValue();
+        }
+        return -1;
+    }
+
+    private static long numberOf(Object v, long def) {
+        return v instanceof Number ? ((Number) v).longValue() : def;
+    }
+
+    private static byte[] le32(int v) {
+        return new byte[]{(byte) v, (byte) (v >>> 8), (byte) (v >>> 16), (byte) (v >>> 24)};
+    }
+
+    // ---- record codec: u16 fieldCount, then {u8 nameLen, name, u8 type, value} ----
+
+    // Fields are written in name order so the same record always encodes to
+    // the same bytes, which the duplicate check relies on.
+    static byte[] encode(Map<String, Object> record) {
+        List<byte[]> names = new ArrayList<>(record.size());
+        List<Object> values = new ArrayList<>(record.size());
+        int size = 2;
+        for (Map.Entry<String, Object> e : new TreeMap<>(record).entrySet()) {
+            Object v = e.getValue();
+            byte[] name = e.getKey().getBytes(UTF8);
+            if (v == null || name.length > 255) continue;
+            if (!(v instanceof Number) && !(v instanceof Boolean)) v = String.valueOf(v).getBytes(UTF8);
+            names.add(name);
+            values.add(v);
+            size += 1 + name.length + 1;
+            if (v instanceof byte[]) size += 4 + ((byte[]) v).length;
+            else if (v instanceof Boolean) size += 1;
+            else size += 8;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putShort((short) names.size());
+        for (int i = 0; i < names.size(); i++) {
+            byte[] name = names.get(i);
+            Object v = values.get(i);
+            buf.put((byte) name.length).put(name);
+            if (v instanceof byte[]) {
+                buf.put(T_STRING).putInt(((byte[]) v).length).put((byte[]) v);
+            } else if (v instanceof Boolean) {
+                buf.put(T_BOOL).put((Boolean) v ? (byte) 1 : (byte) 0);
+            } else if (v instanceof Double || v instanceof Float) {
+                buf.put(T_DOUBLE).putDouble(((Number) v).doubleValue());
+            } else {
+                buf.put(T_LONG).putLong(((Number) v).longValue());
+            }
+        }
+        return buf.array();
+    }
+
+    static Map<String, Object> decode(byte[] payload) {
+        ByteBuffer buf = ByteBuffer.wrap(payload).order(ByteOrder.LITTLE_ENDIAN);
+        int n = buf.getShort() & 0xFFFF;
+        Map<String, Object> out = new HashMap<>((int) (n / 0.75f) + 1);
+        for (int i = 0; i < n; i++) {
+            byte[] name = new byte[buf.get() & 0xFF];
+            buf.get(name);
+            byte type = buf.get();
+            Object v;
+            switch (type) {
+                case T_LONG: v = buf.getLong(); break;
+                case T_DOUBLE: v = buf.getDouble(); break;
+                case T_BOOL: v = buf.get() != 0; break;
+                default:
+                    byte[] s = new byte[buf.getInt()];
+                    buf.get(s);
+                    v = new String(s, UTF8);
+                    break;
+            }
+            out.put(new String(name, UTF8), v);
+        }
+        return out;
+    }
+
+    // FNV-1a, 64-bit
+    private static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= (b & 0xFF);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
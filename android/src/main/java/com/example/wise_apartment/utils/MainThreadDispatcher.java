@@ -0,0 +1,173 @@
+package com.example.wise_apartment.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Plugin-wide path to the main thread for method results and stream events.
+ *
+ * {@link #execute} runs the task inline when called on the main thread and
+ * nothing is queued; otherwise the task joins a FIFO queue. Off-main tasks
+ * share one Handler message per drain instead of one message (and one
+ * Handler) per reply, and everything submitted through the dispatcher runs
+ * in submission order. {@link #post} always queues, for callers that must
+ * not run inside the current frame (the command scheduler).
+ *
+ * Queue latency (submit to run) is tracked and reported by {@link #getStats()}.
+ */
+public final class MainThreadDispatcher implements Executor, CoalescingEventEmitter.Poster {
+    private static final String TAG = "MainThreadDispatcher";
+    // Yield the looper after this many tasks so input and frames are not starved.
+    static final int MAX_PER_DRAIN = 64;
+
+    interface Host {
+        boolean isMainThread();
+        void post(Runnable r);
+        void postDelayed(Runnable r, long delayMs);
+    }
+
+    private static final class Task {
+        final Runnable runnable;
+        final long queuedAtNanos;
+
+        Task(Runnable runnable, long queuedAtNanos) {
+            this.runnable = runnable;
+            this.queuedAtNanos = queuedAtNanos;
+        }
+    }
+
+    private static MainThreadDispatcher instance;
+
+    private final Host host;
+    private final Object lock = new Object();
+    private final Runnable drainer = this::drain;
+
+    // Guarded by lock
+    private final ArrayDeque<Task> queue = new ArrayDeque<>();
+    private boolean drainPosted;
+    private long queued;
+    private long inline;
+    private long drains;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    public static synchronized MainThreadDispatcher get() {
+        if (instance == null) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            instance = new MainThreadDispatcher(new Host() {
+                @Override
+                public boolean isMainThread() {
+                    return Looper.myLooper() == Looper.getMainLooper();
+                }
+
+                @Override
+                public void post(Runnable r) {
+                    handler.post(r);
+                }
+
+                @Override
+                public void postDelayed(Runnable r, long delayMs) {
+                    handler.postDelayed(r, delayMs);
+                }
+            });
+        }
+        return instance;
+    }
+
+    MainThreadDispatcher(Host host) {
+        this.host = host;
+    }
+
+    /** Run on the main thread: inline if already there, else queued. */
+    @Override
+    public void execute(Runnable r) {
+        if (host.isMainThread()) {
+            boolean idle;
+            synchronized (lock) {
+                idle = queue.isEmpty();
+                if (idle) inline++;
+            }
+            if (idle) {
+                runSafely(r);
+                return;
+            }
+        }
+        enqueue(r);
+    }
+
+    /** Queue for the main thread even when called from it. */
+    @Override
+    public void post(Runnable r) {
+        enqueue(r);
+    }
+
+    @Override
+    public void postDelayed(final Runnable r, long delayMs) {
+        host.postDelayed(() -> execute(r), delayMs);
+    }
+
+    private void enqueue(Runnable r) {
+        synchronized (lock) {
+            queue.add(new Task(r, System.nanoTime()));
+            queued++;
+            if (drainPosted) return;
+            drainPosted = true;
+        }
+        host.post(drainer);
+    }
+
+    // Main thread
+    private void drain() {
+        synchronized (lock) {
+            drains++;
+        }
+        for (int i = 0; i < MAX_PER_DRAIN; i++) {
+            Task t;
+            synchronized (lock) {
+                t = queue.poll();
+                if (t == null) {
+                    drainPosted = false;
+                    return;
+                }
+                long wait = System.nanoTime() - t.queuedAtNanos;
+                totalWaitNanos += wait;
+                if (wait > maxWaitNanos) maxWaitNanos = wait;
+            }
+            runSafely(t.runnable);
+        }
+        boolean more;
+        synchronized (lock) {
+            more = !queue.isEmpty();
+            drainPosted = more;
+        }
+        if (more) host.post(drainer);
+    }
+
+    private static void runSafely(Runnable r) {
+        try {
+            r.run();
+        } catch (Throwable t) {
+            Log.w(TAG, "Main-thread task threw", t);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        synchronized (lock) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("queued", queued);
+            m.put("inline", inline);
+            m.put("drains", drains);
+            m.put("pending", queue.size());
+            long ran = queued - queue.size();
+            m.put("avgQueueMs", ran == 0 ? 0.0 : totalWaitNanos / 1e6 / ran);
+            m.put("maxQueueMs", maxWaitNanos / 1e6);
+            return m;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.wise_apartment.utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flattens SDK model objects (HXRecord*, SysParamResult, AddLockKeyResult...)
+ * into a Map for the method channel.
+ *
+ * The field walk up the class hierarchy and {@code setAccessible} happen once
+ * per concrete class; the resulting accessor plan is cached and reused for
+ * every later instance, which matters for record syncs that map thousands of
+ * objects of the same few classes.
+ *
+ * Output matches the previous per-call reflection: {@code modelType} is the
+ * simple class name, non-static non-null fields are exported by name, and
+ * Number/Boolean/String values pass through while anything else is sent as
+ * {@code toString()}. Fields are visited subclass first, so a superclass
+ * field with the same name wins, as before.
+ */
+public final class ModelFieldMapper {
+
+    private static final ConcurrentHashMap<Class<?>, Plan> PLANS = new ConcurrentHashMap<>();
+
+    private ModelFieldMapper() {}
+
+    static final class Plan {
+        final String modelType;
+        final Field[] fields;
+        final String[] names;
+
+        Plan(Class<?> type) {
+            List<Field> found = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())) continue;
+                    try {
+                        f.setAccessible(true);
+                        found.add(f);
+                    } catch (RuntimeException ignored) {
+                        // Inaccessible field (e.g. module restrictions): skip it, as a
+                        // failed read was skipped before.
+                    }
+                }
+            }
+            this.modelType = type.getSimpleName();
+            this.fields = found.toArray(new Field[0]);
+            this.names = new String[fields.length];
+            for (int i = 0; i < fields.length; i++) names[i] = fields[i].getName();
+        }
+    }
+
+    static Plan planFor(Class<?> type) {
+        Plan plan = PLANS.get(type);
+        if (plan == null) {
+            plan = new Plan(type);
+            Plan raced = PLANS.putIfAbsent(type, plan);
+            if (raced != null) plan = raced;
+        }
+        return plan;
+    }
+
+    /** Map every readable field of {@code obj}, plus {@code modelType}. */
+    public static Map<String, Object> toMap(Object obj) {
+        return toMap(obj, 0);
+    }
+
+    /**
+     * Same as {@link #toMap(Object)} with room reserved for {@code extra}
+     * caller-added keys (e.g. logVersion) so they do not trigger a resize.
+     */
+    public static Map<String, Object> toMap(Object obj, int extra) {
+        if (obj == null) return new HashMap<>();
+        Plan plan = planFor(obj.getClass());
+        // Sized for every field, modelType and the extras so the map never resizes
+        Map<String, Object> out = new HashMap<>((int) ((plan.fields.length + 1 + extra) / 0.75f) + 1);
+        out.put("modelType", plan.modelType);
+        writeFields(plan, obj, out);
+        return out;
+    }
+
+    private static void writeFields(Plan plan, Object obj, Map<String, Object> out) {
+        Field[] fields = plan.fields;
+        for (int i = 0; i < fields.length; i++) {
+            Object value;
+            try {
+                value = fields[i].get(obj);
+            } catch (IllegalAccessException e) {
+                continue;
+            }
+            if (value == null) continue;
+            if (value instanceof Number || value instanceof Boolean || value instanceof String) {
+                out.put(plan.names[i], value);
+            } else {
+                out.put(plan.names[i], value.toString());
+            }
+        }
+    }
+}
@@ -7,9 +7,27 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 
 import com.example.hxjblinklibrary.blinkble.entity.EventResponse;
+import com.example.hxjblinklibrary.blinkble.entity.Response;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.AddLockKeyAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.BLEAddBigDataKeyAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.BLEKeyValidTimeParam;
 import com.example.hxjblinklibrary.blinkble.entity.requestaction.BlinkyAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.ChangeKeyPwdAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.DelLockKeyAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.EnableLockKeyAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.ModifyKeyAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.OpenLockAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.SetSysParamAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.SyncLockKeyAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.SyncLockRecordAction;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.AddLockKeyResult;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.DnaInfo;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.HxBLEUnlockResult;
 import com.example.hxjblinklibrary.blinkble.entity.reslut.KeyEventAddKey;
 import com.example.hxjblinklibrary.blinkble.entity.reslut.KeyEventRegWifi;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.LockKeyResult;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.LockRecordDataResult;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.SysParamResult;
 import com.example.hxjblinklibrary.blinkble.parser.open.EventPostDataParser;
 import com.example.hxjblinklibrary.blinkble.profile.client.FunCallback;
 import com.example.hxjblinklibrary.blinkble.profile.client.HxjBleClient;
@@ -21,6 +39,8 @@ public class MyBleClient extends HxjBleClient {
     private static final String TAG = "MyBleClient";
     private static MyBleClient sInstance;
     private WifiRegistrationCallback wifiCallback;
+    // Phase marks for lock operations; null when tracing is off
+    private volatile OperationTracer tracer;
 
     public interface WifiRegistrationCallback {
         void onWifiRegistrationEvent(int status, String moduleMac, String lockMac);
@@ -30,6 +50,10 @@ public class MyBleClient extends HxjBleClient {
         this.wifiCallback = callback;
     }
 
+    public void setTracer(OperationTracer tracer) {
+        this.tracer = tracer;
+    }
+
     public static MyBleClient getInstance(Context context) {
         if (sInstance == null) {
             synchronized (MyBleClient.class) {
@@ -139,4 +163,106 @@ public class MyBleClient extends HxjBleClient {
     public void connectBle(BlinkyAction blinkyAction, FunCallback funCallback) {
         super.connectBle(blinkyAction, funCallback);
     }
+
+    // Lock commands report their SDK call and responses to the tracer
+
+    @Override
+    public void openLock(OpenLockAction action, FunCallback<HxBLEUnlockResult> funCallback) {
+        super.openLock(action, traced(action, "openLock", funCallback));
+    }
+
+    @Override
+    public void closeLock(BlinkyAction action, FunCallback funCallback) {
+        super.closeLock(action, traced(action, "closeLock", funCallback));
+    }
+
+    @Override
+    public void getDna(BlinkyAction action, FunCallback<DnaInfo> funCallback) {
+        super.getDna(action, traced(action, "getDna", funCallback));
+    }
+
+    @Override
+    public void addLockKey(AddLockKeyAction action, FunCallback<AddLockKeyResult> funCallback) {
+        super.addLockKey(action, traced(action, "addLockKey", funCallback));
+    }
+
+    @Override
+    public void delLockKey(DelLockKeyAction action, FunCallback funCallback) {
+        super.delLockKey(action, traced(action, "delLockKey", funCallback));
+    }
+
+    @Override
+    public void modifyLockKey(ModifyKeyAction action, FunCallback funCallback) {
+        super.modifyLockKey(action, traced(action, "modifyLockKey", funCallback));
+    }
+
+    @Override
+    public void changeLockKeyPwd(ChangeKeyPwdAction action, FunCallback funCallback) {
+        super.changeLockKeyPwd(action, traced(action, "changeLockKeyPwd", funCallback));
+    }
+
+    @Override
+    public void enableLockKey(EnableLockKeyAction action, FunCallback funCallback) {
+        super.enableLockKey(action, traced(action, "enableLockKey", funCallback));
+    }
+
+    @Override
+    public void syncLockKey(SyncLockKeyAction action, FunCallback<LockKeyResult> funCallback) {
+        super.syncLockKey(action, traced(action, "syncLockKey", funCallback));
+    }
+
+    @Override
+    public void syncLockTime(BlinkyAction action, FunCallback funCallback) {
+        super.syncLockTime(action, traced(action, "syncLockTime", funCallback));
+    }
+
+    @Override
+    public void getSysParam(BlinkyAction action, FunCallback<SysParamResult> funCallback) {
+        super.getSysParam(action, traced(action, "getSysParam", funCallback));
+    }
+
+    @Override
+    public void setSysParam(SetSysParamAction action, FunCallback funCallback) {
+        super.setSysParam(action, traced(action, "setSysParam", funCallback));
+    }
+
+    @Override
+    public void getRecordNum(BlinkyAction action, FunCallback<Integer> funCallback) {
+        super.getRecordNum(action, traced(action, "getRecordNum", funCallback));
+    }
+
+    @Override
+    public void syncLockRecord(SyncLockRecordAction action, FunCallback<LockRecordDataResult> funCallback) {
+        super.syncLockRecord(action, traced(action, "syncLockRecord", funCallback));
+    }
+
+    @Override
+    public void addFingerprintKeyData(BLEAddBigDataKeyAction action, BLEKeyValidTimeParam timeParam, FunCallback funCallback) {
+        super.addFingerprintKeyData(action, timeParam, traced(action, "addFingerprintKeyData", funCallback));
+    }
+
+    @Override
+    public void addFaceKeyData(BLEAddBigDataKeyAction action, BLEKeyValidTimeParam timeParam, FunCallback funCallback) {
+        super.addFaceKeyData(action, timeParam, traced(action, "addFaceKeyData", funCallback));
+    }
+
+    private <T> FunCallback<T> traced(BlinkyAction action, String op, final FunCallback<T> callback) {
+        final OperationTracer t = tracer;
+        if (t == null) return callback;
+        final String mac = action == null || action.getBaseAuthAction() == null ? null : action.getBaseAuthAction().getMac();
+        t.onSdkCall(mac, op);
+        return new FunCallback<T>() {
+            @Override
+            public void onResponse(Response<T> response) {
+                t.onResponse(mac, response == null ? null : response.code());
+                if (callback != null) callback.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                t.onResponse(mac, null);
+                if (callback != null) callback.onFailure(e);
+            }
+        };
+    }
 }
@@ -0,0 +1,151 @@
+package com.example.wise_apartment.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Locks seen by recent scans, keyed by MAC.
+ *
+ * Every scan (startScan, startScanStream, scanFor) reports the devices it
+ * sees here; an entry keeps the last RSSI, lockType, chipType,
+ * isNewProtocol, hasLockEvent and when it was last seen, and expires
+ * {@link #DEFAULT_TTL_MS} (configurable) after that. Dart can ask whether a
+ * lock was in range a moment ago instead of starting a scan. Expired
+ * entries are dropped on access; at most {@link #MAX_ENTRIES} are kept.
+ */
+public class NearbyLockRegistry {
+    static final long DEFAULT_TTL_MS = 30 * 1000;
+    static final int MAX_ENTRIES = 256;
+
+    interface Clock {
+        long nowMs();
+    }
+
+    private static final class Entry {
+        final String mac;
+        String name;
+        int rssi;
+        Object lockType;
+        Object chipType;
+        Object isNewProtocol;
+        Object hasLockEvent;
+        long firstSeenAt;
+        long lastSeenAt;
+        long sightings;
+
+        Entry(String mac, long now) {
+            this.mac = mac;
+            this.firstSeenAt = now;
+        }
+
+        Map<String, Object> toMap(long now) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("mac", mac);
+            m.put("name", name);
+            m.put("rssi", rssi);
+            m.put("lockType", lockType);
+            m.put("chipType", chipType);
+            m.put("isNewProtocol", isNewProtocol);
+            m.put("hasLockEvent", hasLockEvent);
+            m.put("firstSeenAt", firstSeenAt);
+            m.put("lastSeenAt", lastSeenAt);
+            m.put("ageMs", now - lastSeenAt);
+            m.put("sightings", sightings);
+            return m;
+        }
+    }
+
+    private final Clock clock;
+    // Least recently seen first; that one is evicted when full
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private long ttlMs = DEFAULT_TTL_MS;
+
+    public NearbyLockRegistry() {
+        this(System::currentTimeMillis);
+    }
+
+    NearbyLockRegistry(Clock clock) {
+        this.clock = clock;
+    }
+
+    /** Note one scan sighting; {@code device} is a BleScanManager device map. */
+    public synchronized void update(Map<String, Object> device) {
+        Object mac = device.get("mac");
+        if (!(mac instanceof String) || ((String) mac).isEmpty()) return;
+        long now = clock.nowMs();
+        String key = normalize((String) mac);
+        Entry e = entries.remove(key);
+        if (e == null) e = new Entry(key, now);
+        entries.put(key, e);
+        Object rssi = device.get("rssi");
+        if (rssi instanceof Number) e.rssi = ((Number) rssi).intValue();
+        if (device.get("name") != null) e.name = String.valueOf(device.get("name"));
+        e.lockType = device.get("lockType");
+        e.chipType = device.get("chipType");
+        e.isNewProtocol = device.get("isNewProtocol");
+        e.hasLockEvent = device.get("hasLockEvent");
+        e.lastSeenAt = now;
+        e.sightings++;
+        if (entries.size() > MAX_ENTRIES) prune(now);
+        if (entries.size() > MAX_ENTRIES) {
+            Iterator<Entry> it = entries.values().iterator();
+            it.next();
+            it.remove();
+        }
+    }
+
+    /** Entry for {@code mac} if it was seen within the TTL, else null. */
+    public synchronized Map<String, Object> get(String mac) {
+        if (mac == null) return null;
+        long now = clock.nowMs();
+        Entry e = entries.get(normalize(mac));
+        return e != null && now - e.lastSeenAt <= ttlMs ? e.toMap(now) : null;
+    }
+
+    /**
+     * Locks seen within {@code maxAgeMs} (the TTL when null or larger),
+     * strongest signal first.
+     */
+    public synchronized List<Map<String, Object>> list(Long maxAgeMs) {
+        long now = clock.nowMs();
+        prune(now);
+        long limit = maxAgeMs == null ? ttlMs : Math.min(ttlMs, maxAgeMs);
+        List<Entry> fresh = new ArrayList<>();
+        for (Entry e : entries.values()) {
+            if (now - e.lastSeenAt <= limit) fresh.add(e);
+        }
+        Collections.sort(fresh, (a, b) -> Integer.compare(b.rssi, a.rssi));
+        List<Map<String, Object>> out = new ArrayList<>(fresh.size());
+        for (Entry e : fresh) out.add(e.toMap(now));
+        return out;
+    }
+
+    public synchronized void setTtlMs(long ttlMs) {
+        this.ttlMs = Math.max(0, ttlMs);
+    }
+
+    public synchronized long getTtlMs() {
+        return ttlMs;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    // Caller holds the lock
+    private void prune(long now) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().lastSeenAt > ttlMs) it.remove();
+        }
+    }
+
+    private static String normalize(String mac) {
+        return mac.trim().toUpperCase(Locale.US);
+    }
+}
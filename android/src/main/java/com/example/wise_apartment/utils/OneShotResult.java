@@ -1,7 +1,5 @@
 package com.example.wise_apartment.utils;
 
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -11,27 +9,35 @@ import io.flutter.plugin.common.MethodChannel.Result;
 /**
  * OneShotResult wraps a MethodChannel.Result and guarantees that only the
  * first call to success/error/notImplemented is forwarded to the delegate.
- * Subsequent calls are ignored and logged. All delegate invocations are
- * posted to the main (UI) thread.
+ * Subsequent calls are ignored and logged. All delegate invocations run on
+ * the main (UI) thread through the shared {@link MainThreadDispatcher}.
+ * When given a {@link PluginMetrics.Span}, the first reply closes it with
+ * its code ("success", the error code, or "notImplemented").
  */
 public final class OneShotResult implements Result {
   private final Result delegate;
   private final AtomicBoolean used = new AtomicBoolean(false);
-  private final Handler mainHandler;
+  private final MainThreadDispatcher dispatcher;
   private final String tag;
+  private final PluginMetrics.Span span;
 
   public OneShotResult(Result delegate, String tag) {
+    this(delegate, tag, null);
+  }
+
+  public OneShotResult(Result delegate, String tag, PluginMetrics.Span span) {
     this.delegate = delegate;
     this.tag = tag == null ? "OneShotResult" : tag;
-    this.mainHandler = new Handler(Looper.getMainLooper());
+    this.dispatcher = MainThreadDispatcher.get();
+    this.span = span;
+  }
+
+  private void finish(String code) {
+    if (span != null) span.finish(code);
   }
 
   private void runOnMain(Runnable r) {
-    if (Looper.myLooper() == Looper.getMainLooper()) {
-      r.run();
-    } else {
-      mainHandler.post(r);
-    }
+    dispatcher.execute(r);
   }
 
   @Override
@@ -40,6 +46,7 @@ public final class OneShotResult implements Result {
       Log.w(tag, "Duplicate reply ignored: success");
       return;
     }
+    finish("success");
     runOnMain(() -> {
       try {
         delegate.success(result);
@@ -55,6 +62,7 @@ public final class OneShotResult implements Result {
       Log.w(tag, "Duplicate reply ignored: error -> " + errorCode);
       return;
     }
+    finish(errorCode);
     runOnMain(() -> {
       try {
         delegate.error(errorCode, errorMessage, errorDetails);
@@ -70,6 +78,7 @@ public final class OneShotResult implements Result {
       Log.w(tag, "Duplicate reply ignored: notImplemented");
       return;
     }
+    finish("notImplemented");
     runOnMain(() -> {
       try {
         delegate.notImplemented();
@@ -0,0 +1,229 @@
+package com.example.wise_apartment.utils;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Phase timing of each scheduled lock operation.
+ *
+ * A trace opens when {@link BleCommandScheduler} starts a command and
+ * collects marks from the SDK wrapper in {@link MyBleClient} (SDK call,
+ * link connected / ready, each response), from {@link SecureAuthHelper}
+ * (time spent in handshake steps) and closes when the command releases
+ * the link. The finished trace is handed to the main thread behind the
+ * command's reply, so the time until it runs there is the reply's
+ * delivery to Flutter. Phases, in ms (absent when not seen):
+ *
+ * <pre>
+ * queued      waiting in the scheduler
+ * prepare     start until the SDK call
+ * connecting  SDK call until the link is ready (only if it was not up)
+ * auth        ready until the last secure-auth step (secure auth only)
+ * command     until the first response: auth and command on the radio
+ * response    first to last response (streams, multi-part replies)
+ * reply       last response until the command released the link
+ * delivered   release until the reply has run on the main thread
+ * </pre>
+ *
+ * Each trace also carries {@code secureAuthMs}, the time spent inside
+ * handshake steps (server or local AES). One command runs per lock at a
+ * time, so marks are matched to traces by MAC.
+ */
+public class OperationTracer implements BleCommandScheduler.Listener {
+    public static final String EVENT_TYPE = "trace";
+    private static final long NS_PER_MS = 1000 * 1000;
+
+    /** Receives finished traces on the main thread. */
+    public interface Sink {
+        void onTrace(Map<String, Object> trace);
+    }
+
+    interface Clock {
+        long nanoTime();
+    }
+
+    interface WaitSource {
+        long lastWaitMs(String mac);
+    }
+
+    private static final class Trace {
+        final long id;
+        final String mac;
+        final String op;
+        final long queuedMs;
+        final long startNs;
+        long sdkCallNs;
+        String sdkOp;
+        long readyNs;
+        long authEndNs;
+        long secureAuthNs;
+        long firstResponseNs;
+        long lastResponseNs;
+        int responses;
+        Integer code;
+        String linkError;
+
+        Trace(long id, String mac, String op, long queuedMs, long startNs) {
+            this.id = id;
+            this.mac = mac;
+            this.op = op;
+            this.queuedMs = queuedMs;
+            this.startNs = startNs;
+        }
+    }
+
+    private final Executor mainExecutor;
+    private final WaitSource waits;
+    private final Clock clock;
+    private final Map<String, Trace> open = new HashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private volatile Sink sink;
+
+    public OperationTracer(Executor mainExecutor, final BleCommandScheduler scheduler) {
+        this(mainExecutor, mac -> scheduler.getLastWaitMs(mac), System::nanoTime);
+    }
+
+    OperationTracer(Executor mainExecutor, WaitSource waits, Clock clock) {
+        this.mainExecutor = mainExecutor;
+        this.waits = waits;
+        this.clock = clock;
+    }
+
+    /** Where finished traces go; null drops them (no listener). */
+    public void setSink(Sink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void onCommandStart(String mac, String name) {
+        String key = normalize(mac);
+        Trace t = new Trace(ids.incrementAndGet(), key, name, waits.lastWaitMs(mac), clock.nanoTime());
+        synchronized (open) {
+            open.put(key, t);
+        }
+    }
+
+    @Override
+    public void onCommandEnd(String mac, String name, boolean timedOut) {
+        final long endNs = clock.nanoTime();
+        final Trace t;
+        synchronized (open) {
+            t = open.remove(normalize(mac));
+        }
+        if (t == null || sink == null) return;
+        final boolean timeout = timedOut;
+        // Queued behind the command's own reply on the main thread
+        mainExecutor.execute(() -> {
+            Sink s = sink;
+            if (s != null) s.onTrace(toEvent(t, endNs, clock.nanoTime(), timeout));
+        });
+    }
+
+    /** The plugin called SDK method {@code op} for {@code mac}. */
+    public void onSdkCall(String mac, String op) {
+        long now = clock.nanoTime();
+        synchronized (open) {
+            Trace t = open.get(normalize(mac));
+            if (t != null && t.sdkCallNs == 0) {
+                t.sdkCallNs = now;
+                t.sdkOp = op;
+            }
+        }
+    }
+
+    /** An SDK response (or failure, code null) arrived for {@code mac}. */
+    public void onResponse(String mac, Integer code) {
+        long now = clock.nanoTime();
+        synchronized (open) {
+            Trace t = open.get(normalize(mac));
+            if (t == null) return;
+            if (t.firstResponseNs == 0) t.firstResponseNs = now;
+            t.lastResponseNs = now;
+            t.responses++;
+            t.code = code;
+        }
+    }
+
+    /** The link to {@code mac} became ready (connected, set up). */
+    public void onLinkReady(String mac) {
+        long now = clock.nanoTime();
+        synchronized (open) {
+            Trace t = open.get(normalize(mac));
+            if (t != null && t.readyNs == 0 && t.firstResponseNs == 0) t.readyNs = now;
+        }
+    }
+
+    /** The link to {@code mac} was lost or reported an error. */
+    public void onLinkError(String mac, String what) {
+        synchronized (open) {
+            Trace t = open.get(normalize(mac));
+            if (t != null && t.linkError == null) t.linkError = what;
+        }
+    }
+
+    /** One secure-auth handshake step for {@code mac} took from startNs to now. */
+    public void onSecureAuthStep(String mac, long startNs) {
+        long now = clock.nanoTime();
+        synchronized (open) {
+            Trace t = open.get(normalize(mac));
+            if (t == null) return;
+            t.secureAuthNs += now - startNs;
+            t.authEndNs = now;
+        }
+    }
+
+    public long nanoTime() {
+        return clock.nanoTime();
+    }
+
+    static Map<String, Object> toEvent(Trace t, long endNs, long deliveredNs, boolean timedOut) {
+        Map<String, Object> phases = new HashMap<>();
+        phases.put("queued", t.queuedMs);
+        long cursor = t.startNs;
+        if (t.sdkCallNs != 0) {
+            phases.put("prepare", ms(t.sdkCallNs - cursor));
+            cursor = t.sdkCallNs;
+        }
+        if (t.readyNs != 0 && t.readyNs >= cursor) {
+            phases.put("connecting", ms(t.readyNs - cursor));
+            cursor = t.readyNs;
+        }
+        if (t.authEndNs != 0 && t.authEndNs >= cursor) {
+            phases.put("auth", ms(t.authEndNs - cursor));
+            cursor = t.authEndNs;
+        }
+        if (t.firstResponseNs != 0) {
+            phases.put("command", ms(t.firstResponseNs - cursor));
+            if (t.lastResponseNs > t.firstResponseNs) phases.put("response", ms(t.lastResponseNs - t.firstResponseNs));
+            cursor = t.lastResponseNs;
+        }
+        phases.put("reply", ms(endNs - cursor));
+        phases.put("delivered", ms(deliveredNs - endNs));
+
+        Map<String, Object> m = new HashMap<>();
+        m.put("type", EVENT_TYPE);
+        m.put("id", t.id);
+        m.put("mac", t.mac);
+        m.put("op", t.op);
+        if (t.sdkOp != null) m.put("sdkOp", t.sdkOp);
+        m.put("code", t.code);
+        m.put("responses", t.responses);
+        m.put("timedOut", timedOut);
+        if (t.linkError != null) m.put("linkError", t.linkError);
+        if (t.secureAuthNs != 0) m.put("secureAuthMs", ms(t.secureAuthNs));
+        m.put("totalMs", t.queuedMs + ms(deliveredNs - t.startNs));
+        m.put("phases", phases);
+        return m;
+    }
+
+    private static long ms(long ns) {
+        return Math.max(0, ns) / NS_PER_MS;
+    }
+
+    private static String normalize(String mac) {
+        return mac == null ? "" : mac.trim().toUpperCase(Locale.US);
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.wise_apartment.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call counts and latency histograms per channel method and result code.
+ *
+ * Every method call opens a {@link Span} that {@link OneShotResult}
+ * closes with the reply's code ("success", the error code, or
+ * "notImplemented"); streaming methods also open a
+ * {@code <method>.stream} span that the stream's done / error callback
+ * closes. Latencies go into fixed buckets ({@link #BUCKET_BOUNDS_MS}), so
+ * recording is a few atomic adds and no allocation. Counters are striped
+ * by thread (LongAdder needs API 24), so replies from the main thread and
+ * BLE callbacks rarely touch the same cache line. Percentiles are
+ * interpolated within a bucket when a snapshot is taken.
+ */
+public class PluginMetrics {
+    public static final String STREAM_SUFFIX = ".stream";
+    /** Upper bucket bounds in ms; one more bucket holds anything slower. */
+    static final long[] BUCKET_BOUNDS_MS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 60000
+    };
+    private static final int STRIPES = 8;
+    private static final long NS_PER_MS = 1000 * 1000;
+
+    interface Clock {
+        long nanoTime();
+    }
+
+    /** One timed call; only the first {@link #finish} counts. */
+    public final class Span {
+        private final String method;
+        private final long startNs;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        Span(String method, long startNs) {
+            this.method = method;
+            this.startNs = startNs;
+        }
+
+        public void finish(String code) {
+            if (finished.compareAndSet(false, true)) {
+                record(method, code, clock.nanoTime() - startNs);
+            }
+        }
+    }
+
+    static final class Histogram {
+        // [bucket * STRIPES + stripe]
+        final AtomicLongArray counts = new AtomicLongArray((BUCKET_BOUNDS_MS.length + 1) * STRIPES);
+        final AtomicLongArray sumNs = new AtomicLongArray(STRIPES);
+        final AtomicLong maxNs = new AtomicLong();
+
+        void add(long ns) {
+            int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+            counts.incrementAndGet(bucketOf(ns) * STRIPES + stripe);
+            sumNs.addAndGet(stripe, ns);
+            long max;
+            while (ns > (max = maxNs.get()) && !maxNs.compareAndSet(max, ns)) {
+                // retry
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            long[] buckets = new long[BUCKET_BOUNDS_MS.length + 1];
+            long count = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                for (int s = 0; s < STRIPES; s++) buckets[b] += counts.get(b * STRIPES + s);
+                count += buckets[b];
+            }
+            long sum = 0;
+            for (int s = 0; s < STRIPES; s++) sum += sumNs.get(s);
+            double maxMs = maxNs.get() / (double) NS_PER_MS;
+            Map<String, Object> m = new HashMap<>();
+            m.put("count", count);
+            m.put("meanMs", count == 0 ? 0.0 : sum / (double) count / NS_PER_MS);
+            m.put("maxMs", maxMs);
+            m.put("p50Ms", percentile(buckets, count, 0.50, maxMs));
+            m.put("p90Ms", percentile(buckets, count, 0.90, maxMs));
+            m.put("p99Ms", percentile(buckets, count, 0.99, maxMs));
+            List<Long> list = new ArrayList<>(buckets.length);
+            for (long b : buckets) list.add(b);
+            m.put("buckets", list);
+            return m;
+        }
+    }
+
+    static final class MethodStats {
+        final Histogram all = new Histogram();
+        final ConcurrentHashMap<String, Histogram> byCode = new ConcurrentHashMap<>();
+    }
+
+    private final Clock clock;
+    private final ConcurrentHashMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+    private volatile long sinceMs = System.currentTimeMillis();
+
+    public PluginMetrics() {
+        this(System::nanoTime);
+    }
+
+    PluginMetrics(Clock clock) {
+        this.clock = clock;
+    }
+
+    public Span start(String method) {
+        return new Span(method == null ? "unknown" : method, clock.nanoTime());
+    }
+
+    /** Span for the done / error event of a streaming {@code method}. */
+    public Span startStream(String method) {
+        return start(method + STREAM_SUFFIX);
+    }
+
+    public void record(String method, String code, long latencyNs) {
+        MethodStats stats = methods.get(method);
+        if (stats == null) {
+            MethodStats created = new MethodStats();
+            stats = methods.putIfAbsent(method, created);
+            if (stats == null) stats = created;
+        }
+        String key = code == null ? "null" : code;
+        Histogram h = stats.byCode.get(key);
+        if (h == null) {
+            Histogram created = new Histogram();
+            h = stats.byCode.putIfAbsent(key, created);
+            if (h == null) h = created;
+        }
+        long ns = Math.max(0, latencyNs);
+        stats.all.add(ns);
+        h.add(ns);
+    }
+
+    /**
+     * {@code methods}: method -> histogram (count, meanMs, maxMs, p50Ms,
+     * p90Ms, p99Ms, buckets) plus {@code codes}: code -> histogram.
+     * Also {@code bucketBoundsMs} and {@code sinceMs}.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> byMethod = new HashMap<>();
+        for (Map.Entry<String, MethodStats> e : methods.entrySet()) {
+            Map<String, Object> m = e.getValue().all.snapshot();
+            Map<String, Object> codes = new HashMap<>();
+            for (Map.Entry<String, Histogram> c : e.getValue().byCode.entrySet()) {
+                codes.put(c.getKey(), c.getValue().snapshot());
+            }
+            m.put("codes", codes);
+            byMethod.put(e.getKey(), m);
+        }
+        List<Long> bounds = new ArrayList<>(BUCKET_BOUNDS_MS.length);
+        for (long b : BUCKET_BOUNDS_MS) bounds.add(b);
+        Map<String, Object> out = new HashMap<>();
+        out.put("methods", byMethod);
+        out.put("bucketBoundsMs", bounds);
+        out.put("sinceMs", sinceMs);
+        return out;
+    }
+
+    public void reset() {
+        methods.clear();
+        sinceMs = System.currentTimeMillis();
+    }
+
+    static int bucketOf(long ns) {
+        long ms = ns / NS_PER_MS;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            if (ms < BUCKET_BOUNDS_MS[i]) return i;
+        }
+        return BUCKET_BOUNDS_MS.length;
+    }
+
+    // Linear within the bucket holding the q-th sample, capped at the max seen
+    static double percentile(long[] buckets, long count, double q, double maxMs) {
+        if (count == 0) return 0.0;
+        double rank = Math.max(1, Math.ceil(q * count));
+        long before = 0;
+        for (int b = 0; b < buckets.length; b++) {
+            if (before + buckets[b] >= rank) {
+                double lower = b == 0 ? 0 : BUCKET_BOUNDS_MS[b - 1];
+                double upper = b < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[b] : Math.max(lower, maxMs);
+                double value = lower + (upper - lower) * (rank - before) / buckets[b];
+                return Math.min(value, maxMs);
+            }
+            before += buckets[b];
+        }
+        return maxMs;
+    }
+}
@@ -1,9 +1,39 @@
 package com.example.wise_apartment.utils;
 
+import android.util.Log;
+
 import java.util.Map;
+import com.example.hxjblinklibrary.blinkble.entity.Response;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.BlinkyAction;
 import com.example.hxjblinklibrary.blinkble.entity.requestaction.BlinkyAuthAction;
+import com.example.hxjblinklibrary.blinkble.profile.client.FunCallback;
+import com.example.hxjblinklibrary.blinkble.profile.client.HxjBleClient;
 
 public class PluginUtils {
+    /**
+     * Ask the SDK to abort the command in flight on {@code auth}'s link, e.g.
+     * when a stream is cancelled. Fire-and-forget; the outcome is only logged.
+     */
+    public static void abortCurrentCmd(HxjBleClient client, BlinkyAuthAction auth, final String tag) {
+        try {
+            BlinkyAction action = new BlinkyAction();
+            action.setBaseAuthAction(auth);
+            client.abortCurrentCmd(action, new FunCallback() {
+                @Override
+                public void onResponse(Response response) {
+                    Log.d(tag, "abortCurrentCmd: " + (response == null ? -1 : response.code()));
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    Log.w(tag, "abortCurrentCmd failed", t);
+                }
+            });
+        } catch (Throwable t) {
+            Log.w(tag, "abortCurrentCmd threw", t);
+        }
+    }
+
     /**
      * Helper to create BlinkyAuthAction from MethodChannel arguments.
      */
@@ -56,6 +86,10 @@ public class PluginUtils {
             }
         }
 
-        return builder.build();
+        BlinkyAuthAction auth = builder.build();
+        // secureAuth: "remote" (handshake server)
+        SecureAuthHelper secureAuth = SecureAuthHelper.forMode(args.get("secureAuth"));
+        if (secureAuth != null) auth.setSecureAuthObj(secureAuth);
+        return auth;
     }
 }
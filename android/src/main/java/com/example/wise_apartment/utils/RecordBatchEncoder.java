@@ -0,0 +1,234 @@
+package com.example.wise_apartment.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented binary encoding of a batch of mapped lock records.
+ *
+ * Selected with {@code recordFormat: "binary"} in the sync arguments. Instead
+ * of one HashMap per record (every key repeated, every value boxed) the batch
+ * goes over the channel as a single {@code byte[]}, which the codec copies
+ * as-is. The Dart side ({@code LockRecordBatch}) reads the header once and
+ * decodes individual values on access.
+ *
+ * Layout, little-endian:
+ * <pre>
+ *   magic     'W' 'R' 'B' version(1)
+ *   u32       row count
+ *   u16       field count
+ *   fields    u16 name length, UTF-8 name, u8 type, u32 column offset
+ *   columns   presence bitmap (1 bit per row, LSB first), then one slot per row:
+ *             INT64 -> i64, FLOAT64 -> f64, BOOL -> u8,
+ *             STRING -> (rows + 1) x u32 end offsets, then UTF-8 bytes
+ * </pre>
+ * Absent values (the field was null or missing on that record) have their
+ * presence bit cleared and a zero slot. A column whose values mix types is
+ * widened: integers with floats become FLOAT64, anything with a String (or a
+ * Boolean next to a number) becomes STRING.
+ */
+public final class RecordBatchEncoder {
+
+    public static final String FORMAT_BINARY = "binary";
+
+    static final int VERSION = 1;
+    static final byte TYPE_INT64 = 1;
+    static final byte TYPE_FLOAT64 = 2;
+    static final byte TYPE_BOOL = 3;
+    static final byte TYPE_STRING = 4;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private RecordBatchEncoder() {}
+
+    /** True when the caller asked for {@code recordFormat: "binary"}. */
+    public static boolean isRequested(Map<String, Object> args) {
+        return args != null && FORMAT_BINARY.equals(args.get("recordFormat"));
+    }
+
+    /** Records as-is, or encoded when {@code binary} is set. */
+    public static Object maybeEncode(List<Map<String, Object>> records, boolean binary) {
+        return binary ? encode(records) : records;
+    }
+
+    public static byte[] encode(List<Map<String, Object>> records) {
+        final int rows = records.size();
+
+        // Pass 1: field dictionary in first-seen order, with the widened type.
+        LinkedHashMap<String, Byte> types = new LinkedHashMap<>();
+        for (Map<String, Object> r : records) {
+            for (Map.Entry<String, Object> e : r.entrySet()) {
+                Object v = e.getValue();
+                if (v == null) continue;
+                Byte seen = types.get(e.getKey());
+                byte t = typeOf(v);
+                types.put(e.getKey(), seen == null ? t : widen(seen, t));
+            }
+        }
+
+        final int fieldCount = types.size();
+        final String[] names = types.keySet().toArray(new String[0]);
+        final byte[][] nameBytes = new byte[fieldCount][];
+        final byte[] fieldTypes = new byte[fieldCount];
+        final byte[][][] strings = new byte[fieldCount][][];
+        final int bitmapLen = (rows + 7) >>> 3;
+
+        int size = 4 + 4 + 2;
+        for (int f = 0; f < fieldCount; f++) {
+            nameBytes[f] = names[f].getBytes(UTF8);
+            fieldTypes[f] = types.get(names[f]);
+            size += 2 + nameBytes[f].length + 1 + 4;
+        }
+        final int[] columnOffsets = new int[fieldCount];
+        for (int f = 0; f < fieldCount; f++) {
+            columnOffsets[f] = size;
+            size += bitmapLen;
+            switch (fieldTypes[f]) {
+                case TYPE_INT64:
+                case TYPE_FLOAT64:
+                    size += rows * 8;
+                    break;
+                case TYPE_BOOL:
+                    size += rows;
+                    break;
+                default:
+                    byte[][] col = new byte[rows][];
+                    int total = 0;
+                    for (int i = 0; i < rows; i++) {
+                        Object v = records.get(i).get(names[f]);
+                        if (v == null) continue;
+                        col[i] = String.valueOf(v).getBytes(UTF8);
+                        total += col[i].length;
+                    }
+                    strings[f] = col;
+                    size += (rows + 1) * 4 + total;
+                    break;
+            }
+        }
+
+        // Pass 2: write.
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) 'W').put((byte) 'R').put((byte) 'B').put((byte) VERSION);
+        buf.putInt(rows);
+        buf.putShort((short) fieldCount);
+        for (int f = 0; f < fieldCount; f++) {
+            buf.putShort((short) nameBytes[f].length);
+            buf.put(nameBytes[f]);
+            buf.put(fieldTypes[f]);
+            buf.putInt(columnOffsets[f]);
+        }
+
+        byte[] bitmap = new byte[bitmapLen];
+        for (int f = 0; f < fieldCount; f++) {
+            String name = names[f];
+            Arrays.fill(bitmap, (byte) 0);
+            for (int i = 0; i < rows; i++) {
+                if (records.get(i).get(name) != null) bitmap[i >>> 3] |= (byte) (1 << (i & 7));
+            }
+            buf.put(bitmap);
+            switch (fieldTypes[f]) {
+                case TYPE_INT64:
+                    for (int i = 0; i < rows; i++) {
+                        Object v = records.get(i).get(name);
+                        buf.putLong(v == null ? 0L : ((Number) v).longValue());
+                    }
+                    break;
+                case TYPE_FLOAT64:
+                    for (int i = 0; i < rows; i++) {
+                        Object v = records.get(i).get(name);
+                        buf.putDouble(v == null ? 0d : ((Number) v).doubleValue());
+                    }
+                    break;
+                case TYPE_BOOL:
+                    for (int i = 0; i < rows; i++) {
+                        buf.put(Boolean.TRUE.equals(records.get(i).get(name)) ? (byte) 1 : (byte) 0);
+                    }
+                    break;
+                default:
+                    byte[][] col = strings[f];
+                    int end = 0;
+                    buf.putInt(0);
+                    for (int i = 0; i < rows; i++) {
+                        if (col[i] != null) end += col[i].length;
+                        buf.putInt(end);
+                    }
+                    for (int i = 0; i < rows; i++) {
+                        if (col[i] != null) buf.put(col[i]);
+                    }
+                    break;
+            }
+        }
+        return buf.array();
+    }
+
+    /** Inverse of {@link #encode}; used by tests and for debugging captures. */
+    public static List<Map<String, Object>> decode(byte[] data) {
+        ByteBuffer buf = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.get() != 'W' || buf.get() != 'R' || buf.get() != 'B' || buf.get() != VERSION) {
+            throw new IllegalArgumentException("Not a record batch");
+        }
+        int rows = buf.getInt();
+        int fieldCount = buf.getShort() & 0xFFFF;
+        List<Map<String, Object>> out = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) out.add(new LinkedHashMap<String, Object>());
+
+        String[] names = new String[fieldCount];
+        byte[] fieldTypes = new byte[fieldCount];
+        int[] offsets = new int[fieldCount];
+        for (int f = 0; f < fieldCount; f++) {
+            byte[] name = new byte[buf.getShort() & 0xFFFF];
+            buf.get(name);
+            names[f] = new String(name, UTF8);
+            fieldTypes[f] = buf.get();
+            offsets[f] = buf.getInt();
+        }
+
+        int bitmapLen = (rows + 7) >>> 3;
+        for (int f = 0; f < fieldCount; f++) {
+            int bitmap = offsets[f];
+            int slots = bitmap + bitmapLen;
+            int stringData = slots + (rows + 1) * 4;
+            for (int i = 0; i < rows; i++) {
+                if ((data[bitmap + (i >>> 3)] & (1 << (i & 7))) == 0) continue;
+                Object v;
+                switch (fieldTypes[f]) {
+                    case TYPE_INT64:
+                        v = buf.getLong(slots + i * 8);
+                        break;
+                    case TYPE_FLOAT64:
+                        v = buf.getDouble(slots + i * 8);
+                        break;
+                    case TYPE_BOOL:
+                        v = data[slots + i] != 0;
+                        break;
+                    default:
+                        int start = buf.getInt(slots + i * 4);
+                        int end = buf.getInt(slots + (i + 1) * 4);
+                        v = new String(data, stringData + start, end - start, UTF8);
+                        break;
+                }
+                out.get(i).put(names[f], v);
+            }
+        }
+        return out;
+    }
+
+    private static byte typeOf(Object v) {
+        if (v instanceof Boolean) return TYPE_BOOL;
+        if (v instanceof Double || v instanceof Float) return TYPE_FLOAT64;
+        if (v instanceof Number) return TYPE_INT64;
+        return TYPE_STRING;
+    }
+
+    private static byte widen(byte a, byte b) {
+        if (a == b) return a;
+        if ((a == TYPE_INT64 && b == TYPE_FLOAT64) || (a == TYPE_FLOAT64 && b == TYPE_INT64)) return TYPE_FLOAT64;
+        return TYPE_STRING;
+    }
+}
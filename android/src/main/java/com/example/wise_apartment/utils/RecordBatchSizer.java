@@ -0,0 +1,105 @@
+package com.example.wise_apartment.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Picks the readCnt for lock record pages instead of a fixed 10.
+ *
+ * A sync opens a {@link Window} and reports every page back to it. Pages
+ * that come back quickly grow the size by half (up to {@link #MAX_BATCH});
+ * pages slower than {@link #SLOW_PAGE_MS} shrink it by a quarter, and a
+ * BUSY / RF_BUSY code or an SDK failure halves it (down to
+ * {@link #MIN_BATCH}) and the page is retried at the smaller size. If the
+ * lock returns fewer records than asked while reporting more data, that is
+ * its per-packet limit: the window settles there and never grows past it.
+ *
+ * The size a sync ends on, and any limit it found, are remembered per lock
+ * model (deviceType, or the MAC when the caller does not send one) and log
+ * version, and are where the next sync for that key starts. Kept in memory
+ * for the life of the plugin.
+ */
+public class RecordBatchSizer {
+    public static final int DEFAULT_BATCH = 10;
+    public static final int MIN_BATCH = 4;
+    public static final int MAX_BATCH = 50;
+    // A page round trip under this is considered fast enough to grow.
+    static final long FAST_PAGE_MS = 1500;
+    // A page round trip over this is too slow; the next page asks for less.
+    static final long SLOW_PAGE_MS = 3000;
+    static final int MAX_RETRIES = 3;
+
+    private final Map<String, Integer> best = new HashMap<>();
+    private final Map<String, Integer> limits = new HashMap<>();
+
+    public final class Window {
+        private final String key;
+        private int size;
+        private int limit;
+        private int retries;
+
+        Window(String key, int size, int limit) {
+            this.key = key;
+            this.size = Math.min(size, limit);
+            this.limit = limit;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Page of {@code asked} records returned {@code received} after {@code elapsedMs}. */
+        public void success(int asked, int received, boolean moreData, long elapsedMs) {
+            retries = 0;
+            if (moreData && received > 0 && received < asked) {
+                limit = Math.max(MIN_BATCH, received);
+                size = limit;
+            } else if (elapsedMs > SLOW_PAGE_MS) {
+                size = Math.max(MIN_BATCH, size - Math.max(1, size / 4));
+            } else if (elapsedMs < FAST_PAGE_MS && received >= asked) {
+                size = Math.min(limit, size + Math.max(2, size / 2));
+            }
+            remember(key, size, limit);
+        }
+
+        /**
+         * Page failed with a code worth backing off on, or the SDK call
+         * failed. Returns true when the caller should retry the same index
+         * with the new {@link #size()}.
+         */
+        public boolean failure() {
+            size = Math.max(MIN_BATCH, size / 2);
+            remember(key, size, limit);
+            return ++retries <= MAX_RETRIES;
+        }
+    }
+
+    /** Sizing key for the lock in {@code args} and the record generation. */
+    public static String keyOf(Map<String, Object> args, int logVersion) {
+        Object model = args.get("deviceType");
+        String id = model instanceof Number ? "type:" + ((Number) model).intValue() : BleCommandScheduler.macOf(args);
+        return id + "/v" + logVersion;
+    }
+
+    /** BUSY-style acks that mean "ask for less", as opposed to real errors. */
+    public static boolean isBackoffCode(int code) {
+        return code == WiseStatusCode.ACK_STATUS_BUSY || code == WiseStatusCode.ACK_STATUS_RF_BUSY;
+    }
+
+    public synchronized Window open(String key) {
+        Integer size = best.get(key);
+        Integer limit = limits.get(key);
+        return new Window(key, size == null ? DEFAULT_BATCH : size, limit == null ? MAX_BATCH : limit);
+    }
+
+    private synchronized void remember(String key, int size, int limit) {
+        best.put(key, size);
+        if (limit < MAX_BATCH) {
+            limits.put(key, limit);
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        return new HashMap<String, Object>(best);
+    }
+}
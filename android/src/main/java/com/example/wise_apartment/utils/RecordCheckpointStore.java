@@ -0,0 +1,177 @@
+package com.example.wise_apartment.utils;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-lock high-water mark for record sync, persisted across app runs.
+ *
+ * The lock pages its log newest first (index 0 is the latest record, see
+ * the SDK's startIndex), so an index says nothing about which records are
+ * new: every new record shifts the older ones up, and a full ring buffer
+ * keeps the same count. The mark is therefore the newest recordTime a
+ * completed sync saw, per lock MAC and log version. A sync started with
+ * {@code sinceLast: true} pages from index 0, keeps the records newer than
+ * the mark and stops at the first one that is not. If the lock's newest
+ * record is older than the mark, its log was cleared (and its clock set
+ * back); that sync ignores the mark.
+ *
+ * Only syncs that ran to the mark or to the end of the log move it
+ * forward. Values are stored as "recordCount|newestTime" strings in
+ * SharedPreferences, the count only for diagnostics; with no preferences
+ * (tests) the store is memory-only.
+ */
+public class RecordCheckpointStore {
+    public static final String PREFS_NAME = "wise_record_checkpoints";
+
+    private final SharedPreferences prefs;
+    private final Map<String, long[]> cache = new HashMap<>();
+
+    public RecordCheckpointStore(SharedPreferences prefs) {
+        this.prefs = prefs;
+    }
+
+    /** One sync's view of the checkpoint for {@code args}' lock and log version. */
+    public final class Cursor {
+        private final String key;
+        private final boolean sinceLast;
+        private long[] previous;
+        private long newestTime;
+        private boolean firstPage = true;
+        private boolean reachedSeen;
+
+        Cursor(String key, boolean sinceLast, long[] previous) {
+            this.key = key;
+            this.sinceLast = sinceLast;
+            this.previous = previous;
+            this.newestTime = previous == null ? Long.MIN_VALUE : previous[1];
+        }
+
+        public boolean isSinceLast() {
+            return sinceLast;
+        }
+
+        /**
+         * Records from the next page (newest first) that are new since the
+         * checkpoint (all of them unless sinceLast). Notes the first record
+         * at or below the mark, see {@link #reachedSeen()}.
+         */
+        public List<Map<String, Object>> filterPage(List<Map<String, Object>> page) {
+            if (firstPage && !page.isEmpty()) {
+                firstPage = false;
+                if (previous != null && timeOf(page.get(0)) < previous[1]) {
+                    // Newest record predates the mark: the log was reset
+                    previous = null;
+                    newestTime = Long.MIN_VALUE;
+                }
+            }
+            if (!sinceLast || previous == null) {
+                for (Map<String, Object> r : page) newestTime = Math.max(newestTime, timeOf(r));
+                return page;
+            }
+            List<Map<String, Object>> fresh = new ArrayList<>(page.size());
+            for (Map<String, Object> r : page) {
+                long t = timeOf(r);
+                if (t > previous[1]) {
+                    fresh.add(r);
+                    newestTime = Math.max(newestTime, t);
+                } else {
+                    reachedSeen = true;
+                }
+            }
+            return fresh;
+        }
+
+        /**
+         * True once paging has reached records of an earlier sync; older
+         * pages hold nothing new.
+         */
+        public boolean reachedSeen() {
+            return reachedSeen;
+        }
+
+        /**
+         * Persist the mark. Only call once the sync ran to the end of the
+         * log or to {@link #reachedSeen()}, never after a partial sync.
+         */
+        public void commit(int recordCount) {
+            long time = newestTime == Long.MIN_VALUE ? 0 : newestTime;
+            put(key, recordCount, time);
+        }
+    }
+
+    public static String keyOf(Map<String, Object> args, int logVersion) {
+        return BleCommandScheduler.macOf(args) + "/v" + logVersion;
+    }
+
+    public Cursor begin(Map<String, Object> args, int logVersion) {
+        String key = keyOf(args, logVersion);
+        boolean sinceLast = Boolean.TRUE.equals(args.get("sinceLast"));
+        return new Cursor(key, sinceLast, get(key));
+    }
+
+    /** {recordCount, newestTime} for {@code key}, or null when never synced. */
+    public synchronized long[] get(String key) {
+        if (cache.containsKey(key)) return cache.get(key);
+        long[] value = null;
+        String raw = prefs == null ? null : prefs.getString(key, null);
+        if (raw != null) {
+            int sep = raw.indexOf('|');
+            try {
+                value = new long[]{Long.parseLong(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1))};
+            } catch (RuntimeException ignored) {
+                // Corrupt entry: treat as never synced.
+            }
+        }
+        cache.put(key, value);
+        return value;
+    }
+
+    private synchronized void put(String key, long recordCount, long newestTime) {
+        cache.put(key, new long[]{recordCount, newestTime});
+        if (prefs != null) prefs.edit().putString(key, recordCount + "|" + newestTime).apply();
+    }
+
+    /** Forget the checkpoints of one lock (all log versions), or all when mac is empty. */
+    public synchronized void clear(String mac) {
+        String prefix = mac == null || mac.isEmpty() ? "" : BleCommandScheduler.macOf(macArgs(mac)) + "/";
+        for (Iterator<String> it = cache.keySet().iterator(); it.hasNext(); ) {
+            if (it.next().startsWith(prefix)) it.remove();
+        }
+        if (prefs == null) return;
+        SharedPreferences.Editor editor = prefs.edit();
+        for (String k : prefs.getAll().keySet()) {
+            if (k.startsWith(prefix)) editor.remove(k);
+        }
+        editor.apply();
+    }
+
+    public synchronized Map<String, Object> getCheckpoints(String mac) {
+        Map<String, Object> out = new HashMap<>();
+        for (int v = 1; v <= 2; v++) {
+            long[] cp = get(keyOf(macArgs(mac), v));
+            if (cp == null) continue;
+            Map<String, Object> m = new HashMap<>();
+            m.put("recordCount", cp[0]);
+            m.put("newestTime", cp[1]);
+            out.put("v" + v, m);
+        }
+        return out;
+    }
+
+    private static Map<String, Object> macArgs(String mac) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("mac", mac);
+        return m;
+    }
+
+    private static long timeOf(Map<String, Object> record) {
+        Object t = record.get("recordTime");
+        return t instanceof Number ? ((Number) t).longValue() : 0;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.wise_apartment.utils;
+
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.BlinkyAuthAction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Live record syncs, one {@link Session} per syncLockRecords /
+ * syncLockRecordsStream call.
+ *
+ * Each session owns its lock's auth, log version, page window, checkpoint
+ * cursor, position and collected records (counts-only stream syncs do
+ * not keep them, the records went out in chunks), so syncs of different locks do
+ * not share state. How many of them talk to a lock at the same time is up
+ * to the command scheduler's active-link limit; the registry only tracks
+ * them. A session leaves the registry when it is closed, which happens
+ * exactly once (done, error or timeout).
+ */
+public class RecordSyncRegistry {
+    private final Map<String, Session> active = new LinkedHashMap<>();
+    private int nextId;
+    private long started;
+    private long finished;
+    private int peakActive;
+
+    public final class Session {
+        private final String id;
+        private final boolean stream;
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        final BlinkyAuthAction auth;
+        final int logVersion;
+        final boolean binary;
+        final RecordBatchSizer.Window window;
+        final RecordCheckpointStore.Cursor cursor;
+        final List<Map<String, Object>> records = new ArrayList<>();
+        volatile int total;
+        volatile int nextIndex;
+        volatile int pages;
+        // Stream syncs only: flow control for the next page request
+        volatile StreamFlowControl.Gate gate;
+        // Stream syncs only: records sent in chunks so far
+        volatile int delivered;
+        // Stream syncs only: false when the done event carries counts only,
+        // so records are not collected
+        volatile boolean keepItems = true;
+        // Stream syncs only: scheduler queue key and the ticket holding the
+        // link, null while the stream is parked without one. Guarded by this.
+        String linkMac;
+        BleCommandScheduler.Ticket link;
+
+        Session(String id, boolean stream, BlinkyAuthAction auth, int logVersion, boolean binary,
+                RecordBatchSizer.Window window, RecordCheckpointStore.Cursor cursor) {
+            this.id = id;
+            this.stream = stream;
+            this.auth = auth;
+            this.logVersion = logVersion;
+            this.binary = binary;
+            this.window = window;
+            this.cursor = cursor;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getMac() {
+            return auth.getMac();
+        }
+
+        public boolean isClosed() {
+            return closed.get();
+        }
+
+        /** Marks the session finished; true only for the first caller. */
+        public boolean close() {
+            if (!closed.compareAndSet(false, true)) return false;
+            remove(this);
+            StreamFlowControl.Gate g = gate;
+            if (g != null) g.close();
+            return true;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new HashMap<>();
+            m.put("syncId", id);
+            m.put("mac", getMac());
+            m.put("stream", stream);
+            m.put("logVersion", logVersion);
+            m.put("total", total);
+            m.put("nextIndex", nextIndex);
+            m.put("pages", pages);
+            m.put("readCnt", window.size());
+            m.put("elapsedMs", System.currentTimeMillis() - startedAt);
+            return m;
+        }
+    }
+
+    /**
+     * New session named {@code id}, or "sync-n" when id is null. Throws
+     * IllegalStateException when a session named {@code id} is still live;
+     * callers check for that before starting the sync.
+     */
+    public synchronized Session open(String id, boolean stream, BlinkyAuthAction auth, int logVersion, boolean binary,
+                                     RecordBatchSizer.Window window, RecordCheckpointStore.Cursor cursor) {
+        if (id == null) {
+            do {
+                id = "sync-" + (++nextId);
+            } while (active.containsKey(id));
+        } else if (active.containsKey(id)) {
+            throw new IllegalStateException("sync " + id + " is still running");
+        }
+        Session s = new Session(id, stream, auth, logVersion, binary, window, cursor);
+        active.put(s.id, s);
+        started++;
+        peakActive = Math.max(peakActive, active.size());
+        return s;
+    }
+
+    public synchronized Session get(String id) {
+        return active.get(id);
+    }
+
+    private synchronized void remove(Session s) {
+        if (active.get(s.id) == s) {
+            active.remove(s.id);
+            finished++;
+        }
+    }
+
+    public synchronized int activeCount() {
+        return active.size();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        List<Map<String, Object>> sessions = new ArrayList<>(active.size());
+        for (Session s : active.values()) sessions.add(s.toMap());
+        Map<String, Object> m = new HashMap<>();
+        m.put("active", sessions);
+        m.put("started", started);
+        m.put("finished", finished);
+        m.put("peakActive", peakActive);
+        return m;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.wise_apartment.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link SecureAuthProvider} backed by the handshake server's
+ * sessionEncode / sessionDecode / secretKeyEncode / secretKeyDecode /
+ * authenticationEncode endpoints, through a {@link SecureAuthHttpClient}.
+ */
+public class RemoteSecureAuthProvider implements SecureAuthProvider {
+
+    private final SecureAuthHttpClient http;
+    private final String dnaAesKey;
+    private final String authCode;
+
+    public RemoteSecureAuthProvider(SecureAuthHttpClient http, String dnaAesKey, String authCode) {
+        this.http = http;
+        this.dnaAesKey = dnaAesKey;
+        this.authCode = authCode;
+    }
+
+    @Override
+    public void sessionEncode(String lockMac, int keyGroupId, int snr, Callback callback) {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("keyGroupId", String.valueOf(keyGroupId));
+        query.put("snr", String.valueOf(snr));
+        query.put("aesKey", dnaAesKey);
+        get("/sessionEncode", query, callback);
+    }
+
+    @Override
+    public void sessionDecode(String lockMac, int keyGroupId, String payload, Callback callback) {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("payload", payload);
+        query.put("aesKey", dnaAesKey);
+        get("/sessionDecode", query, callback);
+    }
+
+    @Override
+    public void secretKeyEncode(String lockMac, int keyGroupId, int snr, String sessionId, Callback callback) {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("keyGroupId", String.valueOf(keyGroupId));
+        query.put("snr", String.valueOf(snr));
+        query.put("aesKey", dnaAesKey);
+        query.put("sessionId", sessionId);
+        get("/secretKeyEncode", query, callback);
+    }
+
+    @Override
+    public void secretKeyDecode(String lockMac, int keyGroupId, String payload, Callback callback) {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("payload", payload);
+        query.put("aesKey", dnaAesKey);
+        get("/secretKeyDecode", query, callback);
+    }
+
+    @Override
+    public void authenticationEncode(String lockMac, int keyGroupId, int snr, String sessionId, String aesKey,
+                                     Callback callback) {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("keyGroupId", String.valueOf(keyGroupId));
+        query.put("snr", String.valueOf(snr));
+        query.put("aes128Key", aesKey);
+        query.put("sessionId", sessionId);
+        query.put("authCode", authCode);
+        get("/authenticationEncode", query, callback);
+    }
+
+    /** Stop the handshake server's request pool. */
+    public void shutdown() {
+        http.shutdown();
+    }
+
+    private void get(String path, Map<String, String> query, final Callback callback) {
+        http.get(path, query, body -> {
+            if (callback != null) callback.onResult(body);
+        });
+    }
+}
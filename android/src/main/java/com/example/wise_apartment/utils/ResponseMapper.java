@@ -0,0 +1,140 @@
+package com.example.wise_apartment.utils;
+
+import android.util.Log;
+
+import com.example.hxjblinklibrary.blinkble.entity.Response;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.DnaInfo;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.SysParamResult;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps vendor responses and models returned to Dart by BleLockManager.
+ *
+ * Stateless, so the per-call mapping cost can be measured on its own
+ * (see android/benchmark).
+ */
+public class ResponseMapper {
+    private static final String TAG = "BleLockManager";
+
+    /**
+     * Vendor Response to {code, message, ackMessage, isSuccessful, isError,
+     * lockMac, body}. {@code bodyObj} replaces the response's own body when
+     * the caller already mapped it.
+     */
+    public static Map<String, Object> responseToMap(Response<?> response, Object bodyObj) {
+        Map<String, Object> m = new HashMap<>();
+        if (response == null) return m;
+        // Use safe getters to avoid repetitive try/catch per-field
+        Integer codeVal = getSafe("response.code", response::code, -1);
+        m.put("code", codeVal);
+        putSafe(m, "message", response::message);
+        try { m.put("ackMessage", WiseStatusCode.description(codeVal)); } catch (Exception e) { Log.w(TAG, "Failed to compute ackMessage", e); m.put("ackMessage", null); }
+        putSafe(m, "isSuccessful", response::isSuccessful);
+        putSafe(m, "isError", response::isError);
+        putSafe(m, "lockMac", response::getLockMac);
+
+        // body conversion
+        if (bodyObj != null) {
+            m.put("body", bodyObj);
+        } else {
+            Object body;
+            try { body = response.body(); } catch (Exception e) { Log.w(TAG, "Failed to read response.body", e); body = null; }
+
+            if (body == null) {
+                m.put("body", null);
+            } else if (body instanceof DnaInfo) {
+                m.put("body", dnaInfoToMap((DnaInfo) body));
+            } else if (body instanceof SysParamResult) {
+                m.put("body", sysParamToMap((SysParamResult) body));
+            } else {
+                try { m.put("body", body.toString()); } catch (Exception e) { Log.w(TAG, "Failed to stringify body", e); m.put("body", null); }
+            }
+        }
+
+        return m;
+    }
+
+    public static Map<String, Object> dnaInfoToMap(DnaInfo dna) {
+        Map<String, Object> m = new HashMap<>();
+        if (dna == null) return m;
+        putSafe(m, "mac", dna::getMac);
+        putSafe(m, "initTag", dna::getInitTag);
+        putSafe(m, "deviceType", dna::getDeviceType);
+        putSafe(m, "hardware", dna::getHardWareVer);
+        putSafe(m, "software", dna::getSoftWareVer);
+        putSafe(m, "protocolVer", dna::getProtocolVer);
+        putSafe(m, "appCmdSets", dna::getAppCmdSets);
+        putSafe(m, "dnaAes128Key", dna::getDnaAes128Key);
+        putSafe(m, "authorizedRoot", dna::getAuthorizedRoot);
+        putSafe(m, "authorizedUser", dna::getAuthorizedUser);
+        putSafe(m, "authorizedTempUser", dna::getAuthorizedTempUser);
+        putSafe(m, "rFModuleType", dna::getrFMoudleType);
+        putSafe(m, "lockFunctionType", dna::getLockFunctionType);
+        putSafe(m, "maximumVolume", dna::getMaximumVolume);
+        putSafe(m, "maximumUserNum", dna::getMaximumUserNum);
+        putSafe(m, "menuFeature", dna::getMenuFeature);
+        putSafe(m, "fingerPrintfNum", dna::getFingerPrintfNum);
+        putSafe(m, "projectID", dna::getProjectID);
+        putSafe(m, "rFModuleMac", dna::getRFModuleMac);
+        putSafe(m, "motorDriverMode", dna::getMotorDriverMode);
+        putSafe(m, "motorSetMenuFunction", dna::getMotorSetMenuFunction);
+        putSafe(m, "MoudleFunction", dna::getMoudleFunction);
+        putSafe(m, "BleActiveTimes", dna::getBleActiveTimes);
+        putSafe(m, "ModuleSoftwareVer", dna::getModuleSoftwareVer);
+        putSafe(m, "ModuleHardwareVer", dna::getModuleHardwareVer);
+        putSafe(m, "passwordNumRange", dna::getPasswordNumRange);
+        putSafe(m, "OfflinePasswordVer", dna::getOfflinePasswordVer);
+        putSafe(m, "supportSystemLanguage", dna::getSupportSystemLanguage);
+        putSafe(m, "hotelFunctionEn", dna::getHotelFunctionEn);
+        putSafe(m, "schoolOpenNormorl", dna::getSchoolOpenNormorl);
+        putSafe(m, "cabinetLock", dna::getCabinetLock);
+        putSafe(m, "lockSystemFunction", dna::getLockSystemFunction);
+        putSafe(m, "lockNetSystemFunction", dna::getLockNetSystemFunction);
+        putSafe(m, "sysLanguage", dna::getSysLanguage);
+        putSafe(m, "keyAddMenuType", dna::getKeyAddMenuType);
+        putSafe(m, "functionFlag", dna::getFunctionFlag);
+        putSafe(m, "bleSmartCardNfcFunction", dna::getBleSmartCardNfcFunction);
+        putSafe(m, "wisapartmentCardFunction", dna::getWisapartmentCardFunction);
+        putSafe(m, "lockCompanyId", dna::getLockCompanyId);
+        putSafe(m, "deviceDnaInfoStr", dna::getDeviceDnaInfoStr);
+        return m;
+    }
+
+    public static Map<String, Object> sysParamToMap(SysParamResult s) {
+        // Expose all fields via reflection for richer UI/debug output
+        return objectToMap(s);
+    }
+
+    /**
+     * Convert an arbitrary SDK model object into a Map<String,Object>. Shares
+     * the cached accessor plans of {@link ModelFieldMapper} with
+     * LockRecordManager.mapRecord.
+     */
+    public static Map<String, Object> objectToMap(Object obj) {
+        return ModelFieldMapper.toMap(obj);
+    }
+
+    // Small functional getter that can throw; allows central Exception handling and logging
+    private interface Getter<T> { T get() throws Exception; }
+
+    private static <T> void putSafe(Map<String, Object> m, String key, Getter<T> getter) {
+        try {
+            T val = getter.get();
+            m.put(key, val);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to read key: " + key, e);
+            m.put(key, null);
+        }
+    }
+
+    private static <T> T getSafe(String label, Getter<T> getter, T fallback) {
+        try {
+            return getter.get();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to read: " + label, e);
+            return fallback;
+        }
+    }
+}
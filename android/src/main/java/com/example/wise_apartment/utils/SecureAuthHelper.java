@@ -4,162 +4,129 @@ import android.util.Log;
 
 import com.example.hxjblinklibrary.blinkble.profile.client.IHxBleSecureAuth;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Minimal port of SecureAuthHelper for plugin usage.
+ *
+ * Adapts a {@link SecureAuthProvider} to the SDK's IHxBleSecureAuth. The
+ * remote provider (the handshake server, through one shared
+ * {@link SecureAuthHttpClient}) is picked per auth map with
+ * {@code secureAuth: "remote"}, see {@link #forMode}.
  */
 public class SecureAuthHelper implements IHxBleSecureAuth {
 
     private static final String TAG = "SecureAuthHelper";
+    private static final String BASE_URL = "http://192.168.31.148";
     private static String lockDNAAESKey = "Ytg6hpwXyF5OS329";
+    private static final String AUTH_CODE = "14399F8A";
+
+    public static final String MODE_REMOTE = "remote";
+
+    private static SecureAuthHelper remote;
+    // Time spent in handshake steps goes into the lock operation's trace
+    private static volatile OperationTracer tracer;
+
+    private final SecureAuthProvider provider;
+    // Decode steps only get the MAC; reuse the key group of the lock's last encode step
+    private final Map<String, Integer> keyGroups = new HashMap<>();
+
+    public SecureAuthHelper() {
+        this(new RemoteSecureAuthProvider(new SecureAuthHttpClient(BASE_URL), lockDNAAESKey, AUTH_CODE));
+    }
+
+    public SecureAuthHelper(SecureAuthProvider provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * Shared helper for {@code mode} {@link #MODE_REMOTE}, or null for any
+     * other value (no secure auth).
+     */
+    public static synchronized SecureAuthHelper forMode(Object mode) {
+        if (MODE_REMOTE.equals(mode)) {
+            if (remote == null) remote = new SecureAuthHelper();
+            return remote;
+        }
+        return null;
+    }
+
+    /**
+     * Stop the shared remote helper's request pool; the next
+     * {@link #forMode} creates a new one.
+     */
+    public static synchronized void shutdown() {
+        if (remote != null && remote.provider instanceof RemoteSecureAuthProvider) {
+            ((RemoteSecureAuthProvider) remote.provider).shutdown();
+        }
+        remote = null;
+    }
+
+    public static void setTracer(OperationTracer operationTracer) {
+        tracer = operationTracer;
+    }
 
     @Override
     public void getSessionIdCmd(int keyGroupId, int snr, String lockMac, RequestComplection complection) {
-
-        new Thread(() -> {
-            String urlStr = "http://192.168.31.148/sessionEncode?keyGroupId=" + keyGroupId + "&" + "snr=" + snr + "&" + "aesKey=" + lockDNAAESKey;
-            Log.d(TAG, "Send url: " + urlStr);
-            try {
-                URL url = new URL(urlStr);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(15 * 1000);
-                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    InputStream inputStream = connection.getInputStream();
-                    String sessionIdCmd = inputStreamToString(inputStream);
-                    Log.d(TAG, "getSessionIdCmd: " + sessionIdCmd);
-                    if (complection != null) {
-                        complection.callback(sessionIdCmd);
-                    }
-                } else {
-                    callbackFailed(complection);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                callbackFailed(complection);
-            }
-        }).start();
+        rememberKeyGroup(lockMac, keyGroupId);
+        provider.sessionEncode(lockMac, keyGroupId, snr, reply("getSessionIdCmd", lockMac, complection));
     }
 
     @Override
     public void parseSessionId(String lockMac, String sessionIdPlayload, RequestComplection complection) {
-        new Thread(() -> {
-
-            String urlStr = "http://192.168.31.148/sessionDecode?payload=" + sessionIdPlayload + "&" + "aesKey=" + lockDNAAESKey;
-            Log.d(TAG, "Send url: " + urlStr);
-            try {
-                URL url = new URL(urlStr);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(15 * 1000);
-                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    InputStream inputStream = connection.getInputStream();
-                    String sessionId = inputStreamToString(inputStream);
-                    Log.d(TAG, "parseSessionId: " + sessionId);
-                    if (complection != null) {
-                        complection.callback(sessionId);
-                    }
-                } else {
-                    callbackFailed(complection);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                callbackFailed(complection);
-            }
-        }).start();
+        provider.sessionDecode(lockMac, keyGroupOf(lockMac), sessionIdPlayload, reply("parseSessionId", lockMac, complection));
     }
 
     @Override
     public void getAESKeyCmd(int keyGroupId, int snr, String sessionId, String lockMac, RequestComplection complection) {
-        new Thread(() -> {
-
-            String urlStr = "http://192.168.31.148/secretKeyEncode?keyGroupId=" + keyGroupId + "&" + "snr=" + snr + "&" + "aesKey=" + lockDNAAESKey + "&" + "sessionId=" + sessionId;
-            Log.d(TAG, "Send url: " + urlStr);
-
-            try {
-                URL url = new URL(urlStr);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(15 * 1000);
-
-                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    InputStream inputStream = connection.getInputStream();
-                    String aesKeyCmd = inputStreamToString(inputStream);
-                    Log.d(TAG, "getAESKeyCmd: " + aesKeyCmd);
-                    if (complection != null) {
-                        complection.callback(aesKeyCmd);
-                    }
-                } else {
-                    callbackFailed(complection);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                callbackFailed(complection);
-            }
-        }).start();
+        rememberKeyGroup(lockMac, keyGroupId);
+        provider.secretKeyEncode(lockMac, keyGroupId, snr, sessionId, reply("getAESKeyCmd", lockMac, complection));
     }
 
     @Override
     public void parseAESKey(String lockMac, String aesKeyPlayload, RequestComplection complection) {
-        new Thread(() -> {
-
-            String urlStr = "http://192.168.31.148/secretKeyDecode?payload=" + aesKeyPlayload + "&" + "aesKey=" + lockDNAAESKey;
-            Log.d(TAG, "Send url: " + urlStr);
-
-            try {
-                URL url = new URL(urlStr);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(15 * 1000);
-                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    InputStream inputStream = connection.getInputStream();
-                    String dynaseKey = inputStreamToString(inputStream);
-                    Log.d(TAG, "parseAESKey: " + dynaseKey);
-                    if (complection != null) {
-                        complection.callback(dynaseKey);
-                    }
-                } else {
-                    callbackFailed(complection);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                callbackFailed(complection);
-            }
-        }).start();
+        provider.secretKeyDecode(lockMac, keyGroupOf(lockMac), aesKeyPlayload, reply("parseAESKey", lockMac, complection));
     }
 
     @Override
     public void getAuthCmd(int keyGroupId, int snr, String sessionId, String aesKey, String lockMac, RequestComplection complection) {
-        new Thread(() -> {
-
-            String urlStr = "http://192.168.31.148/authenticationEncode?keyGroupId=" + keyGroupId + "&" + "snr=" + snr + "&" + "aes128Key=" + aesKey + "&" + "sessionId=" + sessionId + "&" + "authCode=" + "14399F8A";
-            Log.d(TAG, "Send url: " + urlStr);
-
-            try {
-                URL url = new URL(urlStr);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(15 * 1000);
-                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    InputStream inputStream = connection.getInputStream();
-                    String authCmd = inputStreamToString(inputStream);
-                    Log.d(TAG, "getAuthCmd: " + authCmd);
-                    if (complection != null) {
-                        complection.callback(authCmd);
-                    }
-                } else {
-                    callbackFailed(complection);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
+        rememberKeyGroup(lockMac, keyGroupId);
+        provider.authenticationEncode(lockMac, keyGroupId, snr, sessionId, aesKey, reply("getAuthCmd", lockMac, complection));
+    }
+
+    private SecureAuthProvider.Callback reply(final String step, final String lockMac, final RequestComplection complection) {
+        final OperationTracer t = tracer;
+        final long startNs = t == null ? 0 : t.nanoTime();
+        return result -> {
+            if (t != null) t.onSecureAuthStep(lockMac, startNs);
+            if (result == null) {
                 callbackFailed(complection);
+                return;
+            }
+            Log.d(TAG, step + ": " + result);
+            if (complection != null) {
+                complection.callback(result);
             }
-        }).start();
+        };
+    }
+
+    private void rememberKeyGroup(String lockMac, int keyGroupId) {
+        synchronized (keyGroups) {
+            keyGroups.put(normalize(lockMac), keyGroupId);
+        }
+    }
+
+    private int keyGroupOf(String lockMac) {
+        synchronized (keyGroups) {
+            Integer id = keyGroups.get(normalize(lockMac));
+            return id == null ? 0 : id;
+        }
+    }
+
+    private static String normalize(String mac) {
+        return mac == null ? "" : mac.trim().toUpperCase(Locale.US);
     }
 
     private void callbackFailed(RequestComplection complection) {
@@ -169,20 +136,4 @@ public class SecureAuthHelper implements IHxBleSecureAuth {
             complection.callback(null);
         }
     }
-
-    private String inputStreamToString(InputStream inputStream) {
-        String str = null;
-        try {
-            BufferedReader r = new BufferedReader(new InputStreamReader(inputStream));
-            StringBuilder total = new StringBuilder();
-            for (String line; (line = r.readLine()) != null; ) {
-                total.append(line).append('\n');
-            }
-            str = total.toString();
-            str = str.replace("\n", "");
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return str;
-    }
 }
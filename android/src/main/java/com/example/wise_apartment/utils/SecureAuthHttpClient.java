@@ -0,0 +1,153 @@
+package com.example.wise_apartment.utils;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP client for the secure-auth handshake server used by
+ * {@link SecureAuthHelper}.
+ *
+ * Requests run on one bounded pool of {@link #DEFAULT_THREADS} threads
+ * instead of a new thread each. Every response body is read to the end and
+ * closed (never {@code disconnect()}ed), so HttpURLConnection's keep-alive
+ * pool hands the same socket to the next step of the handshake.
+ *
+ * Responses are not cached: every step carries the lock's fresh snr or
+ * session payload, so a query never repeats, and replaying a response
+ * bound to an old nonce would only make the lock reject the handshake.
+ */
+public class SecureAuthHttpClient {
+    private static final String TAG = "SecureAuthHttpClient";
+    static final int DEFAULT_THREADS = 2;
+    static final int MAX_QUEUED = 32;
+    private static final int CONNECT_TIMEOUT_MS = 15 * 1000;
+    private static final int READ_TIMEOUT_MS = 15 * 1000;
+
+    /** Response body with line breaks removed, or null on any failure. */
+    public interface Callback {
+        void onResult(String body);
+    }
+
+    private final String baseUrl;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public SecureAuthHttpClient(String baseUrl) {
+        this(baseUrl, DEFAULT_THREADS);
+    }
+
+    SecureAuthHttpClient(String baseUrl, int threads) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        final AtomicInteger n = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, "secure-auth-http-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_QUEUED), factory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * GET {@code path} with {@code query} (values are URL-encoded, order
+     * kept). The callback runs on a pool thread, or inline with null when
+     * the queue is full.
+     */
+    public void get(String path, Map<String, String> query, final Callback callback) {
+        final String request = path + "?" + encode(query);
+        try {
+            executor.execute(() -> {
+                String body = fetch(request);
+                if (body == null) failures.incrementAndGet();
+                if (callback != null) callback.onResult(body);
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Queue full, dropping " + path);
+            failures.incrementAndGet();
+            if (callback != null) callback.onResult(null);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("requests", requests.get());
+        m.put("failures", failures.get());
+        m.put("active", executor.getActiveCount());
+        m.put("queued", executor.getQueue().size());
+        return m;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private String fetch(String request) {
+        requests.incrementAndGet();
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(baseUrl + request).openConnection();
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestProperty("Connection", "keep-alive");
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                Log.d(TAG, "Request failed (" + code + "): " + request);
+                // Drain the error body too, or the socket is not reused
+                drain(connection.getErrorStream());
+                return null;
+            }
+            return drain(connection.getInputStream()).replace("\r", "").replace("\n", "");
+        } catch (IOException e) {
+            Log.w(TAG, "Request failed: " + request, e);
+            if (connection != null) connection.disconnect();
+            return null;
+        }
+    }
+
+    // Reads the stream to the end and closes it, returning it to the keep-alive pool
+    private static String drain(InputStream in) throws IOException {
+        if (in == null) return "";
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            for (int n; (n = in.read(buf)) != -1; ) out.write(buf, 0, n);
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String encode(Map<String, String> query) {
+        StringBuilder sb = new StringBuilder();
+        if (query == null) return "";
+        try {
+            for (Map.Entry<String, String> e : query.entrySet()) {
+                if (sb.length() > 0) sb.append('&');
+                sb.append(e.getKey()).append('=');
+                if (e.getValue() != null) sb.append(URLEncoder.encode(e.getValue(), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.wise_apartment.utils;
+
+/**
+ * Computes the payloads of the lock's secure-auth handshake.
+ *
+ * {@link SecureAuthHelper} adapts one of these to the SDK's
+ * IHxBleSecureAuth. {@link RemoteSecureAuthProvider} asks the handshake
+ * server. Payloads and results are hex strings; callbacks get null on
+ * failure and may run on the calling thread.
+ */
+public interface SecureAuthProvider {
+
+    interface Callback {
+        void onResult(String result);
+    }
+
+    /** Session request command for the lock. */
+    void sessionEncode(String lockMac, int keyGroupId, int snr, Callback callback);
+
+    /** Session id from the lock's session reply. */
+    void sessionDecode(String lockMac, int keyGroupId, String payload, Callback callback);
+
+    /** Key request command for the lock within {@code sessionId}. */
+    void secretKeyEncode(String lockMac, int keyGroupId, int snr, String sessionId, Callback callback);
+
+    /** Dynamic AES key from the lock's key reply. */
+    void secretKeyDecode(String lockMac, int keyGroupId, String payload, Callback callback);
+
+    /** Authentication command, encrypted with the dynamic {@code aesKey}. */
+    void authenticationEncode(String lockMac, int keyGroupId, int snr, String sessionId, String aesKey,
+                              Callback callback);
+}
@@ -0,0 +1,250 @@
+package com.example.wise_apartment.utils;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Credit-based flow control for EventChannel streams.
+ *
+ * Every stream gets a {@link Gate} keyed by its streamId (the caller's
+ * {@code streamId} argument, or a generated one). A stream started with a
+ * {@code credits} argument may produce that many chunks; the native side
+ * runs each chunk-producing step through {@link Gate#acquire} and, once
+ * credits are gone or the stream is paused, parks the step until Dart
+ * grants more with resumeStream. Without {@code credits} a stream flows
+ * freely until paused.
+ *
+ * For record streams a step is the next page request, so a stalled
+ * consumer stops the lock from being polled; the stream also gives up its
+ * link while a page request is parked. Key sync pushes keys from the lock
+ * on its own; there the parked steps are the chunk events, at most one per
+ * key the lock holds.
+ *
+ * Parked steps run on the thread that grants credit (the main thread).
+ *
+ * {@link #cancel} ends a stream early: a running stream's canceller (see
+ * {@link Gate#onCancel}) stops it and emits its terminal event; a stream
+ * still queued behind other commands finds its gate closed when it starts.
+ */
+public class StreamFlowControl {
+    private final Map<String, Gate> gates = new HashMap<>();
+    private int nextId;
+    private long cancelled;
+
+    private static final class Step {
+        final Runnable runnable;
+        final boolean needsCredit;
+
+        Step(Runnable runnable, boolean needsCredit) {
+            this.runnable = runnable;
+            this.needsCredit = needsCredit;
+        }
+    }
+
+    public final class Gate {
+        private final String id;
+        // Guarded by StreamFlowControl.this
+        private final ArrayDeque<Step> parked = new ArrayDeque<>();
+        private boolean limited;
+        private long credits;
+        private boolean paused;
+        private boolean closed;
+        private long steps;
+        private Runnable canceller;
+
+        Gate(String id, boolean limited, long credits) {
+            this.id = id;
+            this.limited = limited;
+            this.credits = credits;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Run a chunk-producing step now if credit allows, else park it.
+         * False when it was parked (or dropped on a closed gate).
+         */
+        public boolean acquire(Runnable step) {
+            return submit(step, true);
+        }
+
+        /** Run a step that needs no credit (done / error) behind parked ones. */
+        public void after(Runnable step) {
+            submit(step, false);
+        }
+
+        private boolean submit(Runnable step, boolean needsCredit) {
+            synchronized (StreamFlowControl.this) {
+                if (closed && needsCredit) return false;
+                if (!parked.isEmpty() || (needsCredit && !mayRun())) {
+                    parked.add(new Step(step, needsCredit));
+                    return false;
+                }
+                if (needsCredit) take();
+            }
+            step.run();
+            return true;
+        }
+
+        // Caller holds the lock
+        private boolean mayRun() {
+            return !paused && (!limited || credits > 0);
+        }
+
+        // Caller holds the lock
+        private void take() {
+            steps++;
+            if (limited) credits--;
+        }
+
+        /** Release parked steps that credit now allows, in order. */
+        void drain() {
+            while (true) {
+                Step next;
+                synchronized (StreamFlowControl.this) {
+                    next = parked.peek();
+                    if (next == null) return;
+                    if (next.needsCredit && (closed || !mayRun())) {
+                        if (!closed) return;
+                        parked.poll();
+                        continue;
+                    }
+                    parked.poll();
+                    if (next.needsCredit) take();
+                }
+                next.runnable.run();
+            }
+        }
+
+        /**
+         * What cancelStream does for this stream once it is running. Runs
+         * right away if the stream was cancelled before it got here.
+         */
+        public void onCancel(Runnable canceller) {
+            synchronized (StreamFlowControl.this) {
+                if (!closed) {
+                    this.canceller = canceller;
+                    return;
+                }
+            }
+            canceller.run();
+        }
+
+        public boolean isClosed() {
+            synchronized (StreamFlowControl.this) {
+                return closed;
+            }
+        }
+
+        public boolean isPaused() {
+            synchronized (StreamFlowControl.this) {
+                return paused || (limited && credits <= 0);
+            }
+        }
+
+        /** Drop parked chunk steps and forget the stream; credit-free steps still run. */
+        public void close() {
+            synchronized (StreamFlowControl.this) {
+                if (closed) return;
+                closed = true;
+                if (gates.get(id) == this) gates.remove(id);
+            }
+            drain();
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new HashMap<>();
+            m.put("streamId", id);
+            m.put("paused", paused);
+            m.put("credits", limited ? credits : -1);
+            m.put("parked", parked.size());
+            m.put("steps", steps);
+            return m;
+        }
+    }
+
+    /** The caller's {@code streamId} argument, or a generated "stream-n". */
+    public synchronized String idFor(Map<String, Object> args) {
+        Object requested = args == null ? null : args.get("streamId");
+        if (requested instanceof String && !((String) requested).isEmpty()) return (String) requested;
+        return "stream-" + (++nextId);
+    }
+
+    /**
+     * Gate for a new stream {@code id}; {@code args.credits}, when given, is
+     * the initial number of chunks it may produce.
+     */
+    public synchronized Gate open(String id, Map<String, Object> args) {
+        Object credits = args == null ? null : args.get("credits");
+        Gate gate = new Gate(id, credits instanceof Number, credits instanceof Number ? Math.max(0, ((Number) credits).longValue()) : 0);
+        Gate previous = gates.put(id, gate);
+        if (previous != null) previous.closed = true;
+        return gate;
+    }
+
+    public synchronized Gate get(String id) {
+        return gates.get(id);
+    }
+
+    /** Stop producing chunks on stream {@code id}. False when no such stream. */
+    public synchronized boolean pause(String id) {
+        Gate g = gates.get(id);
+        if (g == null) return false;
+        g.paused = true;
+        return true;
+    }
+
+    /**
+     * Grant {@code credits} more chunks to stream {@code id} and lift a
+     * pause; null credits lets it flow without limit. False when no such
+     * stream.
+     */
+    public boolean resume(String id, Long credits) {
+        Gate g;
+        synchronized (this) {
+            g = gates.get(id);
+            if (g == null) return false;
+            g.paused = false;
+            if (credits == null) {
+                g.limited = false;
+            } else if (g.limited) {
+                g.credits += Math.max(0, credits);
+            } else {
+                g.limited = true;
+                g.credits = Math.max(0, credits);
+            }
+        }
+        g.drain();
+        return true;
+    }
+
+    /** End stream {@code id} early. False when no such stream is running. */
+    public boolean cancel(String id) {
+        Gate g;
+        Runnable c;
+        synchronized (this) {
+            g = gates.get(id);
+            if (g == null) return false;
+            c = g.canceller;
+            cancelled++;
+        }
+        if (c != null) {
+            c.run();
+        } else {
+            g.close();
+        }
+        return true;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> streams = new HashMap<>();
+        for (Gate g : gates.values()) streams.put(g.id, g.toMap());
+        Map<String, Object> m = new HashMap<>();
+        m.put("streams", streams);
+        m.put("cancelled", cancelled);
+        return m;
+    }
+}
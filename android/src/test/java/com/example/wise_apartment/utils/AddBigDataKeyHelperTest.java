@@ -0,0 +1,148 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.example.hxjblinklibrary.blinkble.entity.Response;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.BLEAddBigDataKeyAction;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.BLEKeyValidTimeParam;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.BleLockAddFaceKeyResult;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.LockKeyResult;
+import com.example.hxjblinklibrary.blinkble.profile.client.FunCallback;
+import com.example.hxjblinklibrary.blinkble.profile.client.HxjBleClient;
+import com.example.hxjblinklibrary.blinkble.profile.data.common.KeyType;
+import com.example.hxjblinklibrary.blinkble.profile.data.common.StatusCode;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AddBigDataKeyHelperTest {
+  private static final String MAC = "AA:BB:CC:DD:EE:FF";
+  // 3 packets of at most 180 bytes
+  private static final byte[] TEMPLATE = new byte[400];
+
+  private HxjBleClient client;
+  private AddBigDataKeyHelper helper;
+  // Packet index and callback of every addFingerprintKeyData call
+  private final List<Integer> sent = new ArrayList<>();
+  private final List<FunCallback> acks = new ArrayList<>();
+  private final List<String> events = new ArrayList<>();
+
+  private final AddBigDataKeyHelper.SendBigKeyDataCallback callback = new AddBigDataKeyHelper.SendBigKeyDataCallback() {
+    @Override
+    public void onProgress(int statusCode, String message, int phase, double progress) {
+      events.add("progress");
+    }
+
+    @Override
+    public void onComplete(int statusCode, String message, LockKeyResult keyResult) {
+      events.add("complete:" + keyResult.getKeyID());
+    }
+
+    @Override
+    public void onError(int statusCode, String message) {
+      events.add("error:" + statusCode);
+    }
+  };
+
+  @Before
+  public void setUp() {
+    client = mock(HxjBleClient.class);
+    doAnswer(inv -> {
+      sent.add(((BLEAddBigDataKeyAction) inv.getArgument(0)).currentIndex);
+      acks.add(inv.getArgument(2));
+      return null;
+    }).when(client).addFingerprintKeyData(any(BLEAddBigDataKeyAction.class), any(BLEKeyValidTimeParam.class),
+        any(FunCallback.class));
+    helper = new AddBigDataKeyHelper(null, client);
+    helper.startWithBigData(TEMPLATE, MAC, 900, KeyType.FINGER, new BLEKeyValidTimeParam(), null, callback);
+  }
+
+  private static Response ack(int currentIndex, int flags, int lockKeyId) {
+    BleLockAddFaceKeyResult result = new BleLockAddFaceKeyResult();
+    result.currentIndex = currentIndex;
+    result.totalNum = 3;
+    result.flags = flags;
+    result.lockKeyId = lockKeyId;
+    return Response.success(0, result, MAC);
+  }
+
+  // Confirmed ack of the last packet sent
+  private void ackLast(int lockKeyId) {
+    acks.get(acks.size() - 1).onResponse(ack(sent.get(sent.size() - 1) + 1, 1, lockKeyId));
+  }
+
+  @SuppressWarnings("unchecked")
+  private FunCallback lastDisconnect() {
+    ArgumentCaptor<FunCallback> captor = ArgumentCaptor.forClass(FunCallback.class);
+    verify(client).disConnectBle(captor.capture());
+    return captor.getValue();
+  }
+
+  @Test
+  public void resume_continuesFromCheckpointedPacket() {
+    ackLast(0);
+    acks.get(1).onFailure(new IllegalStateException("link lost"));
+    assertTrue(helper.canResume());
+    assertEquals(1, helper.getCheckpoint().get("currentIndex"));
+
+    helper.resume(null, callback);
+    ackLast(7);
+    ackLast(7);
+
+    assertEquals(Arrays.asList(0, 1, 1, 2), sent);
+    assertEquals("complete:7", events.get(events.size() - 1));
+    assertFalse(helper.canResume());
+  }
+
+  @Test
+  public void resume_restartsOnceWhenLockRejectsCheckpoint() {
+    ackLast(0);
+    ackLast(0);
+    acks.get(2).onFailure(new IllegalStateException("link lost"));
+
+    helper.resume(null, callback);
+    // The lock dropped the half-received key
+    acks.get(3).onResponse(Response.response(0, StatusCode.ACK_STATUS_PARAM_ERR, null, MAC));
+    assertEquals(Arrays.asList(0, 1, 2, 2, 0), sent);
+    assertEquals(1, helper.getCheckpoint().get("restarts"));
+
+    // A second rejection is not retried
+    acks.get(4).onResponse(Response.response(0, StatusCode.ACK_STATUS_PARAM_ERR, null, MAC));
+    assertEquals(5, sent.size());
+    assertEquals("error:" + StatusCode.ACK_STATUS_PARAM_ERR, events.get(events.size() - 1));
+  }
+
+  @Test
+  public void interrupt_dropsLinkIgnoresLateAckAndResumesAfterDisconnect() {
+    ackLast(0);
+    helper.interrupt();
+    FunCallback disconnected = lastDisconnect();
+    assertTrue(helper.canResume());
+
+    // The SDK's ack for the abandoned packet arrives late
+    acks.get(1).onResponse(ack(2, 0, 0));
+    assertEquals(1, helper.getCheckpoint().get("currentIndex"));
+
+    helper.resume(null, callback);
+    assertEquals(2, sent.size());
+    disconnected.onResponse(Response.success(0, null, MAC));
+    assertEquals(Arrays.asList(0, 1, 1), sent);
+
+    ackLast(0);
+    ackLast(9);
+    assertEquals("complete:9", events.get(events.size() - 1));
+    assertNotNull(helper.getCheckpoint());
+  }
+}
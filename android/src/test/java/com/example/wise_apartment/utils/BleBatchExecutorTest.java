@@ -0,0 +1,166 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+public class BleBatchExecutorTest {
+  private static final String MAC = "AA:BB:CC:DD:EE:FF";
+
+  private BleCommandScheduler scheduler;
+  private BleBatchExecutor batch;
+  private final List<String> ran = new CopyOnWriteArrayList<>();
+  // Result of the step that never replies on its own
+  private volatile Result stuck;
+
+  @Before
+  public void setUp() {
+    scheduler = new BleCommandScheduler(Runnable::run);
+    Map<String, BleBatchExecutor.Step> steps = new HashMap<>();
+    steps.put("openLock", (args, r) -> {
+      ran.add("openLock");
+      r.success(args.get("mac"));
+    });
+    steps.put("syncLockTime", (args, r) -> {
+      ran.add("syncLockTime");
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException ignored) {
+      }
+      r.success(true);
+    });
+    steps.put("getSysParam", (args, r) -> {
+      ran.add("getSysParam");
+      r.error("ERROR", "rejected", args.get("param"));
+    });
+    steps.put("getDna", (args, r) -> {
+      ran.add("getDna");
+      stuck = r;
+    });
+    batch = new BleBatchExecutor(scheduler, steps);
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdown();
+  }
+
+  private static Map<String, Object> op(String method) {
+    Map<String, Object> m = new HashMap<>();
+    m.put("method", method);
+    return m;
+  }
+
+  private static Map<String, Object> args(Object stopOnError, Map<String, Object>... ops) {
+    Map<String, Object> m = new HashMap<>();
+    m.put("mac", MAC);
+    m.put("operations", new ArrayList<Object>(Arrays.asList(ops)));
+    if (stopOnError != null) m.put("stopOnError", stopOnError);
+    return m;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> reply(Result result) {
+    ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+    verify(result).success(captor.capture());
+    return (Map<String, Object>) captor.getValue();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Map<String, Object>> steps(Map<String, Object> reply) {
+    return (List<Map<String, Object>>) reply.get("steps");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void stopOnError_skipsLaterSteps() {
+    Result result = mock(Result.class);
+    batch.executeBatch(args(null, op("openLock"), op("getSysParam"), op("syncLockTime")), result);
+
+    Map<String, Object> reply = reply(result);
+    assertFalse((Boolean) reply.get("ok"));
+    assertEquals(Arrays.asList("openLock", "getSysParam"), ran);
+    List<Map<String, Object>> steps = steps(reply);
+    assertEquals(3, steps.size());
+    assertEquals("ERROR", steps.get(1).get("code"));
+    assertEquals("syncLockTime", steps.get(2).get("method"));
+    assertTrue((Boolean) steps.get(2).get("skipped"));
+    assertEquals(0, scheduler.getActiveCount());
+  }
+
+  @Test
+  public void withoutStopOnError_runsEveryStep() {
+    Result result = mock(Result.class);
+    batch.executeBatch(args(false, op("getSysParam"), op("openLock")), result);
+
+    List<Map<String, Object>> steps = steps(reply(result));
+    assertEquals(Arrays.asList("getSysParam", "openLock"), ran);
+    assertFalse((Boolean) steps.get(0).get("ok"));
+    assertTrue((Boolean) steps.get(1).get("ok"));
+  }
+
+  @Test
+  public void steps_reportResultAndOwnTiming() {
+    Map<String, Object> getSysParam = op("getSysParam");
+    Map<String, Object> params = new HashMap<>();
+    params.put("param", 7);
+    // A step cannot move the batch to another lock
+    params.put("mac", "11:22:33:44:55:66");
+    getSysParam.put("params", params);
+    Result result = mock(Result.class);
+    batch.executeBatch(args(false, op("syncLockTime"), op("openLock"), getSysParam), result);
+
+    Map<String, Object> reply = reply(result);
+    List<Map<String, Object>> steps = steps(reply);
+    assertEquals(0, steps.get(0).get("index"));
+    assertEquals(true, steps.get(0).get("result"));
+    assertTrue((Long) steps.get(0).get("elapsedMs") >= 20);
+    assertEquals(MAC, steps.get(1).get("result"));
+    assertTrue((Long) steps.get(1).get("elapsedMs") < 20);
+    assertEquals(7, steps.get(2).get("details"));
+    assertEquals("rejected", steps.get(2).get("message"));
+    assertTrue((Long) reply.get("totalMs") >= 20);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void timedOutStep_failsBatchAndHoldsLinkUntilItsReply() {
+    Map<String, Object> a = args(null, op("openLock"), op("getDna"), op("syncLockTime"));
+    a.put("stepTimeoutMs", 50);
+    Result result = mock(Result.class);
+    batch.executeBatch(a, result);
+    Result next = mock(Result.class);
+    scheduler.submit(MAC, "getSysParam", next, r -> r.success("next"));
+
+    ArgumentCaptor<Object> details = ArgumentCaptor.forClass(Object.class);
+    verify(result, timeout(2000)).error(eq("COMMAND_TIMEOUT"), anyString(), details.capture());
+    assertEquals(1, steps((Map<String, Object>) details.getValue()).size());
+    // The stuck step still owns the link
+    assertEquals(1, scheduler.getQueueDepth(MAC));
+
+    stuck.success("late");
+    verify(next).success("next");
+    assertEquals(Arrays.asList("openLock", "getDna"), ran);
+    assertEquals(0, scheduler.getActiveCount());
+  }
+}
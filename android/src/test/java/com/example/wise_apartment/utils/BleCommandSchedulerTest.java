@@ -0,0 +1,266 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.example.hxjblinklibrary.blinkble.entity.Response;
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.BlinkyAction;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.SysParamResult;
+import com.example.hxjblinklibrary.blinkble.profile.client.FunCallback;
+import com.example.hxjblinklibrary.blinkble.profile.client.HxjBleClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+public class BleCommandSchedulerTest {
+  private static final String LOCK_A = "AA:BB:CC:DD:EE:01";
+  private static final String LOCK_B = "AA:BB:CC:DD:EE:02";
+
+  private HxjBleClient client;
+  private BleCommandScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    client = mock(HxjBleClient.class);
+    scheduler = new BleCommandScheduler(Runnable::run);
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdown();
+  }
+
+  // Mirrors what the managers do: one SDK call, reply on the Result.
+  private void submitGetSysParam(String mac, Result result) {
+    submitGetSysParam(mac, BleCommandScheduler.DEFAULT_TIMEOUT_MS, result);
+  }
+
+  private void submitGetSysParam(String mac, long timeoutMs, Result result) {
+    scheduler.submit(mac, "getSysParam", timeoutMs, result, r ->
+        client.getSysParam(new BlinkyAction(), new FunCallback<SysParamResult>() {
+          @Override
+          public void onResponse(Response<SysParamResult> response) {
+            r.success(response.getLockMac());
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            r.error("ERROR", t.getMessage(), null);
+          }
+        }));
+  }
+
+  @SuppressWarnings("unchecked")
+  private FunCallback<SysParamResult> lastCallback(int expectedCalls) {
+    ArgumentCaptor<FunCallback> captor = ArgumentCaptor.forClass(FunCallback.class);
+    verify(client, times(expectedCalls)).getSysParam(any(), captor.capture());
+    return captor.getValue();
+  }
+
+  @Test
+  public void sameLock_runsCommandsOneAtATime() {
+    Result first = mock(Result.class);
+    Result second = mock(Result.class);
+    submitGetSysParam(LOCK_A, first);
+    submitGetSysParam(LOCK_A, second);
+
+    FunCallback<SysParamResult> cb = lastCallback(1);
+    assertEquals(1, scheduler.getQueueDepth(LOCK_A));
+
+    cb.onResponse(Response.success(1, null, LOCK_A));
+    verify(first).success(LOCK_A);
+
+    lastCallback(2).onFailure(new RuntimeException("busy"));
+    verify(second).error("ERROR", "busy", null);
+    assertEquals(0, scheduler.getActiveCount());
+  }
+
+  @Test
+  public void differentLocks_shareSingleLinkByDefault() {
+    submitGetSysParam(LOCK_A, mock(Result.class));
+    submitGetSysParam(LOCK_B, mock(Result.class));
+    lastCallback(1);
+
+    scheduler.setMaxActiveLinks(2);
+    lastCallback(2);
+    assertEquals(2, scheduler.getActiveCount());
+  }
+
+  @Test
+  public void commandsRunInSubmissionOrderAcrossLocks() {
+    Result a1 = mock(Result.class);
+    Result b1 = mock(Result.class);
+    Result a2 = mock(Result.class);
+    submitGetSysParam(LOCK_A, a1);
+    submitGetSysParam(LOCK_B, b1);
+    submitGetSysParam(LOCK_A, a2);
+
+    lastCallback(1).onResponse(Response.success(1, null, "a1"));
+    lastCallback(2).onResponse(Response.success(1, null, "b1"));
+    lastCallback(3).onResponse(Response.success(1, null, "a2"));
+
+    verify(a1).success("a1");
+    verify(b1).success("b1");
+    verify(a2).success("a2");
+  }
+
+  @Test
+  public void lateReplyAfterFirstIsIgnored() {
+    Result result = mock(Result.class);
+    scheduler.submit(LOCK_A, "openLock", result, r -> {
+      r.success(true);
+      r.error("ERROR", "late", null);
+    });
+    verify(result).success(true);
+    verify(result, never()).error(anyString(), anyString(), any());
+  }
+
+  @Test
+  public void watchdog_failsStuckCommandButHoldsLinkUntilLateReply() {
+    BleCommandScheduler.LinkResetter resetter = mock(BleCommandScheduler.LinkResetter.class);
+    scheduler.setLinkResetter(resetter);
+    Result stuck = mock(Result.class);
+    Result next = mock(Result.class);
+    submitGetSysParam(LOCK_A, 50, stuck);
+    submitGetSysParam(LOCK_A, next);
+
+    verify(stuck, timeout(2000)).error(eq("COMMAND_TIMEOUT"), anyString(), any());
+    // The SDK may still be running it: the next command waits, the link is reset
+    verify(resetter, timeout(2000)).reset(LOCK_A);
+    assertEquals(1, scheduler.getQueueDepth(LOCK_A));
+    verify(client, times(1)).getSysParam(any(), any());
+
+    // The late callback is not delivered but frees the link
+    lastCallback(1).onFailure(new IllegalStateException("link reset"));
+    verify(stuck, never()).error(eq("ERROR"), anyString(), any());
+    lastCallback(2).onResponse(Response.success(1, null, LOCK_A));
+    verify(next).success(LOCK_A);
+    assertEquals(1L, scheduler.getStats().get("timedOut"));
+  }
+
+  @Test
+  public void lateReplyOfClosedCommand_freesLinkForOtherLocks() {
+    // Like syncLockRecords: the timeout reply closes the session, and the
+    // late SDK callback of a closed session still answers to free the link
+    final boolean[] closed = new boolean[1];
+    Result stuck = mock(Result.class);
+    Result closing = new Result() {
+      @Override
+      public void success(Object value) {
+        closed[0] = true;
+        stuck.success(value);
+      }
+
+      @Override
+      public void error(String code, String message, Object details) {
+        closed[0] = true;
+        stuck.error(code, message, details);
+      }
+
+      @Override
+      public void notImplemented() {
+        closed[0] = true;
+        stuck.notImplemented();
+      }
+    };
+    scheduler.submit(LOCK_A, "syncLockRecords", 50, closing, r ->
+        client.getSysParam(new BlinkyAction(), new FunCallback<SysParamResult>() {
+          @Override
+          public void onResponse(Response<SysParamResult> response) {
+            if (closed[0]) r.error("SYNC_ENDED", "late", null);
+            else r.success(response.getLockMac());
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            if (closed[0]) r.error("SYNC_ENDED", "late", null);
+            else r.error("ERROR", t.getMessage(), null);
+          }
+        }));
+    Result other = mock(Result.class);
+    submitGetSysParam(LOCK_B, other);
+
+    verify(stuck, timeout(2000)).error(eq("COMMAND_TIMEOUT"), anyString(), any());
+    assertEquals(1, scheduler.getQueueDepth(LOCK_B));
+
+    lastCallback(1).onFailure(new IllegalStateException("link reset"));
+    verify(stuck, never()).error(eq("SYNC_ENDED"), anyString(), any());
+    lastCallback(2).onResponse(Response.success(1, null, LOCK_B));
+    verify(other).success(LOCK_B);
+  }
+
+  @Test
+  public void watchdog_releasesHeldLinkAfterAnotherTimeout() {
+    Result stuck = mock(Result.class);
+    Result next = mock(Result.class);
+    scheduler.submit(LOCK_A, "openLock", 50, stuck, r -> { /* SDK never calls back */ });
+    submitGetSysParam(LOCK_A, next);
+
+    verify(stuck, timeout(2000)).error(eq("COMMAND_TIMEOUT"), anyString(), any());
+    // The next command starts on the watchdog thread once the stuck one is released
+    verify(client, timeout(2000)).getSysParam(any(), any());
+    lastCallback(1).onResponse(Response.success(1, null, LOCK_A));
+    verify(next).success(LOCK_A);
+    assertEquals(1L, scheduler.getStats().get("timedOut"));
+  }
+
+  @Test
+  public void shutdown_dropsQueuedAndLaterCommands() {
+    submitGetSysParam(LOCK_A, mock(Result.class));
+    submitGetSysParam(LOCK_A, mock(Result.class));
+    scheduler.shutdown();
+    submitGetSysParam(LOCK_B, mock(Result.class));
+
+    lastCallback(1).onResponse(Response.success(1, null, LOCK_A));
+    verify(client, times(1)).getSysParam(any(), any());
+    assertEquals(0, scheduler.getStats().get("queued"));
+    assertEquals(0, scheduler.getActiveCount());
+  }
+
+  @Test
+  public void throwingCommand_releasesLink() {
+    scheduler.submit(LOCK_A, "broken", 0, ticket -> {
+      throw new IllegalStateException("boom");
+    }, null);
+    submitGetSysParam(LOCK_A, mock(Result.class));
+    lastCallback(1);
+    assertEquals(1L, scheduler.getStats().get("failed"));
+  }
+
+  @Test
+  public void stats_reportQueueDepthPerLock() {
+    submitGetSysParam(LOCK_A, mock(Result.class));
+    submitGetSysParam(LOCK_A, mock(Result.class));
+    submitGetSysParam(LOCK_A, mock(Result.class));
+
+    Map<String, Object> stats = scheduler.getStats();
+    assertEquals(1, stats.get("active"));
+    assertEquals(2, stats.get("queued"));
+    assertEquals(3L, stats.get("submitted"));
+    Map<String, Object> lockA = (Map<String, Object>) ((Map<String, Object>) stats.get("locks")).get(LOCK_A);
+    assertEquals(2, lockA.get("queued"));
+    assertEquals("getSysParam", lockA.get("running"));
+  }
+
+  @Test
+  public void macOf_readsTopLevelOrNestedMac() {
+    assertEquals(LOCK_A, BleCommandScheduler.macOf(java.util.Collections.singletonMap("mac", LOCK_A.toLowerCase())));
+    assertEquals(LOCK_B, BleCommandScheduler.macOf(java.util.Collections.singletonMap("auth",
+        java.util.Collections.singletonMap("mac", LOCK_B))));
+    assertTrue(BleCommandScheduler.macOf(null).isEmpty());
+  }
+}
@@ -0,0 +1,63 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BleScanManagerTest {
+  private static Map<String, Object> device(String mac, String name, int rssi) {
+    Map<String, Object> d = new HashMap<>();
+    d.put("mac", mac);
+    d.put("name", name);
+    d.put("rssi", rssi);
+    d.put("lockType", 1);
+    return d;
+  }
+
+  @Test
+  public void scanTarget_completesWhenEveryMacSeen() {
+    BleScanManager.ScanTarget target = new BleScanManager.ScanTarget(
+        Arrays.asList("aa:00:00:00:00:01", "AA:00:00:00:00:02"), null);
+    assertFalse(target.offer(device("AA:00:00:00:00:09", "other", -40)));
+    assertTrue(target.offer(device("AA:00:00:00:00:01", "door", -70)));
+    assertFalse(target.allFound());
+    assertEquals(Collections.singletonList("AA:00:00:00:00:02"), target.missing());
+
+    target.offer(device("AA:00:00:00:00:02", "door", -80));
+    assertTrue(target.allFound());
+  }
+
+  @Test
+  public void scanTarget_keepsStrongestSightingAndNeverCompletesOnNames() {
+    BleScanManager.ScanTarget target = new BleScanManager.ScanTarget(null, Arrays.asList("Front"));
+    target.offer(device("AA:00:00:00:00:01", "HXJ-front-door", -80));
+    target.offer(device("AA:00:00:00:00:02", "HXJ-FRONT-gate", -60));
+    target.offer(device("AA:00:00:00:00:01", "HXJ-front-door", -55));
+    target.offer(device("AA:00:00:00:00:01", "HXJ-front-door", -90));
+    assertFalse(target.allFound());
+
+    List<Map<String, Object>> results = target.results();
+    assertEquals(2, results.size());
+    assertEquals(-55, results.get(0).get("rssi"));
+    assertEquals("AA:00:00:00:00:02", results.get(1).get("mac"));
+  }
+
+  @Test
+  public void isUpdate_onRssiStepOrFlagChange() {
+    Map<String, Object> last = device("AA:00:00:00:00:01", "door", -70);
+    assertFalse(BleScanManager.isUpdate(last, device("AA:00:00:00:00:01", "door", -73), 5));
+    assertTrue(BleScanManager.isUpdate(last, device("AA:00:00:00:00:01", "door", -76), 5));
+
+    Map<String, Object> flagged = device("AA:00:00:00:00:01", "door", -70);
+    flagged.put("lockType", 2);
+    assertTrue(BleScanManager.isUpdate(last, flagged, 5));
+  }
+}
@@ -0,0 +1,120 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import com.example.hxjblinklibrary.blinkble.entity.Response;
+import com.example.hxjblinklibrary.blinkble.profile.client.FunCallback;
+import com.example.hxjblinklibrary.blinkble.profile.client.HxjBleClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+public class BleSessionManagerTest {
+  private static final String LOCK = "AA:BB:CC:DD:EE:01";
+
+  private HxjBleClient client;
+  private BleCommandScheduler scheduler;
+  private BleSessionManager sessions;
+
+  @Before
+  public void setUp() {
+    client = mock(HxjBleClient.class);
+    doAnswer(inv -> {
+      FunCallback cb = inv.getArgument(0);
+      if (cb != null) cb.onResponse(Response.success(1, null, LOCK));
+      return null;
+    }).when(client).disConnectBle(any());
+    scheduler = new BleCommandScheduler(Runnable::run);
+    sessions = new BleSessionManager(client, scheduler);
+  }
+
+  @After
+  public void tearDown() {
+    sessions.shutdown();
+    scheduler.shutdown();
+  }
+
+  private void runCommand(String mac) {
+    scheduler.submit(mac, "getSysParam", mock(Result.class), r -> r.success(null));
+  }
+
+  @Test
+  public void idleLink_isDisconnectedAfterTimeout() {
+    sessions.setIdleTimeoutMs(50);
+    runCommand(LOCK);
+    verify(client, timeout(2000)).disConnectBle(any());
+    assertEquals(1L, sessions.getStats().get("idleDisconnects"));
+  }
+
+  @Test
+  public void backToBackCommands_reuseWarmLink() {
+    sessions.setIdleTimeoutMs(60 * 1000);
+    runCommand(LOCK);
+    runCommand(LOCK);
+    runCommand(LOCK);
+
+    Map<String, Object> stats = sessions.getStats();
+    assertEquals(1L, stats.get("coldStarts"));
+    assertEquals(2L, stats.get("warmStarts"));
+    verify(client, never()).disConnectBle(any());
+  }
+
+  @Test
+  public void zeroIdleTimeout_disconnectsAfterEveryCommand() {
+    sessions.setIdleTimeoutMs(0);
+    runCommand(LOCK);
+    verify(client, timeout(2000)).disConnectBle(any());
+  }
+
+  @Test
+  public void silentDisconnect_stillReleasesTheQueue() {
+    doAnswer(inv -> null).when(client).disConnectBle(any());
+    sessions.setIdleTimeoutMs(0);
+    runCommand(LOCK);
+    verify(client, timeout(2000)).disConnectBle(any());
+
+    Result next = mock(Result.class);
+    scheduler.submit(LOCK, "getSysParam", next, r -> r.success(null));
+    verify(next, timeout(BleSessionManager.DISCONNECT_RELEASE_MS + 2000)).success(null);
+  }
+
+  @Test
+  public void linkLoss_endsSessionWithoutExtraDisconnect() {
+    sessions.setIdleTimeoutMs(50);
+    runCommand(LOCK);
+    sessions.onLinkLost(LOCK.toLowerCase());
+
+    verify(client, after(300).never()).disConnectBle(any());
+    assertEquals(1L, sessions.getStats().get("linkLosses"));
+  }
+
+  @Test
+  public void authFor_reusesActionUntilAuthFieldsChange() {
+    Map<String, Object> args = new HashMap<>();
+    args.put("mac", LOCK);
+    args.put("authCode", "A1");
+    args.put("dnaKey", "K1");
+    args.put("keyGroupId", 900);
+
+    assertSame(sessions.authFor(args), sessions.authFor(new HashMap<>(args)));
+
+    Object first = sessions.authFor(args);
+    args.put("authCode", "A2");
+    assertNotSame(first, sessions.authFor(args));
+  }
+}
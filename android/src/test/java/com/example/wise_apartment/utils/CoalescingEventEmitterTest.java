@@ -0,0 +1,143 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.EventChannel;
+
+public class CoalescingEventEmitterTest {
+  private long now;
+  private final List<Runnable> posted = new ArrayList<>();
+  private final List<long[]> delays = new ArrayList<>();
+  private final List<Runnable> delayed = new ArrayList<>();
+  private final List<Object> sent = new ArrayList<>();
+  private CoalescingEventEmitter emitter;
+
+  @Before
+  public void setUp() {
+    final EventChannel.EventSink sink = new EventChannel.EventSink() {
+      @Override
+      public void success(Object event) {
+        sent.add(event);
+      }
+
+      @Override
+      public void error(String code, String message, Object details) {
+        sent.add("error:" + code);
+      }
+
+      @Override
+      public void endOfStream() {
+      }
+    };
+    emitter = new CoalescingEventEmitter(new CoalescingEventEmitter.Poster() {
+      @Override
+      public void post(Runnable r) {
+        posted.add(r);
+      }
+
+      @Override
+      public void postDelayed(Runnable r, long delayMs) {
+        delayed.add(r);
+        delays.add(new long[]{now + delayMs});
+      }
+    }, () -> sink, () -> now);
+    emitter.configure(10L, 30L, 4);
+  }
+
+  private void runPosted() {
+    while (!posted.isEmpty()) posted.remove(0).run();
+  }
+
+  private void advanceTo(long t) {
+    now = t;
+    for (int i = 0; i < delayed.size(); i++) {
+      if (delays.get(i)[0] <= t) {
+        Runnable r = delayed.remove(i);
+        delays.remove(i);
+        r.run();
+        i = -1;
+      }
+    }
+    runPosted();
+  }
+
+  private static Map<String, Object> event(int n) {
+    return Collections.<String, Object>singletonMap("n", n);
+  }
+
+  @Test
+  public void burstWithinWindow_isOneBatchMessage() {
+    emitter.emit(event(1));
+    advanceTo(3);
+    emitter.emit(event(2));
+    emitter.emit(event(3));
+    advanceTo(20);
+
+    assertEquals(1, sent.size());
+    Map<?, ?> batch = (Map<?, ?>) sent.get(0);
+    assertEquals(CoalescingEventEmitter.BATCH_TYPE, batch.get("type"));
+    assertEquals(3, batch.get("merged"));
+    assertEquals(3, ((List<?>) batch.get("events")).size());
+    assertEquals(2L, emitter.getStats().get("merged"));
+  }
+
+  @Test
+  public void steadyTrickle_flushedByMaxLatency() {
+    emitter.configure(null, null, 64);
+    for (int t = 0; t <= 25; t += 5) {
+      advanceTo(t);
+      emitter.emit(event(t));
+    }
+    assertEquals(0, sent.size());
+    advanceTo(30);
+    assertEquals(1, sent.size());
+    assertEquals(6, ((Map<?, ?>) sent.get(0)).get("merged"));
+  }
+
+  @Test
+  public void loneEvent_sentUnwrapped_andFullBatchFlushesAtOnce() {
+    emitter.emit(event(1));
+    advanceTo(10);
+    assertEquals(event(1), sent.get(0));
+
+    for (int i = 0; i < 4; i++) emitter.emit(event(i));
+    runPosted();
+    assertEquals(2, sent.size());
+    assertEquals(4, ((Map<?, ?>) sent.get(1)).get("merged"));
+  }
+
+  @Test
+  public void doneAndError_flushPendingFirst() {
+    emitter.emit(event(1));
+    emitter.emit(event(2));
+    emitter.emitNow(event(99));
+    emitter.emitError("E", "boom", null);
+    runPosted();
+
+    assertEquals(3, sent.size());
+    assertEquals(2, ((Map<?, ?>) sent.get(0)).get("merged"));
+    assertEquals(event(99), sent.get(1));
+    assertEquals("error:E", sent.get(2));
+  }
+
+  @Test
+  public void shutdown_dropsBufferedAndLaterEvents() {
+    emitter.emit(event(1));
+    emitter.emitNow(event(2));
+    emitter.shutdown();
+    emitter.emit(event(3));
+    emitter.emitError("E", "boom", null);
+    advanceTo(100);
+
+    assertEquals(0, sent.size());
+    assertEquals(0, emitter.getStats().get("pending"));
+  }
+}
@@ -0,0 +1,93 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class KeyDataChunkerTest {
+  private static byte[] template(int size) {
+    byte[] b = new byte[size];
+    for (int i = 0; i < size; i++) b[i] = (byte) (i * 31);
+    return b;
+  }
+
+  @Test
+  public void packets_reassembleTemplate() {
+    byte[] data = template(1000);
+    KeyDataChunker chunker = new KeyDataChunker(180).reset(data);
+    assertEquals(6, chunker.packetCount());
+    assertEquals(100, chunker.packetLength(5));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int i = 0; i < chunker.packetCount(); i++) {
+      byte[] p = chunker.packet(i);
+      out.write(p, 0, p.length);
+    }
+    assertArrayEquals(data, out.toByteArray());
+  }
+
+  @Test
+  public void packetArrays_areReusedAcrossPacketsAndEnrollments() {
+    KeyDataChunker chunker = new KeyDataChunker(180).reset(template(400));
+    byte[] first = chunker.packet(0);
+    assertSame(first, chunker.packet(1));
+    byte[] last = chunker.packet(2);
+    assertEquals(40, last.length);
+
+    chunker.reset(template(220));
+    assertSame(first, chunker.packet(0));
+    assertSame(last, chunker.packet(1));
+  }
+
+  @Test
+  public void view_sharesBackingBuffer() {
+    byte[] data = template(400);
+    ByteBuffer backing = ByteBuffer.wrap(data);
+    backing.position(20);
+    KeyDataChunker chunker = new KeyDataChunker(180).reset(backing);
+    assertEquals(380, chunker.length());
+
+    ByteBuffer view = chunker.view(1);
+    assertEquals(180, view.remaining());
+    data[200] = 42;
+    assertEquals(42, view.get(0));
+  }
+
+  @Test
+  public void mappedFile_packetsMatchFileContents() throws Exception {
+    byte[] data = template(500);
+    File file = File.createTempFile("template", ".bin");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(data);
+    }
+    KeyDataChunker chunker = new KeyDataChunker(180);
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+      chunker.reset(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+    ByteArrayOutputStream read = new ByteArrayOutputStream();
+    for (int i = 0; i < chunker.packetCount(); i++) {
+      byte[] p = chunker.packet(i);
+      read.write(p, 0, p.length);
+    }
+    assertArrayEquals(data, read.toByteArray());
+  }
+
+  @Test
+  public void release_dropsTemplate() {
+    KeyDataChunker chunker = new KeyDataChunker().reset(template(10));
+    chunker.release();
+    assertFalse(chunker.hasData());
+    assertEquals(0, chunker.packetCount());
+  }
+}
@@ -0,0 +1,124 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.SharedPreferences;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LockKeySnapshotStoreTest {
+  private static final String MAC = "AA:BB:CC:DD:EE:FF";
+
+  private static Map<String, Object> key(int type, int id, long modified) {
+    Map<String, Object> k = new HashMap<>();
+    k.put("keyType", type);
+    k.put("keyID", id);
+    k.put("appUserID", 900 + id);
+    k.put("modifyTimestamp", modified);
+    k.put("key", "k" + id);
+    return k;
+  }
+
+  private static Map<String, Object> args(Object... kv) {
+    Map<String, Object> m = new HashMap<>();
+    m.put("mac", MAC);
+    for (int i = 0; i < kv.length; i += 2) m.put((String) kv[i], kv[i + 1]);
+    return m;
+  }
+
+  /** SharedPreferences backed by a plain map. */
+  private static SharedPreferences prefs(final Map<String, String> backing) {
+    SharedPreferences prefs = mock(SharedPreferences.class);
+    SharedPreferences.Editor editor = mock(SharedPreferences.Editor.class);
+    when(prefs.edit()).thenReturn(editor);
+    when(prefs.getString(anyString(), isNull())).thenAnswer(i -> backing.get(i.getArgument(0)));
+    when(editor.putString(anyString(), any())).thenAnswer(i -> {
+      backing.put(i.getArgument(0), i.getArgument(1));
+      return editor;
+    });
+    when(editor.remove(anyString())).thenAnswer(i -> {
+      backing.remove(i.getArgument(0));
+      return editor;
+    });
+    return prefs;
+  }
+
+  @Test
+  public void firstSyncIsFull_thenDeltaFromWatermark() {
+    LockKeySnapshotStore store = new LockKeySnapshotStore(null);
+    LockKeySnapshotStore.Delta first = store.begin(args());
+    assertTrue(first.isFull());
+    assertEquals(LockKeySnapshotStore.FULL_SYNC_TIMESTAMP, first.getLastSyncTimestamp());
+    first.commit(Arrays.asList(key(1, 1, 100), key(2, 5, 250)));
+
+    LockKeySnapshotStore.Delta next = store.begin(args());
+    assertFalse(next.isFull());
+    assertEquals(250, next.getLastSyncTimestamp());
+
+    List<Map<String, Object>> merged = next.commit(Arrays.asList(key(2, 5, 300), key(1, 7, 310)));
+    assertEquals(3, merged.size());
+    assertEquals(300L, merged.get(1).get("modifyTimestamp"));
+    assertEquals(310L, store.getSnapshot(MAC).get("watermark"));
+  }
+
+  @Test
+  public void fullSyncReplacesSnapshot() {
+    LockKeySnapshotStore store = new LockKeySnapshotStore(null);
+    store.begin(args()).commit(Arrays.asList(key(1, 1, 100), key(1, 2, 110)));
+    LockKeySnapshotStore.Delta full = store.begin(args("fullSync", true));
+    assertTrue(full.isFull());
+    assertEquals(1, full.commit(Arrays.asList(key(1, 2, 110))).size());
+  }
+
+  @Test
+  public void deletions_removeMatchingKeysOrDropSnapshot() {
+    LockKeySnapshotStore store = new LockKeySnapshotStore(null);
+    store.begin(args()).commit(Arrays.asList(key(1, 1, 100), key(1, 2, 110), key(4, 3, 120)));
+
+    Map<String, Object> byNumber = new HashMap<>();
+    byNumber.put("deleteMode", 0);
+    byNumber.put("deleteKeyType", 1);
+    byNumber.put("deleteKeyId", 2);
+    store.onKeysDeleted(MAC, byNumber);
+    Map<String, Object> byUser = new HashMap<>();
+    byUser.put("deleteMode", 3);
+    byUser.put("deleteKeyGroupId", 903);
+    store.onKeysDeleted(MAC, byUser);
+    assertEquals(1, store.getSnapshot(MAC).get("total"));
+
+    Map<String, Object> byType = new HashMap<>();
+    byType.put("deleteMode", 1);
+    byType.put("deleteKeyType", 1);
+    store.onKeysDeleted(MAC, byType);
+    assertEquals(0, store.getSnapshot(MAC).get("total"));
+    assertTrue(store.begin(args()).isFull());
+  }
+
+  @Test
+  public void snapshotSurvivesRestart_withIntegralNumbers() {
+    Map<String, String> backing = new HashMap<>();
+    new LockKeySnapshotStore(prefs(backing)).begin(args())
+        .commit(new ArrayList<>(Arrays.asList(key(1, 1, 100), key(2, 5, 4102444800L))));
+
+    LockKeySnapshotStore reopened = new LockKeySnapshotStore(prefs(backing));
+    Map<String, Object> snapshot = reopened.getSnapshot(MAC);
+    assertEquals(2, snapshot.get("total"));
+    Map<?, ?> first = (Map<?, ?>) ((List<?>) snapshot.get("keys")).get(0);
+    assertEquals(1, first.get("keyID"));
+    assertEquals("k1", first.get("key"));
+    assertEquals(Integer.MAX_VALUE, reopened.begin(args()).getLastSyncTimestamp());
+  }
+}
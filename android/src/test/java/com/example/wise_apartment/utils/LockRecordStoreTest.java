@@ -0,0 +1,169 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LockRecordStoreTest {
+  private static final String LOCK = "AA:BB:CC:DD:EE:01";
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private LockRecordStore store;
+
+  @Before
+  public void setUp() {
+    store = new LockRecordStore(tmp.getRoot());
+  }
+
+  @After
+  public void tearDown() {
+    store.shutdown();
+  }
+
+  private static Map<String, Object> record(long time, int keyId, int keyType) {
+    Map<String, Object> r = new HashMap<>();
+    r.put("modelType", "HXRecord2UnlockModel");
+    r.put("recordTime", time);
+    r.put("recordType", 1);
+    r.put("lockKeyId1", keyId);
+    r.put("keyType1", keyType);
+    r.put("logVersion", 2);
+    return r;
+  }
+
+  private static Map<String, Object> query(Object... kv) {
+    Map<String, Object> args = new HashMap<>();
+    args.put("mac", LOCK.toLowerCase());
+    for (int i = 0; i < kv.length; i += 2) args.put((String) kv[i], kv[i + 1]);
+    return args;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Map<String, Object>> records(Map<String, Object> out) {
+    return (List<Map<String, Object>>) out.get("records");
+  }
+
+  @Test
+  public void query_pagesNewestFirstByDefault() throws Exception {
+    List<Map<String, Object>> in = new ArrayList<>();
+    for (int i = 0; i < 10; i++) in.add(record(1000 + i, i % 3, 1));
+    assertEquals(10, store.appendNow(LOCK, in));
+
+    Map<String, Object> out = store.queryNow(query("limit", 4));
+    assertEquals(10, out.get("total"));
+    assertEquals(4, out.get("nextOffset"));
+    assertEquals(1009L, records(out).get(0).get("recordTime"));
+
+    out = store.queryNow(query("limit", 4, "offset", 8));
+    assertEquals(2, records(out).size());
+    assertFalse((Boolean) out.get("hasMore"));
+  }
+
+  @Test
+  public void query_filtersByTimeAndKey() throws Exception {
+    List<Map<String, Object>> in = new ArrayList<>();
+    for (int i = 0; i < 10; i++) in.add(record(1000 + i, i % 3, i < 5 ? 1 : 2));
+    store.appendNow(LOCK, in);
+
+    assertEquals(4, store.queryNow(query("keyId", 0)).get("total"));
+    assertEquals(5, store.queryNow(query("keyType", 2)).get("total"));
+    assertEquals(3, store.queryNow(query("fromTime", 1002, "toTime", 1004)).get("total"));
+    assertEquals(1, store.queryNow(query("keyId", 1, "fromTime", 1005)).get("total"));
+  }
+
+  @Test
+  public void outOfOrderTimes_areReturnedSorted() throws Exception {
+    List<Map<String, Object>> in = new ArrayList<>();
+    in.add(record(300, 1, 1));
+    in.add(record(100, 1, 1));
+    in.add(record(200, 1, 1));
+    store.appendNow(LOCK, in);
+
+    List<Map<String, Object>> out = records(store.queryNow(query("descending", false)));
+    assertEquals(100L, out.get(0).get("recordTime"));
+    assertEquals(300L, out.get(2).get("recordTime"));
+  }
+
+  @Test
+  public void newestFirstPages_areReturnedSorted() throws Exception {
+    // Like a sync: each page is newest first and older than the one before
+    for (int page = 0; page < 5; page++) {
+      List<Map<String, Object>> in = new ArrayList<>();
+      for (int i = 0; i < 10; i++) in.add(record(1000 - page * 10 - i, i % 2, 1));
+      store.appendNow(LOCK, in);
+      if (page == 2) assertEquals(30, store.queryNow(query()).get("total"));
+    }
+
+    List<Map<String, Object>> out = records(store.queryNow(query("descending", false, "limit", 50)));
+    assertEquals(50, out.size());
+    for (int i = 0; i < out.size(); i++) assertEquals(951L + i, out.get(i).get("recordTime"));
+    assertEquals(5, store.queryNow(query("fromTime", 990, "toTime", 994)).get("total"));
+  }
+
+  @Test
+  public void resync_doesNotDuplicate() throws Exception {
+    List<Map<String, Object>> in = new ArrayList<>();
+    in.add(record(1, 1, 1));
+    in.add(record(2, 1, 1));
+    store.appendNow(LOCK, in);
+    assertEquals(0, store.appendNow(LOCK, new ArrayList<>(in)));
+    assertEquals(2, store.queryNow(query()).get("total"));
+  }
+
+  @Test
+  public void reopen_rebuildsIndexesAndDropsTornTail() throws Exception {
+    List<Map<String, Object>> in = new ArrayList<>();
+    for (int i = 0; i < 5; i++) in.add(record(i, i, 1));
+    store.appendNow(LOCK, in);
+    store.shutdown();
+
+    File seg = new File(new File(tmp.getRoot(), "AABBCCDDEE01"), "seg-000001.dat");
+    try (RandomAccessFile raf = new RandomAccessFile(seg, "rw")) {
+      raf.seek(raf.length());
+      raf.write(new byte[]{100, 0, 0, 0, 1, 2}); // length says 100, only 2 bytes follow
+    }
+
+    store = new LockRecordStore(tmp.getRoot());
+    assertEquals(5, store.queryNow(query()).get("total"));
+    assertEquals(1, store.appendNow(LOCK, Collections.singletonList(record(9, 9, 1))));
+    assertEquals(6, store.queryNow(query()).get("total"));
+  }
+
+  @Test
+  public void segmentsRollOver() throws Exception {
+    List<Map<String, Object>> in = new ArrayList<>();
+    Map<String, Object> big = record(0, 0, 0);
+    char[] pad = new char[1000];
+    Arrays.fill(pad, 'x');
+    for (int i = 0; i < 1200; i++) {
+      Map<String, Object> r = new HashMap<>(big);
+      r.put("recordTime", (long) i);
+      r.put("key1", new String(pad));
+      in.add(r);
+    }
+    store.appendNow(LOCK, in);
+
+    File[] segs = new File(tmp.getRoot(), "AABBCCDDEE01").listFiles();
+    assertTrue(segs.length >= 2);
+    Map<String, Object> out = store.queryNow(query("fromTime", 1199L));
+    assertEquals(1, out.get("total"));
+    assertEquals(1199L, records(out).get(0).get("recordTime"));
+  }
+}
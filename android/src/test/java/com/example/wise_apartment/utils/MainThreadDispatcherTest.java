@@ -0,0 +1,80 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MainThreadDispatcherTest {
+  private boolean onMain;
+  private final List<Runnable> looper = new ArrayList<>();
+  private final List<String> ran = new ArrayList<>();
+
+  private final MainThreadDispatcher dispatcher = new MainThreadDispatcher(new MainThreadDispatcher.Host() {
+    @Override
+    public boolean isMainThread() {
+      return onMain;
+    }
+
+    @Override
+    public void post(Runnable r) {
+      looper.add(r);
+    }
+
+    @Override
+    public void postDelayed(Runnable r, long delayMs) {
+      looper.add(r);
+    }
+  });
+
+  private Runnable task(final String name) {
+    return () -> ran.add(name);
+  }
+
+  private void loop() {
+    onMain = true;
+    while (!looper.isEmpty()) looper.remove(0).run();
+  }
+
+  @Test
+  public void offMainPosts_shareOneLooperMessage() {
+    for (int i = 0; i < 5; i++) dispatcher.execute(task("t" + i));
+    assertEquals(1, looper.size());
+    loop();
+    assertEquals(Arrays.asList("t0", "t1", "t2", "t3", "t4"), ran);
+    assertEquals(1L, dispatcher.getStats().get("drains"));
+  }
+
+  @Test
+  public void onMain_runsInlineWhenIdle() {
+    onMain = true;
+    dispatcher.execute(task("a"));
+    assertEquals(Arrays.asList("a"), ran);
+    assertEquals(0, looper.size());
+    assertEquals(1L, dispatcher.getStats().get("inline"));
+  }
+
+  @Test
+  public void onMain_queuesBehindPendingWork() {
+    dispatcher.execute(task("off"));
+    onMain = true;
+    dispatcher.execute(task("main"));
+    dispatcher.post(task("posted"));
+    assertEquals(0, ran.size());
+    loop();
+    assertEquals(Arrays.asList("off", "main", "posted"), ran);
+  }
+
+  @Test
+  public void longQueue_yieldsBetweenDrains() {
+    for (int i = 0; i < MainThreadDispatcher.MAX_PER_DRAIN + 3; i++) dispatcher.execute(task("t"));
+    looper.remove(0).run();
+    assertEquals(MainThreadDispatcher.MAX_PER_DRAIN, ran.size());
+    assertEquals(1, looper.size());
+    loop();
+    assertEquals(MainThreadDispatcher.MAX_PER_DRAIN + 3, ran.size());
+  }
+}
@@ -0,0 +1,63 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+public class ModelFieldMapperTest {
+  enum Kind { UNLOCK }
+
+  static class Base {
+    static int IGNORED_STATIC = 7;
+    long recordTime = 1700000000L;
+    int recordType = 3;
+    String shadowed = "base";
+  }
+
+  static class Unlock extends Base {
+    private int lockKeyId1 = 12;
+    private boolean eventFlag = true;
+    private String key1;
+    private Kind kind = Kind.UNLOCK;
+    private String shadowed = "sub";
+  }
+
+  @Test
+  public void mapsAllFieldsUpTheHierarchy() {
+    Map<String, Object> m = ModelFieldMapper.toMap(new Unlock());
+    assertEquals("Unlock", m.get("modelType"));
+    assertEquals(1700000000L, m.get("recordTime"));
+    assertEquals(3, m.get("recordType"));
+    assertEquals(12, m.get("lockKeyId1"));
+    assertEquals(true, m.get("eventFlag"));
+    assertEquals("UNLOCK", m.get("kind"));
+  }
+
+  @Test
+  public void skipsNullAndStaticFields() {
+    Map<String, Object> m = ModelFieldMapper.toMap(new Unlock());
+    assertFalse(m.containsKey("key1"));
+    assertFalse(m.containsKey("IGNORED_STATIC"));
+  }
+
+  @Test
+  public void superclassFieldWinsOnNameClash() {
+    // Same as the old walk: subclass fields are written first, then overwritten.
+    assertEquals("base", ModelFieldMapper.toMap(new Unlock()).get("shadowed"));
+  }
+
+  @Test
+  public void planIsCachedPerClass() {
+    assertSame(ModelFieldMapper.planFor(Unlock.class), ModelFieldMapper.planFor(Unlock.class));
+  }
+
+  @Test
+  public void nullObjectMapsToEmptyMap() {
+    assertTrue(ModelFieldMapper.toMap(null).isEmpty());
+  }
+}
@@ -0,0 +1,68 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class NearbyLockRegistryTest {
+  private long now = 1000;
+  private final NearbyLockRegistry registry = new NearbyLockRegistry(() -> now);
+
+  private static Map<String, Object> device(String mac, int rssi) {
+    Map<String, Object> d = new HashMap<>();
+    d.put("mac", mac);
+    d.put("rssi", rssi);
+    d.put("lockType", 7);
+    d.put("isNewProtocol", true);
+    return d;
+  }
+
+  @Test
+  public void sightings_expireAfterTtl() {
+    registry.setTtlMs(5000);
+    registry.update(device("aa:bb:cc:dd:ee:01", -60));
+    now += 4000;
+    Map<String, Object> entry = registry.get("AA:BB:CC:DD:EE:01");
+    assertNotNull(entry);
+    assertEquals(4000L, entry.get("ageMs"));
+    assertEquals(7, entry.get("lockType"));
+
+    now += 2000;
+    assertNull(registry.get("AA:BB:CC:DD:EE:01"));
+    assertEquals(0, registry.list(null).size());
+  }
+
+  @Test
+  public void list_isStrongestFirstAndHonoursMaxAge() {
+    registry.update(device("AA:00:00:00:00:01", -80));
+    now += 3000;
+    registry.update(device("AA:00:00:00:00:02", -50));
+    registry.update(device("AA:00:00:00:00:01", -70));
+    registry.update(device("AA:00:00:00:00:01", -75));
+
+    List<Map<String, Object>> all = registry.list(null);
+    assertEquals("AA:00:00:00:00:02", all.get(0).get("mac"));
+    assertEquals(-75, all.get(1).get("rssi"));
+    assertEquals(3L, all.get(1).get("sightings"));
+
+    now += 1000;
+    registry.update(device("AA:00:00:00:00:03", -90));
+    assertEquals(1, registry.list(500L).size());
+  }
+
+  @Test
+  public void full_registryEvictsLeastRecentlySeen() {
+    for (int i = 0; i <= NearbyLockRegistry.MAX_ENTRIES; i++) {
+      registry.update(device(String.format("AA:00:00:00:%02X:%02X", i / 256, i % 256), -60));
+    }
+    assertNull(registry.get("AA:00:00:00:00:00"));
+    assertNotNull(registry.get("AA:00:00:00:00:01"));
+    assertEquals(NearbyLockRegistry.MAX_ENTRIES, registry.list(null).size());
+  }
+}
@@ -0,0 +1,110 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class OperationTracerTest {
+  private static final long MS = 1000 * 1000;
+  private static final String MAC = "aa:bb:cc:dd:ee:ff";
+
+  private long now = 1;
+  private final List<Runnable> mainQueue = new ArrayList<>();
+  private final List<Map<String, Object>> traces = new ArrayList<>();
+  private final OperationTracer tracer = new OperationTracer(mainQueue::add, mac -> 40, () -> now);
+
+  private void runMain() {
+    for (Runnable r : new ArrayList<>(mainQueue)) r.run();
+    mainQueue.clear();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> phases(Map<String, Object> trace) {
+    return (Map<String, Object>) trace.get("phases");
+  }
+
+  @Test
+  public void coldSecureAuthCommand_splitsIntoPhases() {
+    tracer.setSink(traces::add);
+    tracer.onCommandStart(MAC, "openLock");
+    now += 2 * MS;
+    tracer.onSdkCall(MAC, "openLock");
+    now += 800 * MS;
+    tracer.onLinkReady("AA:BB:CC:DD:EE:FF");
+    long stepStart = tracer.nanoTime();
+    now += 150 * MS;
+    tracer.onSecureAuthStep(MAC, stepStart);
+    now += 300 * MS;
+    tracer.onResponse(MAC, 1);
+    now += 5 * MS;
+    tracer.onCommandEnd(MAC, "openLock", false);
+    assertTrue(traces.isEmpty());
+    now += 3 * MS;
+    runMain();
+
+    assertEquals(1, traces.size());
+    Map<String, Object> trace = traces.get(0);
+    assertEquals("openLock", trace.get("op"));
+    assertEquals("AA:BB:CC:DD:EE:FF", trace.get("mac"));
+    assertEquals(1, trace.get("code"));
+    assertEquals(150L, trace.get("secureAuthMs"));
+    assertEquals(40L + 1260, trace.get("totalMs"));
+    assertFalse((Boolean) trace.get("timedOut"));
+    Map<String, Object> phases = phases(trace);
+    assertEquals(40L, phases.get("queued"));
+    assertEquals(2L, phases.get("prepare"));
+    assertEquals(800L, phases.get("connecting"));
+    assertEquals(150L, phases.get("auth"));
+    assertEquals(300L, phases.get("command"));
+    assertNull(phases.get("response"));
+    assertEquals(5L, phases.get("reply"));
+    assertEquals(3L, phases.get("delivered"));
+  }
+
+  @Test
+  public void warmLinkWithStreamedReplies_hasNoConnectingButResponsePhase() {
+    tracer.setSink(traces::add);
+    tracer.onCommandStart(MAC, "syncLockKey");
+    tracer.onSdkCall(MAC, "syncLockKey");
+    now += 100 * MS;
+    tracer.onResponse(MAC, 0);
+    now += 400 * MS;
+    tracer.onResponse(MAC, 0);
+    // A ready after the first response belongs to nothing in this trace
+    tracer.onLinkReady(MAC);
+    tracer.onLinkError(MAC, "linkLoss");
+    tracer.onCommandEnd(MAC, "syncLockKey", true);
+    runMain();
+
+    Map<String, Object> trace = traces.get(0);
+    assertEquals(2, trace.get("responses"));
+    assertEquals("linkLoss", trace.get("linkError"));
+    assertTrue((Boolean) trace.get("timedOut"));
+    Map<String, Object> phases = phases(trace);
+    assertNull(phases.get("connecting"));
+    assertNull(phases.get("auth"));
+    assertEquals(100L, phases.get("command"));
+    assertEquals(400L, phases.get("response"));
+  }
+
+  @Test
+  public void withoutSink_nothingIsPosted() {
+    tracer.onCommandStart(MAC, "openLock");
+    tracer.onResponse(MAC, 1);
+    tracer.onCommandEnd(MAC, "openLock", false);
+    assertTrue(mainQueue.isEmpty());
+
+    // Marks for a lock with no running command are ignored
+    tracer.setSink(traces::add);
+    tracer.onResponse(MAC, 1);
+    tracer.onCommandEnd(MAC, "openLock", false);
+    assertTrue(mainQueue.isEmpty());
+  }
+}
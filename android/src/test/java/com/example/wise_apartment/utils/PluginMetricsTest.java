@@ -0,0 +1,81 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class PluginMetricsTest {
+  private static final long MS = 1000 * 1000;
+
+  private long now;
+  private final PluginMetrics metrics = new PluginMetrics(() -> now);
+
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> method(String name) {
+    return (Map<String, Object>) ((Map<String, Object>) metrics.snapshot().get("methods")).get(name);
+  }
+
+  @Test
+  public void span_recordsOnceUnderMethodAndCode() {
+    PluginMetrics.Span span = metrics.start("openLock");
+    now += 120 * MS;
+    span.finish("success");
+    now += 500 * MS;
+    span.finish("ERROR");
+
+    Map<String, Object> openLock = method("openLock");
+    assertEquals(1L, openLock.get("count"));
+    assertEquals(120.0, (Double) openLock.get("maxMs"), 0.001);
+    Map<?, ?> codes = (Map<?, ?>) openLock.get("codes");
+    assertEquals(1, codes.size());
+    assertEquals(1L, ((Map<?, ?>) codes.get("success")).get("count"));
+  }
+
+  @Test
+  public void percentiles_interpolateWithinBuckets() {
+    for (int i = 0; i < 98; i++) metrics.record("syncLockKey.stream", "done", 30 * MS);
+    metrics.record("syncLockKey.stream", "done", 1500 * MS);
+    metrics.record("syncLockKey.stream", "ERROR", 1800 * MS);
+
+    Map<String, Object> sync = method("syncLockKey.stream");
+    assertEquals(100L, sync.get("count"));
+    double p50 = (Double) sync.get("p50Ms");
+    assertTrue("p50 " + p50, p50 >= 20 && p50 <= 50);
+    double p99 = (Double) sync.get("p99Ms");
+    assertTrue("p99 " + p99, p99 >= 1000 && p99 <= 1800);
+    List<?> buckets = (List<?>) sync.get("buckets");
+    assertEquals(PluginMetrics.BUCKET_BOUNDS_MS.length + 1, buckets.size());
+    assertEquals(98L, buckets.get(5));
+  }
+
+  @Test
+  public void overflowBucket_isCappedAtMax() {
+    metrics.record("addBigDataKey.stream", "done", 90000 * MS);
+    assertEquals(PluginMetrics.BUCKET_BOUNDS_MS.length, PluginMetrics.bucketOf(90000 * MS));
+    assertEquals(90000.0, (Double) method("addBigDataKey.stream").get("p99Ms"), 0.001);
+  }
+
+  @Test
+  public void recordsFromManyThreads_areAllCounted() throws Exception {
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 1000; i++) metrics.record("openLock", "success", 3 * MS);
+      });
+      threads[t].start();
+    }
+    for (Thread t : threads) t.join();
+    assertEquals(8000L, method("openLock").get("count"));
+  }
+
+  @Test
+  public void reset_clearsMethods() {
+    metrics.record("openLock", "success", MS);
+    metrics.reset();
+    assertTrue(((Map<?, ?>) metrics.snapshot().get("methods")).isEmpty());
+  }
+}
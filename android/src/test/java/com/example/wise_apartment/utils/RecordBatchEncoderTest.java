@@ -0,0 +1,61 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RecordBatchEncoderTest {
+
+  private static Map<String, Object> record(Object... kv) {
+    Map<String, Object> m = new HashMap<>();
+    for (int i = 0; i < kv.length; i += 2) m.put((String) kv[i], kv[i + 1]);
+    return m;
+  }
+
+  @Test
+  public void roundTrip_keepsValuesAndTypes() {
+    List<Map<String, Object>> in = new ArrayList<>();
+    in.add(record("modelType", "HXRecord2UnlockModel", "recordTime", 1700000000L, "power", 87,
+        "eventFlag", true, "logVersion", 2, "key1", "ü123"));
+    in.add(record("modelType", "HXRecord2AlarmModel", "recordTime", 1700000100L, "power", 12,
+        "eventFlag", false, "logVersion", 2));
+
+    List<Map<String, Object>> out = RecordBatchEncoder.decode(RecordBatchEncoder.encode(in));
+
+    assertEquals(2, out.size());
+    assertEquals("HXRecord2UnlockModel", out.get(0).get("modelType"));
+    assertEquals(1700000000L, out.get(0).get("recordTime"));
+    assertEquals(87L, out.get(0).get("power"));
+    assertEquals(true, out.get(0).get("eventFlag"));
+    assertEquals("ü123", out.get(0).get("key1"));
+    assertEquals(false, out.get(1).get("eventFlag"));
+    assertFalse(out.get(1).containsKey("key1"));
+  }
+
+  @Test
+  public void mixedColumn_isWidened() {
+    List<Map<String, Object>> in = new ArrayList<>();
+    in.add(record("v", 1));
+    in.add(record("v", 2.5d));
+    in.add(record("w", 3));
+    in.add(record("w", "x"));
+
+    List<Map<String, Object>> out = RecordBatchEncoder.decode(RecordBatchEncoder.encode(in));
+
+    assertEquals(1.0d, out.get(0).get("v"));
+    assertEquals(2.5d, out.get(1).get("v"));
+    assertEquals("3", out.get(2).get("w"));
+    assertEquals("x", out.get(3).get("w"));
+  }
+
+  @Test
+  public void emptyBatch_roundTrips() {
+    assertEquals(0, RecordBatchEncoder.decode(RecordBatchEncoder.encode(new ArrayList<Map<String, Object>>())).size());
+  }
+}
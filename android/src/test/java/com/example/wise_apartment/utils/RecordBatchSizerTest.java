@@ -0,0 +1,84 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class RecordBatchSizerTest {
+  private final RecordBatchSizer sizer = new RecordBatchSizer();
+
+  @Test
+  public void fastPages_growUpToMax() {
+    RecordBatchSizer.Window w = sizer.open("k");
+    assertEquals(RecordBatchSizer.DEFAULT_BATCH, w.size());
+    for (int i = 0; i < 20; i++) w.success(w.size(), w.size(), true, 100);
+    assertEquals(RecordBatchSizer.MAX_BATCH, w.size());
+  }
+
+  @Test
+  public void slowPages_holdSize() {
+    RecordBatchSizer.Window w = sizer.open("k");
+    w.success(10, 10, true, RecordBatchSizer.FAST_PAGE_MS + 1);
+    assertEquals(10, w.size());
+  }
+
+  @Test
+  public void shortPageWithMoreData_settlesOnLockLimit() {
+    RecordBatchSizer.Window w = sizer.open("k");
+    w.success(10, 10, true, 100);
+    w.success(w.size(), 12, true, 100);
+    assertEquals(12, w.size());
+  }
+
+  @Test
+  public void lockLimit_capsLaterGrowth() {
+    RecordBatchSizer.Window w = sizer.open("k");
+    w.success(10, 10, true, 100);
+    w.success(w.size(), 12, true, 100);
+    for (int i = 0; i < 5; i++) w.success(w.size(), w.size(), true, 100);
+    assertEquals(12, w.size());
+    assertEquals(12, sizer.open("k").size());
+  }
+
+  @Test
+  public void verySlowPages_shrink() {
+    RecordBatchSizer.Window w = sizer.open("k");
+    w.success(10, 10, true, RecordBatchSizer.SLOW_PAGE_MS + 1);
+    assertEquals(8, w.size());
+    for (int i = 0; i < 10; i++) w.success(w.size(), w.size(), true, RecordBatchSizer.SLOW_PAGE_MS + 1);
+    assertEquals(RecordBatchSizer.MIN_BATCH, w.size());
+  }
+
+  @Test
+  public void failures_halveAndStopRetrying() {
+    RecordBatchSizer.Window w = sizer.open("k");
+    assertTrue(w.failure());
+    assertEquals(5, w.size());
+    assertTrue(w.failure());
+    assertTrue(w.failure());
+    assertEquals(RecordBatchSizer.MIN_BATCH, w.size());
+    assertFalse(w.failure());
+  }
+
+  @Test
+  public void nextSync_startsFromRememberedSize() {
+    RecordBatchSizer.Window w = sizer.open("type:7/v2");
+    w.success(10, 10, true, 100);
+    assertEquals(15, sizer.open("type:7/v2").size());
+    assertEquals(RecordBatchSizer.DEFAULT_BATCH, sizer.open("type:7/v1").size());
+  }
+
+  @Test
+  public void keyOf_prefersDeviceTypeOverMac() {
+    Map<String, Object> args = new HashMap<>();
+    args.put("mac", "aa:bb");
+    assertEquals("AA:BB/v1", RecordBatchSizer.keyOf(args, 1));
+    args.put("deviceType", 7);
+    assertEquals("type:7/v2", RecordBatchSizer.keyOf(args, 2));
+  }
+}
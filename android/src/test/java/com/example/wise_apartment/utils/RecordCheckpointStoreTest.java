@@ -0,0 +1,124 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RecordCheckpointStoreTest {
+  private static final String LOCK = "AA:BB:CC:DD:EE:01";
+
+  private final RecordCheckpointStore store = new RecordCheckpointStore(null);
+
+  private static Map<String, Object> args(boolean sinceLast) {
+    Map<String, Object> m = new HashMap<>();
+    m.put("mac", LOCK.toLowerCase());
+    if (sinceLast) m.put("sinceLast", true);
+    return m;
+  }
+
+  private static List<Map<String, Object>> page(long... times) {
+    List<Map<String, Object>> out = new ArrayList<>();
+    for (long t : times) {
+      Map<String, Object> r = new HashMap<>();
+      r.put("recordTime", t);
+      out.add(r);
+    }
+    return out;
+  }
+
+  // Pages below are newest first, as the lock returns them (index 0 = latest)
+
+  @Test
+  public void fullSync_setsMarkButReturnsEverything() {
+    RecordCheckpointStore.Cursor c = store.begin(args(false), 2);
+    assertEquals(3, c.filterPage(page(300, 200, 100)).size());
+    assertFalse(c.reachedSeen());
+    c.commit(30);
+
+    assertEquals(30L, store.get(LOCK + "/v2")[0]);
+    assertEquals(300L, store.get(LOCK + "/v2")[1]);
+    assertNull(store.get(LOCK + "/v1"));
+  }
+
+  @Test
+  public void sinceLast_keepsNewerRecordsAndStopsAtMark() {
+    RecordCheckpointStore.Cursor first = store.begin(args(false), 2);
+    first.filterPage(page(300, 200));
+    first.commit(2);
+
+    RecordCheckpointStore.Cursor c = store.begin(args(true), 2);
+    assertEquals(2, c.filterPage(page(320, 310)).size());
+    assertFalse(c.reachedSeen());
+    List<Map<String, Object>> fresh = c.filterPage(page(305, 300, 200));
+    assertEquals(1, fresh.size());
+    assertEquals(305L, fresh.get(0).get("recordTime"));
+    assertTrue(c.reachedSeen());
+    c.commit(5);
+    assertEquals(320L, store.get(LOCK + "/v2")[1]);
+  }
+
+  @Test
+  public void sinceLast_fullRingBuffer_stillSeesNewRecords() {
+    RecordCheckpointStore.Cursor first = store.begin(args(false), 2);
+    first.filterPage(page(500, 490, 480));
+    first.commit(3);
+
+    // Same count: the oldest record was overwritten by a new one
+    RecordCheckpointStore.Cursor c = store.begin(args(true), 2);
+    assertEquals(1, c.filterPage(page(510, 500, 490)).size());
+    assertTrue(c.reachedSeen());
+  }
+
+  @Test
+  public void sinceLast_nothingNew_returnsEmptyAndStops() {
+    RecordCheckpointStore.Cursor first = store.begin(args(false), 2);
+    first.filterPage(page(500, 490));
+    first.commit(2);
+
+    RecordCheckpointStore.Cursor c = store.begin(args(true), 2);
+    assertTrue(c.filterPage(page(500, 490)).isEmpty());
+    assertTrue(c.reachedSeen());
+    c.commit(2);
+    assertEquals(500L, store.get(LOCK + "/v2")[1]);
+  }
+
+  @Test
+  public void sinceLast_newestOlderThanMark_treatsLogAsReset() {
+    RecordCheckpointStore.Cursor first = store.begin(args(false), 1);
+    first.filterPage(page(500));
+    first.commit(40);
+
+    // Log cleared and clock set back: every record is new again
+    RecordCheckpointStore.Cursor c = store.begin(args(true), 1);
+    assertEquals(2, c.filterPage(page(20, 10)).size());
+    assertFalse(c.reachedSeen());
+    c.commit(2);
+    assertEquals(20L, store.get(LOCK + "/v1")[1]);
+  }
+
+  @Test
+  public void uncommittedSync_leavesMarkAlone() {
+    RecordCheckpointStore.Cursor first = store.begin(args(false), 2);
+    first.filterPage(page(500));
+    first.commit(1);
+
+    // Stopped early (cancel, error): never committed
+    store.begin(args(true), 2).filterPage(page(700, 650));
+    assertEquals(500L, store.get(LOCK + "/v2")[1]);
+  }
+
+  @Test
+  public void clear_forgetsOneLock() {
+    store.begin(args(false), 1).commit(5);
+    store.clear(LOCK.toLowerCase());
+    assertNull(store.get(LOCK + "/v1"));
+  }
+}
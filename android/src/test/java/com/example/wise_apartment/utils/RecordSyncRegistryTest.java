@@ -0,0 +1,89 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.hxjblinklibrary.blinkble.entity.requestaction.BlinkyAuthAction;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RecordSyncRegistryTest {
+  private final RecordSyncRegistry registry = new RecordSyncRegistry();
+  private final RecordBatchSizer sizer = new RecordBatchSizer();
+  private final RecordCheckpointStore checkpoints = new RecordCheckpointStore(null);
+
+  private RecordSyncRegistry.Session open(String mac) {
+    return open(null, mac);
+  }
+
+  private RecordSyncRegistry.Session open(String id, String mac) {
+    BlinkyAuthAction auth = mock(BlinkyAuthAction.class);
+    when(auth.getMac()).thenReturn(mac);
+    Map<String, Object> args = new HashMap<>();
+    args.put("mac", mac);
+    return registry.open(id, true, auth, 2, false, sizer.open(RecordBatchSizer.keyOf(args, 2)), checkpoints.begin(args, 2));
+  }
+
+  @Test
+  public void sessionsForDifferentLocks_keepSeparateState() {
+    RecordSyncRegistry.Session a = open("AA:AA:AA:AA:AA:AA");
+    RecordSyncRegistry.Session b = open("BB:BB:BB:BB:BB:BB");
+    assertNotEquals(a.getId(), b.getId());
+
+    a.nextIndex = 30;
+    a.records.add(new HashMap<String, Object>());
+    assertEquals(0, b.nextIndex);
+    assertTrue(b.records.isEmpty());
+    assertSame(b, registry.get(b.getId()));
+    assertEquals(2, registry.activeCount());
+  }
+
+  @Test
+  public void close_isOnceAndLeavesRegistry() {
+    RecordSyncRegistry.Session a = open("AA:AA:AA:AA:AA:AA");
+    open("BB:BB:BB:BB:BB:BB");
+    assertTrue(a.close());
+    assertFalse(a.close());
+    assertTrue(a.isClosed());
+    assertNull(registry.get(a.getId()));
+
+    Map<String, Object> stats = registry.getStats();
+    assertEquals(1, ((List<?>) stats.get("active")).size());
+    assertEquals(2L, stats.get("started"));
+    assertEquals(1L, stats.get("finished"));
+    assertEquals(2, stats.get("peakActive"));
+  }
+
+  @Test
+  public void duplicateLiveId_isRejectedWithoutTouchingTheSession() {
+    RecordSyncRegistry.Session a = open("s1", "AA:AA:AA:AA:AA:AA");
+    try {
+      open("s1", "BB:BB:BB:BB:BB:BB");
+      fail("duplicate id accepted");
+    } catch (IllegalStateException expected) {
+      // the live session keeps its id
+    }
+    assertSame(a, registry.get("s1"));
+    assertEquals(1, registry.activeCount());
+
+    assertTrue(a.close());
+    assertSame(open("s1", "BB:BB:BB:BB:BB:BB"), registry.get("s1"));
+  }
+
+  @Test
+  public void generatedIds_skipNamesInUse() {
+    open("sync-1", "AA:AA:AA:AA:AA:AA");
+    assertEquals("sync-2", open("BB:BB:BB:BB:BB:BB").getId());
+  }
+}
@@ -0,0 +1,44 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.hxjblinklibrary.blinkble.entity.Response;
+import com.example.hxjblinklibrary.blinkble.entity.reslut.DnaInfo;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class ResponseMapperTest {
+  private static final String MAC = "AA:BB:CC:DD:EE:FF";
+
+  @Test
+  public void responseToMap_mapsDnaInfoBody() {
+    DnaInfo dna = new DnaInfo();
+    dna.setMac(MAC);
+    dna.setProtocolVer(2);
+    Map<String, Object> m = ResponseMapper.responseToMap(Response.success(0, dna, MAC), null);
+
+    assertEquals(1, m.get("code"));
+    assertEquals(MAC, m.get("lockMac"));
+    assertEquals(true, m.get("isSuccessful"));
+    Map<?, ?> body = (Map<?, ?>) m.get("body");
+    assertEquals(MAC, body.get("mac"));
+    assertEquals(2, body.get("protocolVer"));
+  }
+
+  @Test
+  public void responseToMap_prefersMappedBody() {
+    Map<String, Object> mapped = Collections.<String, Object>singletonMap("keyId", 3);
+    Map<String, Object> m = ResponseMapper.responseToMap(Response.success(0, "raw", MAC), mapped);
+    assertEquals(mapped, m.get("body"));
+  }
+
+  @Test
+  public void nullInputs_giveEmptyMaps() {
+    assertTrue(ResponseMapper.responseToMap(null, null).isEmpty());
+    assertTrue(ResponseMapper.dnaInfoToMap(null).isEmpty());
+  }
+}
@@ -0,0 +1,95 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class SecureAuthHttpClientTest {
+  private HttpServer server;
+  private final List<String> queries = Collections.synchronizedList(new ArrayList<String>());
+  private final List<Integer> clientPorts = Collections.synchronizedList(new ArrayList<Integer>());
+  private SecureAuthHttpClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    // Stand-in handshake server: echoes the query, 404 for /missing
+    server.createContext("/", exchange -> {
+      queries.add(exchange.getRequestURI().getRawQuery());
+      clientPorts.add(exchange.getRemoteAddress().getPort());
+      boolean missing = exchange.getRequestURI().getPath().equals("/missing");
+      byte[] body = ("enc:" + exchange.getRequestURI().getQuery() + "\n").getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(missing ? 404 : 200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    server.start();
+    client = new SecureAuthHttpClient("http://127.0.0.1:" + server.getAddress().getPort() + "/", 1);
+  }
+
+  @After
+  public void tearDown() {
+    client.shutdown();
+    server.stop(0);
+  }
+
+  private String get(int keyGroupId, String path, String snr) throws Exception {
+    Map<String, String> query = new LinkedHashMap<>();
+    query.put("keyGroupId", String.valueOf(keyGroupId));
+    query.put("snr", snr);
+    final BlockingQueue<Object> result = new ArrayBlockingQueue<>(1);
+    client.get(path, query, body -> result.add(body == null ? "<null>" : body));
+    Object body = result.poll(5, TimeUnit.SECONDS);
+    return "<null>".equals(body) ? null : (String) body;
+  }
+
+  @Test
+  public void repeatedQueries_alwaysReachTheServer() throws Exception {
+    // Handshake replies are bound to the lock's nonce; never replay one
+    assertEquals("enc:keyGroupId=1&snr=7", get(1, "/sessionEncode", "7"));
+    assertEquals("enc:keyGroupId=1&snr=7", get(1, "/sessionEncode", "7"));
+    assertEquals(2, queries.size());
+    assertEquals(2L, client.getStats().get("requests"));
+  }
+
+  @Test
+  public void queryValues_areUrlEncoded() throws Exception {
+    get(1, "/sessionDecode", "a+b/c=");
+    assertEquals("keyGroupId=1&snr=a%2Bb%2Fc%3D", queries.get(0));
+  }
+
+  @Test
+  public void handshakeSteps_reuseOneConnection() throws Exception {
+    for (int i = 0; i < 5; i++) get(1, "/step" + i, "7");
+    get(1, "/missing", "7");
+    get(1, "/step9", "7");
+    assertEquals(7, queries.size());
+    assertEquals(1, new HashSet<>(clientPorts).size());
+  }
+
+  @Test
+  public void errors_callBackNullAndAreNotCached() throws Exception {
+    assertNull(get(1, "/missing", "7"));
+    assertNull(get(1, "/missing", "7"));
+    assertEquals(2, queries.size());
+    assertTrue((Long) client.getStats().get("failures") >= 2);
+  }
+}
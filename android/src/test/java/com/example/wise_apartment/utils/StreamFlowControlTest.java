@@ -0,0 +1,93 @@
+package com.example.wise_apartment.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class StreamFlowControlTest {
+  private final StreamFlowControl flow = new StreamFlowControl();
+  private final List<String> ran = new ArrayList<>();
+
+  private Runnable step(final String name) {
+    return () -> ran.add(name);
+  }
+
+  private StreamFlowControl.Gate open(Integer credits) {
+    Map<String, Object> args = new HashMap<>();
+    args.put("streamId", "s1");
+    if (credits != null) args.put("credits", credits);
+    return flow.open(flow.idFor(args), args);
+  }
+
+  @Test
+  public void withoutCredits_flowsUntilPaused() {
+    StreamFlowControl.Gate gate = open(null);
+    assertTrue(gate.acquire(step("a")));
+    assertTrue(flow.pause("s1"));
+    assertFalse(gate.acquire(step("b")));
+    assertEquals(Arrays.asList("a"), ran);
+    assertTrue(flow.resume("s1", null));
+    assertEquals(Arrays.asList("a", "b"), ran);
+  }
+
+  @Test
+  public void credits_limitChunksUntilGranted() {
+    StreamFlowControl.Gate gate = open(2);
+    gate.acquire(step("p1"));
+    gate.acquire(step("p2"));
+    gate.acquire(step("p3"));
+    gate.after(step("done"));
+    assertEquals(Arrays.asList("p1", "p2"), ran);
+    assertTrue(gate.isPaused());
+
+    flow.resume("s1", 1L);
+    assertEquals(Arrays.asList("p1", "p2", "p3", "done"), ran);
+  }
+
+  @Test
+  public void close_dropsParkedChunksButRunsTerminalSteps() {
+    StreamFlowControl.Gate gate = open(0);
+    gate.acquire(step("p1"));
+    gate.after(step("done"));
+    gate.close();
+    assertEquals(Arrays.asList("done"), ran);
+    assertFalse(flow.resume("s1", 5L));
+  }
+
+  @Test
+  public void cancel_runsCancellerOfRunningStream() {
+    StreamFlowControl.Gate gate = open(null);
+    gate.onCancel(() -> {
+      gate.close();
+      ran.add("cancelled");
+    });
+    assertTrue(flow.cancel("s1"));
+    assertEquals(Arrays.asList("cancelled"), ran);
+    assertFalse(flow.cancel("s1"));
+    assertEquals(1L, flow.getStats().get("cancelled"));
+  }
+
+  @Test
+  public void cancel_whileQueued_closesGateForLateCanceller() {
+    StreamFlowControl.Gate gate = open(null);
+    assertTrue(flow.cancel("s1"));
+    assertTrue(gate.isClosed());
+    gate.onCancel(step("late"));
+    assertEquals(Arrays.asList("late"), ran);
+  }
+
+  @Test
+  public void generatedIds_areUnique() {
+    String a = flow.idFor(null);
+    String b = flow.idFor(new HashMap<String, Object>());
+    assertFalse(a.equals(b));
+  }
+}
@@ -0,0 +1,150 @@
+import 'dart:collection';
+import 'dart:convert';
+import 'dart:typed_data';
+
+/// Lazily decoded view over a binary lock record batch.
+///
+/// Returned in place of `List<Map<String, dynamic>>` when a record sync is
+/// called with `recordFormat: 'binary'` (Android only). The whole batch
+/// arrives as one byte buffer: only the field dictionary is parsed up front,
+/// and values are read from their column when a record (or a single field
+/// via [valueAt]) is accessed. It is a read-only [List], so existing code
+/// that iterates records or passes them to `hxRecordFromMap` keeps working.
+///
+/// See `RecordBatchEncoder.java` for the wire layout.
+class LockRecordBatch extends ListBase<Map<String, dynamic>> {
+  static const String format = 'binary';
+
+  static const int _version = 1;
+  static const int _int64 = 1;
+  static const int _float64 = 2;
+  static const int _bool = 3;
+
+  final Uint8List _bytes;
+  final ByteData _data;
+  final int _rows;
+  final List<String> _names;
+  final List<int> _types;
+  final List<int> _offsets;
+  final Map<String, int> _index;
+
+  LockRecordBatch._(
+    this._bytes,
+    this._data,
+    this._rows,
+    this._names,
+    this._types,
+    this._offsets,
+    this._index,
+  );
+
+  /// True when [value] is an encoded batch as sent by the plugin.
+  static bool isEncoded(Object? value) {
+    return value is Uint8List &&
+        value.length >= 10 &&
+        value[0] == 0x57 && // W
+        value[1] == 0x52 && // R
+        value[2] == 0x42 && // B
+        value[3] == _version;
+  }
+
+  factory LockRecordBatch.decode(Uint8List bytes) {
+    if (!isEncoded(bytes)) {
+      throw const FormatException('Not a lock record batch');
+    }
+    final data = ByteData.sublistView(bytes);
+    final rows = data.getUint32(4, Endian.little);
+    final fieldCount = data.getUint16(8, Endian.little);
+    final names = <String>[];
+    final types = <int>[];
+    final offsets = <int>[];
+    final index = <String, int>{};
+    var p = 10;
+    for (var f = 0; f < fieldCount; f++) {
+      final len = data.getUint16(p, Endian.little);
+      p += 2;
+      final name = utf8.decode(Uint8List.sublistView(bytes, p, p + len));
+      p += len;
+      index[name] = names.length;
+      names.add(name);
+      types.add(data.getUint8(p));
+      offsets.add(data.getUint32(p + 1, Endian.little));
+      p += 5;
+    }
+    return LockRecordBatch._(bytes, data, rows, names, types, offsets, index);
+  }
+
+  /// Records as a list: decodes [value] when it is an encoded batch,
+  /// otherwise converts the usual list of maps.
+  static List<Map<String, dynamic>> fromChannel(Object? value) {
+    if (isEncoded(value)) return LockRecordBatch.decode(value as Uint8List);
+    if (value is List) {
+      return value
+          .whereType<Map>()
+          .map((e) => Map<String, dynamic>.from(e))
+          .toList();
+    }
+    return <Map<String, dynamic>>[];
+  }
+
+  /// Field names present in this batch.
+  List<String> get fieldNames => List.unmodifiable(_names);
+
+  @override
+  int get length => _rows;
+
+  @override
+  set length(int newLength) {
+    throw UnsupportedError('LockRecordBatch is read-only');
+  }
+
+  @override
+  Map<String, dynamic> operator [](int index) {
+    RangeError.checkValidIndex(index, this, 'index', _rows);
+    final out = <String, dynamic>{};
+    for (var f = 0; f < _names.length; f++) {
+      if (_present(f, index)) out[_names[f]] = _read(f, index);
+    }
+    return out;
+  }
+
+  @override
+  void operator []=(int index, Map<String, dynamic> value) {
+    throw UnsupportedError('LockRecordBatch is read-only');
+  }
+
+  /// Single field of one record without building the record map, or null
+  /// when the record does not carry [field].
+  Object? valueAt(int index, String field) {
+    RangeError.checkValidIndex(index, this, 'index', _rows);
+    final f = _index[field];
+    if (f == null || !_present(f, index)) return null;
+    return _read(f, index);
+  }
+
+  int get _bitmapLength => (_rows + 7) >> 3;
+
+  bool _present(int f, int row) {
+    final b = _data.getUint8(_offsets[f] + (row >> 3));
+    return (b & (1 << (row & 7))) != 0;
+  }
+
+  Object _read(int f, int row) {
+    final slots = _offsets[f] + _bitmapLength;
+    switch (_types[f]) {
+      case _int64:
+        return _data.getInt64(slots + row * 8, Endian.little);
+      case _float64:
+        return _data.getFloat64(slots + row * 8, Endian.little);
+      case _bool:
+        return _data.getUint8(slots + row) != 0;
+      default:
+        final start = _data.getUint32(slots + row * 4, Endian.little);
+        final end = _data.getUint32(slots + (row + 1) * 4, Endian.little);
+        final strings = slots + (_rows + 1) * 4;
+        return utf8.decode(
+          Uint8List.sublistView(_bytes, strings + start, strings + end),
+        );
+    }
+  }
+}
@@ -8,3 +8,4 @@ export 'gen2/hx_record2_factory.dart';
 
 export 'hx_record_factory.dart';
 export 'lock_record_extensions.dart';
+export 'lock_record_batch.dart';
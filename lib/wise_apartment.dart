@@ -34,6 +34,93 @@ class WiseApartment {
     return WiseApartmentPlatform.instance.startScan(timeoutMs: timeoutMs);
   }
 
+  /// Starts a scan whose results arrive on [scanStream] as soon as each
+  /// device is first seen, instead of all at once after [timeoutMs]. A
+  /// device is sent again when its RSSI moves by [rssiDelta] dBm (default
+  /// 5) or one of its flags changes. Returns the scan's stream id; pass
+  /// your own as [streamId]. Android only.
+  ///
+  /// The scan ends after [timeoutMs], on [stopScan], on [cancelStream]
+  /// with its id, or when another scan starts.
+  Future<String> startScanStream({
+    int timeoutMs = 10000,
+    int? rssiDelta,
+    String? streamId,
+  }) {
+    return WiseApartmentPlatform.instance.startScanStream(
+      timeoutMs: timeoutMs,
+      rssiDelta: rssiDelta,
+      streamId: streamId,
+    );
+  }
+
+  /// Events of [startScanStream] scans, each carrying its `streamId`:
+  /// - 'scanDeviceFound': { type, device, elapsedMs } on first sight
+  /// - 'scanDeviceUpdated': { type, device, elapsedMs } on RSSI/flag change
+  /// - 'scanDone': { type, reason, devices, total, elapsedMs }, where
+  ///   reason is 'timeout', 'stopped', 'cancelled', 'replaced' or 'failed'
+  ///   (with `code`)
+  ///
+  /// `device` has the same fields as the maps returned by [startScan].
+  /// Android only.
+  Stream<Map<String, dynamic>> get scanStream {
+    return WiseApartmentPlatform.instance.scanStream;
+  }
+
+  /// Scans for known locks only, e.g. right before [openLock]. Devices are
+  /// matched natively by MAC ([macs]) or by name ([names], a device matches
+  /// when its name contains one of them, ignoring case). The call returns
+  /// as soon as every MAC in [macs] has been seen, or [settleMs] (default
+  /// 300) after the first match so the strongest candidate can be picked,
+  /// and at the latest after [timeoutMs].
+  ///
+  /// With [maxAgeMs], locks seen by a scan within that time (see
+  /// [getNearbyLocks]) count as found and no scan is started when all
+  /// [macs] are among them.
+  ///
+  /// Returns `devices` (matches, strongest RSSI first, same fields as
+  /// [startScan]), `found`, `missing` (MACs not seen), `elapsedMs` and
+  /// `reason`: 'allFound', 'settled', 'timeout', 'cached', 'stopped',
+  /// 'replaced' or 'failed'. Android only.
+  Future<Map<String, dynamic>> scanFor({
+    List<String>? macs,
+    List<String>? names,
+    int timeoutMs = 10000,
+    int? settleMs,
+    int? maxAgeMs,
+  }) {
+    return WiseApartmentPlatform.instance.scanFor(
+      macs: macs,
+      names: names,
+      timeoutMs: timeoutMs,
+      settleMs: settleMs,
+      maxAgeMs: maxAgeMs,
+    );
+  }
+
+  /// Locks seen by any scan ([startScan], [startScanStream], [scanFor])
+  /// within the last [maxAgeMs], or within the registry TTL (30 s by
+  /// default, see [setNearbyLockTtl]) when null. Strongest RSSI first;
+  /// each entry has `mac`, `name`, `rssi`, `lockType`, `chipType`,
+  /// `isNewProtocol`, `hasLockEvent`, `lastSeenAt`, `ageMs` and
+  /// `sightings`. Answers from memory without scanning. Android only.
+  Future<List<Map<String, dynamic>>> getNearbyLocks({int? maxAgeMs}) {
+    return WiseApartmentPlatform.instance.getNearbyLocks(maxAgeMs: maxAgeMs);
+  }
+
+  /// Whether lock [mac] was in range recently: its [getNearbyLocks] entry,
+  /// or null when no scan saw it within the TTL. Use it to skip a scan
+  /// before a lock operation. Android only.
+  Future<Map<String, dynamic>?> getNearbyLock(String mac) {
+    return WiseApartmentPlatform.instance.getNearbyLock(mac);
+  }
+
+  /// Set how long scan sightings stay in the nearby-lock registry.
+  /// Android only.
+  Future<bool> setNearbyLockTtl(int ttlMs) {
+    return WiseApartmentPlatform.instance.setNearbyLockTtl(ttlMs);
+  }
+
   /// Stops an ongoing scan.
   Future<bool> stopScan() {
     return WiseApartmentPlatform.instance.stopScan();
@@ -82,6 +169,15 @@ class WiseApartment {
     return WiseApartmentPlatform.instance.setKeyExpirationAlarmTime(auth, time);
   }
 
+  /// Reads every record on the lock.
+  ///
+  /// Add `recordFormat: 'binary'` to [auth] to receive the records as a
+  /// [LockRecordBatch] (one column-oriented buffer, decoded lazily) instead
+  /// of one map per record. Worth it for large histories. Android only.
+  ///
+  /// Add `sinceLast: true` to fetch only records newer than the previous
+  /// completed sync of this lock (tracked per MAC and log version and kept
+  /// across app restarts). See [clearRecordCheckpoints]. Android only.
   Future<List<Map<String, dynamic>>> syncLockRecords(
     Map<String, dynamic> auth,
     int logVersion,
@@ -89,6 +185,9 @@ class WiseApartment {
     return WiseApartmentPlatform.instance.syncLockRecords(auth, logVersion);
   }
 
+  /// Reads one page of records. `records` is a [LockRecordBatch] when [auth]
+  /// contains `recordFormat: 'binary'` (Android only). The reply's `readCnt`
+  /// is the page size that was used.
   Future<Map<String, dynamic>> syncLockRecordsPage(
     Map<String, dynamic> auth,
     int startNum,
@@ -278,16 +377,43 @@ class WiseApartment {
   /// - 'syncLockKeyChunk': { type, item (single key Map), keyNum, totalSoFar }
   /// - 'syncLockKeyDone': { type, items (all keys List), total }
   /// - 'syncLockKeyError': { type, message, code }
+  /// - 'syncLockKeyCancelled': { type, streamId, totalSoFar } (Android,
+  ///   after [cancelStream])
+  ///
+  /// On Android every event carries a `streamId` (pass your own as
+  /// `streamId` in [auth]); see [pauseStream] for flow control.
+  ///
+  /// On Android the plugin keeps a per-lock key snapshot (see
+  /// [getLockKeySnapshot]). Unless `lastSyncTimestamp` is given, only keys
+  /// changed since the snapshot's newest `modifyTimestamp` are read and
+  /// sent as chunks; the done event's `items` is still the full merged key
+  /// list, with `changed` (keys read over BLE) and `fullSync`. Pass
+  /// `fullSync: true` to re-read every key, which also drops keys removed
+  /// from the lock by other apps.
   Stream<Map<String, dynamic>> get syncLockKeyStream {
     return WiseApartmentPlatform.instance.syncLockKeyStream;
   }
 
   /// Stream of add-key events emitted by native while performing an
   /// interactive key addition (fingerprint/card/password flows).
+  ///
+  /// On Android events carry a `streamId`; [cancelStream] aborts an
+  /// enrollment and ends it with an 'addLockKeyCancelled' event.
   Stream<Map<String, dynamic>> get addLockKeyStream {
     return WiseApartmentPlatform.instance.addLockKeyStream;
   }
 
+  /// Events of [addBigDataKey] / [resumeBigDataKey] uploads:
+  /// - 'addBigDataKeyProgress': { mac, phase, progress, message, checkpoint }
+  /// - 'addBigDataKeyDone': { mac, message, key }
+  /// - 'addBigDataKeyError': { mac, code, message, resumable, checkpoint }
+  ///
+  /// When `resumable` is true the template is still staged on the device;
+  /// reconnect and call [resumeBigDataKey]. Android only.
+  Stream<Map<String, dynamic>> get bigDataKeyStream {
+    return WiseApartmentPlatform.instance.bigDataKeyStream;
+  }
+
   /// Stream of system parameter events coming from native.
   Stream<Map<String, dynamic>> get getSysParamStream {
     return WiseApartmentPlatform.instance.getSysParamStream;
@@ -320,12 +446,30 @@ class WiseApartment {
 
   /// Stream-based synchronization of lock records from the device.
   /// Emits incremental results as records are fetched from the lock.
-  /// Each chunk event contains a batch of 10 records.
+  /// Each chunk event carries one page read from the lock. On Android the
+  /// page size adapts per lock model, between 4 and 50 records: it starts
+  /// at 10 (or where the previous sync ended), grows on fast pages and
+  /// shrinks on busy or slow ones. On iOS a page is 10 records.
   ///
   /// Event types:
   /// - 'syncLockRecordsChunk': { type, items (record batch List), totalSoFar, isMore }
   /// - 'syncLockRecordsDone': { type, items (all records List), total }
   /// - 'syncLockRecordsError': { type, message, code }
+  /// - 'syncLockRecordsCancelled': { type, syncId, streamId, totalSoFar }
+  ///   (Android, after [cancelStream])
+  ///
+  /// With `recordFormat: 'binary'` in the sync arguments, `items` is a
+  /// [LockRecordBatch] (Android only). With `sinceLast: true` only records
+  /// newer than the previous sync are emitted and the done event carries
+  /// `sinceLast: true`. On Android every event also carries the `syncId` of
+  /// its sync (also as `streamId`), so streams of several locks can be told
+  /// apart; see [pauseStream] for flow control, and a paused stream gives
+  /// its BLE link to other commands. On Android a sync started with
+  /// `credits` or `doneItems: false` is counts-only: records are sent in
+  /// chunks and not kept, and the done event has `total` and `pages` but
+  /// no `items`.
+  /// Starting a sync with the `streamId` of one still running fails with
+  /// code `DUPLICATE_STREAM` and leaves the running one alone.
   Stream<Map<String, dynamic>> get syncLockRecordsStream {
     return WiseApartmentPlatform.instance.syncLockRecordsStream;
   }
@@ -385,6 +529,262 @@ class WiseApartment {
     return WiseApartmentPlatform.instance.exitCmd({'mac': lockMac});
   }
 
+  /// Native BLE command scheduler metrics. Commands are queued per lock and
+  /// run one at a time per link; the map reports `active`, `queued`,
+  /// `avgWaitMs`, `maxWaitMs`, `timedOut` and a per-lock `locks` breakdown.
+  /// `recordBatchSizes` holds the record page size learned per lock model
+  /// and log version. `mainDispatcher` reports how replies and events reach
+  /// the main thread: `inline`, `queued`, `drains` and `avgQueueMs` /
+  /// `maxQueueMs`.
+  Future<Map<String, dynamic>> getSchedulerStats() {
+    return WiseApartmentPlatform.instance.getSchedulerStats();
+  }
+
+  /// Keep the BLE link to a lock connected and authenticated for
+  /// [idleTimeoutMs] after its last command, so back-to-back operations on
+  /// the same door skip the connect + auth handshake. Pass 0 to disconnect
+  /// after every command. Omit to just read the current session stats.
+  Future<Map<String, dynamic>> configureSession({int? idleTimeoutMs}) {
+    return WiseApartmentPlatform.instance.configureSession(
+      idleTimeoutMs: idleTimeoutMs,
+    );
+  }
+
+  /// Tune how chunk events of [syncLockRecordsStream], [syncLockKeyStream]
+  /// and [getSysParamStream] are coalesced natively. Chunks arriving within
+  /// [windowMs] of each other travel as one platform message (never held
+  /// longer than [maxLatencyMs], at most [maxBatch] per message) and are
+  /// split back into individual events before they reach the streams.
+  /// Done and error events are never delayed. Returns `events`, `messages`
+  /// and `merged` counters; the same map appears as `eventCoalescing` in
+  /// [getSchedulerStats]. Android only.
+  Future<Map<String, dynamic>> configureEventCoalescing({
+    int? windowMs,
+    int? maxLatencyMs,
+    int? maxBatch,
+  }) {
+    return WiseApartmentPlatform.instance.configureEventCoalescing(
+      windowMs: windowMs,
+      maxLatencyMs: maxLatencyMs,
+      maxBatch: maxBatch,
+    );
+  }
+
+  /// Run several operations on one lock over a single connection, e.g.
+  ///
+  /// ```dart
+  /// await wise.executeBatch(auth, [
+  ///   {'method': 'syncLockTime'},
+  ///   {'method': 'getSysParam'},
+  ///   {'method': 'addLockKey', 'params': {'action': action.toMap()}},
+  /// ]);
+  /// ```
+  ///
+  /// Supported methods: openLock, closeLock, syncLockTime, getSysParam,
+  /// setSysParam, getDna, addLockKey, deleteLockKey, modifyLockKey,
+  /// changeLockKeyPwd, syncLockKey, enableDisableKeyByType,
+  /// setKeyExpirationAlarmTime and syncLockRecordsPage. With [stopOnError]
+  /// the remaining steps are reported as `skipped` after the first failure.
+  /// A step that takes longer than [stepTimeoutMs] (default 30 s) fails the
+  /// batch with `COMMAND_TIMEOUT`; the lock's next command waits until the
+  /// timed-out step has let go of the link.
+  Future<Map<String, dynamic>> executeBatch(
+    Map<String, dynamic> auth,
+    List<Map<String, dynamic>> operations, {
+    bool stopOnError = true,
+    int? stepTimeoutMs,
+  }) {
+    return WiseApartmentPlatform.instance.executeBatch(
+      auth,
+      operations,
+      stopOnError: stopOnError,
+      stepTimeoutMs: stepTimeoutMs,
+    );
+  }
+
+  /// Forget the high-water marks `sinceLast` record syncs resume from, for
+  /// the lock [mac] or for every lock. The next sync reads full history.
+  /// Android only.
+  Future<bool> clearRecordCheckpoints({String? mac}) {
+    return WiseApartmentPlatform.instance.clearRecordCheckpoints(mac: mac);
+  }
+
+  /// The key list of lock [mac] as of its last [syncLockKeyStream], read
+  /// from the device without BLE, so key screens can show it at once and
+  /// then sync only the changes. Returns `keys`, `total`, `watermark` (the
+  /// newest `modifyTimestamp` seen) and `updatedAt` (ms since epoch);
+  /// `keys` is empty when the lock was never synced. Android only.
+  Future<Map<String, dynamic>> getLockKeySnapshot(String mac) {
+    return WiseApartmentPlatform.instance.getLockKeySnapshot(mac);
+  }
+
+  /// Forget the key snapshot of lock [mac] (or of every lock), so its next
+  /// key sync reads every key again. Android only.
+  Future<bool> clearLockKeySnapshot({String? mac}) {
+    return WiseApartmentPlatform.instance.clearLockKeySnapshot(mac: mac);
+  }
+
+  /// Upload a fingerprint or face template to the lock as a new key.
+  ///
+  /// [action] takes `keyType` (1 fingerprint, 64 face), `keyGroupId`, the
+  /// template, and the validity fields of addLockKey (`vaildMode`,
+  /// `validStartTime`, `validEndTime`, `week`, `dayStartTimes`,
+  /// `dayEndTimes`, `vaildNumber`). Listen to [bigDataKeyStream] for
+  /// progress and the result. Android only.
+  ///
+  /// Give the template as one of:
+  /// - `bigData`: a Uint8List, sent as one buffer and chunked in place
+  /// - `bigDataPath`: a file the native side memory-maps and reads packet
+  ///   by packet, so the template never passes through Dart
+  /// - `bigDataBase64`: the Base64 string of older SDK versions
+  Future<Map<String, dynamic>> addBigDataKey(
+    Map<String, dynamic> auth,
+    Map<String, dynamic> action,
+  ) {
+    return WiseApartmentPlatform.instance.addBigDataKey(auth, action);
+  }
+
+  /// Continue a template upload that failed with `resumable: true`, from
+  /// the last packet the lock acknowledged. If the lock dropped the
+  /// half-received key, the upload restarts once from the first packet.
+  /// Android only.
+  Future<Map<String, dynamic>> resumeBigDataKey(Map<String, dynamic> auth) {
+    return WiseApartmentPlatform.instance.resumeBigDataKey(auth);
+  }
+
+  /// Where the last template upload to lock [mac] stands (`currentIndex`,
+  /// `totalNum`, `lockKeyId`, `resumable`, ...), or null. Android only.
+  Future<Map<String, dynamic>?> getBigDataKeyCheckpoint(String mac) {
+    return WiseApartmentPlatform.instance.getBigDataKeyCheckpoint(mac);
+  }
+
+  /// Record syncs in flight. Each sync (full or streamed) is its own
+  /// session with a `syncId`, so syncs of different locks keep separate
+  /// progress; stream events carry the same `syncId`. The map holds an
+  /// `active` list (`syncId`, `mac`, `nextIndex`, `total`, `pages`,
+  /// `readCnt`, `elapsedMs`) and `started` / `finished` / `peakActive`
+  /// counts. Android only.
+  Future<Map<String, dynamic>> getRecordSyncSessions() {
+    return WiseApartmentPlatform.instance.getRecordSyncSessions();
+  }
+
+  /// Set how many locks the native scheduler drives at once
+  /// ([maxActiveLinks]). Only 1, the default, is supported: the vendor SDK
+  /// runs a single GATT client, and higher values fail with
+  /// `INVALID_ARGS`. Syncs of different locks started together, e.g.
+  /// `Future.wait(locks.map((l) => plugin.syncLockRecords(l, 2)))`, queue
+  /// and run one after another. Returns scheduler stats. Android only.
+  Future<Map<String, dynamic>> configureScheduler({int? maxActiveLinks}) {
+    return WiseApartmentPlatform.instance.configureScheduler(
+      maxActiveLinks: maxActiveLinks,
+    );
+  }
+
+  /// Flow control for [syncLockRecordsStream] and [syncLockKeyStream].
+  ///
+  /// Start a sync with `streamId: 'my-id'` and optionally `credits: n` in
+  /// its arguments (events carry the same `streamId`). With credits the
+  /// native side produces at most n chunks and then waits; for records it
+  /// stops requesting pages from the lock, so a slow consumer keeps memory
+  /// bounded. [pauseStream] stops a stream at the next chunk, [resumeStream]
+  /// grants more credits (or unlimited when [credits] is null).
+  ///
+  /// A stream that stays paused longer than the native stream timeout
+  /// (30 s) ends with a `COMMAND_TIMEOUT` error and releases the lock.
+  /// Both return false when no such stream is running. Android only.
+  Future<bool> pauseStream(String streamId) {
+    return WiseApartmentPlatform.instance.pauseStream(streamId);
+  }
+
+  /// Grant stream [streamId] [credits] more chunks and lift a pause; null
+  /// [credits] lets it flow freely. See [pauseStream]. Android only.
+  Future<bool> resumeStream(String streamId, {int? credits}) {
+    return WiseApartmentPlatform.instance.resumeStream(
+      streamId,
+      credits: credits,
+    );
+  }
+
+  /// End stream [streamId] before it finishes. The command running on the
+  /// lock is aborted, buffered items are dropped and the stream emits its
+  /// cancelled event (`syncLockRecordsCancelled`, `syncLockKeyCancelled` or
+  /// `addLockKeyCancelled`, with `totalSoFar`) instead of a done event. A
+  /// stream still queued behind other commands ends the same way when its
+  /// turn comes, without talking to the lock. A cancelled record sync does
+  /// not advance its `sinceLast` checkpoint.
+  ///
+  /// Returns false when no such stream is running. Android only.
+  Future<bool> cancelStream(String streamId) {
+    return WiseApartmentPlatform.instance.cancelStream(streamId);
+  }
+
+  /// Latency metrics of native method calls since start or the last
+  /// [resetMetrics].
+  ///
+  /// `methods` maps each channel method to `count`, `meanMs`, `maxMs`,
+  /// `p50Ms`, `p90Ms`, `p99Ms`, `buckets` (counts per `bucketBoundsMs`
+  /// bucket, plus one for slower calls) and `codes` (the same per result
+  /// code: `success`, an error code or `notImplemented`). A method's time
+  /// runs until its reply; for streaming methods `<method>.stream` also
+  /// times the whole stream up to its done event (code `done`) or error.
+  /// Android only.
+  Future<Map<String, dynamic>> getMetrics() {
+    return WiseApartmentPlatform.instance.getMetrics();
+  }
+
+  /// Clear the metrics returned by [getMetrics]. Android only.
+  Future<bool> resetMetrics() {
+    return WiseApartmentPlatform.instance.resetMetrics();
+  }
+
+  /// Where the time of each lock operation went, one event per finished
+  /// operation:
+  /// `{ type: 'trace', id, mac, op, sdkOp, code, responses, timedOut,
+  /// linkError, secureAuthMs, totalMs, phases }`.
+  ///
+  /// `phases` holds ms per phase, in order; a phase is missing when it did
+  /// not happen (e.g. `connecting` on a link that was already up):
+  /// - `queued`: waiting behind other commands for the lock or a link slot
+  /// - `prepare`: until the SDK was called
+  /// - `connecting`: until the link was ready
+  /// - `auth`: secure-auth handshake (only with `secureAuth` set)
+  /// - `command`: until the lock's first response
+  /// - `response`: first to last response of multi-part replies
+  /// - `reply`: until the command released the lock
+  /// - `delivered`: until the reply had been handed to Dart
+  ///
+  /// Traces are only collected while this stream has a listener, so
+  /// leaving it unobserved costs nothing. Android only.
+  Stream<Map<String, dynamic>> get diagnosticsStream {
+    return WiseApartmentPlatform.instance.diagnosticsStream;
+  }
+
+  /// Reads lock records from the on-device store instead of the lock.
+  /// Every sync (full, paged or streamed) adds its records to the store,
+  /// de-duplicated, so audit screens can open from local data.
+  ///
+  /// ```dart
+  /// final page = await wise.queryLockRecords({
+  ///   'mac': mac,
+  ///   'fromTime': since,   // same unit as recordTime
+  ///   'keyId': 12,         // optional; also keyType, recordType
+  ///   'limit': 50,
+  ///   'offset': 0,         // pass nextOffset for the next page
+  /// });
+  /// ```
+  ///
+  /// Results are newest first unless `descending: false`; add
+  /// `recordFormat: 'binary'` for a [LockRecordBatch]. Android only.
+  Future<Map<String, dynamic>> queryLockRecords(Map<String, dynamic> query) {
+    return WiseApartmentPlatform.instance.queryLockRecords(query);
+  }
+
+  /// Deletes locally stored records for the lock [mac], or for all locks.
+  /// Android only.
+  Future<bool> clearLockRecords({String? mac}) {
+    return WiseApartmentPlatform.instance.clearLockRecords(mac: mac);
+  }
+
   /// Enable or disable an individual key by its key ID (Operation Mode 1).
   /// This is the most specific way to enable/disable a single key.
   ///
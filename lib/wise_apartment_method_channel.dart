@@ -16,12 +16,28 @@ class MethodChannelWiseApartment extends WiseApartmentPlatform {
   @visibleForTesting
   final eventChannel = const EventChannel('wise_apartment/ble_events');
 
+  @visibleForTesting
+  final diagnosticsChannel = const EventChannel('wise_apartment/diagnostics');
+
+  /// Native side may merge a burst of chunk events into one
+  /// `{type: 'batch', events: [...], merged: n}` message; split it back up
+  /// so every stream still sees one event per chunk.
+  Stream<dynamic> get _channelEvents =>
+      eventChannel.receiveBroadcastStream().expand(_unbatch);
+
+  static Iterable<dynamic> _unbatch(dynamic event) {
+    if (event is Map && event['type'] == 'batch' && event['events'] is List) {
+      return event['events'] as List;
+    }
+    return <dynamic>[event];
+  }
+
   Stream<Map<String, dynamic>>? _syncLockKeyStream;
   Stream<Map<String, dynamic>>? _syncLockRecordsStream;
 
   @override
   Stream<Map<String, dynamic>> get syncLockKeyStream {
-    _syncLockKeyStream ??= eventChannel.receiveBroadcastStream().map((event) {
+    _syncLockKeyStream ??= _channelEvents.map((event) {
       if (event is Map) {
         return Map<String, dynamic>.from(event);
       }
@@ -32,11 +48,17 @@ class MethodChannelWiseApartment extends WiseApartmentPlatform {
 
   @override
   Stream<Map<String, dynamic>> get syncLockRecordsStream {
-    _syncLockRecordsStream ??= eventChannel.receiveBroadcastStream().map((
+    _syncLockRecordsStream ??= _channelEvents.map((
       event,
     ) {
       if (event is Map) {
-        return Map<String, dynamic>.from(event);
+        final m = Map<String, dynamic>.from(event);
+        // Chunks and the done event carry a byte[] batch when the sync was
+        // started with recordFormat: 'binary'.
+        if (LockRecordBatch.isEncoded(m['items'])) {
+          m['items'] = LockRecordBatch.fromChannel(m['items']);
+        }
+        return m;
       }
       return <String, dynamic>{'type': 'unknown', 'data': event};
     });
@@ -47,7 +69,7 @@ class MethodChannelWiseApartment extends WiseApartmentPlatform {
 
   @override
   Stream<Map<String, dynamic>> get getSysParamStream {
-    _sysParamStream ??= eventChannel.receiveBroadcastStream().map((event) {
+    _sysParamStream ??= _channelEvents.map((event) {
       if (event is Map) {
         final Map<String, dynamic> m = Map<String, dynamic>.from(event);
         final String? type = m['type'] is String ? m['type'] as String : null;
@@ -68,7 +90,7 @@ class MethodChannelWiseApartment extends WiseApartmentPlatform {
 
   @override
   Stream<Map<String, dynamic>> get wifiRegistrationStream {
-    _wifiRegistrationStream ??= eventChannel.receiveBroadcastStream().map((
+    _wifiRegistrationStream ??= _channelEvents.map((
       event,
     ) {
       if (event is Map) {
@@ -89,13 +111,14 @@ class MethodChannelWiseApartment extends WiseApartmentPlatform {
 
   @override
   Stream<Map<String, dynamic>> get addLockKeyStream {
-    _addLockKeyStream ??= eventChannel.receiveBroadcastStream().map((event) {
+    _addLockKeyStream ??= _channelEvents.map((event) {
       if (event is Map) {
         final Map<String, dynamic> m = Map<String, dynamic>.from(event);
         final String? type = m['type'] is String ? m['type'] as String : null;
         if (type == 'addLockKeyChunk' ||
             type == 'addLockKeyDone' ||
-            type == 'addLockKeyError') {
+            type == 'addLockKeyError' ||
+            type == 'addLockKeyCancelled') {
           return m;
         }
         return <String, dynamic>{'type': 'unknown', 'data': event};
@@ -105,11 +128,31 @@ class MethodChannelWiseApartment extends WiseApartmentPlatform {
     return _addLockKeyStream!;
   }
 
+  Stream<Map<String, dynamic>>? _bigDataKeyStream;
+
+  @override
+  Stream<Map<String, dynamic>> get bigDataKeyStream {
+    _bigDataKeyStream ??= _channelEvents.map((event) {
+      if (event is Map) {
+        final Map<String, dynamic> m = Map<String, dynamic>.from(event);
+        final String? type = m['type'] is String ? m['type'] as String : null;
+        if (type == 'addBigDataKeyProgress' ||
+            type == 'addBigDataKeyDone' ||
+            type == 'addBigDataKeyError') {
+          return m;
+        }
+        return <String, dynamic>{'type': 'unknown', 'data': event};
+      }
+      return <String, dynamic>{'type': 'unknown', 'data': event};
+    });
+    return _bigDataKeyStream!;
+  }
+
   Stream<Map<String, dynamic>>? _bleEventStream;
 
   @override
   Stream<Map<String, dynamic>> get bleEventStream {
-    _bleEventStream ??= eventChannel.receiveBroadcastStream().map((event) {
+    _bleEventStream ??= _channelEvents.map((event) {
       if (event is Map) {
         return Map<String, dynamic>.from(event);
       }
@@ -170,6 +213,120 @@ class MethodChannelWiseApartment extends WiseApartmentPlatform {
     }
   }
 
+  @override
+  Future<String> startScanStream({
+    int timeoutMs = 10000,
+    int? rssiDelta,
+    String? streamId,
+  }) async {
+    try {
+      final String? result = await methodChannel.invokeMethod<String>(
+        'startScanStream',
+        <String, dynamic>{
+          'timeoutMs': timeoutMs,
+          if (rssiDelta != null) 'rssiDelta': rssiDelta,
+          if (streamId != null) 'streamId': streamId,
+        },
+      );
+      return result ?? '';
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  Stream<Map<String, dynamic>>? _scanStream;
+
+  @override
+  Stream<Map<String, dynamic>> get scanStream {
+    _scanStream ??= _channelEvents.map((event) {
+      if (event is Map) {
+        final Map<String, dynamic> m = Map<String, dynamic>.from(event);
+        final String? type = m['type'] is String ? m['type'] as String : null;
+        if (type == 'scanDeviceFound' ||
+            type == 'scanDeviceUpdated' ||
+            type == 'scanDone') {
+          return m;
+        }
+        return <String, dynamic>{'type': 'unknown', 'data': event};
+      }
+      return <String, dynamic>{'type': 'unknown', 'data': event};
+    });
+    return _scanStream!;
+  }
+
+  @override
+  Future<Map<String, dynamic>> scanFor({
+    List<String>? macs,
+    List<String>? names,
+    int timeoutMs = 10000,
+    int? settleMs,
+    int? maxAgeMs,
+  }) async {
+    try {
+      final Map<String, dynamic>? result = await methodChannel
+          .invokeMapMethod<String, dynamic>('scanFor', <String, dynamic>{
+            if (macs != null) 'macs': macs,
+            if (names != null) 'names': names,
+            'timeoutMs': timeoutMs,
+            if (settleMs != null) 'settleMs': settleMs,
+            if (maxAgeMs != null) 'maxAgeMs': maxAgeMs,
+          });
+      if (result == null) return <String, dynamic>{};
+      final devices = result['devices'];
+      if (devices is List) {
+        result['devices'] = devices
+            .cast<Map<dynamic, dynamic>>()
+            .map((e) => Map<String, dynamic>.from(e))
+            .toList();
+      }
+      return result;
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<List<Map<String, dynamic>>> getNearbyLocks({int? maxAgeMs}) async {
+    try {
+      final List<dynamic>? result = await methodChannel.invokeMethod(
+        'getNearbyLocks',
+        <String, dynamic>{if (maxAgeMs != null) 'maxAgeMs': maxAgeMs},
+      );
+      if (result == null) return [];
+      return result
+          .cast<Map<dynamic, dynamic>>()
+          .map((e) => Map<String, dynamic>.from(e))
+          .toList();
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>?> getNearbyLock(String mac) async {
+    try {
+      return await methodChannel.invokeMapMethod<String, dynamic>(
+        'getNearbyLock',
+        <String, dynamic>{'mac': mac},
+      );
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<bool> setNearbyLockTtl(int ttlMs) async {
+    try {
+      final bool? result = await methodChannel.invokeMethod<bool>(
+        'setNearbyLockTtl',
+        <String, dynamic>{'ttlMs': ttlMs},
+      );
+      return result ?? false;
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
   @override
   Future<bool> stopScan() async {
     return _invokeBool('stopScan');
@@ -300,15 +457,11 @@ class MethodChannelWiseApartment extends WiseApartmentPlatform {
     }
     args['logVersion'] = effectiveLogVersion;
     try {
-      final List<dynamic>? result = await methodChannel.invokeMethod(
+      final dynamic result = await methodChannel.invokeMethod(
         'syncLockRecords',
         args,
       );
-      if (result == null) return [];
-      return result
-          .cast<Map<dynamic, dynamic>>()
-          .map((e) => Map<String, dynamic>.from(e))
-          .toList();
+      return LockRecordBatch.fromChannel(result);
     } on PlatformException catch (e) {
       throw WiseApartmentException(e.code, e.message, e.details);
     }
@@ -348,7 +501,11 @@ class MethodChannelWiseApartment extends WiseApartmentPlatform {
         'syncLockRecordsPage',
         args,
       );
-      return result ?? <String, dynamic>{};
+      if (result == null) return <String, dynamic>{};
+      if (LockRecordBatch.isEncoded(result['records'])) {
+        result['records'] = LockRecordBatch.fromChannel(result['records']);
+      }
+      return result;
     } on PlatformException catch (e) {
       throw WiseApartmentException(e.code, e.message, e.details);
     }
@@ -672,6 +829,288 @@ class MethodChannelWiseApartment extends WiseApartmentPlatform {
     }
   }
 
+  @override
+  Future<Map<String, dynamic>> getSchedulerStats() async {
+    try {
+      final Map<String, dynamic>? result = await methodChannel
+          .invokeMapMethod<String, dynamic>('getSchedulerStats');
+      return result ?? <String, dynamic>{};
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> configureSession({int? idleTimeoutMs}) async {
+    final args = <String, dynamic>{};
+    if (idleTimeoutMs != null) args['idleTimeoutMs'] = idleTimeoutMs;
+    try {
+      final Map<String, dynamic>? result = await methodChannel
+          .invokeMapMethod<String, dynamic>('configureSession', args);
+      return result ?? <String, dynamic>{};
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> configureEventCoalescing({
+    int? windowMs,
+    int? maxLatencyMs,
+    int? maxBatch,
+  }) async {
+    final args = <String, dynamic>{};
+    if (windowMs != null) args['windowMs'] = windowMs;
+    if (maxLatencyMs != null) args['maxLatencyMs'] = maxLatencyMs;
+    if (maxBatch != null) args['maxBatch'] = maxBatch;
+    try {
+      final Map<String, dynamic>? result = await methodChannel
+          .invokeMapMethod<String, dynamic>('configureEventCoalescing', args);
+      return result ?? <String, dynamic>{};
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> executeBatch(
+    Map<String, dynamic> auth,
+    List<Map<String, dynamic>> operations, {
+    bool stopOnError = true,
+    int? stepTimeoutMs,
+  }) async {
+    final args = Map<String, dynamic>.from(auth);
+    args['operations'] = operations;
+    args['stopOnError'] = stopOnError;
+    if (stepTimeoutMs != null) args['stepTimeoutMs'] = stepTimeoutMs;
+    try {
+      final Map<String, dynamic>? result = await methodChannel
+          .invokeMapMethod<String, dynamic>('executeBatch', args);
+      return result ?? <String, dynamic>{};
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<bool> clearRecordCheckpoints({String? mac}) async {
+    try {
+      final bool? result = await methodChannel.invokeMethod<bool>(
+        'clearRecordCheckpoints',
+        <String, dynamic>{if (mac != null) 'mac': mac},
+      );
+      return result ?? false;
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> getLockKeySnapshot(String mac) async {
+    try {
+      final Map<String, dynamic>? result = await methodChannel
+          .invokeMapMethod<String, dynamic>(
+            'getLockKeySnapshot',
+            <String, dynamic>{'mac': mac},
+          );
+      return result ?? <String, dynamic>{};
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<bool> clearLockKeySnapshot({String? mac}) async {
+    try {
+      final bool? result = await methodChannel.invokeMethod<bool>(
+        'clearLockKeySnapshot',
+        <String, dynamic>{if (mac != null) 'mac': mac},
+      );
+      return result ?? false;
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> addBigDataKey(
+    Map<String, dynamic> auth,
+    Map<String, dynamic> action,
+  ) async {
+    final args = Map<String, dynamic>.from(auth);
+    final bigData = action['bigData'];
+    // A plain List<int> would be sent element by element; Uint8List is sent
+    // as one byte[] buffer.
+    args['action'] = bigData is List<int> && bigData is! Uint8List
+        ? (Map<String, dynamic>.from(action)
+          ..['bigData'] = Uint8List.fromList(bigData))
+        : action;
+    try {
+      final Map<String, dynamic>? result = await methodChannel
+          .invokeMapMethod<String, dynamic>('addBigDataKey', args);
+      return result ?? <String, dynamic>{};
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> resumeBigDataKey(
+    Map<String, dynamic> auth,
+  ) async {
+    try {
+      final Map<String, dynamic>? result = await methodChannel
+          .invokeMapMethod<String, dynamic>('resumeBigDataKey', auth);
+      return result ?? <String, dynamic>{};
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>?> getBigDataKeyCheckpoint(String mac) async {
+    try {
+      return await methodChannel.invokeMapMethod<String, dynamic>(
+        'getBigDataKeyCheckpoint',
+        <String, dynamic>{'mac': mac},
+      );
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> getRecordSyncSessions() async {
+    try {
+      final Map<String, dynamic>? result = await methodChannel
+          .invokeMapMethod<String, dynamic>('getRecordSyncSessions');
+      return result ?? <String, dynamic>{};
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> configureScheduler({
+    int? maxActiveLinks,
+  }) async {
+    final args = <String, dynamic>{};
+    if (maxActiveLinks != null) args['maxActiveLinks'] = maxActiveLinks;
+    try {
+      final Map<String, dynamic>? result = await methodChannel
+          .invokeMapMethod<String, dynamic>('configureScheduler', args);
+      return result ?? <String, dynamic>{};
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<bool> pauseStream(String streamId) async {
+    try {
+      final bool? result = await methodChannel.invokeMethod<bool>(
+        'pauseStream',
+        <String, dynamic>{'streamId': streamId},
+      );
+      return result ?? false;
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<bool> resumeStream(String streamId, {int? credits}) async {
+    try {
+      final bool? result = await methodChannel.invokeMethod<bool>(
+        'resumeStream',
+        <String, dynamic>{
+          'streamId': streamId,
+          if (credits != null) 'credits': credits,
+        },
+      );
+      return result ?? false;
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<bool> cancelStream(String streamId) async {
+    try {
+      final bool? result = await methodChannel.invokeMethod<bool>(
+        'cancelStream',
+        <String, dynamic>{'streamId': streamId},
+      );
+      return result ?? false;
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> getMetrics() async {
+    try {
+      final Map<String, dynamic>? result = await methodChannel
+          .invokeMapMethod<String, dynamic>('getMetrics');
+      return result ?? <String, dynamic>{};
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<bool> resetMetrics() async {
+    try {
+      final bool? result = await methodChannel.invokeMethod<bool>(
+        'resetMetrics',
+      );
+      return result ?? false;
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  Stream<Map<String, dynamic>>? _diagnosticsStream;
+
+  @override
+  Stream<Map<String, dynamic>> get diagnosticsStream {
+    _diagnosticsStream ??= diagnosticsChannel
+        .receiveBroadcastStream()
+        .where((event) => event is Map)
+        .map((event) => Map<String, dynamic>.from(event as Map));
+    return _diagnosticsStream!;
+  }
+
+  @override
+  Future<Map<String, dynamic>> queryLockRecords(
+    Map<String, dynamic> query,
+  ) async {
+    try {
+      final result = await methodChannel.invokeMapMethod<String, dynamic>(
+        'queryLockRecords',
+        query,
+      );
+      if (result == null) return <String, dynamic>{};
+      result['records'] = LockRecordBatch.fromChannel(result['records']);
+      return result;
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
+  @override
+  Future<bool> clearLockRecords({String? mac}) async {
+    try {
+      final bool? result = await methodChannel.invokeMethod<bool>(
+        'clearLockRecords',
+        <String, dynamic>{if (mac != null) 'mac': mac},
+      );
+      return result ?? false;
+    } on PlatformException catch (e) {
+      throw WiseApartmentException(e.code, e.message, e.details);
+    }
+  }
+
   Future<bool> _invokeBool(String method, [dynamic arguments]) async {
     try {
       final dynamic result = await methodChannel.invokeMethod<dynamic>(
@@ -22,6 +22,39 @@ abstract class WiseApartmentPlatform extends PlatformInterface {
   Future<bool> initBleClient();
   Future<List<Map<String, dynamic>>> startScan({int timeoutMs = 10000});
   Future<bool> stopScan();
+
+  /// Start a scan that reports devices on [scanStream] as they are seen.
+  /// Returns the scan's stream id. Android only.
+  Future<String> startScanStream({
+    int timeoutMs = 10000,
+    int? rssiDelta,
+    String? streamId,
+  });
+
+  /// Events of scans started with [startScanStream]. Android only.
+  Stream<Map<String, dynamic>> get scanStream;
+
+  /// Scan only for the locks in [macs] / [names] and reply as soon as they
+  /// are found. Android only.
+  Future<Map<String, dynamic>> scanFor({
+    List<String>? macs,
+    List<String>? names,
+    int timeoutMs = 10000,
+    int? settleMs,
+    int? maxAgeMs,
+  });
+
+  /// Locks any scan saw within [maxAgeMs] (at most the registry TTL),
+  /// strongest RSSI first. Android only.
+  Future<List<Map<String, dynamic>>> getNearbyLocks({int? maxAgeMs});
+
+  /// The registry entry of lock [mac], or null when it was not seen within
+  /// the TTL. Android only.
+  Future<Map<String, dynamic>?> getNearbyLock(String mac);
+
+  /// How long a scan sighting stays in the nearby-lock registry. Android
+  /// only.
+  Future<bool> setNearbyLockTtl(int ttlMs);
   Future<Map<String, dynamic>> openLock(Map<String, dynamic> auth);
   Future<bool> disconnect({required String mac});
   Future<bool> clearSdkState();
@@ -176,4 +209,113 @@ abstract class WiseApartmentPlatform extends PlatformInterface {
   /// `auth` should contain at least the `mac` of the lock to abort.
   /// Returns a Map with `code`, `ackMessage`, and optional `reason`.
   Future<Map<String, dynamic>> exitCmd(Map<String, dynamic> auth);
+
+  /// Snapshot of the native BLE command scheduler: queue depth, active
+  /// links and wait-time metrics. Android only.
+  Future<Map<String, dynamic>> getSchedulerStats();
+
+  /// Configure the native BLE session cache. Links stay connected and
+  /// authenticated for [idleTimeoutMs] after the last command to a lock;
+  /// 0 disconnects after every command. Returns session stats. Android only.
+  Future<Map<String, dynamic>> configureSession({int? idleTimeoutMs});
+
+  /// Configure how native stream chunk events are merged into platform
+  /// messages: flushed after [windowMs] without a new chunk, after
+  /// [maxLatencyMs] at most, or once [maxBatch] are buffered. A window of 0
+  /// sends every event on its own. Returns emitter stats. Android only.
+  Future<Map<String, dynamic>> configureEventCoalescing({
+    int? windowMs,
+    int? maxLatencyMs,
+    int? maxBatch,
+  });
+
+  /// Run [operations] (each `{'method': ..., 'params': {...}}`) back-to-back
+  /// on one authenticated link to the lock in [auth]. Returns `ok`, `totalMs`
+  /// and a `steps` list with per-step `ok`, `result`/`code`/`message` and
+  /// `elapsedMs`. Android only.
+  Future<Map<String, dynamic>> executeBatch(
+    Map<String, dynamic> auth,
+    List<Map<String, dynamic>> operations, {
+    bool stopOnError = true,
+    int? stepTimeoutMs,
+  });
+
+  /// Forget the record sync high-water marks used by `sinceLast` syncs for
+  /// the lock [mac], or for every lock when [mac] is null. Android only.
+  Future<bool> clearRecordCheckpoints({String? mac});
+
+  /// The stored key list of lock [mac] (`keys`, `total`, `watermark`,
+  /// `updatedAt`) as of its last key sync, without BLE. Android only.
+  Future<Map<String, dynamic>> getLockKeySnapshot(String mac);
+
+  /// Forget the key snapshot of lock [mac], or of every lock when [mac] is
+  /// null. Android only.
+  Future<bool> clearLockKeySnapshot({String? mac});
+
+  /// Upload a fingerprint (`keyType` 1) or face (`keyType` 64) template
+  /// given in [action] as `bigData` (Uint8List), `bigDataPath` (a file) or
+  /// `bigDataBase64` as a new key. Progress, done and error events follow
+  /// on [bigDataKeyStream]. Android only.
+  Future<Map<String, dynamic>> addBigDataKey(
+    Map<String, dynamic> auth,
+    Map<String, dynamic> action,
+  );
+
+  /// Continue the interrupted template upload to the lock in [auth] from
+  /// its last acknowledged packet. Android only.
+  Future<Map<String, dynamic>> resumeBigDataKey(Map<String, dynamic> auth);
+
+  /// Checkpoint of the last template upload to lock [mac], or null when
+  /// there is none. Android only.
+  Future<Map<String, dynamic>?> getBigDataKeyCheckpoint(String mac);
+
+  /// Template upload events: 'addBigDataKeyProgress', 'addBigDataKeyDone'
+  /// and 'addBigDataKeyError'. Android only.
+  Stream<Map<String, dynamic>> get bigDataKeyStream;
+
+  /// Record syncs currently running (one entry per sync with `syncId`,
+  /// `mac`, `nextIndex`, `total`, `pages`) plus `started` / `finished`
+  /// counts. Android only.
+  Future<Map<String, dynamic>> getRecordSyncSessions();
+
+  /// Set how many lock links the native scheduler may drive at once
+  /// ([maxActiveLinks]; only 1, the default, is supported). Returns
+  /// scheduler stats. Android only.
+  Future<Map<String, dynamic>> configureScheduler({int? maxActiveLinks});
+
+  /// Stop stream [streamId] from producing chunks until [resumeStream].
+  /// Returns false when no such stream is running. Android only.
+  Future<bool> pauseStream(String streamId);
+
+  /// Grant stream [streamId] [credits] more chunks (unlimited when null)
+  /// and lift a pause. Returns false when no such stream is running.
+  /// Android only.
+  Future<bool> resumeStream(String streamId, {int? credits});
+
+  /// End stream [streamId] early: aborts the command on the lock and emits
+  /// the stream's `...Cancelled` event. Returns false when no such stream
+  /// is running. Android only.
+  Future<bool> cancelStream(String streamId);
+
+  /// Call counts and latency histograms per channel method and result
+  /// code, since start or the last [resetMetrics]. Android only.
+  Future<Map<String, dynamic>> getMetrics();
+
+  /// Clear the metrics returned by [getMetrics]. Android only.
+  Future<bool> resetMetrics();
+
+  /// Phase timings of finished lock operations (`type: 'trace'`), sent
+  /// only while listened to. Android only.
+  Stream<Map<String, dynamic>> get diagnosticsStream;
+
+  /// Page lock records out of the on-device record store, which every
+  /// record sync feeds. [query] takes `mac` plus optional `fromTime`,
+  /// `toTime`, `keyId`, `keyType`, `recordType`, `offset`, `limit` and
+  /// `descending`. Returns `records`, `total`, `nextOffset` and `hasMore`.
+  /// No BLE traffic. Android only.
+  Future<Map<String, dynamic>> queryLockRecords(Map<String, dynamic> query);
+
+  /// Delete stored records for the lock [mac], or for every lock when
+  /// [mac] is null. Android only.
+  Future<bool> clearLockRecords({String? mac});
 }
@@ -0,0 +1,35 @@
+import 'dart:typed_data';
+
+import 'package:flutter_test/flutter_test.dart';
+import 'package:wise_apartment/wise_apartment.dart';
+
+void main() {
+  // Output of RecordBatchEncoder.encode for
+  // [{modelType: 'A', recordTime: 5, eventFlag: true}, {recordTime: 7}]
+  final bytes = Uint8List.fromList([
+    87, 82, 66, 1, 2, 0, 0, 0, 3, 0, 9, 0, 109, 111, 100, 101, 108, 84, //
+    121, 112, 101, 4, 59, 0, 0, 0, 10, 0, 114, 101, 99, 111, 114, 100, //
+    84, 105, 109, 101, 1, 73, 0, 0, 0, 9, 0, 101, 118, 101, 110, 116, //
+    70, 108, 97, 103, 3, 90, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 1, 0, //
+    0, 0, 65, 3, 5, 0, 0, 0, 0, 0, 0, 0, 7, 0, 0, 0, 0, 0, 0, 0, 1, 1, 0,
+  ]);
+
+  test('decodes records and skips absent fields', () {
+    expect(LockRecordBatch.isEncoded(bytes), isTrue);
+    final batch = LockRecordBatch.decode(bytes);
+    expect(batch.length, 2);
+    expect(batch[0], {'modelType': 'A', 'recordTime': 5, 'eventFlag': true});
+    expect(batch[1], {'recordTime': 7});
+    expect(batch.valueAt(1, 'recordTime'), 7);
+    expect(batch.valueAt(1, 'modelType'), isNull);
+  });
+
+  test('fromChannel passes plain lists through', () {
+    final list = LockRecordBatch.fromChannel([
+      {'recordTime': 1},
+    ]);
+    expect(list, [
+      {'recordTime': 1},
+    ]);
+  });
+}
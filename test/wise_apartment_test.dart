@@ -26,6 +26,37 @@ class MockWiseApartmentPlatform
   @override
   Future<bool> stopScan() => Future.value(true);
 
+  @override
+  Future<String> startScanStream({
+    int timeoutMs = 10000,
+    int? rssiDelta,
+    String? streamId,
+  }) => Future.value('stream-1');
+
+  @override
+  Stream<Map<String, dynamic>> get scanStream =>
+      const Stream<Map<String, dynamic>>.empty();
+
+  @override
+  Future<Map<String, dynamic>> scanFor({
+    List<String>? macs,
+    List<String>? names,
+    int timeoutMs = 10000,
+    int? settleMs,
+    int? maxAgeMs,
+  }) => Future.value({});
+
+  @override
+  Future<List<Map<String, dynamic>>> getNearbyLocks({int? maxAgeMs}) =>
+      Future.value([]);
+
+  @override
+  Future<Map<String, dynamic>?> getNearbyLock(String mac) =>
+      Future.value(null);
+
+  @override
+  Future<bool> setNearbyLockTtl(int ttlMs) => Future.value(true);
+
   @override
   Future<Map<String, dynamic>> openLock(Map<String, dynamic> auth) =>
       Future.value({});
@@ -226,6 +257,123 @@ class MockWiseApartmentPlatform
     throw UnimplementedError();
   }
 
+  @override
+  Future<Map<String, dynamic>> getSchedulerStats() {
+    return Future.value({});
+  }
+
+  @override
+  Future<Map<String, dynamic>> configureSession({int? idleTimeoutMs}) {
+    return Future.value({});
+  }
+
+  @override
+  Future<Map<String, dynamic>> configureEventCoalescing({
+    int? windowMs,
+    int? maxLatencyMs,
+    int? maxBatch,
+  }) {
+    return Future.value({});
+  }
+
+  @override
+  Future<Map<String, dynamic>> executeBatch(
+    Map<String, dynamic> auth,
+    List<Map<String, dynamic>> operations, {
+    bool stopOnError = true,
+    int? stepTimeoutMs,
+  }) {
+    return Future.value({});
+  }
+
+  @override
+  Future<bool> clearRecordCheckpoints({String? mac}) {
+    return Future.value(true);
+  }
+
+  @override
+  Future<Map<String, dynamic>> getLockKeySnapshot(String mac) {
+    return Future.value({});
+  }
+
+  @override
+  Future<bool> clearLockKeySnapshot({String? mac}) {
+    return Future.value(true);
+  }
+
+  @override
+  Future<Map<String, dynamic>> addBigDataKey(
+    Map<String, dynamic> auth,
+    Map<String, dynamic> action,
+  ) {
+    return Future.value({'streaming': true});
+  }
+
+  @override
+  Future<Map<String, dynamic>> resumeBigDataKey(Map<String, dynamic> auth) {
+    return Future.value({'streaming': true});
+  }
+
+  @override
+  Future<Map<String, dynamic>?> getBigDataKeyCheckpoint(String mac) {
+    return Future.value(null);
+  }
+
+  @override
+  Stream<Map<String, dynamic>> get bigDataKeyStream {
+    return const Stream<Map<String, dynamic>>.empty();
+  }
+
+  @override
+  Future<Map<String, dynamic>> getRecordSyncSessions() {
+    return Future.value({});
+  }
+
+  @override
+  Future<Map<String, dynamic>> configureScheduler({int? maxActiveLinks}) {
+    return Future.value({});
+  }
+
+  @override
+  Future<bool> pauseStream(String streamId) {
+    return Future.value(true);
+  }
+
+  @override
+  Future<bool> resumeStream(String streamId, {int? credits}) {
+    return Future.value(true);
+  }
+
+  @override
+  Future<bool> cancelStream(String streamId) {
+    return Future.value(true);
+  }
+
+  @override
+  Future<Map<String, dynamic>> getMetrics() {
+    return Future.value({'methods': <String, dynamic>{}});
+  }
+
+  @override
+  Future<bool> resetMetrics() {
+    return Future.value(true);
+  }
+
+  @override
+  Stream<Map<String, dynamic>> get diagnosticsStream {
+    return const Stream<Map<String, dynamic>>.empty();
+  }
+
+  @override
+  Future<Map<String, dynamic>> queryLockRecords(Map<String, dynamic> query) {
+    return Future.value({});
+  }
+
+  @override
+  Future<bool> clearLockRecords({String? mac}) {
+    return Future.value(true);
+  }
+
   @override
   Future<Map<String, dynamic>> setSysParam(
     Map<String, dynamic> auth,